@@ -42,7 +42,7 @@ public class DocumentCreationWorker extends AbstractXWikiRunnable {
   private XWikiContext context;
 
   public DocumentCreationWorker(String space, int workerId, XWikiContext context) {
-    this((XWikiContext) context.clone());
+    this(context.fork());
     this.space = space;
     this.workerId = workerId;
   }
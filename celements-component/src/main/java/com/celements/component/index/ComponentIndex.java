@@ -0,0 +1,162 @@
+package com.celements.component.index;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Provides the component descriptors precomputed by the {@link ComponentIndexProcessor} from all
+ * {@link ComponentIndexEntry#LOCATION} resources of a class loader. The classes are still loaded,
+ * but not introspected. Components missing in the index, not loadable as indexed or extending a
+ * class of another jar must be introspected by the caller instead.
+ * <p>
+ * The index may be disabled with the system property {@value #PROPERTY_DISABLED}.
+ */
+public class ComponentIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ComponentIndex.class);
+
+  public static final String PROPERTY_DISABLED = "celements.component.index.disabled";
+
+  private final ClassLoader classLoader;
+  private final Map<String, ComponentIndexEntry> entries;
+
+  private ComponentIndex(ClassLoader classLoader, Map<String, ComponentIndexEntry> entries) {
+    this.classLoader = classLoader;
+    this.entries = entries;
+  }
+
+  /**
+   * @return the index of all {@link ComponentIndexEntry#LOCATION} resources, empty if disabled.
+   *         Unreadable resources are logged and skipped.
+   */
+  public static ComponentIndex load(@NotNull ClassLoader classLoader) {
+    Map<String, ComponentIndexEntry> entries = new HashMap<>();
+    if (!Boolean.getBoolean(PROPERTY_DISABLED)) {
+      try {
+        Enumeration<URL> urls = classLoader.getResources(ComponentIndexEntry.LOCATION);
+        while (urls.hasMoreElements()) {
+          URL url = urls.nextElement();
+          try (BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(),
+              UTF_8))) {
+            List<String> lines = in.lines().collect(Collectors.toList());
+            ComponentIndexEntry.parse(lines).forEach(entry -> entries.putIfAbsent(
+                entry.getImplementation(), entry));
+          } catch (IOException | IllegalArgumentException exc) {
+            LOGGER.warn("load: skipping component index [{}]", url, exc);
+          }
+        }
+      } catch (IOException exc) {
+        LOGGER.warn("load: failed to list component indexes", exc);
+      }
+    }
+    LOGGER.debug("load: {} indexed components", entries.size());
+    return new ComponentIndex(classLoader, entries);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the descriptors of the component, empty if it isn't indexed, the indexed classes
+   *         aren't loadable, e.g. because the index is outdated, or a superclass is of another
+   *         jar
+   */
+  public Optional<List<ComponentDescriptor<?>>> getDescriptors(@NotNull Class<?> componentClass) {
+    ComponentIndexEntry entry = entries.get(componentClass.getName());
+    if ((entry != null) && hasForeignSuperclass(componentClass)) {
+      LOGGER.debug("getDescriptors: superclass of [{}] from another jar, introspecting instead",
+          componentClass.getName());
+    } else if (entry != null) {
+      try {
+        return Optional.of(createDescriptors(componentClass, entry));
+      } catch (ClassNotFoundException | IllegalArgumentException exc) {
+        LOGGER.info("getDescriptors: outdated index entry for [{}], introspecting instead: {}",
+            componentClass.getName(), exc.toString());
+      }
+    }
+    return Optional.empty();
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private List<ComponentDescriptor<?>> createDescriptors(Class<?> componentClass,
+      ComponentIndexEntry entry) throws ClassNotFoundException {
+    ComponentInstantiationStrategy strategy = ComponentInstantiationStrategy.valueOf(
+        entry.getInstantiationStrategy());
+    ImmutableList.Builder<ComponentDescriptor<?>> descriptors = ImmutableList.builder();
+    for (ComponentIndexEntry.Role role : entry.getRoles()) {
+      DefaultComponentDescriptor descriptor = new DefaultComponentDescriptor<>();
+      descriptor.setRole(loadClass(role.getRole()));
+      descriptor.setImplementation(componentClass);
+      descriptor.setRoleHint(role.getHint());
+      descriptor.setInstantiationStrategy(strategy);
+      for (ComponentIndexEntry.Requirement requirement : entry.getRequirements()) {
+        DefaultComponentDependency dependency = new DefaultComponentDependency<>();
+        dependency.setMappingType(loadClass(requirement.getMappingType()));
+        dependency.setName(requirement.getName());
+        dependency.setRole(loadClass(requirement.getRole()));
+        if (requirement.getRoleHint() != null) {
+          dependency.setRoleHint(requirement.getRoleHint());
+        }
+        if (requirement.getHints() != null) {
+          dependency.setHints(requirement.getHints().toArray(new String[0]));
+        }
+        descriptor.addComponentDependency(dependency);
+      }
+      descriptors.add(descriptor);
+    }
+    return descriptors.build();
+  }
+
+  /**
+   * The index contains the requirements inherited from superclasses as they were on the compile
+   * classpath. A superclass of another jar may since have been deployed in a version with other
+   * requirements, so only superclasses of the same jar or the JDK are trusted.
+   */
+  private static boolean hasForeignSuperclass(Class<?> componentClass) {
+    String location = getLocation(componentClass);
+    for (Class<?> superclass = componentClass.getSuperclass(); superclass != null;
+        superclass = superclass.getSuperclass()) {
+      if ((superclass.getClassLoader() != null)
+          && !Objects.equals(location, getLocation(superclass))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getLocation(Class<?> type) {
+    CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+    return ((codeSource != null) && (codeSource.getLocation() != null))
+        ? codeSource.getLocation().toExternalForm()
+        : null;
+  }
+
+  private Class<?> loadClass(String className) throws ClassNotFoundException {
+    return Class.forName(className, false, classLoader);
+  }
+
+}
@@ -0,0 +1,251 @@
+package com.celements.component.index;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Precomputed component descriptor data of a component implementation class, as written by
+ * {@link ComponentIndexProcessor} at compile time to {@link #LOCATION} and read by the
+ * {@link org.xwiki.component.annotation.ComponentAnnotationLoader} instead of introspecting the
+ * class. All class names are binary names. One line per component, role and requirement, values
+ * are URL encoded and separated by a space:
+ *
+ * <pre>
+ * component &lt;implementation&gt; &lt;instantiation strategy&gt;
+ * role &lt;role&gt; &lt;hint&gt;
+ * requirement &lt;field name&gt; &lt;mapping type&gt; &lt;role&gt; &lt;hint&gt; &lt;hints&gt;
+ * </pre>
+ *
+ * Note that this class is used within the compiler, thus it must only depend on the JDK.
+ */
+public final class ComponentIndexEntry {
+
+  public static final String LOCATION = "META-INF/components-index.txt";
+
+  static final String COMPONENT = "component";
+  static final String ROLE = "role";
+  static final String REQUIREMENT = "requirement";
+
+  private static final String SEP = " ";
+  private static final String HINTS_SEP = ",";
+
+  private final String implementation;
+  private final String instantiationStrategy;
+  private final List<Role> roles = new ArrayList<>();
+  private final List<Requirement> requirements = new ArrayList<>();
+
+  public ComponentIndexEntry(String implementation,
+      String instantiationStrategy) {
+    this.implementation = requireNonNull(implementation);
+    this.instantiationStrategy = requireNonNull(instantiationStrategy);
+  }
+
+  public String getImplementation() {
+    return implementation;
+  }
+
+  /**
+   * @return the name of the {@link org.xwiki.component.descriptor.ComponentInstantiationStrategy}
+   */
+  public String getInstantiationStrategy() {
+    return instantiationStrategy;
+  }
+
+  /**
+   * @return the role and hint of each descriptor in registration order
+   */
+  public List<Role> getRoles() {
+    return Collections.unmodifiableList(roles);
+  }
+
+  public List<Requirement> getRequirements() {
+    return Collections.unmodifiableList(requirements);
+  }
+
+  void addRole(String role, String hint) {
+    roles.add(new Role(role, hint));
+  }
+
+  void addRequirement(String name, String mappingType, String role, String roleHint,
+      List<String> hints) {
+    requirements.add(new Requirement(name, mappingType, role, roleHint, hints));
+  }
+
+  void writeTo(Writer writer) throws IOException {
+    writeLine(writer, COMPONENT, encode(implementation), encode(instantiationStrategy));
+    for (Role role : roles) {
+      writeLine(writer, ROLE, encode(role.role), encode(role.hint));
+    }
+    for (Requirement req : requirements) {
+      writeLine(writer, REQUIREMENT, encode(req.name), encode(req.mappingType), encode(req.role),
+          encode(req.roleHint), (req.hints != null) ? String.join(HINTS_SEP, encodeAll(req.hints))
+              : "");
+    }
+  }
+
+  /**
+   * @param values
+   *          already encoded values
+   */
+  private static void writeLine(Writer writer, String type, String... values) throws IOException {
+    writer.write(type);
+    for (String value : values) {
+      writer.write(SEP);
+      writer.write(value);
+    }
+    writer.write('\n');
+  }
+
+  /**
+   * Parses the lines of an index, see {@link #LOCATION}.
+   *
+   * @throws IllegalArgumentException
+   *           if a line is malformed
+   */
+  static List<ComponentIndexEntry> parse(Iterable<String> lines) {
+    List<ComponentIndexEntry> entries = new ArrayList<>();
+    ComponentIndexEntry current = null;
+    for (String line : lines) {
+      if (line.trim().isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] values = line.split(SEP, -1);
+      if (COMPONENT.equals(values[0]) && (values.length == 3)) {
+        current = new ComponentIndexEntry(decode(values[1]), decode(values[2]));
+        entries.add(current);
+      } else if (ROLE.equals(values[0]) && (values.length == 3) && (current != null)) {
+        current.addRole(decode(values[1]), decode(values[2]));
+      } else if (REQUIREMENT.equals(values[0]) && (values.length == 6) && (current != null)) {
+        current.addRequirement(decode(values[1]), decode(values[2]), decode(values[3]),
+            values[4].isEmpty() ? null : decode(values[4]),
+            values[5].isEmpty() ? null : decodeAll(values[5].split(HINTS_SEP, -1)));
+      } else {
+        throw new IllegalArgumentException("malformed component index line: " + line);
+      }
+    }
+    return entries;
+  }
+
+  private static String encode(String value) {
+    try {
+      return (value != null) ? URLEncoder.encode(value, UTF_8.name()) : "";
+    } catch (UnsupportedEncodingException exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  private static List<String> encodeAll(List<String> values) {
+    List<String> ret = new ArrayList<>();
+    for (String value : values) {
+      ret.add(encode(value));
+    }
+    return ret;
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, UTF_8.name());
+    } catch (UnsupportedEncodingException exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  private static List<String> decodeAll(String[] values) {
+    List<String> ret = new ArrayList<>();
+    for (String value : values) {
+      ret.add(decode(value));
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    return "ComponentIndexEntry [" + implementation + ", " + instantiationStrategy + ", roles="
+        + roles + ", requirements=" + requirements + "]";
+  }
+
+  public static final class Role {
+
+    private final String role;
+    private final String hint;
+
+    private Role(String role, String hint) {
+      this.role = requireNonNull(role);
+      this.hint = requireNonNull(hint);
+    }
+
+    public String getRole() {
+      return role;
+    }
+
+    public String getHint() {
+      return hint;
+    }
+
+    @Override
+    public String toString() {
+      return role + "/" + hint;
+    }
+
+  }
+
+  public static final class Requirement {
+
+    private final String name;
+    private final String mappingType;
+    private final String role;
+    private final String roleHint;
+    private final List<String> hints;
+
+    private Requirement(String name, String mappingType, String role, String roleHint,
+        List<String> hints) {
+      this.name = requireNonNull(name);
+      this.mappingType = requireNonNull(mappingType);
+      this.role = requireNonNull(role);
+      this.roleHint = roleHint;
+      this.hints = hints;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getMappingType() {
+      return mappingType;
+    }
+
+    public String getRole() {
+      return role;
+    }
+
+    /**
+     * @return the explicit hint of the requirement, null for the default hint
+     */
+    public String getRoleHint() {
+      return roleHint;
+    }
+
+    /**
+     * @return the explicit hints of a collection requirement, null if not specified
+     */
+    public List<String> getHints() {
+      return hints;
+    }
+
+    @Override
+    public String toString() {
+      return name + ":" + role + "/" + roleHint;
+    }
+
+  }
+
+}
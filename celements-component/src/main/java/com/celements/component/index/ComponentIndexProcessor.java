@@ -0,0 +1,288 @@
+package com.celements.component.index;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writing the {@link ComponentIndexEntry#LOCATION} index for all classes
+ * annotated with {@link org.xwiki.component.annotation.Component} at compile time. It mirrors the
+ * introspection of {@link org.xwiki.component.annotation.ComponentAnnotationLoader} and
+ * {@link org.xwiki.component.annotation.ComponentDescriptorFactory}, which is skipped at startup
+ * for indexed classes. Which components are registered is still declared by the
+ * {@code META-INF/components.txt} files.
+ * <p>
+ * Registered as service, thus it runs for all modules having celements-component on their compile
+ * classpath. Classes it cannot handle are left out of the index and introspected at startup.
+ */
+@SupportedAnnotationTypes(ComponentIndexProcessor.COMPONENT)
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+  static final String COMPONENT = "org.xwiki.component.annotation.Component";
+  static final String COMPONENT_ROLE = "org.xwiki.component.annotation.ComponentRole";
+  static final String INSTANTIATION_STRATEGY = "org.xwiki.component.annotation."
+      + "InstantiationStrategy";
+  static final String REQUIREMENT = "org.xwiki.component.annotation.Requirement";
+  static final String DEFAULT_HINT = "default";
+  static final String DEFAULT_STRATEGY = "SINGLETON";
+
+  private final Map<String, ComponentIndexEntry> entries = new TreeMap<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement componentAnnotation = processingEnv.getElementUtils().getTypeElement(COMPONENT);
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    } else if (componentAnnotation != null) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(componentAnnotation)) {
+        if (element.getKind() == ElementKind.CLASS) {
+          TypeElement type = (TypeElement) element;
+          try {
+            ComponentIndexEntry entry = createEntry(type);
+            entries.put(entry.getImplementation(), entry);
+          } catch (UnsupportedOperationException exc) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "not indexed, will be "
+                + "introspected at startup: " + exc.getMessage(), type);
+          }
+        }
+      }
+    }
+    // other processors may be interested in the components too
+    return false;
+  }
+
+  private void writeIndex() {
+    if (!entries.isEmpty()) {
+      try {
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT,
+            "", ComponentIndexEntry.LOCATION);
+        try (Writer writer = file.openWriter()) {
+          writer.write("# generated by " + ComponentIndexProcessor.class.getName() + "\n");
+          for (ComponentIndexEntry entry : entries.values()) {
+            entry.writeTo(writer);
+          }
+        }
+      } catch (IOException exc) {
+        processingEnv.getMessager().printMessage(Kind.WARNING, "failed to write "
+            + ComponentIndexEntry.LOCATION + ": " + exc);
+      }
+    }
+  }
+
+  ComponentIndexEntry createEntry(TypeElement type) {
+    ComponentIndexEntry entry = new ComponentIndexEntry(getBinaryName(type),
+        getAnnotation(type, INSTANTIATION_STRATEGY, true)
+            .map(strategy -> getValue(strategy, "value").toString())
+            .orElse(DEFAULT_STRATEGY));
+    List<String> hints = getHints(type);
+    for (TypeElement role : findComponentRoleClasses(type)) {
+      for (String hint : hints) {
+        entry.addRole(getBinaryName(role), hint);
+      }
+    }
+    addRequirements(entry, type);
+    return entry;
+  }
+
+  /**
+   * see {@code ComponentDescriptorFactory#streamDescriptors}
+   */
+  private List<String> getHints(TypeElement type) {
+    List<String> hints = new ArrayList<>();
+    Optional<AnnotationMirror> component = getAnnotation(type, COMPONENT, true);
+    if (component.isPresent()) {
+      for (AnnotationValue hint : getListValue(component.get(), "hints")) {
+        hints.add((String) hint.getValue());
+      }
+      if (hints.isEmpty() && !getValue(component.get(), "value").toString().trim().isEmpty()) {
+        hints.add(getValue(component.get(), "value").toString().trim());
+      }
+    }
+    if (hints.isEmpty()) {
+      hints.add(DEFAULT_HINT);
+    }
+    return hints;
+  }
+
+  /**
+   * see {@code ComponentAnnotationLoader#findComponentRoleClasses}
+   */
+  private Set<TypeElement> findComponentRoleClasses(TypeElement type) {
+    Set<TypeElement> roles = new LinkedHashSet<>();
+    List<? extends AnnotationValue> explicitRoles = getAnnotation(type, COMPONENT, true)
+        .map(component -> getListValue(component, "roles"))
+        .orElse(new ArrayList<>());
+    if (!explicitRoles.isEmpty()) {
+      for (AnnotationValue role : explicitRoles) {
+        roles.add(asTypeElement((TypeMirror) role.getValue()));
+      }
+    } else {
+      for (TypeMirror interfaceType : type.getInterfaces()) {
+        TypeElement interfaceElement = asTypeElement(interfaceType);
+        roles.addAll(findComponentRoleClasses(interfaceElement));
+        if (getAnnotation(interfaceElement, COMPONENT_ROLE, false).isPresent()) {
+          roles.add(interfaceElement);
+        }
+      }
+      if (type.getSuperclass().getKind() == TypeKind.DECLARED) {
+        TypeElement superElement = asTypeElement(type.getSuperclass());
+        if (!superElement.getQualifiedName().contentEquals(Object.class.getName())) {
+          roles.addAll(findComponentRoleClasses(superElement));
+        }
+      }
+    }
+    return roles;
+  }
+
+  /**
+   * see {@code ComponentDescriptorFactory#createComponentDependencies}, fields of sub classes
+   * hide fields with the same name of super classes
+   */
+  private void addRequirements(ComponentIndexEntry entry, TypeElement type) {
+    Map<String, VariableElement> fields = new LinkedHashMap<>();
+    TypeElement current = type;
+    while (current != null) {
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        fields.putIfAbsent(field.getSimpleName().toString(), field);
+      }
+      current = (current.getSuperclass().getKind() == TypeKind.DECLARED)
+          ? asTypeElement(current.getSuperclass())
+          : null;
+    }
+    for (VariableElement field : fields.values()) {
+      Optional<AnnotationMirror> requirement = getAnnotation(field, REQUIREMENT, false);
+      if (requirement.isPresent()) {
+        addRequirement(entry, field, requirement.get());
+      }
+    }
+  }
+
+  private void addRequirement(ComponentIndexEntry entry, VariableElement field,
+      AnnotationMirror requirement) {
+    TypeMirror fieldType = processingEnv.getTypeUtils().erasure(field.asType());
+    TypeElement role = null;
+    if (isRequirementListType(fieldType)) {
+      TypeElement explicitRole = asTypeElement((TypeMirror) getValue(requirement, "role"));
+      if (!explicitRole.getQualifiedName().contentEquals(Object.class.getName())) {
+        role = explicitRole;
+      } else {
+        role = getGenericRole(field.asType());
+      }
+    } else {
+      role = asTypeElement(fieldType);
+    }
+    if (role != null) {
+      String hint = getValue(requirement, "value").toString();
+      List<String> hints = new ArrayList<>();
+      for (AnnotationValue value : getListValue(requirement, "hints")) {
+        hints.add((String) value.getValue());
+      }
+      entry.addRequirement(field.getSimpleName().toString(),
+          getBinaryName(asTypeElement(fieldType)), getBinaryName(role),
+          hint.trim().isEmpty() ? null : hint, hints.isEmpty() ? null : hints);
+    }
+  }
+
+  private boolean isRequirementListType(TypeMirror type) {
+    return isAssignable(type, "java.util.Collection") || isAssignable(type, "java.util.Map");
+  }
+
+  private boolean isAssignable(TypeMirror type, String className) {
+    TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+    return (element != null) && processingEnv.getTypeUtils().isAssignable(type,
+        processingEnv.getTypeUtils().erasure(element.asType()));
+  }
+
+  /**
+   * @return the last type argument if it's a plain class, like {@code ParameterizedType} does
+   */
+  private TypeElement getGenericRole(TypeMirror type) {
+    if (type.getKind() == TypeKind.DECLARED) {
+      List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+      if (!args.isEmpty()) {
+        TypeMirror last = args.get(args.size() - 1);
+        if ((last.getKind() == TypeKind.DECLARED)
+            && ((DeclaredType) last).getTypeArguments().isEmpty()) {
+          return asTypeElement(last);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param inherited
+   *          true to consider inherited annotations like {@link Class#getAnnotation} does
+   */
+  private Optional<AnnotationMirror> getAnnotation(Element element, String annotationName,
+      boolean inherited) {
+    List<? extends AnnotationMirror> mirrors = inherited
+        ? processingEnv.getElementUtils().getAllAnnotationMirrors(element)
+        : element.getAnnotationMirrors();
+    for (AnnotationMirror mirror : mirrors) {
+      if (asTypeElement(mirror.getAnnotationType()).getQualifiedName()
+          .contentEquals(annotationName)) {
+        return Optional.of(mirror);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Object getValue(AnnotationMirror mirror, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+        .getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue().getValue();
+      }
+    }
+    throw new UnsupportedOperationException("missing annotation value " + name);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<? extends AnnotationValue> getListValue(AnnotationMirror mirror, String name) {
+    return (List<? extends AnnotationValue>) getValue(mirror, name);
+  }
+
+  private TypeElement asTypeElement(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      throw new UnsupportedOperationException("unsupported type " + type);
+    }
+    return (TypeElement) ((DeclaredType) type).asElement();
+  }
+
+  private String getBinaryName(TypeElement type) {
+    return processingEnv.getElementUtils().getBinaryName(type).toString();
+  }
+
+}
@@ -8,6 +8,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
@@ -23,6 +27,7 @@ import org.xwiki.component.annotation.ComponentDescriptorFactory;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentRole;
 import org.xwiki.component.descriptor.DefaultComponentRole;
+import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -31,6 +36,7 @@ import org.xwiki.component.manager.ComponentRepositoryException;
 
 import com.celements.common.MoreOptional;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 
 import one.util.streamex.EntryStream;
 import one.util.streamex.StreamEx;
@@ -40,6 +46,11 @@ import one.util.streamex.StreamEx;
  * the Spring {@link BeanFactory}. Since XWiki components are identified by Role+Hint they are
  * registered with the {@link ComponentRole#getBeanName()} as
  * {@link ComponentDescriptor#asBeanDefinition()}.
+ * <p>
+ * Once the bean factory configuration is frozen, lookups and existence checks are cached per
+ * role and hint, including misses. Singletons are cached as instances, other scopes by their bean
+ * name. The caches are invalidated by any modification of the bean factory registry, e.g. by
+ * {@link #registerComponent}, {@link #unregisterComponent} or {@link #release}.
  */
 @Service(SpringShimComponentManager.NAME)
 public class SpringShimComponentManager implements ComponentManager {
@@ -52,6 +63,19 @@ public class SpringShimComponentManager implements ComponentManager {
   private final XWikiShimBeanFactory beanFactory;
   private final ComponentDescriptorFactory descriptorFactory;
 
+  private final ConcurrentMap<RoleHint<?>, CachedLookup> lookupCache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<RoleHint<?>, CachedLookup> hasComponentCache =
+      new ConcurrentHashMap<>();
+  private volatile long cacheGeneration = -1;
+  private final long createdMillis = System.currentTimeMillis();
+
+  private final LongAdder lookupCount = new LongAdder();
+  private final LongAdder lookupHitCount = new LongAdder();
+  private final LongAdder lookupNegativeHitCount = new LongAdder();
+  private final LongAdder hasComponentCount = new LongAdder();
+  private final LongAdder hasComponentHitCount = new LongAdder();
+  private final LongAdder invalidationCount = new LongAdder();
+
   @Inject
   public SpringShimComponentManager(
       ConfigurableApplicationContext springContext,
@@ -68,6 +92,22 @@ public class SpringShimComponentManager implements ComponentManager {
 
   @Override
   public <T> boolean hasComponent(Class<T> role, String hint) {
+    hasComponentCount.increment();
+    RoleHint<T> key = new RoleHint<>(role, hint);
+    long generation = getCacheGeneration();
+    CachedLookup cached = hasComponentCache.get(key);
+    if ((cached != null) && (cached.generation == generation)) {
+      hasComponentHitCount.increment();
+      return cached.found;
+    }
+    boolean found = hasComponentUncached(role, hint);
+    if (generation >= 0) {
+      hasComponentCache.put(key, new CachedLookup(generation, found, null));
+    }
+    return found;
+  }
+
+  private <T> boolean hasComponentUncached(Class<T> role, String hint) {
     ComponentRole<?> compRole = new DefaultComponentRole<>(role, hint);
     return Stream.of(beanFactory.getBeanNamesForType(role))
         .anyMatch(name -> name.equals(hint) || name.equals(compRole.getBeanName()))
@@ -81,17 +121,42 @@ public class SpringShimComponentManager implements ComponentManager {
 
   @Override
   public <T> T lookup(Class<T> role, String hint) throws ComponentLookupException {
+    lookupCount.increment();
+    RoleHint<T> key = new RoleHint<>(role, hint);
+    long generation = getCacheGeneration();
+    CachedLookup cached = lookupCache.get(key);
+    if ((cached != null) && (cached.generation == generation) && cached.found) {
+      lookupHitCount.increment();
+      try {
+        return role.cast(cached.bean.get());
+      } catch (BeansException exc) {
+        throw new ComponentLookupException("lookup - [" + key + "] failed", exc);
+      }
+    }
     ComponentRole<T> compRole = new DefaultComponentRole<>(role, hint);
+    if ((cached != null) && (cached.generation == generation)) {
+      lookupNegativeHitCount.increment();
+      throw new ComponentLookupException("lookup - [" + compRole + "] failed",
+          new NoSuchBeanDefinitionException(compRole.getBeanName()));
+    }
     try {
-      return getBean(compRole)
-          .or(() -> tryCast(springContext, role)) // context isn't in beanFactory
-          .orElseThrow(() -> new NoSuchBeanDefinitionException(compRole.getBeanName()));
+      Optional<Supplier<T>> bean = getBean(compRole)
+          .or(() -> tryCast(springContext, role) // context isn't in beanFactory
+              .map(ctx -> (Supplier<T>) () -> ctx));
+      if (generation >= 0) {
+        lookupCache.put(key, new CachedLookup(generation, bean.isPresent(), bean.orElse(null)));
+      }
+      return bean.orElseThrow(() -> new NoSuchBeanDefinitionException(compRole.getBeanName()))
+          .get();
     } catch (BeansException exc) {
       throw new ComponentLookupException("lookup - [" + compRole + "] failed", exc);
     }
   }
 
-  private <T> Optional<T> getBean(ComponentRole<T> compRole) {
+  /**
+   * @return supplier of the bean, providing the same instance for singletons
+   */
+  private <T> Optional<Supplier<T>> getBean(ComponentRole<T> compRole) {
     return Stream.of(compRole.getBeanName(), Optional.ofNullable(compRole.getRoleHint())
         .filter(not(ComponentRole.DEFAULT_HINT::equals)).orElse(""))
         .map(name -> getBean(name, compRole.getRole()))
@@ -99,16 +164,71 @@ public class SpringShimComponentManager implements ComponentManager {
         .findFirst();
   }
 
-  private <T> Optional<T> getBean(String name, Class<T> type) {
+  private <T> Optional<Supplier<T>> getBean(String name, Class<T> type) {
     try {
-      return (Strings.isNullOrEmpty(name))
-          ? Optional.of(beanFactory.getBean(type))
-          : Optional.of(beanFactory.getBean(name, type));
+      Supplier<T> supplier;
+      if (Strings.isNullOrEmpty(name)) {
+        T bean = beanFactory.getBean(type);
+        String[] names = beanFactory.getBeanNamesForType(type);
+        supplier = ((names.length == 1) && beanFactory.isSingleton(names[0]))
+            ? () -> bean
+            : () -> beanFactory.getBean(type);
+      } else {
+        T bean = beanFactory.getBean(name, type);
+        supplier = beanFactory.isSingleton(name)
+            ? () -> bean
+            : () -> beanFactory.getBean(name, type);
+      }
+      return Optional.of(supplier);
     } catch (NoSuchBeanDefinitionException exc) {
       return Optional.empty();
     }
   }
 
+  /**
+   * @return the current generation of the lookup caches, negative if caching isn't possible yet
+   */
+  private long getCacheGeneration() {
+    if (!beanFactory.isConfigurationFrozen()) {
+      return -1;
+    }
+    long generation = beanFactory.getModificationCount();
+    if (generation != cacheGeneration) {
+      synchronized (this) {
+        if (generation != cacheGeneration) {
+          // stale entries are ignored anyway, clearing frees them
+          lookupCache.clear();
+          hasComponentCache.clear();
+          cacheGeneration = generation;
+          invalidationCount.increment();
+        }
+      }
+    }
+    return generation;
+  }
+
+  /**
+   * @return the lookup counts and cache hit ratios of this component manager
+   */
+  public Map<String, Long> getLookupMetrics() {
+    long lookups = lookupCount.sum();
+    long hits = lookupHitCount.sum() + lookupNegativeHitCount.sum();
+    long hasComponents = hasComponentCount.sum();
+    long uptimeSeconds = Math.max(1, (System.currentTimeMillis() - createdMillis) / 1000);
+    return ImmutableMap.<String, Long>builder()
+        .put("lookups", lookups)
+        .put("lookupsPerSecond", lookups / uptimeSeconds)
+        .put("lookupHits", lookupHitCount.sum())
+        .put("lookupNegativeHits", lookupNegativeHitCount.sum())
+        .put("lookupHitRatioPercent", (lookups > 0) ? ((100 * hits) / lookups) : 0)
+        .put("hasComponents", hasComponents)
+        .put("hasComponentHitRatioPercent", (hasComponents > 0)
+            ? ((100 * hasComponentHitCount.sum()) / hasComponents) : 0)
+        .put("cachedLookups", (long) lookupCache.size())
+        .put("invalidations", invalidationCount.sum())
+        .build();
+  }
+
   @Override
   public <T> Map<String, T> lookupMap(Class<T> role) throws ComponentLookupException {
     return lookupEntries(role)
@@ -236,6 +356,24 @@ public class SpringShimComponentManager implements ComponentManager {
     // not supported
   }
 
+  /**
+   * Cached result of a lookup or existence check, only valid for the generation it was computed
+   * in. A lookup computed while the registry is modified thus is never used.
+   */
+  private static final class CachedLookup {
+
+    private final long generation;
+    private final boolean found;
+    private final Supplier<?> bean;
+
+    private CachedLookup(long generation, boolean found, Supplier<?> bean) {
+      this.generation = generation;
+      this.found = found;
+      this.bean = bean;
+    }
+
+  }
+
   @Override
   public ComponentManager getParent() {
     return null;
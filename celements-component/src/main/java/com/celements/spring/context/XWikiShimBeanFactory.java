@@ -4,6 +4,7 @@ import static com.celements.common.MoreOptional.*;
 
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -15,6 +16,7 @@ import org.springframework.beans.TypeConverter;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.DependencyDescriptor;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.stereotype.Component;
@@ -31,6 +33,8 @@ import com.celements.common.lambda.LambdaExceptionUtil.ThrowingFunction;
 @Component
 public class XWikiShimBeanFactory extends DefaultListableBeanFactory {
 
+  private final AtomicLong modificationCount = new AtomicLong();
+
   public XWikiShimBeanFactory() {
     super();
   }
@@ -39,6 +43,59 @@ public class XWikiShimBeanFactory extends DefaultListableBeanFactory {
     super(parentBeanFactory);
   }
 
+  /**
+   * @return the count of bean definition and singleton registry modifications, allows callers to
+   *         invalidate what they derived from the registry, see {@link SpringShimComponentManager}
+   */
+  long getModificationCount() {
+    return modificationCount.get();
+  }
+
+  @Override
+  public void registerBeanDefinition(String beanName, BeanDefinition beanDefinition) {
+    try {
+      super.registerBeanDefinition(beanName, beanDefinition);
+    } finally {
+      modificationCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void removeBeanDefinition(String beanName) {
+    try {
+      super.removeBeanDefinition(beanName);
+    } finally {
+      modificationCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void registerSingleton(String beanName, Object singletonObject) {
+    try {
+      super.registerSingleton(beanName, singletonObject);
+    } finally {
+      modificationCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void destroySingleton(String beanName) {
+    try {
+      super.destroySingleton(beanName);
+    } finally {
+      modificationCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void destroySingletons() {
+    try {
+      super.destroySingletons();
+    } finally {
+      modificationCount.incrementAndGet();
+    }
+  }
+
   /**
    * This fallback is required for {@link org.xwiki.component.annotation.Component} beans, which are
    * registered with the {@link ComponentRole#getBeanName()} but may be requested by their hint.
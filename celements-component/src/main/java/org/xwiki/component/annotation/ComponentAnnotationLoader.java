@@ -36,6 +36,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -46,6 +47,8 @@ import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.manager.ComponentRepositoryException;
 
+import com.celements.component.index.ComponentIndex;
+
 /**
  * Dynamically loads all components defined using Annotations and declared in
  * META-INF/components.txt files.
@@ -137,11 +140,19 @@ public class ComponentAnnotationLoader {
       throws ClassNotFoundException {
     // 2) For each component class name found, load its class and use introspection to find the
     // necessary annotations required to create a Component Descriptor.
+    // The introspection is skipped for components precomputed by the ComponentIndexProcessor.
+    long startTime = System.currentTimeMillis();
+    ComponentIndex index = ComponentIndex.load(classLoader);
+    int indexedCount = 0;
     Map<RoleHint<?>, ComponentDescriptor<?>> descriptorMap = new LinkedHashMap<>();
     for (String componentClassName : componentClassNames) {
       Class<?> componentClass = classLoader.loadClass(componentClassName);
+      Optional<List<ComponentDescriptor<?>>> indexed = index.getDescriptors(componentClass);
+      indexedCount += indexed.isPresent() ? 1 : 0;
       // Look for ComponentRole annotations and register one component per ComponentRole found
-      findDescriptors(componentClass).forEach(descriptor -> {
+      Stream<ComponentDescriptor<?>> descriptors = indexed.map(List::stream)
+          .orElseGet(() -> findDescriptors(componentClass));
+      descriptors.forEach(descriptor -> {
         // If there's already a existing role/hint in the list of descriptors then decide which
         // one to keep by looking at the override list. Use those in the override list in
         // priority. Otherwise use the last registered component.
@@ -166,6 +177,9 @@ public class ComponentAnnotationLoader {
         }
       });
     }
+    LOG.info("loadDescriptors: {} descriptors of {} components ({} indexed) in {}ms",
+        descriptorMap.size(), componentClassNames.size(), indexedCount,
+        System.currentTimeMillis() - startTime);
     return new ArrayList<>(descriptorMap.values());
   }
 
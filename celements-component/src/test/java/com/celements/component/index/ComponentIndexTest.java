@@ -0,0 +1,97 @@
+package com.celements.component.index;
+
+import static java.util.stream.Collectors.*;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+import com.celements.spring.test.TestDefaultComponent;
+import com.celements.spring.test.TestForeignSuperclassComponent;
+import com.celements.spring.test.TestXWikiCompositeComponent;
+import com.celements.spring.test.TestXWikiPerLookupComponent;
+import com.celements.spring.test.TestXWikiSingletonComponent;
+
+public class ComponentIndexTest {
+
+  private ComponentIndex index;
+
+  @Before
+  public void prepare() {
+    // the test components are indexed by the ComponentIndexProcessor during test-compile
+    index = ComponentIndex.load(getClass().getClassLoader());
+  }
+
+  @Test
+  public void test_getDescriptors_equalsIntrospection() {
+    for (Class<?> componentClass : Arrays.asList(TestDefaultComponent.class,
+        TestXWikiSingletonComponent.class, TestXWikiPerLookupComponent.class,
+        TestXWikiCompositeComponent.class)) {
+      List<String> expected = new ComponentAnnotationLoader().findDescriptors(componentClass)
+          .map(ComponentIndexTest::describe)
+          .collect(toList());
+      List<String> indexed = index.getDescriptors(componentClass)
+          .orElseThrow(() -> new AssertionError("not indexed: " + componentClass))
+          .stream().map(ComponentIndexTest::describe)
+          .collect(toList());
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, indexed);
+    }
+  }
+
+  @Test
+  public void test_getDescriptors_notIndexed() {
+    assertFalse(index.getDescriptors(String.class).isPresent());
+  }
+
+  @Test
+  public void test_getDescriptors_foreignSuperclass() {
+    // indexed in test-classes, but its superclass is located in classes
+    assertFalse(index.getDescriptors(TestForeignSuperclassComponent.class).isPresent());
+  }
+
+  @Test
+  public void test_writeTo_parse() throws Exception {
+    ComponentIndexEntry entry = new ComponentIndexEntry("a.B$C", "PER_LOOKUP");
+    entry.addRole("a.Role", "hint with, space");
+    entry.addRole("a.Role", "default");
+    entry.addRequirement("field", "java.util.List", "a.Role", null, Arrays.asList("x,y", ""));
+    entry.addRequirement("other", "a.Role", "a.Role", "h", null);
+    StringWriter writer = new StringWriter();
+    entry.writeTo(writer);
+    List<ComponentIndexEntry> parsed = ComponentIndexEntry.parse(Arrays.asList(
+        writer.toString().split("\n")));
+    assertEquals(1, parsed.size());
+    assertEquals(entry.toString(), parsed.get(0).toString());
+    assertEquals("hint with, space", parsed.get(0).getRoles().get(0).getHint());
+    assertNull(parsed.get(0).getRequirements().get(0).getRoleHint());
+    assertEquals(Arrays.asList("x,y", ""), parsed.get(0).getRequirements().get(0).getHints());
+    assertNull(parsed.get(0).getRequirements().get(1).getHints());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_parse_malformed() {
+    ComponentIndexEntry.parse(Arrays.asList("role a.Role default"));
+  }
+
+  private static String describe(ComponentDescriptor<?> descriptor) {
+    StringBuilder sb = new StringBuilder().append(descriptor.getRole()).append('/')
+        .append(descriptor.getRoleHint()).append(' ').append(descriptor.getImplementation())
+        .append(' ').append(descriptor.getInstantiationStrategy());
+    for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+      sb.append(" [").append(dependency.getName()).append(' ')
+          .append(dependency.getMappingType()).append(' ').append(dependency.getRole())
+          .append('/').append(dependency.getRoleHint()).append(' ')
+          .append(Arrays.toString(dependency.getHints())).append(']');
+    }
+    return sb.toString();
+  }
+
+}
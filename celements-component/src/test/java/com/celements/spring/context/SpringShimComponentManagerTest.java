@@ -12,6 +12,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 
@@ -85,6 +86,40 @@ public class SpringShimComponentManagerTest {
     assertNotSame(x1, x2);
   }
 
+  @Test
+  public void test_lookup_cachedMiss_invalidatedOnRegister() throws Exception {
+    String hint = "asdf";
+    for (int i = 0; i < 2; i++) {
+      try {
+        cm.lookup(TestComponentRole.class, hint);
+        fail("expecting ComponentLookupException");
+      } catch (ComponentLookupException exc) {
+        // expected
+      }
+    }
+    assertFalse(cm.hasComponent(TestComponentRole.class, hint));
+    TestComponentRole component = new TestDefaultComponent();
+    cm.registerComponent(new DefaultComponentDescriptor<>(TestComponentRole.class, hint,
+        TestDefaultComponent.class), component);
+    assertTrue(cm.hasComponent(TestComponentRole.class, hint));
+    assertSame(component, cm.lookup(TestComponentRole.class, hint));
+    cm.unregisterComponent(TestComponentRole.class, hint);
+    assertFalse(cm.hasComponent(TestComponentRole.class, hint));
+  }
+
+  @Test
+  public void test_getLookupMetrics() throws Exception {
+    SpringShimComponentManager shim = (SpringShimComponentManager) cm;
+    long lookups = shim.getLookupMetrics().get("lookups");
+    long hits = shim.getLookupMetrics().get("lookupHits");
+    for (int i = 0; i < 3; i++) {
+      cm.lookup(TestComponentRole.class, TestXWikiSingletonComponent.NAME);
+    }
+    assertEquals(lookups + 3, (long) shim.getLookupMetrics().get("lookups"));
+    assertTrue(shim.getLookupMetrics().get("lookupHits") >= (hits + 2));
+    assertTrue(shim.getLookupMetrics().get("lookupHitRatioPercent") > 0);
+  }
+
   @Test
   public void test_lookupList() throws Exception {
     List<TestComponentRole> ret = cm.lookupList(TestComponentRole.class);
@@ -0,0 +1,19 @@
+package com.celements.spring.test;
+
+import org.xwiki.component.logging.AbstractLogEnabled;
+
+/**
+ * indexed, but extends a class of the main sources and thus of another code source
+ */
+@org.xwiki.component.annotation.Component(TestForeignSuperclassComponent.NAME)
+public class TestForeignSuperclassComponent extends AbstractLogEnabled
+    implements TestComponentRole {
+
+  public static final String NAME = "TestForeignSuperclass";
+
+  @Override
+  public String getter() {
+    return NAME;
+  }
+
+}
@@ -41,7 +41,8 @@ import com.google.common.base.Strings;
  * @version $Id$
  * @since 2.0M2
  */
-public abstract class AbstractDocumentConfigurationSource implements ConfigurationSource {
+public abstract class AbstractDocumentConfigurationSource
+    implements SnapshotConfigurationSource {
 
   private static final Logger LOGGER = LoggerFactory
       .getLogger(AbstractDocumentConfigurationSource.class);
@@ -174,6 +175,27 @@ public abstract class AbstractDocumentConfigurationSource implements Configurati
     return getKeys().isEmpty();
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The values are read from the document, thus it's the scope. None if this source is skipped.
+   */
+  @Override
+  public Object getSnapshotScope() {
+    return getFailsafeDocumentReference();
+  }
+
+  @Override
+  public Object resolve(String key) {
+    return getProperty(key);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T convert(String key, Object value, Class<T> valueClass) {
+    return (T) value;
+  }
+
   private <T> T getProperty(String key, T defaultValue, Class<T> valueClass) {
     T result = getProperty(key, valueClass);
     if (result == null) {
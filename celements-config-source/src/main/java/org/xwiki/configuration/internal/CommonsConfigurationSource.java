@@ -23,8 +23,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.event.EventSource;
 import org.xwiki.component.annotation.Requirement;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.properties.ConverterManager;
@@ -39,10 +41,15 @@ import org.xwiki.properties.ConverterManager;
  * @version $Id$
  * @since 1.6M1
  */
-public class CommonsConfigurationSource implements ConfigurationSource {
+public class CommonsConfigurationSource implements SnapshotConfigurationSource {
 
   private Configuration configuration;
 
+  /**
+   * incremented on each change of the configuration, e.g. a reload of the properties file
+   */
+  private final AtomicLong revision = new AtomicLong();
+
   /**
    * Component used for performing type conversions.
    */
@@ -50,7 +57,15 @@ public class CommonsConfigurationSource implements ConfigurationSource {
   private ConverterManager converterManager;
 
   protected void setConfiguration(Configuration configuration) {
+    if (configuration instanceof EventSource) {
+      ((EventSource) configuration).addConfigurationListener(event -> {
+        if (!event.isBeforeUpdate()) {
+          this.revision.incrementAndGet();
+        }
+      });
+    }
     this.configuration = configuration;
+    this.revision.incrementAndGet();
   }
 
   /**
@@ -141,6 +156,22 @@ public class CommonsConfigurationSource implements ConfigurationSource {
     return this.configuration.isEmpty();
   }
 
+  @Override
+  public Object getSnapshotScope() {
+    return this.revision.get();
+  }
+
+  @Override
+  public Object resolve(String key) {
+    return getProperty(key);
+  }
+
+  @Override
+  public <T> T convert(String key, Object value, Class<T> valueClass) {
+    // conversion depends on the configuration, e.g. for interpolated or list values
+    return getProperty(key, valueClass);
+  }
+
   private <T> T getProperty(String key, T defaultValue, Class<T> valueClass) {
     T result = getProperty(key, valueClass);
     if (result == null) {
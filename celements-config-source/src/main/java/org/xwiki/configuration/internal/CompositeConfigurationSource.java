@@ -23,14 +23,21 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 
+import org.xwiki.component.annotation.Requirement;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.configuration.internal.ConfigurationSnapshot.Resolution;
+import org.xwiki.observation.EventListener;
 
 /**
  * Allows composing (aka chaining) several Configuration Sources. The order of sources is important.
  * Sources located before other sources take priority.
+ * <p>
+ * If all sources support it, the merged values are read from the {@link ConfigurationSnapshot} of
+ * the current scope, e.g. the current wiki and space, instead of querying each source per request.
  *
  * @version $Id$
  * @since 2.0M1
@@ -42,8 +49,39 @@ public class CompositeConfigurationSource implements ConfigurationSource {
    */
   private List<ConfigurationSource> sources = new ArrayList<>();
 
+  /**
+   * The sources if all of them support snapshots.
+   */
+  private List<SnapshotConfigurationSource> snapshotSources = new ArrayList<>();
+
+  /**
+   * Holds the snapshots, without it the values are always resolved through the sources.
+   */
+  @Requirement(ConfigurationSnapshotCache.NAME)
+  private EventListener snapshotCache;
+
   public void addConfigurationSource(ConfigurationSource source) {
     this.sources.add(source);
+    if (source instanceof SnapshotConfigurationSource) {
+      this.snapshotSources.add((SnapshotConfigurationSource) source);
+    }
+  }
+
+  /**
+   * @return the resolution of the key in the snapshot of the current scope, empty if snapshots
+   *         aren't supported
+   */
+  private Optional<Resolution> resolve(String key) {
+    if ((this.snapshotCache != null) && (this.snapshotSources.size() == this.sources.size())) {
+      List<Object> scope = new ArrayList<>(this.sources.size() + 1);
+      scope.add(this);
+      for (SnapshotConfigurationSource source : this.snapshotSources) {
+        scope.add(source.getSnapshotScope());
+      }
+      return Optional.of(((ConfigurationSnapshotCache) this.snapshotCache).get(scope)
+          .resolve(key, this.snapshotSources));
+    }
+    return Optional.empty();
   }
 
   /**
@@ -53,6 +91,10 @@ public class CompositeConfigurationSource implements ConfigurationSource {
    */
   @Override
   public boolean containsKey(String key) {
+    Optional<Resolution> resolution = resolve(key);
+    if (resolution.isPresent()) {
+      return resolution.get().isPresent();
+    }
     boolean result = false;
     for (ConfigurationSource source : this.sources) {
       if (source.containsKey(key)) {
@@ -70,6 +112,10 @@ public class CompositeConfigurationSource implements ConfigurationSource {
    */
   @Override
   public <T> T getProperty(String key) {
+    Optional<Resolution> resolution = resolve(key);
+    if (resolution.isPresent()) {
+      return resolution.get().getValue();
+    }
     T result = null;
     for (ConfigurationSource source : this.sources) {
       if (source.containsKey(key)) {
@@ -89,10 +135,15 @@ public class CompositeConfigurationSource implements ConfigurationSource {
   @SuppressWarnings("unchecked")
   public <T> T getProperty(String key, Class<T> valueClass) {
     T result = null;
-    for (ConfigurationSource source : this.sources) {
-      if (source.containsKey(key)) {
-        result = source.getProperty(key, valueClass);
-        break;
+    Optional<Resolution> resolution = resolve(key);
+    if (resolution.isPresent()) {
+      result = resolution.get().getValue(key, valueClass);
+    } else {
+      for (ConfigurationSource source : this.sources) {
+        if (source.containsKey(key)) {
+          result = source.getProperty(key, valueClass);
+          break;
+        }
       }
     }
     // List and Properties must return empty collections and not null values.
@@ -113,12 +164,22 @@ public class CompositeConfigurationSource implements ConfigurationSource {
    * @see ConfigurationSource#getProperty(String, Object)
    */
   @Override
+  @SuppressWarnings("unchecked")
   public <T> T getProperty(String key, T defaultValue) {
+    if (defaultValue == null) {
+      // no type to convert to
+      return getProperty(key);
+    }
     T result = null;
-    for (ConfigurationSource source : this.sources) {
-      if (source.containsKey(key)) {
-        result = source.<T>getProperty(key, defaultValue);
-        break;
+    Optional<Resolution> resolution = resolve(key);
+    if (resolution.isPresent()) {
+      result = resolution.get().getValue(key, (Class<T>) defaultValue.getClass());
+    } else {
+      for (ConfigurationSource source : this.sources) {
+        if (source.containsKey(key)) {
+          result = source.<T>getProperty(key, defaultValue);
+          break;
+        }
       }
     }
     if (result == null) {
@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.configuration.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * The merged values of the sources of a {@link CompositeConfigurationSource} within a scope, see
+ * {@link SnapshotConfigurationSource#getSnapshotScope()}. A key is resolved through the sources
+ * once, afterwards by a single map lookup. Since the preferences documents don't list their keys,
+ * the values are materialized as they're requested instead of up front. Thread safe.
+ *
+ * @version $Id$
+ */
+final class ConfigurationSnapshot {
+
+  /**
+   * bounds the memory held for arbitrary keys, e.g. requested by scripts
+   */
+  static final int MAX_KEYS = 10000;
+
+  /**
+   * the source a key was resolved from together with its value
+   */
+  static final class Resolution {
+
+    static final Resolution NONE = new Resolution(null, null);
+
+    private final SnapshotConfigurationSource source;
+    private final Object value;
+
+    private Resolution(SnapshotConfigurationSource source, Object value) {
+      this.source = source;
+      this.value = value;
+    }
+
+    boolean isPresent() {
+      return source != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T getValue() {
+      return (T) value;
+    }
+
+    <T> T getValue(String key, Class<T> valueClass) {
+      return isPresent() ? source.convert(key, value, valueClass) : null;
+    }
+
+  }
+
+  private final List<Object> scope;
+  private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<>();
+
+  ConfigurationSnapshot(@NotNull List<Object> scope) {
+    this.scope = scope;
+  }
+
+  /**
+   * @return the resolution of the key through the given sources, which have to be the ones this
+   *         snapshot was scoped with
+   */
+  @NotNull
+  Resolution resolve(@NotNull String key, @NotNull List<SnapshotConfigurationSource> sources) {
+    Resolution resolution = resolutions.get(key);
+    if (resolution == null) {
+      resolution = Resolution.NONE;
+      for (SnapshotConfigurationSource source : sources) {
+        Object value = source.resolve(key);
+        if (value != null) {
+          resolution = new Resolution(source, value);
+          break;
+        }
+      }
+      if (resolutions.size() < MAX_KEYS) {
+        resolutions.put(key, resolution);
+      }
+    }
+    return resolution;
+  }
+
+  /**
+   * @return true if the values of this snapshot are read from the given document
+   */
+  boolean dependsOn(@NotNull DocumentReference documentReference) {
+    return scope.contains(documentReference);
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.configuration.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Holds the {@link ConfigurationSnapshot}s of all {@link CompositeConfigurationSource}s. A snapshot
+ * is removed as soon as a document it's scoped with is created, updated or deleted. Changes of the
+ * properties files lead to a new scope, the outdated snapshots are removed once the capacity is
+ * reached.
+ *
+ * @version $Id$
+ */
+@Component(ConfigurationSnapshotCache.NAME)
+public class ConfigurationSnapshotCache implements EventListener {
+
+  public static final String NAME = "ConfigurationSnapshotCache";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationSnapshotCache.class);
+
+  static final int CAPACITY = 1000;
+
+  private final ConcurrentMap<List<Object>, ConfigurationSnapshot> snapshots =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param scope
+   *          the composite source followed by the scopes of its sources
+   * @return the snapshot of the given scope, created if not yet present
+   */
+  @NotNull
+  ConfigurationSnapshot get(@NotNull List<Object> scope) {
+    ConfigurationSnapshot snapshot = snapshots.get(scope);
+    if (snapshot == null) {
+      if (snapshots.size() >= CAPACITY) {
+        LOGGER.debug("get: capacity reached, clearing snapshots");
+        snapshots.clear();
+      }
+      snapshot = snapshots.computeIfAbsent(scope, ConfigurationSnapshot::new);
+    }
+    return snapshot;
+  }
+
+  void invalidate(@NotNull DocumentReference documentReference) {
+    if (snapshots.values().removeIf(snapshot -> snapshot.dependsOn(documentReference))) {
+      LOGGER.debug("invalidate: removed snapshots depending on [{}]", documentReference);
+    }
+  }
+
+  void invalidateAll() {
+    snapshots.clear();
+  }
+
+  int size() {
+    return snapshots.size();
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(),
+        new DocumentDeletedEvent());
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    if (source instanceof DocumentModelBridge) {
+      invalidate(((DocumentModelBridge) source).getDocumentReference());
+    }
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.configuration.internal;
+
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * A {@link ConfigurationSource} whose values can be materialized in the snapshots of the
+ * {@link CompositeConfigurationSource}, see {@link ConfigurationSnapshot}.
+ *
+ * @version $Id$
+ */
+interface SnapshotConfigurationSource extends ConfigurationSource {
+
+  /**
+   * @return the state the values are currently read from, e.g. the preferences document or the
+   *         revision of the properties file. Values resolved within equal scopes have to be equal.
+   */
+  Object getSnapshotScope();
+
+  /**
+   * @return the value of the given key resolved with a single lookup, null if not contained
+   */
+  Object resolve(String key);
+
+  /**
+   * @return the value previously returned by {@link #resolve} for the given key as the given
+   *         type, see {@link #getProperty(String, Class)}
+   */
+  <T> T convert(String key, Object value, Class<T> valueClass);
+
+}
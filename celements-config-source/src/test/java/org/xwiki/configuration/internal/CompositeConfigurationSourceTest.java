@@ -25,12 +25,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.properties.ConverterManager;
 import org.xwiki.test.AbstractComponentTestCase;
 
@@ -118,6 +120,14 @@ public class CompositeConfigurationSourceTest extends AbstractComponentTestCase
     assertEquals("default", composite.getProperty("unknown", "default"));
   }
 
+  @Test
+  public void testGetPropertyWithNullDefaultValue() {
+    config2.setProperty("key2", "value2");
+
+    assertEquals("value2", composite.getProperty("key2", (String) null));
+    assertNull(composite.getProperty("unknown", (String) null));
+  }
+
   @Test
   public void testGetKeys() {
     config1.setProperty("key1", "value1");
@@ -139,6 +149,8 @@ public class CompositeConfigurationSourceTest extends AbstractComponentTestCase
   public void testGetPropertiesAndListsWhenEmpty() {
     assertTrue(composite.getProperty("unknown", Properties.class).isEmpty());
     assertTrue(composite.getProperty("unknown", List.class).isEmpty());
+    assertEquals("value2", composite.getProperty("key1", (String) null));
+    assertNull(composite.getProperty("unknown", (String) null));
   }
 
   @Test
@@ -159,4 +171,85 @@ public class CompositeConfigurationSourceTest extends AbstractComponentTestCase
     Properties props = composite.getProperty("key3", new Properties());
     assertEquals("value1", props.getProperty("prop1"));
   }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    ConfigurationSnapshotCache snapshotCache = new ConfigurationSnapshotCache();
+    ReflectionUtils.setFieldValue(composite, "snapshotCache", snapshotCache);
+    config1.setProperty("key1", "value1");
+    config2.setProperty("key1", "value2");
+    config2.setProperty("key2", "true");
+
+    assertEquals("value1", composite.getProperty("key1"));
+    assertTrue(composite.getProperty("key2", Boolean.class));
+    assertFalse(composite.containsKey("unknown"));
+    assertEquals(1, snapshotCache.size());
+
+    // a changed configuration is resolved within a new scope
+    config1.clearProperty("key1");
+    assertEquals("value2", composite.getProperty("key1"));
+    assertEquals("default", composite.getProperty("unknown", "default"));
+    assertTrue(composite.getProperty("unknown", List.class).isEmpty());
+  }
+
+  @Test
+  public void testSnapshot_documentInvalidation() throws Exception {
+    DocumentReference docRef = new DocumentReference("wiki", "space", "WebPreferences");
+    ConfigurationSnapshotCache snapshotCache = new ConfigurationSnapshotCache();
+    DocumentSource docSource = new DocumentSource(docRef);
+    composite = new CompositeConfigurationSource();
+    ReflectionUtils.setFieldValue(composite, "snapshotCache", snapshotCache);
+    composite.addConfigurationSource(docSource);
+
+    docSource.value = "value1";
+    assertEquals("value1", composite.getProperty("key"));
+    docSource.value = "value2";
+    assertEquals("value1", composite.getProperty("key"));
+    assertEquals(1, docSource.resolveCount.get());
+
+    snapshotCache.invalidate(new DocumentReference("wiki", "space", "Other"));
+    assertEquals("value1", composite.getProperty("key"));
+    snapshotCache.invalidate(docRef);
+    assertEquals("value2", composite.getProperty("key"));
+    assertEquals(2, docSource.resolveCount.get());
+  }
+
+  @Test
+  public void testSnapshot_notSupported() throws Exception {
+    ConfigurationSnapshotCache snapshotCache = new ConfigurationSnapshotCache();
+    ReflectionUtils.setFieldValue(composite, "snapshotCache", snapshotCache);
+    composite.addConfigurationSource(new CompositeConfigurationSource());
+    config1.setProperty("key1", "value1");
+
+    assertEquals("value1", composite.getProperty("key1"));
+    assertEquals(0, snapshotCache.size());
+  }
+
+  private static class DocumentSource extends AbstractDocumentConfigurationSource {
+
+    private final DocumentReference docRef;
+    private final AtomicInteger resolveCount = new AtomicInteger();
+    private Object value;
+
+    DocumentSource(DocumentReference docRef) {
+      this.docRef = docRef;
+    }
+
+    @Override
+    protected DocumentReference getDocumentReference() {
+      return docRef;
+    }
+
+    @Override
+    protected DocumentReference getClassReference() {
+      return docRef;
+    }
+
+    @Override
+    public Object resolve(String key) {
+      resolveCount.incrementAndGet();
+      return value;
+    }
+
+  }
 }
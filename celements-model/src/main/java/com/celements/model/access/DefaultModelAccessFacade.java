@@ -11,6 +11,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -74,6 +75,7 @@ import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.web.Utils;
 
+import one.util.streamex.EntryStream;
 import one.util.streamex.StreamEx;
 
 @Component
@@ -182,6 +184,20 @@ public class DefaultModelAccessFacade implements IModelAccessFacade {
     }
   }
 
+  @Override
+  public Map<DocumentReference, XWikiDocument> getDocuments(
+      Collection<DocumentReference> docRefs) {
+    List<DocumentReference> docRefsToLoad = StreamEx.of(docRefs)
+        .nonNull()
+        .distinct()
+        .filter(docRef -> wikiService.hasWiki(docRef.getWikiReference()))
+        .toList();
+    return EntryStream.of(strategy.getDocuments(docRefsToLoad, DEFAULT_LANG))
+        .removeValues(XWikiDocument::isNew)
+        .mapValues(this::cloneDoc)
+        .toCustomMap(LinkedHashMap::new);
+  }
+
   @Override
   public XWikiDocument createDocument(DocumentReference docRef)
       throws DocumentAlreadyExistsException {
@@ -416,11 +432,11 @@ public class DefaultModelAccessFacade implements IModelAccessFacade {
    * We need to clone this document first, since a cached storage would return the same object for
    * the following requests, so concurrent request might get a partially modified object, or worse,
    * if an error occurs during the save, the cached object will not reflect the actual document at
-   * all.
+   * all. The cached object is never modified, thus its xobjects are only copied on write.
    */
   private XWikiDocument cloneDoc(XWikiDocument doc) {
     if (doc.isFromCache()) {
-      doc = doc.clone();
+      doc = doc.cloneCopyOnWrite();
       doc.setFromCache(false);
     }
     return doc;
@@ -49,6 +49,17 @@ public interface IModelAccessFacade {
   @NotNull
   Optional<XWikiDocument> getDocumentOpt(@NotNull DocumentReference docRef, @Nullable String lang);
 
+  /**
+   * Loads the given documents in bulk, cache misses are loaded with as few store accesses as
+   * possible. Prefer this over multiple {@link #getDocument(DocumentReference)} calls when the
+   * references are known upfront.
+   *
+   * @return the existing documents mapped by their reference in the order of the given references
+   */
+  @NotNull
+  Map<DocumentReference, XWikiDocument> getDocuments(
+      @NotNull Collection<DocumentReference> docRefs);
+
   /**
    * CAUTION: never ever change anything on the returned XWikiDocument, because it is the object in
    * cache. Thus the same object will be returned for the following requests. If you change this
@@ -1,6 +1,8 @@
 package com.celements.model.access;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
@@ -19,6 +21,16 @@ public interface ModelAccessStrategy {
   @NotNull
   XWikiDocument getDocument(@NotNull DocumentReference docRef, @NotNull String lang);
 
+  /**
+   * bulk variant of {@link #getDocument(DocumentReference, String)}
+   *
+   * @return the documents mapped by the given references in their order, not existing documents
+   *         are new
+   */
+  @NotNull
+  Map<DocumentReference, XWikiDocument> getDocuments(
+      @NotNull Collection<DocumentReference> docRefs, @NotNull String lang);
+
   void saveDocument(@NotNull XWikiDocument doc) throws DocumentSaveException;
 
   void deleteDocument(@NotNull XWikiDocument doc, boolean totrash)
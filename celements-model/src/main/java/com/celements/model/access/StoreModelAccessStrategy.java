@@ -3,8 +3,11 @@ package com.celements.model.access;
 import static com.celements.common.MoreObjectsCel.*;
 import static com.celements.common.lambda.LambdaExceptionUtil.*;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -12,6 +15,7 @@ import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.Requirement;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
 
 import com.celements.model.access.exception.DocumentDeleteException;
 import com.celements.model.access.exception.DocumentLoadException;
@@ -24,9 +28,13 @@ import com.google.common.base.Suppliers;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.rendering.RenderingDependencies;
 import com.xpn.xwiki.store.XWikiRecycleBinStoreInterface;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 
+import one.util.streamex.EntryStream;
+import one.util.streamex.StreamEx;
+
 /**
  * Implementation of {@link ModelAccessStrategy} only accessing {@link XWikiStoreInterface}.
  *
@@ -72,6 +80,7 @@ public class StoreModelAccessStrategy implements ModelAccessStrategy {
   public XWikiDocument getDocument(final DocumentReference docRef, final String lang) {
     try {
       XWikiDocument doc = docCreator.createWithoutDefaults(docRef, lang);
+      RenderingDependencies.record(getXContext(), docRef);
       return new Contextualiser()
           .withWiki(docRef.getWikiReference())
           .execute(rethrow(() -> getStore().loadXWikiDoc(doc, getXContext())));
@@ -80,6 +89,36 @@ public class StoreModelAccessStrategy implements ModelAccessStrategy {
     }
   }
 
+  @Override
+  public Map<DocumentReference, XWikiDocument> getDocuments(
+      final Collection<DocumentReference> docRefs, final String lang) {
+    Map<WikiReference, Map<DocumentReference, XWikiDocument>> docsPerWiki = EntryStream
+        .of(StreamEx.of(docRefs).distinct().groupingBy(DocumentReference::getWikiReference))
+        .mapToValue((wikiRef, wikiDocRefs) -> getDocuments(wikiRef, wikiDocRefs, lang))
+        .toMap();
+    Map<DocumentReference, XWikiDocument> ret = new LinkedHashMap<>();
+    for (DocumentReference docRef : docRefs) {
+      ret.put(docRef, docsPerWiki.get(docRef.getWikiReference()).get(docRef));
+    }
+    return ret;
+  }
+
+  private Map<DocumentReference, XWikiDocument> getDocuments(final WikiReference wikiRef,
+      final List<DocumentReference> docRefs, final String lang) {
+    docRefs.forEach(docRef -> RenderingDependencies.record(getXContext(), docRef));
+    List<XWikiDocument> docs = StreamEx.of(docRefs)
+        .map(docRef -> docCreator.createWithoutDefaults(docRef, lang))
+        .toList();
+    try {
+      List<XWikiDocument> loadedDocs = new Contextualiser()
+          .withWiki(wikiRef)
+          .execute(rethrow(() -> getStore().loadXWikiDocs(docs, getXContext())));
+      return EntryStream.zip(docRefs, loadedDocs).toMap();
+    } catch (XWikiException xwe) {
+      throw new DocumentLoadException(docRefs.get(0), xwe);
+    }
+  }
+
   @Override
   public void saveDocument(final XWikiDocument doc) throws DocumentSaveException {
     DocumentReference docRef = doc.getDocumentReference();
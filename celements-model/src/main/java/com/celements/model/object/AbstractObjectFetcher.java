@@ -114,16 +114,27 @@ public abstract class AbstractObjectFetcher<R extends AbstractObjectFetcher<R, D
   }
 
   protected Stream<O> getObjects(ClassIdentity classId) {
-    Stream<O> objects = getBridge().getObjects(getDocument(), classId).stream()
-        .filter(getQuery().predicate(classId));
+    Stream<O> objects;
     if (clone) {
       LOGGER.debug("{} clone objects", this);
-      objects = objects.map(getBridge()::cloneObject);
+      // cloned objects are detached anyway, no need to promote a copy-on-write document
+      objects = getObjectsReadOnly(classId).map(getBridge()::cloneObject);
+    } else {
+      objects = getBridge().getObjects(getDocument(), classId).stream()
+          .filter(getQuery().predicate(classId));
     }
     LOGGER.info("{} fetching for {}", this, classId);
     return objects.peek(o -> LOGGER.trace("fetched: {}", o));
   }
 
+  /**
+   * the returned objects may be shared with other documents, thus never modify them
+   */
+  private Stream<O> getObjectsReadOnly(ClassIdentity classId) {
+    return getBridge().getObjectsReadOnly(getDocument(), classId).stream()
+        .filter(getQuery().predicate(classId));
+  }
+
   /**
    * disables cloning for the fetcher. use with caution!
    */
@@ -180,7 +191,10 @@ public abstract class AbstractObjectFetcher<R extends AbstractObjectFetcher<R, D
         Stream<T> stream;
         if (field.getClassReference().isValidObjectClass()) {
           FieldAccessor<O> accessor = getBridge().getObjectFieldAccessor();
-          stream = fetcher.stream().map(obj -> accessor.get(obj, field).orElse(null));
+          // only values are read, thus no need to clone the objects
+          stream = fetcher.getObjectClasses().stream()
+              .flatMap(fetcher::getObjectsReadOnly)
+              .map(obj -> accessor.get(obj, field).orElse(null));
         } else {
           FieldAccessor<D> accessor = getBridge().getDocumentFieldAccessor();
           return StreamEx.of(getTranslationDoc())
@@ -52,6 +52,13 @@ public interface ObjectBridge<D, O> {
   @NotNull
   FluentIterable<O> getObjects(@NotNull D doc, @NotNull ClassIdentity classId);
 
+  /**
+   * like {@link #getObjects(Object, ClassIdentity)} but the returned objects may be shared with
+   * other documents (e.g. the cached one), thus they may only be read or cloned.
+   */
+  @NotNull
+  FluentIterable<O> getObjectsReadOnly(@NotNull D doc, @NotNull ClassIdentity classId);
+
   int getObjectNumber(@NotNull O obj);
 
   @NotNull
@@ -25,4 +25,9 @@ public class XWikiEmptyObjectBridge extends XWikiObjectBridge {
     return FluentIterable.of();
   }
 
+  @Override
+  public FluentIterable<BaseObject> getObjectsReadOnly(XWikiDocument doc, ClassIdentity classId) {
+    return FluentIterable.of();
+  }
+
 }
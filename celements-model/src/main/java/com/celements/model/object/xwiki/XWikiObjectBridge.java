@@ -102,6 +102,15 @@ public class XWikiObjectBridge implements ObjectBridge<XWikiDocument, BaseObject
     return FluentIterable.from(objects).filter(Predicates.notNull());
   }
 
+  @Override
+  public FluentIterable<BaseObject> getObjectsReadOnly(XWikiDocument doc, ClassIdentity classId) {
+    checkIsMainDoc(doc);
+    WikiReference docWiki = doc.getDocumentReference().getWikiReference();
+    List<BaseObject> objects = firstNonNull(doc.getXObjectsReadOnly(classId.getDocRef(docWiki)),
+        ImmutableList.<BaseObject>of());
+    return FluentIterable.from(objects).filter(Predicates.notNull());
+  }
+
   @Override
   public int getObjectNumber(BaseObject obj) {
     return obj.getNumber();
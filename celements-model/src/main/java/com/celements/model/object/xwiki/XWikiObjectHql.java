@@ -0,0 +1,259 @@
+package com.celements.model.object.xwiki;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.annotation.concurrent.Immutable;
+import javax.validation.constraints.NotNull;
+
+import com.celements.model.classes.ClassIdentity;
+import com.celements.model.classes.fields.ClassField;
+import com.celements.model.classes.fields.CustomClassField;
+import com.celements.model.object.restriction.ClassRestriction;
+import com.celements.model.object.restriction.FieldAbsentRestriction;
+import com.celements.model.object.restriction.FieldPresentRestriction;
+import com.celements.model.object.restriction.FieldRestriction;
+import com.celements.model.object.restriction.NumberRestriction;
+import com.celements.model.object.restriction.ObjectQuery;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.BaseStringProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
+import com.xpn.xwiki.objects.ListProperty;
+import com.xpn.xwiki.objects.StringListProperty;
+import com.xpn.xwiki.objects.classes.PropertyClassInterface;
+
+/**
+ * HQL statement compiled from an {@link ObjectQuery} on {@link BaseObject}s, joining the objects
+ * with their documents and checking the field restrictions with subqueries on the property
+ * tables. The statement matches the objects {@link ObjectQuery#predicate} would accept, with the
+ * same value semantics as {@link XWikiObjectFetcher}:
+ * <ul>
+ * <li>restrictions of a class only apply to objects of this class, different classes are or-ed
+ * <li>values are compared in their serialized form, see {@link CustomClassField#serialize}
+ * <li>empty strings are considered absent
+ * </ul>
+ * Multi select list fields can only be restricted on their presence and identity restrictions or
+ * custom predicates can't be compiled at all, an {@link IllegalArgumentException} is thrown.
+ */
+@Immutable
+final class XWikiObjectHql {
+
+  private static final String FROM = " from XWikiDocument as doc, BaseObject as obj";
+  private static final String WHERE = " where doc.translation = 0 and doc.fullName = obj.name";
+
+  private final String statement;
+  private final Map<String, Object> parameters;
+
+  private XWikiObjectHql(String statement, Map<String, Object> parameters) {
+    this.statement = statement;
+    this.parameters = ImmutableMap.copyOf(parameters);
+  }
+
+  /**
+   * @return the statement selecting space and name of the documents having at least one object
+   *         matching the query, ordered by space and name
+   */
+  @NotNull
+  static XWikiObjectHql forDocuments(@NotNull ObjectQuery<BaseObject> query) {
+    Compiler compiler = new Compiler(query);
+    String condition = compiler.compileCondition();
+    return new XWikiObjectHql("select distinct doc.space, doc.name" + FROM + WHERE
+        + " and " + condition + " order by doc.space, doc.name", compiler.parameters);
+  }
+
+  /**
+   * @return the statement selecting the present values of the field from the objects of its class
+   *         matching the query, ordered by document and object number
+   */
+  @NotNull
+  static XWikiObjectHql forValues(@NotNull ObjectQuery<BaseObject> query,
+      @NotNull ClassField<?> field) {
+    Compiler compiler = new Compiler(query);
+    String condition = compiler.compileCondition(field.getClassReference());
+    String valueProperty = getValueProperty(field).orElseThrow(() -> new IllegalArgumentException(
+        "unable to select values of field [" + field + "]"));
+    return new XWikiObjectHql("select prop." + valueProperty + FROM + ", "
+        + getPropertyEntity(field) + " as prop" + WHERE + " and (" + condition + ")"
+        + " and prop.id.id = obj.id and prop.id.name = " + compiler.bind(field.getName())
+        + " and " + getPresentCondition(field, "prop")
+        + " order by doc.space, doc.name, obj.number", compiler.parameters);
+  }
+
+  @NotNull
+  String getStatement() {
+    return statement;
+  }
+
+  @NotNull
+  Map<String, Object> getParameters() {
+    return parameters;
+  }
+
+  private static BaseProperty newProperty(ClassField<?> field) {
+    return ((PropertyClassInterface) field.getXField()).newProperty();
+  }
+
+  private static String getPropertyEntity(ClassField<?> field) {
+    return newProperty(field).getClass().getSimpleName();
+  }
+
+  /**
+   * @return the mapped property holding the value, absent for relational list storage
+   */
+  private static Optional<String> getValueProperty(ClassField<?> field) {
+    BaseProperty property = newProperty(field);
+    if (property instanceof DBStringListProperty) {
+      return Optional.empty();
+    } else if (property instanceof StringListProperty) {
+      return Optional.of("textValue");
+    } else {
+      return Optional.of("value");
+    }
+  }
+
+  private static String getPresentCondition(ClassField<?> field, String alias) {
+    BaseProperty property = newProperty(field);
+    Optional<String> valueProperty = getValueProperty(field);
+    if (!valueProperty.isPresent()) {
+      return alias + ".list is not empty";
+    }
+    String value = alias + "." + valueProperty.get();
+    if ((property instanceof BaseStringProperty) || (property instanceof ListProperty)) {
+      return value + " is not null and trim(" + value + ") <> ''";
+    } else {
+      return value + " is not null";
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "XWikiObjectHql [statement=" + statement + ", parameters=" + parameters + "]";
+  }
+
+  private static class Compiler {
+
+    private final ObjectQuery<BaseObject> query;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private int aliasCount = 0;
+
+    Compiler(ObjectQuery<BaseObject> query) {
+      this.query = checkNotNull(query);
+    }
+
+    String compileCondition() {
+      List<String> conditions = query.getObjectClasses().stream()
+          .map(this::compileCondition)
+          .collect(Collectors.toList());
+      if (conditions.isEmpty()) {
+        conditions.add(compileRestrictions(null));
+      }
+      return conditions.stream().collect(Collectors.joining(" or ", "(", ")"));
+    }
+
+    String compileCondition(ClassIdentity classId) {
+      if (!classId.isValidObjectClass()) {
+        throw new IllegalArgumentException("unable to query pseudo class [" + classId + "]");
+      }
+      return "obj.className = " + bind(classId.serialize()) + " and "
+          + compileRestrictions(classId);
+    }
+
+    /**
+     * @param classId
+     *          the class of the objects, null if the query has no class restrictions
+     */
+    private String compileRestrictions(ClassIdentity classId) {
+      List<String> conditions = new ArrayList<>();
+      query.streamRestrictions()
+          .filter(restr -> !(restr instanceof ClassRestriction)
+              || ((ClassRestriction<?>) restr).getClassIdentity().equals(classId))
+          .map(this::compileRestriction)
+          .filter(Optional::isPresent)
+          .map(Optional::get)
+          .forEach(conditions::add);
+      return conditions.isEmpty() ? "1 = 1" : String.join(" and ", conditions);
+    }
+
+    private Optional<String> compileRestriction(Predicate<BaseObject> restr) {
+      if (restr instanceof FieldRestriction) {
+        return Optional.of(compileFieldRestriction((FieldRestriction<BaseObject, ?>) restr));
+      } else if (restr instanceof FieldPresentRestriction) {
+        return Optional.of(compilePropertyExists(((FieldPresentRestriction<?, ?>) restr)
+            .getField(), ImmutableList.of()));
+      } else if (restr instanceof FieldAbsentRestriction) {
+        return Optional.of("not " + compilePropertyExists(((FieldAbsentRestriction<?, ?>) restr)
+            .getField(), ImmutableList.of()));
+      } else if (restr instanceof NumberRestriction) {
+        return Optional.of("obj.number = " + bind(((NumberRestriction<?>) restr).getNumber()));
+      } else if (restr instanceof ClassRestriction) {
+        return Optional.empty(); // already restricted by the class name
+      }
+      throw new IllegalArgumentException("unable to compile restriction [" + restr + "]");
+    }
+
+    private <T> String compileFieldRestriction(FieldRestriction<BaseObject, T> restr) {
+      ClassField<T> field = restr.getField();
+      if (newProperty(field) instanceof ListProperty) {
+        throw new IllegalArgumentException("unable to compile value restriction on multi select "
+            + "field [" + field + "]");
+      }
+      List<Object> values = restr.getValues().stream()
+          .map(value -> serialize(field, value))
+          .filter(Optional::isPresent)
+          .map(Optional::get)
+          .collect(Collectors.toList());
+      if (values.isEmpty()) {
+        return "1 = 0"; // no value can be matched
+      }
+      return compilePropertyExists(field, values);
+    }
+
+    /**
+     * @param values
+     *          the values of which the property has to hold one, empty for any present value
+     */
+    private String compilePropertyExists(ClassField<?> field, List<?> values) {
+      String alias = "prop" + (aliasCount++);
+      StringBuilder hql = new StringBuilder();
+      hql.append("exists (from ").append(getPropertyEntity(field)).append(" as ").append(alias)
+          .append(" where ").append(alias).append(".id.id = obj.id and ").append(alias)
+          .append(".id.name = ").append(bind(field.getName())).append(" and ")
+          .append(getPresentCondition(field, alias));
+      if (!values.isEmpty()) {
+        hql.append(" and ").append(alias).append(".").append(getValueProperty(field).get())
+            .append(values.stream().map(this::bind).collect(Collectors.joining(", ", " in (",
+                ")")));
+      }
+      return hql.append(")").toString();
+    }
+
+    private <T> Optional<Object> serialize(ClassField<T> field, T value) {
+      Optional<?> serialized;
+      if (field instanceof CustomClassField) {
+        serialized = ((CustomClassField<T>) field).serialize(value);
+      } else {
+        serialized = Optional.ofNullable(value);
+      }
+      return serialized.<Object>map(val -> val)
+          .filter(val -> !(val instanceof String) || !val.toString().trim().isEmpty());
+    }
+
+    String bind(Object value) {
+      String name = "p" + parameters.size();
+      parameters.put(name, value);
+      return ":" + name;
+    }
+
+  }
+
+}
@@ -0,0 +1,119 @@
+package com.celements.model.object.xwiki;
+
+import static com.google.common.base.Strings.*;
+import static com.google.common.collect.ImmutableList.*;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.celements.model.classes.fields.ClassField;
+import com.celements.model.classes.fields.CustomClassField;
+import com.celements.model.object.restriction.ObjectQuery;
+import com.celements.model.reference.RefBuilder;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Queries the documents and field values of a wiki matching an {@link ObjectQuery} in the
+ * database, without loading the documents. The query is compiled to HQL, see
+ * {@link XWikiObjectHql} for the supported restrictions. E.g. all documents with an active
+ * receiver object:
+ *
+ * <pre>
+ * queryService.queryDocuments(wikiRef, XWikiObjectFetcher.empty()
+ *     .filter(FIELD_IS_ACTIVE, true).getQuery(), 0, 0);
+ * </pre>
+ */
+@Component
+public class XWikiObjectQueryService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(XWikiObjectQueryService.class);
+
+  private final QueryManager queryManager;
+
+  @Inject
+  public XWikiObjectQueryService(QueryManager queryManager) {
+    this.queryManager = queryManager;
+  }
+
+  /**
+   * @param offset
+   *          the amount of documents to skip
+   * @param limit
+   *          the maximum amount of documents returned, 0 for all
+   * @return the documents having at least one object matching the query, ordered by full name
+   * @throws IllegalArgumentException
+   *           if the query contains restrictions not compilable to HQL
+   */
+  @NotNull
+  public List<DocumentReference> queryDocuments(@NotNull WikiReference wikiRef,
+      @NotNull ObjectQuery<BaseObject> query, int offset, int limit) throws QueryException {
+    XWikiObjectHql hql = XWikiObjectHql.forDocuments(query);
+    return this.<Object[]>execute(wikiRef, hql, offset, limit).stream()
+        .map(row -> RefBuilder.create().with(wikiRef).space((String) row[0])
+            .doc((String) row[1]).build(DocumentReference.class))
+        .collect(toImmutableList());
+  }
+
+  /**
+   * @param offset
+   *          the amount of objects to skip
+   * @param limit
+   *          the maximum amount of objects to return the value of, 0 for all
+   * @return the present values of the field from the objects of its class matching the query,
+   *         ordered by document full name and object number
+   * @throws IllegalArgumentException
+   *           if the query contains restrictions not compilable to HQL or the values of the field
+   *           aren't selectable, e.g. for relational list storage
+   */
+  @NotNull
+  public <T> List<T> queryValues(@NotNull WikiReference wikiRef,
+      @NotNull ObjectQuery<BaseObject> query, @NotNull ClassField<T> field, int offset, int limit)
+      throws QueryException {
+    XWikiObjectHql hql = XWikiObjectHql.forValues(query, field);
+    return this.<Object>execute(wikiRef, hql, offset, limit).stream()
+        .map(value -> resolve(field, value))
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .collect(toImmutableList());
+  }
+
+  private <R> List<R> execute(WikiReference wikiRef, XWikiObjectHql hql, int offset, int limit)
+      throws QueryException {
+    Query query = queryManager.createQuery(hql.getStatement(), Query.HQL)
+        .setWiki(wikiRef.getName())
+        .setOffset(offset)
+        .setLimit(limit);
+    hql.getParameters().forEach(query::bindValue);
+    LOGGER.debug("execute: {} on wiki [{}]", hql, wikiRef.getName());
+    return query.<R>execute();
+  }
+
+  /**
+   * resolves the value like {@link com.celements.model.field.XObjectFieldAccessor}
+   */
+  private <T> Optional<T> resolve(ClassField<T> field, Object value) {
+    if (value instanceof String) {
+      value = emptyToNull(value.toString().trim());
+    }
+    if (value == null) {
+      return Optional.empty();
+    } else if (field instanceof CustomClassField) {
+      return ((CustomClassField<T>) field).resolve(value);
+    } else {
+      return Optional.of(field.getType().cast(value));
+    }
+  }
+
+}
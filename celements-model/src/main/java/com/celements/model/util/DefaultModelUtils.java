@@ -6,6 +6,7 @@ import static com.google.common.base.MoreObjects.*;
 import static com.google.common.base.Preconditions.*;
 import static com.google.common.base.Strings.*;
 
+import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -13,8 +14,15 @@ import javax.inject.Inject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.Requirement;
+import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.context.Execution;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
@@ -38,6 +46,11 @@ public class DefaultModelUtils implements ModelUtils {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DefaultModelUtils.class);
 
+  /**
+   * max entries of the resolved references cache, hot names like "XWiki.XWikiPreferences" are few
+   */
+  static final int RESOLVE_CACHE_CAPACITY = 1000;
+
   @Requirement
   private Execution exec;
 
@@ -53,12 +66,21 @@ public class DefaultModelUtils implements ModelUtils {
   @Inject
   private XWikiConfigSource xwikiCfg;
 
+  @Requirement
+  private CacheManager cacheManager;
+
   private final Supplier<WikiReference> mainWikiRef = Suppliers
       .memoize(() -> RefBuilder.create()
           .wiki(xwikiCfg.getProperty("xwiki.db"))
           .buildOpt(WikiReference.class)
           .orElse(XWikiConstant.MAIN_WIKI));
 
+  /**
+   * resolved references by name, class and default wiki. absent if the cache is unavailable.
+   */
+  private final Supplier<Optional<Cache<EntityReference>>> resolveCache = Suppliers
+      .memoize(this::newResolveCache);
+
   @Override
   @Deprecated
   public boolean isAbsoluteRef(EntityReference ref) {
@@ -121,11 +143,47 @@ public class DefaultModelUtils implements ModelUtils {
       // resolver cannot handle root reference
       builder = builder.wiki(name);
     } else {
-      builder = builder.with(resolver.resolve(name, type, builder.buildRelative()));
+      EntityReference defaultRef = builder.buildRelative();
+      if (defaultRef.getType() == getRootEntityType()) {
+        // only depends on the default wiki, thus cacheable
+        return resolveRefCached(name, type, token, defaultRef);
+      }
+      builder = builder.with(resolver.resolve(name, type, defaultRef));
     }
     return builder.build(token);
   }
 
+  private <T extends EntityReference> T resolveRefCached(String name, EntityType type,
+      Class<T> token, EntityReference wikiRef) {
+    String key = token.getName() + ':' + wikiRef.getName().length() + ':' + wikiRef.getName()
+        + ':' + name;
+    Optional<Cache<EntityReference>> cache = resolveCache.get();
+    T ref = cache.map(c -> c.get(key)).map(token::cast).orElse(null);
+    if (ref == null) {
+      ref = RefBuilder.from(wikiRef)
+          .with(resolver.resolve(name, type, wikiRef))
+          .build(token);
+      // references are immutable, thus may be shared
+      final T value = ref;
+      cache.ifPresent(c -> c.set(key, value));
+    }
+    return ref;
+  }
+
+  private Optional<Cache<EntityReference>> newResolveCache() {
+    try {
+      CacheConfiguration config = new CacheConfiguration();
+      config.setConfigurationId("celements.model.resolverefcache");
+      LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+      lru.setMaxEntries(RESOLVE_CACHE_CAPACITY);
+      config.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
+      return Optional.of(cacheManager.getCacheFactory().newCache(config));
+    } catch (CacheException | ComponentLookupException exc) {
+      LOGGER.warn("failed to initialize resolve reference cache, resolving uncached", exc);
+      return Optional.empty();
+    }
+  }
+
   @Override
   public WikiReference getMainWikiRef() {
     return mainWikiRef.get();
@@ -26,6 +26,7 @@ import com.celements.model.util.ModelUtils;
 import com.celements.store.DefaultHibernateStore;
 import com.google.common.base.Strings;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.internal.cache.query.QueryResultCache;
 import com.xpn.xwiki.store.XWikiHibernateBaseStore.HibernateCallback;
 import com.xpn.xwiki.store.XWikiHibernateStore;
 import com.xpn.xwiki.store.XWikiStoreInterface;
@@ -42,6 +43,9 @@ public class QueryExecutionService implements IQueryExecutionServiceRole {
   @Requirement
   private ModelContext context;
 
+  @Requirement
+  private QueryResultCache queryResultCache;
+
   @Override
   public List<List<String>> executeReadSql(String sql) throws XWikiException {
     return executeReadSql(String.class, sql);
@@ -97,7 +101,10 @@ public class QueryExecutionService implements IQueryExecutionServiceRole {
     Session session = null;
     try {
       session = getNewHibSession();
-      return executeWriteSqlInTransaction(session, sqls);
+      List<Integer> results = executeWriteSqlInTransaction(session, sqls);
+      // the written tables are unknown, thus drop all cached query results of the wiki
+      queryResultCache.invalidate(context.getWikiRef().getName());
+      return results;
     } catch (HibernateException hibExc) {
       throw new XWikiException(0, 0, "error while executing sql", hibExc);
     } finally {
@@ -145,7 +152,9 @@ public class QueryExecutionService implements IQueryExecutionServiceRole {
       WikiReference wikiRef) throws XWikiException {
     wikiRef = Optional.ofNullable(wikiRef).orElse(context.getWikiRef());
     HibernateCallback<Integer> callback = new ExecuteWriteCallback(hql, binds);
-    return getHibStore().executeWrite(wikiRef, true, callback);
+    int result = getHibStore().executeWrite(wikiRef, true, callback);
+    queryResultCache.invalidate(wikiRef.getName());
+    return result;
   }
 
   @Override
@@ -0,0 +1,26 @@
+package com.celements.store;
+
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiStoreInterface;
+
+public interface BulkLoadStoreExtension extends XWikiStoreInterface {
+
+  /**
+   * Bulk variant of {@link #loadXWikiDoc(XWikiDocument, XWikiContext)} loading the documents with
+   * a constant amount of queries. All given documents have to belong to the context wiki.
+   *
+   * @return the loaded documents in the order of the given documents. not existing documents are
+   *         returned as new documents.
+   */
+  @NotNull
+  @Override
+  List<XWikiDocument> loadXWikiDocs(@NotNull List<XWikiDocument> docs,
+      @NotNull XWikiContext context) throws XWikiException;
+
+}
@@ -8,8 +8,10 @@ import static java.util.stream.Collectors.*;
 
 import java.text.MessageFormat;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
@@ -30,6 +32,7 @@ import com.celements.model.context.ModelContext;
 import com.celements.model.util.ModelUtils;
 import com.celements.model.util.ReferenceSerializationMode;
 import com.celements.store.id.CelementsIdComputer;
+import com.celements.store.id.DocumentIdCache;
 import com.celements.store.id.DocumentIdComputer;
 import com.celements.store.id.IdVersion;
 import com.celements.store.id.UniqueHashIdComputer;
@@ -42,6 +45,7 @@ import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseCollection;
+import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.PropertyInterface;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.PropertyClass;
@@ -52,7 +56,7 @@ import one.util.streamex.StreamEx;
 
 @Singleton
 @Component(CelHibernateStore.NAME)
-public class CelHibernateStore extends XWikiHibernateStore {
+public class CelHibernateStore extends XWikiHibernateStore implements BulkLoadStoreExtension {
 
   public static final String NAME = "celHibernate";
 
@@ -68,6 +72,9 @@ public class CelHibernateStore extends XWikiHibernateStore {
   @Requirement
   private ModelContext modelContext;
 
+  @Requirement
+  private DocumentIdCache docIdCache;
+
   private final CelHibernateStoreDocumentPart documentStorePart;
   private final CelHibernateStoreCollectionPart collectionStorePart;
   private final CelHibernateStorePropertyPart propertyStorePart;
@@ -116,6 +123,10 @@ public class CelHibernateStore extends XWikiHibernateStore {
     return idComputer;
   }
 
+  public DocumentIdCache getDocIdCache() {
+    return docIdCache;
+  }
+
   // TODO CELDEV-531 - improve load performance
   @Override
   public XWikiDocument loadXWikiDoc(XWikiDocument doc, final XWikiContext context)
@@ -134,6 +145,23 @@ public class CelHibernateStore extends XWikiHibernateStore {
     }
   }
 
+  @Override
+  public List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException {
+    try {
+      log(LogLevel.INFO, "loadXWikiDocs - start", docs.size());
+      List<XWikiDocument> ret = documentStorePart.loadXWikiDocs(docs, context);
+      log(LogLevel.INFO, "loadXWikiDocs - end", docs.size());
+      return ret;
+    } catch (HibernateException | XWikiException exc) {
+      throw newXWikiException("loadXWikiDocs - failed", docs.size(), exc,
+          ERROR_XWIKI_STORE_HIBERNATE_READING_DOC);
+    } catch (Exception exc) {
+      logError("loadXWikiDocs - error", docs.size(), exc);
+      throw exc;
+    }
+  }
+
   @Override
   public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException {
     try {
@@ -176,6 +204,25 @@ public class CelHibernateStore extends XWikiHibernateStore {
         .collect(toImmutableBiMap(Entry::getKey, Entry::getValue));
   }
 
+  /**
+   * bulk variant of {@link #loadExistingDocKeys(Session, DocumentReference, String)} returning the
+   * existing docId with the lowest collision count per {@link #getDocKey} of the given docs
+   */
+  public Map<String, Long> loadExistingDocIds(Session session, Collection<XWikiDocument> docs)
+      throws HibernateException {
+    Set<Long> allPossibleDocIds = StreamEx.of(docs)
+        .flatMap(doc -> StreamEx.of(docIdComputers)
+            .map(computer -> computer.getDocumentIdIterator(doc.getDocumentReference(),
+                doc.getLanguage()))
+            .flatMap(StreamEx::of))
+        .toSet();
+    if (allPossibleDocIds.isEmpty()) {
+      return new HashMap<>();
+    }
+    return loadExistingDocKeys(session, allPossibleDocIds)
+        .invert().distinctKeys().toMap();
+  }
+
   /**
    * docIds for the same doc are sorted by collision count firstly (and object count secondly)
    * irrespective of their signum due to 2-complement representation
@@ -236,6 +283,44 @@ public class CelHibernateStore extends XWikiHibernateStore {
     }
   }
 
+  /**
+   * loads the properties of all given objects of the document set-based with one query per
+   * property table, see {@link CelHibernateStoreCollectionPart#loadXWikiCollections}
+   */
+  public void loadXWikiCollections(XWikiDocument doc, Collection<BaseObject> objects,
+      XWikiContext context) throws XWikiException {
+    try {
+      log(LogLevel.DEBUG, "loadXObjects - start", doc);
+      collectionStorePart.loadXWikiCollections(doc, objects, context);
+      log(LogLevel.DEBUG, "loadXObjects - end", doc);
+    } catch (HibernateException | XWikiException exc) {
+      throw newXWikiException("loadXObjects - failed", doc, exc,
+          ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT);
+    } catch (Exception exc) {
+      logError("loadXObjects - error", doc, exc);
+      throw exc;
+    }
+  }
+
+  /**
+   * bulk variant of {@link #loadXWikiCollections(XWikiDocument, Collection, XWikiContext)} for the
+   * objects of several documents
+   */
+  public void loadXWikiCollections(Collection<XWikiDocument> docs, Collection<BaseObject> objects,
+      XWikiContext context) throws XWikiException {
+    try {
+      log(LogLevel.DEBUG, "loadXObjects - start", docs.size());
+      collectionStorePart.loadXWikiCollections(docs, objects, context);
+      log(LogLevel.DEBUG, "loadXObjects - end", docs.size());
+    } catch (HibernateException | XWikiException exc) {
+      throw newXWikiException("loadXObjects - failed", docs.size(), exc,
+          ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT);
+    } catch (Exception exc) {
+      logError("loadXObjects - error", docs.size(), exc);
+      throw exc;
+    }
+  }
+
   /**
    * @deprecated This is internal to XWikiHibernateStore and may be removed in the future.
    */
@@ -1,5 +1,6 @@
 package com.celements.store;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -27,7 +28,8 @@ import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 import com.xpn.xwiki.web.Utils;
 
-public abstract class DelegateStore implements XWikiStoreInterface, MetaDataStoreExtension {
+public abstract class DelegateStore
+    implements XWikiStoreInterface, MetaDataStoreExtension, BulkLoadStoreExtension {
 
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -84,6 +86,16 @@ public abstract class DelegateStore implements XWikiStoreInterface, MetaDataStor
     return getBackingStore().loadXWikiDoc(doc, context);
   }
 
+  @Override
+  public List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException {
+    List<XWikiDocument> ret = new ArrayList<>(docs.size());
+    for (XWikiDocument doc : docs) {
+      ret.add(loadXWikiDoc(doc, context));
+    }
+    return ret;
+  }
+
   @Override
   public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException {
     getBackingStore().deleteXWikiDoc(doc, context);
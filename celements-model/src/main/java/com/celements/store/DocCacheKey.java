@@ -0,0 +1,138 @@
+package com.celements.store;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.base.Strings;
+
+/**
+ * immutable (wiki, space, name, lang) key of a document translation in the
+ * {@link DocumentCacheStore} with a precomputed hash. It is built from the reference names
+ * without resolving, building or serializing any reference. The string form, as needed by the
+ * string keyed xwiki caches, equals the default reference serialization, e.g.
+ * "wiki:space.page:lang", and is built at most once per key.
+ */
+@Immutable
+final class DocCacheKey {
+
+  private static final char ESCAPE = '\\';
+
+  private final String wiki;
+  private final String space;
+  private final String name;
+  private final String lang;
+  private final int hash;
+
+  /**
+   * lazily built, racy single-check is fine since the string is immutable and always equal
+   */
+  private String serialized;
+
+  /**
+   * lazily built, racy single-check is fine since the keys are immutable and always equal. Thus
+   * the default translation key of a carried key builds its string form at most once as well.
+   */
+  private DocCacheKey withoutLang;
+
+  private DocCacheKey(String wiki, String space, String name, String lang) {
+    this.wiki = wiki;
+    this.space = space;
+    this.name = name;
+    this.lang = lang;
+    this.hash = Objects.hash(wiki, space, name, lang);
+  }
+
+  /**
+   * @param wiki
+   *          the wiki the document is cached for, overrules the wiki of the reference
+   * @param lang
+   *          the translation language, empty or null for the default translation
+   */
+  static DocCacheKey of(@NotNull String wiki, @NotNull DocumentReference docRef,
+      @Nullable String lang) {
+    // the parent of a document reference is its space, avoids the type lookup
+    return new DocCacheKey(checkNotNull(wiki), docRef.getParent().getName(), docRef.getName(),
+        Strings.nullToEmpty(lang));
+  }
+
+  /**
+   * @return the key of the default translation of the same document
+   */
+  DocCacheKey withoutLang() {
+    DocCacheKey ret = withoutLang;
+    if (ret == null) {
+      ret = lang.isEmpty() ? this : new DocCacheKey(wiki, space, name, "");
+      withoutLang = ret;
+    }
+    return ret;
+  }
+
+  String getWiki() {
+    return wiki;
+  }
+
+  String getLang() {
+    return lang;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (obj instanceof DocCacheKey) {
+      DocCacheKey other = (DocCacheKey) obj;
+      return (this.hash == other.hash)
+          && this.name.equals(other.name)
+          && this.space.equals(other.space)
+          && this.wiki.equals(other.wiki)
+          && this.lang.equals(other.lang);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    String ret = serialized;
+    if (ret == null) {
+      StringBuilder sb = new StringBuilder(wiki.length() + space.length() + name.length()
+          + lang.length() + 4);
+      appendEscaped(sb, wiki, "");
+      sb.append(':');
+      appendEscaped(sb, space, ".:");
+      sb.append('.');
+      appendEscaped(sb, name, ".");
+      if (!lang.isEmpty()) {
+        sb.append(':').append(lang);
+      }
+      serialized = ret = sb.toString();
+    }
+    return ret;
+  }
+
+  /**
+   * escapes like {@code DefaultStringEntityReferenceSerializer}: the backslash and the given
+   * separators are prefixed with a backslash
+   */
+  private static void appendEscaped(StringBuilder sb, String str, String separators) {
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if ((c == ESCAPE) || (separators.indexOf(c) >= 0)) {
+        sb.append(ESCAPE);
+      }
+      sb.append(c);
+    }
+  }
+
+}
@@ -20,10 +20,13 @@
  */
 package com.celements.store;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
@@ -31,6 +34,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,15 +56,22 @@ import org.xwiki.query.QueryException;
 
 import com.celements.model.access.XWikiDocumentCreator;
 import com.celements.model.access.exception.MetaDataLoadException;
+import com.celements.model.context.Contextualiser;
 import com.celements.model.context.ModelContext;
 import com.celements.model.metadata.DocumentMetaData;
 import com.celements.model.metadata.ImmutableDocumentMetaData;
 import com.celements.model.reference.RefBuilder;
 import com.celements.model.util.ModelUtils;
+import com.celements.store.invalidation.DocumentInvalidation;
+import com.celements.store.invalidation.DocumentInvalidationChannel;
 import com.google.common.base.Strings;
+import com.google.common.base.Suppliers;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseStringProperty;
 import com.xpn.xwiki.store.XWikiCacheStoreInterface;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 
@@ -83,6 +94,16 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
   private static final String PARAM_PREFIX = "celements.store." + COMPONENT_NAME;
   public static final String PARAM_DOC_CACHE_CAPACITY = PARAM_PREFIX + ".capacityDoc";
   public static final String PARAM_EXIST_CACHE_CAPACITY = PARAM_PREFIX + ".capacityExists";
+  public static final String PARAM_EXISTS_INDEX = PARAM_PREFIX + ".existsIndex";
+  public static final String PARAM_DOC_CACHE_MAX_WEIGHT = PARAM_PREFIX + ".maxWeightMB";
+
+  /**
+   * rough estimates for a 64-bit JVM with compressed oops
+   */
+  private static final int DOC_BASE_BYTES = 2048;
+  private static final int OBJECT_BYTES = 256;
+  private static final int PROPERTY_BYTES = 128;
+  private static final int ATTACHMENT_BYTES = 512;
 
   @Requirement
   private CacheManager cacheManager;
@@ -96,6 +117,9 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
   @Requirement
   private ModelUtils modelUtils;
 
+  @Requirement
+  private DocumentInvalidationChannel invalidationChannel;
+
   /**
    * CAUTION: Lazy initialized of cache thus volatile is needed.
    */
@@ -106,7 +130,16 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
    */
   private volatile Cache<Boolean> existCache;
 
-  private final ConcurrentMap<String, DocumentLoader> documentLoaderMap = new ConcurrentHashMap<>();
+  private final ConcurrentMap<DocCacheKey, DocumentLoader> documentLoaderMap =
+      new ConcurrentHashMap<>();
+
+  /**
+   * opt-in since it holds the names of all documents of every accessed wiki in memory
+   */
+  private final Supplier<Optional<DocumentExistsIndex>> existsIndex = Suppliers.memoize(
+      () -> cfgSrc.getProperty(PARAM_EXISTS_INDEX, false)
+          ? Optional.of(new DocumentExistsIndex(this::getQueryManager, modelUtils))
+          : Optional.empty());
 
   @Override
   protected String getName() {
@@ -158,6 +191,12 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
   }
 
   private Cache<XWikiDocument> newDocCache() throws CacheException, ComponentLookupException {
+    int maxWeightMB = cfgSrc.getProperty(PARAM_DOC_CACHE_MAX_WEIGHT, 0);
+    if (maxWeightMB > 0) {
+      LOGGER.info("newDocCache: weighted with max {}MB", maxWeightMB);
+      return new WeightedLfuCache<>((long) maxWeightMB << 20, getDocCacheCapacity(),
+          DocumentCacheStore::estimateRetainedSize);
+    }
     CacheConfiguration config = new CacheConfiguration();
     config.setConfigurationId("xwiki.store.pagecache");
     LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
@@ -197,6 +236,7 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
       final boolean bTransaction) throws XWikiException {
     getBackingStore().saveXWikiDoc(doc, context, bTransaction);
     removeDocFromCache(doc, true);
+    invalidationChannel.publish(doc.getDocumentReference(), doc.getLanguage(), doc.getVersion());
   }
 
   @Override
@@ -210,32 +250,43 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
       this.existCache.dispose();
       this.existCache = null;
     }
+    existsIndex.get().ifPresent(DocumentExistsIndex::clear);
   }
 
   String getKey(DocumentReference docRef) {
-    DocumentReference cacheDocRef = RefBuilder.from(docRef)
-        .with(modelContext.getWikiRef())
-        .build(DocumentReference.class);
-    return modelUtils.serializeRef(cacheDocRef);
+    return getCacheKey(docRef, "").toString();
   }
 
-  String getKeyWithLang(DocumentReference docRef, String language) {
-    if (Strings.isNullOrEmpty(language)) {
-      return getKey(docRef);
-    } else {
-      return getKey(docRef) + ":" + language;
-    }
+  /**
+   * @return the cache key of the translation in the context wiki
+   */
+  DocCacheKey getCacheKey(DocumentReference docRef, String language) {
+    return DocCacheKey.of(modelContext.getWikiRef().getName(), docRef, language);
   }
 
-  String getKeyWithLang(XWikiDocument doc) {
+  DocCacheKey getCacheKey(XWikiDocument doc) {
     String language = doc.getLanguage();
     if (language.equals(doc.getDefaultLanguage())) {
       language = "";
     }
-    return getKeyWithLang(doc.getDocumentReference(), language);
+    return getCacheKey(doc.getDocumentReference(), language);
+  }
+
+  private DocumentReference getContextWikiDocRef(DocumentReference docRef) {
+    return RefBuilder.from(docRef)
+        .with(modelContext.getWikiRef())
+        .build(DocumentReference.class);
+  }
+
+  String getKeyWithLang(DocumentReference docRef, String language) {
+    return getCacheKey(docRef, language).toString();
   }
 
-  private DocumentLoader getDocumentLoader(String key) {
+  String getKeyWithLang(XWikiDocument doc) {
+    return getCacheKey(doc).toString();
+  }
+
+  private DocumentLoader getDocumentLoader(DocCacheKey key) {
     DocumentLoader docLoader = documentLoaderMap.get(key);
     if (docLoader == null) {
       LOGGER.debug("create document loader for '{}' in thread '{}'", key,
@@ -257,17 +308,19 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
 
   InvalidateState removeDocFromCache(XWikiDocument doc, Boolean docExists) {
     InvalidateState returnState = InvalidateState.CACHE_MISS;
-    Set<String> docKeys = new HashSet<>();
-    String key = getKey(doc.getDocumentReference());
-    String origKey = "";
+    Set<DocCacheKey> docKeys = new HashSet<>();
+    DocCacheKey keyWithLang = getCacheKey(doc);
+    DocCacheKey key = keyWithLang.withoutLang();
+    DocCacheKey origKey = null;
     if (doc.getOriginalDocument() != null) {
-      origKey = getKey(doc.getOriginalDocument().getDocumentReference());
+      DocCacheKey origKeyWithLang = getCacheKey(doc.getOriginalDocument());
+      origKey = origKeyWithLang.withoutLang();
       docKeys.add(origKey);
-      docKeys.add(getKeyWithLang(doc.getOriginalDocument()));
+      docKeys.add(origKeyWithLang);
     }
     docKeys.add(key);
-    docKeys.add(getKeyWithLang(doc));
-    for (String k : docKeys) {
+    docKeys.add(keyWithLang);
+    for (DocCacheKey k : docKeys) {
       InvalidateState invState = invalidateDocCache(k);
       if (invState == InvalidateState.REMOVED) {
         returnState = InvalidateState.REMOVED;
@@ -275,17 +328,57 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
         returnState = invState;
       }
     }
+    if (docExists != null) {
+      DocumentReference docRef = getContextWikiDocRef(doc.getDocumentReference());
+      existsIndex.get().ifPresent(index -> {
+        if (docExists) {
+          index.add(docRef, doc.getLanguage());
+        } else {
+          index.remove(docRef, doc.getLanguage());
+        }
+      });
+    }
     if (getExistCache() != null) {
       if ((doc.getTranslation() == 0) || (Boolean.TRUE.equals(docExists))) {
-        setExistCache(origKey, null);
+        if (origKey != null) {
+          setExistCache(origKey, null);
+        }
         setExistCache(key, docExists);
       }
-      setExistCache(doc, docExists);
+      setExistCache(keyWithLang, docExists);
     }
     return returnState;
   }
 
-  InvalidateState invalidateDocCache(String key) {
+  /**
+   * applies an invalidation received from another cluster node, skipped if the cache already holds
+   * the saved version, e.g. reloaded after the remote document event arrived first
+   */
+  InvalidateState removeDocFromCache(DocumentInvalidation invalidation) {
+    DocumentReference docRef = modelUtils.resolveRef(invalidation.getDocKey(),
+        DocumentReference.class, new WikiReference(invalidation.getWiki()));
+    XWikiDocument doc = new XWikiDocument(docRef);
+    doc.setLanguage(invalidation.getLang());
+    doc.setTranslation(invalidation.getLang().isEmpty() ? 0 : 1);
+    return new Contextualiser()
+        .withWiki(docRef.getWikiReference())
+        .execute(() -> invalidation.getVersion().filter(version -> isCachedVersion(doc, version))
+            .map(version -> InvalidateState.UP_TO_DATE)
+            .orElseGet(() -> removeDocFromCache(doc, !invalidation.isDeleted())));
+  }
+
+  /**
+   * @return true if the cache holds the given version of the document translation and no loader
+   *         is pending for it, thus an invalidation for this version is obsolete
+   */
+  boolean isCachedVersion(XWikiDocument doc, String version) {
+    DocCacheKey key = getCacheKey(doc);
+    XWikiDocument cachedDoc = (getDocCache() != null) ? getDocFromCache(key) : null;
+    return (cachedDoc != null) && !documentLoaderMap.containsKey(key)
+        && cachedDoc.getVersion().equals(version);
+  }
+
+  InvalidateState invalidateDocCache(DocCacheKey key) {
     InvalidateState invalidState = InvalidateState.CACHE_MISS;
     final DocumentLoader docLoader = documentLoaderMap.get(key);
     boolean invalidateDocLoader = (docLoader != null);
@@ -324,9 +417,9 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
       throws XWikiException {
     LOGGER.trace("Cache: begin for docRef '{}' in cache", doc.getDocumentReference());
     XWikiDocument ret;
-    String key = getKey(doc.getDocumentReference());
-    String keyWithLang = getKeyWithLang(doc);
-    if (doesNotExistsForKey(key) || doesNotExistsForKey(keyWithLang)) {
+    DocCacheKey keyWithLang = getCacheKey(doc);
+    if (doesNotExistsForKey(keyWithLang.withoutLang()) || doesNotExistsForKey(keyWithLang)
+        || doesNotExistInIndex(doc)) {
       LOGGER.debug("Cache: The document {} does not exist, return an empty one", keyWithLang);
       ret = createEmptyXWikiDoc(doc);
     } else {
@@ -343,8 +436,125 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
     return ret;
   }
 
-  private boolean doesNotExistsForKey(String key) {
-    return Boolean.FALSE.equals(getExistCache().get(key));
+  /**
+   * Bulk variant of {@link #loadXWikiDoc(XWikiDocument, XWikiContext)}. Cache misses are loaded
+   * with one bulk load on the backing store if supported. The document loaders for all misses are
+   * registered before the bulk load, thus invalidations happening meanwhile lead to a reload.
+   */
+  @Override
+  public List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException {
+    XWikiDocument[] ret = new XWikiDocument[docs.size()];
+    DocCacheKey[] keys = new DocCacheKey[docs.size()];
+    Map<DocCacheKey, DocumentLoader> docLoaders = new HashMap<>();
+    Map<DocCacheKey, XWikiDocument> docsToLoad = new LinkedHashMap<>();
+    for (int i = 0; i < docs.size(); i++) {
+      XWikiDocument doc = docs.get(i);
+      keys[i] = getCacheKey(doc);
+      if (doesNotExistsForKey(keys[i].withoutLang())
+          || doesNotExistsForKey(keys[i]) || doesNotExistInIndex(doc)) {
+        ret[i] = createEmptyXWikiDoc(doc);
+      } else {
+        ret[i] = getDocFromCache(keys[i]);
+        if (ret[i] == null) {
+          docLoaders.computeIfAbsent(keys[i], this::getDocumentLoader);
+          docsToLoad.putIfAbsent(keys[i], doc);
+        }
+      }
+    }
+    LOGGER.debug("loadXWikiDocs: {} of {} docs to load", docsToLoad.size(), docs.size());
+    Map<DocCacheKey, XWikiDocument> preloadedDocs = preloadDocuments(docsToLoad, context);
+    for (int i = 0; i < docs.size(); i++) {
+      if (ret[i] == null) {
+        ret[i] = docLoaders.get(keys[i]).loadDocument(keys[i], docs.get(i),
+            preloadedDocs.get(keys[i]), context);
+      }
+    }
+    return new ArrayList<>(Arrays.asList(ret));
+  }
+
+  private Map<DocCacheKey, XWikiDocument> preloadDocuments(
+      Map<DocCacheKey, XWikiDocument> docsToLoad, XWikiContext context) {
+    Map<DocCacheKey, XWikiDocument> preloadedDocs = new HashMap<>();
+    if ((docsToLoad.size() > 1) && (getBackingStore() instanceof BulkLoadStoreExtension)) {
+      List<DocCacheKey> keys = new ArrayList<>(docsToLoad.keySet());
+      List<XWikiDocument> buildDocs = new ArrayList<>(keys.size());
+      for (XWikiDocument doc : docsToLoad.values()) {
+        buildDocs.add(createBuildDoc(doc));
+      }
+      try {
+        List<XWikiDocument> loadedDocs = ((BulkLoadStoreExtension) getBackingStore())
+            .loadXWikiDocs(buildDocs, context);
+        for (int i = 0; i < keys.size(); i++) {
+          XWikiDocument loadedDoc = loadedDocs.get(i);
+          loadedDoc.setFromCache(!loadedDoc.isNew());
+          preloadedDocs.put(keys.get(i), loadedDoc);
+        }
+      } catch (XWikiException xwe) {
+        LOGGER.warn("preloadDocuments: failed, falling back to single loads", xwe);
+      }
+    }
+    return preloadedDocs;
+  }
+
+  private boolean doesNotExistsForKey(DocCacheKey key) {
+    return Boolean.FALSE.equals(getExistCache().get(key.toString()));
+  }
+
+  private boolean doesNotExistInIndex(XWikiDocument doc) {
+    return existsIndex.get()
+        .flatMap(index -> index.exists(getContextWikiDocRef(doc.getDocumentReference()),
+            doc.getLanguage()))
+        .map(exists -> !exists)
+        .orElse(false);
+  }
+
+  /**
+   * @return the estimated heap size of all cached documents in bytes, -1 if the doc cache isn't
+   *         configured with {@link #PARAM_DOC_CACHE_MAX_WEIGHT}
+   */
+  public long getDocCacheWeight() {
+    Cache<XWikiDocument> cache = getDocCache();
+    return (cache instanceof WeightedLfuCache)
+        ? ((WeightedLfuCache<?>) cache).getWeight()
+        : -1;
+  }
+
+  /**
+   * estimates the retained heap size of a loaded document from its content, objects and
+   * attachments. Objects of copy-on-write clones are read from their source without copying.
+   */
+  static long estimateRetainedSize(XWikiDocument doc) {
+    long size = DOC_BASE_BYTES;
+    size += 2L * Strings.nullToEmpty(doc.getContent()).length();
+    size += 2L * Strings.nullToEmpty(doc.getXClassXML()).length();
+    for (DocumentReference classRef : doc.getXObjectClassRefs()) {
+      for (BaseObject obj : doc.getXObjectsReadOnly(classRef)) {
+        if (obj != null) {
+          size += OBJECT_BYTES;
+          for (Object field : obj.getFieldList()) {
+            size += PROPERTY_BYTES;
+            if (field instanceof BaseStringProperty) {
+              size += 2L * Strings.nullToEmpty(((BaseStringProperty) field).getValue()).length();
+            }
+          }
+        }
+      }
+    }
+    for (XWikiAttachment att : doc.getAttachmentList()) {
+      size += ATTACHMENT_BYTES;
+      if (att.getAttachment_content() != null) {
+        size += att.getFilesize();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return the estimated heap size of the exists index in bytes, 0 if it's disabled
+   */
+  public long getExistsIndexMemoryFootprint() {
+    return existsIndex.get().map(DocumentExistsIndex::getMemoryFootprint).orElse(0L);
   }
 
   /**
@@ -354,6 +564,14 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
     return getDocCache().get(key);
   }
 
+  /**
+   * the given key instance is to be carried through the whole load, exists and remove path since
+   * it builds its string form only once
+   */
+  private XWikiDocument getDocFromCache(DocCacheKey key) {
+    return getDocCache().get(key.toString());
+  }
+
   /**
    * getCache is private, thus for tests we need getExistFromCache to check the cache state
    */
@@ -366,6 +584,7 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
       throws XWikiException {
     getBackingStore().deleteXWikiDoc(doc, context);
     removeDocFromCache(doc, false);
+    invalidationChannel.publish(doc.getDocumentReference(), doc.getLanguage(), null);
   }
 
   @Override
@@ -381,14 +600,17 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
 
   // FIXME [CELDEV-924] Store add lang support for exists check and cache
   private boolean existsInternal(XWikiDocument doc, XWikiContext context) throws XWikiException {
-    String key = getKey(doc.getDocumentReference());
-    Boolean result = getExistCache().get(key);
+    DocCacheKey key = getCacheKey(doc.getDocumentReference(), "");
+    // the index answers without touching the exists cache
+    Boolean result = existsIndex.get()
+        .flatMap(index -> index.exists(getContextWikiDocRef(doc.getDocumentReference())))
+        .orElseGet(() -> getExistCache().get(key.toString()));
     if (result == null) {
-      result = (getDocCache().get(key) != null);
+      result = (getDocFromCache(key) != null);
       if (!result) {
         result = getBackingStore().exists(doc, context);
       }
-      getExistCache().set(key, result);
+      setExistCache(key, result);
     }
     LOGGER.trace("exists return '{}' for '{}'", result, key);
     return result;
@@ -399,12 +621,12 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
     return this.docCache;
   }
 
-  private void setDocCache(String key, XWikiDocument doc) {
+  private void setDocCache(DocCacheKey key, XWikiDocument doc) {
     LOGGER.debug("setDocCache - {}{}", key, (doc == null ? " removed" : ""));
     if (doc == null) {
-      getDocCache().remove(key);
+      getDocCache().remove(key.toString());
     } else {
-      getDocCache().set(key, doc);
+      getDocCache().set(key.toString(), doc);
     }
   }
 
@@ -413,22 +635,19 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
     return this.existCache;
   }
 
-  private void setExistCache(String key, Boolean exists) {
+  private void setExistCache(DocCacheKey key, Boolean exists) {
     LOGGER.debug("setExistCache - {} to {}", key, exists);
     if (exists == null) {
-      getExistCache().remove(key);
+      getExistCache().remove(key.toString());
     } else {
-      getExistCache().set(key, exists);
+      getExistCache().set(key.toString(), exists);
     }
   }
 
-  private void setExistCache(XWikiDocument doc, Boolean exists) {
-    setExistCache(getKeyWithLang(doc), exists);
-  }
-
   enum InvalidateState {
 
-    CACHE_MISS, REMOVED, LOADING_CANCELED, LOADING_MULTI_CANCELED, LOADING_CANCEL_FAILED
+    CACHE_MISS, REMOVED, LOADING_CANCELED, LOADING_MULTI_CANCELED, LOADING_CANCEL_FAILED,
+    UP_TO_DATE
 
   }
 
@@ -438,7 +657,7 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
   private class DocumentLoader {
 
     private volatile XWikiDocument loadedDoc;
-    private final String key;
+    private final DocCacheKey key;
 
     /**
      * if loadingState equals _DOCSTATE_LOADING than a valid loading is about to start or in process
@@ -449,7 +668,7 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
      */
     private final AtomicInteger loadingState = new AtomicInteger(DOCSTATE_LOADING);
 
-    private DocumentLoader(String key) {
+    private DocumentLoader(DocCacheKey key) {
       this.key = key;
     }
 
@@ -476,8 +695,18 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
      * It is a very delicate case and very likely memory visibility breaks in less than 1 out of
      * 100'000 document loads. Thus it is difficult to test for correctness.
      */
-    private XWikiDocument loadDocument(String key, XWikiDocument doc, XWikiContext context)
+    private XWikiDocument loadDocument(DocCacheKey key, XWikiDocument doc, XWikiContext context)
         throws XWikiException {
+      return loadDocument(key, doc, null, context);
+    }
+
+    /**
+     * @param preloadedDoc
+     *          may be null, is only used if no invalidation happened since the creation of this
+     *          loader, otherwise the document is reloaded
+     */
+    private XWikiDocument loadDocument(DocCacheKey key, XWikiDocument doc,
+        XWikiDocument preloadedDoc, XWikiContext context) throws XWikiException {
       checkArgument(key);
       if (loadedDoc == null) {
         synchronized (this) {
@@ -485,25 +714,32 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
             // if a thread is just between the document cache miss and getting the documentLoader
             // when the documentLoader removes itself from the map, then a new documentLoader is
             // generated. Therefore we double check here that still no document is in cache.
-            XWikiDocument loadingDoc = getDocCache().get(key);
+            XWikiDocument loadingDoc = getDocFromCache(key);
             if (loadingDoc == null) {
               XWikiDocument newDoc = null;
-              do {
-                if ((loadingState.getAndSet(DOCSTATE_LOADING) < DOCSTATE_LOADING)
-                    && (newDoc != null)) {
-                  LOGGER_DL.info("DocumentLoader-{}: invalidated docloader '{}' reloading",
-                      Thread.currentThread().getId(), key);
-                }
-                // use a further synchronized method call to prevent an unsafe publication of the
-                // new document over the cache
-                newDoc = new DocumentBuilder().buildDocument(key, doc, context);
-              } while (!loadingState.compareAndSet(DOCSTATE_LOADING, DOCSTATE_FINISHED));
+              if ((preloadedDoc != null)
+                  && loadingState.compareAndSet(DOCSTATE_LOADING, DOCSTATE_FINISHED)) {
+                newDoc = preloadedDoc;
+              } else {
+                do {
+                  if ((loadingState.getAndSet(DOCSTATE_LOADING) < DOCSTATE_LOADING)
+                      && (newDoc != null)) {
+                    LOGGER_DL.info("DocumentLoader-{}: invalidated docloader '{}' reloading",
+                        Thread.currentThread().getId(), key);
+                  }
+                  // use a further synchronized method call to prevent an unsafe publication of
+                  // the new document over the cache
+                  newDoc = new DocumentBuilder().buildDocument(key, doc, context);
+                } while (!loadingState.compareAndSet(DOCSTATE_LOADING, DOCSTATE_FINISHED));
+              }
               LOGGER_DL.debug("DocumentLoader-{}: put doc '{}' in cache",
                   Thread.currentThread().getId(), key);
-              final String keyWithLang = getKeyWithLang(newDoc);
+              // reuse the requested key instance, its string form is already built
+              DocCacheKey newDocKey = getCacheKey(newDoc);
+              final DocCacheKey keyWithLang = newDocKey.equals(key) ? key : newDocKey;
               if (!newDoc.isNew()) {
                 setDocCache(keyWithLang, newDoc);
-                setExistCache(getKey(newDoc.getDocumentReference()), true);
+                setExistCache(keyWithLang.withoutLang(), true);
                 setExistCache(keyWithLang, true);
               } else {
                 LOGGER_DL.debug("DocumentLoader-{}: loading '{}' failed. Setting exists"
@@ -525,7 +761,7 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
       return loadedDoc;
     }
 
-    private void checkArgument(String key) {
+    private void checkArgument(DocCacheKey key) {
       if (!this.key.equals(key)) {
         throw new RuntimeException(
             "DocumentLoader illegally used with a different key (registered key:" + this.key
@@ -535,14 +771,11 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
 
     private class DocumentBuilder {
 
-      private synchronized XWikiDocument buildDocument(String key, XWikiDocument doc,
+      private synchronized XWikiDocument buildDocument(DocCacheKey key, XWikiDocument doc,
           XWikiContext context) throws XWikiException {
         LOGGER_DL.trace("DocumentLoader-{}: Trying to get doc '{}' for real",
             Thread.currentThread().getId(), key);
-        // IMPORTANT: do not clone here. Creating new document is much faster.
-        XWikiDocument buildDoc = createEmptyXWikiDoc(doc);
-        buildDoc.setLanguage(doc.getLanguage());
-        buildDoc = getBackingStore().loadXWikiDoc(buildDoc, context);
+        XWikiDocument buildDoc = getBackingStore().loadXWikiDoc(createBuildDoc(doc), context);
         buildDoc.setFromCache(!buildDoc.isNew());
         return buildDoc;
       }
@@ -550,10 +783,15 @@ public class DocumentCacheStore extends DelegateStore implements XWikiCacheStore
     }
   }
 
+  private XWikiDocument createBuildDoc(XWikiDocument doc) {
+    // IMPORTANT: do not clone here. Creating new document is much faster.
+    XWikiDocument buildDoc = createEmptyXWikiDoc(doc);
+    buildDoc.setLanguage(doc.getLanguage());
+    return buildDoc;
+  }
+
   private XWikiDocument createEmptyXWikiDoc(XWikiDocument doc) {
-    DocumentReference docRef = RefBuilder.from(doc.getDocumentReference())
-        .with(modelContext.getWikiRef())
-        .build(DocumentReference.class);
+    DocumentReference docRef = getContextWikiDocRef(doc.getDocumentReference());
     XWikiDocument newDoc = docCreator.createWithoutDefaults(docRef, doc.getLanguage());
     newDoc.setDefaultLanguage(doc.getDefaultLanguage());
     return newDoc;
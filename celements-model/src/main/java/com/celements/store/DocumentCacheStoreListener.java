@@ -15,6 +15,8 @@ import org.xwiki.observation.EventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
 
+import com.celements.store.invalidation.DocumentInvalidationChannel;
+import com.celements.store.invalidation.DocumentInvalidationEvent;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 
@@ -31,6 +33,9 @@ public class DocumentCacheStoreListener implements EventListener {
   @Requirement(DocumentCacheStore.COMPONENT_NAME)
   private XWikiStoreInterface docCacheStore;
 
+  @Requirement
+  private DocumentInvalidationChannel invalidationChannel;
+
   /**
    * {@inheritDoc}
    *
@@ -49,7 +54,7 @@ public class DocumentCacheStoreListener implements EventListener {
   @Override
   public List<Event> getEvents() {
     return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(),
-        new DocumentDeletedEvent(), new WikiDeletedEvent());
+        new DocumentDeletedEvent(), new WikiDeletedEvent(), new DocumentInvalidationEvent());
   }
 
   /**
@@ -68,12 +73,28 @@ public class DocumentCacheStoreListener implements EventListener {
         LOGGER.info("WikiDeletedEvent '{}': completely flushing DocumentCacheStore",
             wikiEvent.getWikiId());
         getDocCacheStore().flushCache();
+      } else if (event instanceof DocumentInvalidationEvent) {
+        DocumentInvalidationEvent invalidationEvent = (DocumentInvalidationEvent) event;
+        LOGGER.debug("DocumentInvalidationEvent: invalidating doc cache for {}",
+            invalidationEvent.getInvalidations());
+        invalidationEvent.getInvalidations().forEach(getDocCacheStore()::removeDocFromCache);
+        invalidationChannel.received(invalidationEvent);
+      } else if (invalidationChannel.isEnabled()
+          && !invalidationChannel.isDocumentEventFallback()) {
+        LOGGER.trace("DocumentEvent: skipped, invalidated by DocumentInvalidationEvent");
       } else {
         XWikiDocument doc = (XWikiDocument) source;
-        LOGGER.info("DocumentEvent: invalidating doc cache for '{}'", doc.getDocumentReference());
-        getDocCacheStore().removeDocFromCache(doc, getDocExists(event));
-        LOGGER.debug("DocumentEvent: after invalidating doc cache for '{}'",
-            doc.getDocumentReference());
+        // with the fallback enabled, skipped if a batch already invalidated the saved version
+        if (invalidationChannel.isEnabled() && getDocExists(event)
+            && getDocCacheStore().isCachedVersion(doc, doc.getVersion())) {
+          LOGGER.trace("DocumentEvent: skipped, already invalidated by DocumentInvalidationEvent");
+        } else {
+          LOGGER.info("DocumentEvent: invalidating doc cache for '{}'",
+              doc.getDocumentReference());
+          getDocCacheStore().removeDocFromCache(doc, getDocExists(event));
+          LOGGER.debug("DocumentEvent: after invalidating doc cache for '{}'",
+              doc.getDocumentReference());
+        }
       }
     }
   }
@@ -0,0 +1,200 @@
+package com.celements.store;
+
+import static com.celements.model.util.ReferenceSerializationMode.*;
+import static com.google.common.base.Preconditions.*;
+import static com.google.common.collect.ImmutableSet.*;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.celements.model.reference.RefBuilder;
+import com.celements.model.util.ModelUtils;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Index of all existing documents and their languages per wiki. It answers exists checks, also
+ * negative ones, without accessing the database. The index of a wiki is built with a single query
+ * on its first access and afterwards kept in sync with {@link #add} and {@link #remove}.
+ */
+@ThreadSafe
+class DocumentExistsIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DocumentExistsIndex.class);
+
+  private static final Set<String> DEFAULT_LANG_ONLY = ImmutableSet.of("");
+
+  /**
+   * rough estimates for a 64-bit JVM with compressed oops
+   */
+  private static final int ENTRY_OVERHEAD_BYTES = 32 + 24 + 16;
+  private static final int LANG_SET_BYTES = 48;
+
+  private final Supplier<QueryManager> queryManager;
+  private final ModelUtils modelUtils;
+  private final ConcurrentMap<WikiReference, WikiIndex> wikiIndexMap = new ConcurrentHashMap<>();
+
+  DocumentExistsIndex(@NotNull Supplier<QueryManager> queryManager,
+      @NotNull ModelUtils modelUtils) {
+    this.queryManager = checkNotNull(queryManager);
+    this.modelUtils = checkNotNull(modelUtils);
+  }
+
+  /**
+   * @return empty if the index of the wiki isn't available (yet), else if the document exists in
+   *         any language
+   */
+  @NotNull
+  Optional<Boolean> exists(@NotNull DocumentReference docRef) {
+    return getBuiltWikiIndex(docRef.getWikiReference())
+        .map(index -> index.docs.containsKey(getKey(docRef)));
+  }
+
+  /**
+   * @return empty if the index of the wiki isn't available (yet), else if the document exists in
+   *         the given language
+   */
+  @NotNull
+  Optional<Boolean> exists(@NotNull DocumentReference docRef, String lang) {
+    return getBuiltWikiIndex(docRef.getWikiReference())
+        .map(index -> index.docs.getOrDefault(getKey(docRef), ImmutableSet.of())
+            .contains(Strings.nullToEmpty(lang)));
+  }
+
+  void add(@NotNull DocumentReference docRef, String lang) {
+    WikiIndex index = wikiIndexMap.get(docRef.getWikiReference());
+    if (index != null) {
+      index.add(getKey(docRef), Strings.nullToEmpty(lang));
+    }
+  }
+
+  void remove(@NotNull DocumentReference docRef, String lang) {
+    WikiIndex index = wikiIndexMap.get(docRef.getWikiReference());
+    if (index != null) {
+      index.remove(getKey(docRef), Strings.nullToEmpty(lang));
+    }
+  }
+
+  /**
+   * drops the index of all wikis, they are rebuilt on their next access
+   */
+  void clear() {
+    wikiIndexMap.clear();
+  }
+
+  /**
+   * @return the amount of indexed documents (without translations) over all wikis
+   */
+  long size() {
+    return wikiIndexMap.values().stream().mapToLong(index -> index.docs.size()).sum();
+  }
+
+  /**
+   * @return the estimated heap size of the index over all wikis in bytes
+   */
+  long getMemoryFootprint() {
+    return wikiIndexMap.values().stream().mapToLong(WikiIndex::getMemoryFootprint).sum();
+  }
+
+  private Optional<WikiIndex> getBuiltWikiIndex(WikiReference wikiRef) {
+    WikiIndex index = wikiIndexMap.computeIfAbsent(wikiRef, WikiIndex::new);
+    if (!index.built && index.building.compareAndSet(false, true)) {
+      index.build();
+    }
+    return Optional.of(index).filter(i -> i.built);
+  }
+
+  private String getKey(DocumentReference docRef) {
+    return modelUtils.serializeRef(docRef, LOCAL);
+  }
+
+  private final class WikiIndex {
+
+    private final WikiReference wikiRef;
+    private final ConcurrentMap<String, Set<String>> docs = new ConcurrentHashMap<>();
+    private final Set<String> removedWhileBuilding = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean building = new AtomicBoolean(false);
+    private volatile boolean built = false;
+
+    private WikiIndex(WikiReference wikiRef) {
+      this.wikiRef = wikiRef;
+    }
+
+    private void build() {
+      long time = System.currentTimeMillis();
+      try {
+        Query query = queryManager.get().createQuery(
+            "select doc.space, doc.name, doc.language from XWikiDocument as doc", Query.HQL);
+        query.setWiki(wikiRef.getName());
+        for (Object[] row : query.<Object[]>execute()) {
+          String key = getKey(RefBuilder.create().with(wikiRef).space((String) row[0])
+              .doc((String) row[1]).build(DocumentReference.class));
+          String lang = Strings.nullToEmpty((String) row[2]);
+          // docs deleted during the build may still be returned by the query
+          if (!removedWhileBuilding.contains(key + ":" + lang)) {
+            add(key, lang);
+          }
+        }
+        removedWhileBuilding.clear();
+        built = true;
+        LOGGER.info("build: indexed {} docs in {}ms for wiki [{}] with ~{} bytes", docs.size(),
+            System.currentTimeMillis() - time, wikiRef.getName(), getMemoryFootprint());
+      } catch (QueryException | IllegalArgumentException exc) {
+        // the index stays unavailable for this wiki until cleared
+        LOGGER.warn("build: failed for wiki [{}]", wikiRef.getName(), exc);
+      }
+    }
+
+    private void add(String key, String lang) {
+      if (!built) {
+        removedWhileBuilding.remove(key + ":" + lang);
+      }
+      docs.merge(key, newLangSet(lang), (langs, newLang) -> (langs.containsAll(newLang))
+          ? langs
+          : ImmutableSet.<String>builder().addAll(langs).addAll(newLang).build());
+    }
+
+    private void remove(String key, String lang) {
+      if (!built) {
+        removedWhileBuilding.add(key + ":" + lang);
+      }
+      docs.computeIfPresent(key, (k, langs) -> {
+        Set<String> remainingLangs = langs.stream()
+            .filter(l -> !l.equals(lang))
+            .collect(toImmutableSet());
+        if (remainingLangs.isEmpty()) {
+          return null;
+        }
+        return remainingLangs.equals(DEFAULT_LANG_ONLY) ? DEFAULT_LANG_ONLY : remainingLangs;
+      });
+    }
+
+    private Set<String> newLangSet(String lang) {
+      return lang.isEmpty() ? DEFAULT_LANG_ONLY : ImmutableSet.of(lang);
+    }
+
+    private long getMemoryFootprint() {
+      return docs.entrySet().stream()
+          .mapToLong(entry -> ENTRY_OVERHEAD_BYTES + (2L * entry.getKey().length())
+              + ((entry.getValue() == DEFAULT_LANG_ONLY) ? 0 : LANG_SET_BYTES))
+          .sum();
+    }
+
+  }
+
+}
@@ -0,0 +1,291 @@
+package com.celements.store;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+/**
+ * {@link Cache} bounded by the summed up weight of its values instead of their count. It follows
+ * the W-TinyLFU policy: new entries are put into a small LRU admission window, entries leaving the
+ * window are only admitted to the main LRU space if they have been accessed more frequently than
+ * the entries they would evict. Thus one-off accesses, e.g. by crawlers, do not flush hot entries.
+ * <br>
+ * Reads are lock free, their access recording is skipped if the eviction lock is contended.
+ * Cache entry listeners are notified after the eviction lock has been released, evicted entries
+ * are notified as removed.
+ */
+@ThreadSafe
+class WeightedLfuCache<T> implements Cache<T> {
+
+  /**
+   * share of the maximum weight reserved for the admission window
+   */
+  static final double WINDOW_RATIO = 0.01;
+
+  private final long maxWeight;
+  private final long windowMaxWeight;
+  private final ToLongFunction<T> weigher;
+  private final ConcurrentMap<String, Node<T>> data = new ConcurrentHashMap<>();
+  private final List<CacheEntryListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  // CAUTION: all the following fields are guarded by evictionLock
+  private final LinkedHashMap<String, Node<T>> window = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Node<T>> main = new LinkedHashMap<>(16, 0.75f, true);
+  private final FrequencySketch sketch;
+  private long windowWeight = 0;
+  private long mainWeight = 0;
+
+  /**
+   * @param maxWeight
+   *          the maximum summed up weight of all cached values
+   * @param expectedEntries
+   *          the expected amount of cached values, determines the accuracy of the frequency
+   *          estimation
+   * @param weigher
+   *          calculates the weight of a value, it has to stay constant while the value is cached
+   */
+  WeightedLfuCache(long maxWeight, int expectedEntries, @NotNull ToLongFunction<T> weigher) {
+    checkArgument(maxWeight > 0, "maxWeight must be positive");
+    this.maxWeight = maxWeight;
+    this.windowMaxWeight = Math.max(1, (long) (maxWeight * WINDOW_RATIO));
+    this.weigher = checkNotNull(weigher);
+    this.sketch = new FrequencySketch(expectedEntries);
+  }
+
+  @Override
+  public T get(String key) {
+    Node<T> node = data.get(key);
+    if (evictionLock.tryLock()) {
+      try {
+        sketch.increment(key);
+        if ((node != null) && (window.get(key) == null)) {
+          main.get(key);
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return (node != null) ? node.value : null;
+  }
+
+  @Override
+  public void set(String key, T value) {
+    checkNotNull(value);
+    long weight = Math.max(1, weigher.applyAsLong(value));
+    Node<T> node = null;
+    Node<T> replaced;
+    List<Node<T>> removed = new ArrayList<>();
+    evictionLock.lock();
+    try {
+      sketch.increment(key);
+      if (weight <= (maxWeight - windowMaxWeight)) {
+        node = new Node<>(key, value, weight);
+        replaced = unlink(data.put(key, node));
+        window.put(key, node);
+        windowWeight += weight;
+        evictWindow(removed);
+      } else {
+        replaced = null;
+        removed.add(unlink(data.remove(key))); // too heavy to be ever admitted
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    if (node != null) {
+      notify(node, (replaced != null) ? CacheEntryListener::cacheEntryModified
+          : CacheEntryListener::cacheEntryAdded);
+    }
+    notifyRemoved(removed);
+  }
+
+  @Override
+  public void remove(String key) {
+    Node<T> removed;
+    evictionLock.lock();
+    try {
+      removed = unlink(data.remove(key));
+    } finally {
+      evictionLock.unlock();
+    }
+    notifyRemoved(Collections.singletonList(removed));
+  }
+
+  @Override
+  public void removeAll() {
+    List<Node<T>> removed;
+    evictionLock.lock();
+    try {
+      removed = listeners.isEmpty() ? Collections.emptyList() : new ArrayList<>(data.values());
+      data.clear();
+      window.clear();
+      main.clear();
+      windowWeight = 0;
+      mainWeight = 0;
+    } finally {
+      evictionLock.unlock();
+    }
+    notifyRemoved(removed);
+  }
+
+  @Override
+  public void dispose() {
+    removeAll();
+    listeners.clear();
+  }
+
+  @Override
+  public void addCacheEntryListener(CacheEntryListener<T> listener) {
+    listeners.add(checkNotNull(listener));
+  }
+
+  @Override
+  public void removeCacheEntryListener(CacheEntryListener<T> listener) {
+    listeners.remove(listener);
+  }
+
+  int size() {
+    return data.size();
+  }
+
+  long getWeight() {
+    evictionLock.lock();
+    try {
+      return windowWeight + mainWeight;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  long getMaxWeight() {
+    return maxWeight;
+  }
+
+  private Node<T> unlink(Node<T> node) {
+    if (node != null) {
+      if (window.remove(node.key, node)) {
+        windowWeight -= node.weight;
+      } else if (main.remove(node.key, node)) {
+        mainWeight -= node.weight;
+      }
+    }
+    return node;
+  }
+
+  private void evictWindow(List<Node<T>> evicted) {
+    Iterator<Node<T>> iter = window.values().iterator();
+    while ((windowWeight > windowMaxWeight) && iter.hasNext()) {
+      Node<T> candidate = iter.next();
+      iter.remove();
+      windowWeight -= candidate.weight;
+      admit(candidate, evicted);
+    }
+  }
+
+  /**
+   * the candidate is admitted to the main space if it is more frequently accessed than each of the
+   * least recently used entries it would evict, else the candidate itself is evicted.
+   */
+  private void admit(Node<T> candidate, List<Node<T>> evicted) {
+    int candidateFrequency = sketch.frequency(candidate.key);
+    long excess = (mainWeight + candidate.weight) - (maxWeight - windowMaxWeight);
+    List<Node<T>> victims = new ArrayList<>();
+    Iterator<Node<T>> iter = main.values().iterator();
+    while ((excess > 0) && iter.hasNext()) {
+      Node<T> victim = iter.next();
+      if (sketch.frequency(victim.key) >= candidateFrequency) {
+        data.remove(candidate.key, candidate);
+        evicted.add(candidate);
+        return;
+      }
+      victims.add(victim);
+      excess -= victim.weight;
+    }
+    for (Node<T> victim : victims) {
+      main.remove(victim.key);
+      mainWeight -= victim.weight;
+      data.remove(victim.key, victim);
+      evicted.add(victim);
+    }
+    main.put(candidate.key, candidate);
+    mainWeight += candidate.weight;
+  }
+
+  private void notifyRemoved(List<Node<T>> removed) {
+    for (Node<T> node : removed) {
+      if (node != null) {
+        notify(node, CacheEntryListener::cacheEntryRemoved);
+      }
+    }
+  }
+
+  private void notify(Node<T> node, BiConsumer<CacheEntryListener<T>, CacheEntryEvent<T>> call) {
+    if (!listeners.isEmpty()) {
+      EntryEvent event = new EntryEvent(node);
+      listeners.forEach(listener -> call.accept(listener, event));
+    }
+  }
+
+  private final class EntryEvent implements CacheEntryEvent<T>, CacheEntry<T> {
+
+    private final Node<T> node;
+
+    private EntryEvent(Node<T> node) {
+      this.node = node;
+    }
+
+    @Override
+    public Cache<T> getCache() {
+      return WeightedLfuCache.this;
+    }
+
+    @Override
+    public CacheEntry<T> getEntry() {
+      return this;
+    }
+
+    @Override
+    public String getKey() {
+      return node.key;
+    }
+
+    @Override
+    public T getValue() {
+      return node.value;
+    }
+
+  }
+
+  private static final class Node<T> {
+
+    private final String key;
+    private final T value;
+    private final long weight;
+
+    private Node(String key, T value, long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+  }
+
+}
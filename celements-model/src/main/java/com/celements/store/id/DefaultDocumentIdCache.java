@@ -0,0 +1,100 @@
+package com.celements.store.id;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.configuration.CelementsAllPropertiesConfigurationSource;
+import com.celements.model.util.ModelUtils;
+import com.google.common.base.Strings;
+
+@Component
+public class DefaultDocumentIdCache implements DocumentIdCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDocumentIdCache.class);
+
+  public static final String PARAM_CAPACITY = "celements.store.docIdCache.capacity";
+
+  @Requirement
+  private CacheManager cacheManager;
+
+  @Requirement
+  private ModelUtils modelUtils;
+
+  @Requirement(CelementsAllPropertiesConfigurationSource.NAME)
+  private ConfigurationSource cfgSrc;
+
+  /**
+   * CAUTION: Lazy initialized of cache thus volatile is needed.
+   */
+  private volatile Cache<DocumentId> cache;
+
+  private Cache<DocumentId> getCache() {
+    if (this.cache == null) {
+      synchronized (this) {
+        if (this.cache == null) {
+          this.cache = newCache();
+        }
+      }
+    }
+    return this.cache;
+  }
+
+  private Cache<DocumentId> newCache() {
+    try {
+      CacheConfiguration config = new CacheConfiguration();
+      config.setConfigurationId("celements.store.docidcache");
+      LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+      lru.setMaxEntries(Math.max(1, cfgSrc.getProperty(PARAM_CAPACITY, 10000)));
+      config.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
+      return cacheManager.getCacheFactory().newCache(config);
+    } catch (CacheException | ComponentLookupException exc) {
+      throw new IllegalStateException("FATAL: Failed to initialize document id cache.", exc);
+    }
+  }
+
+  String getKey(DocumentReference docRef, String lang) {
+    String key = modelUtils.serializeRef(checkNotNull(docRef));
+    return Strings.isNullOrEmpty(lang) ? key : (key + ":" + lang);
+  }
+
+  @Override
+  public Optional<DocumentId> get(DocumentReference docRef, String lang) {
+    Optional<DocumentId> docId = Optional.ofNullable(getCache().get(getKey(docRef, lang)));
+    LOGGER.trace("get - [{}] [{}]: {}", docRef, lang, docId);
+    return docId;
+  }
+
+  @Override
+  public void put(DocumentReference docRef, String lang, DocumentId docId) {
+    LOGGER.trace("put - [{}] [{}]: {}", docRef, lang, docId);
+    getCache().set(getKey(docRef, lang), checkNotNull(docId));
+  }
+
+  @Override
+  public void remove(DocumentReference docRef, String lang) {
+    LOGGER.trace("remove - [{}] [{}]", docRef, lang);
+    getCache().remove(getKey(docRef, lang));
+  }
+
+  @Override
+  public void clear() {
+    LOGGER.info("clear");
+    getCache().removeAll();
+  }
+
+}
@@ -0,0 +1,54 @@
+package com.celements.store.id;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Objects;
+
+import javax.annotation.concurrent.Immutable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * immutable pair of a persisted document id and the {@link IdVersion} it was computed with
+ */
+@Immutable
+public final class DocumentId {
+
+  private final long id;
+  private final IdVersion idVersion;
+
+  public DocumentId(long id, @NotNull IdVersion idVersion) {
+    this.id = id;
+    this.idVersion = checkNotNull(idVersion);
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  @NotNull
+  public IdVersion getIdVersion() {
+    return idVersion;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, idVersion);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (obj instanceof DocumentId) {
+      DocumentId other = (DocumentId) obj;
+      return (this.id == other.id) && (this.idVersion == other.idVersion);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return id + " (" + idVersion + ")";
+  }
+
+}
@@ -0,0 +1,28 @@
+package com.celements.store.id;
+
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.component.annotation.ComponentRole;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Caches the resolution of a document (reference and language) to its persisted
+ * {@link DocumentId}. Since the id of a document may not be computed directly (collisions and
+ * different {@link IdVersion}s), resolving it otherwise requires a database query on every load.
+ */
+@ComponentRole
+public interface DocumentIdCache {
+
+  @NotNull
+  Optional<DocumentId> get(@NotNull DocumentReference docRef, @Nullable String lang);
+
+  void put(@NotNull DocumentReference docRef, @Nullable String lang, @NotNull DocumentId docId);
+
+  void remove(@NotNull DocumentReference docRef, @Nullable String lang);
+
+  void clear();
+
+}
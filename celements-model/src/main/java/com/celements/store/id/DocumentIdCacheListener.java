@@ -0,0 +1,63 @@
+package com.celements.store.id;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * invalidates the {@link DocumentIdCache} for documents created or deleted on other cluster nodes.
+ * local changes are already taken into account by the store.
+ */
+@Component(DocumentIdCacheListener.COMPONENT_NAME)
+public class DocumentIdCacheListener implements EventListener {
+
+  public static final String COMPONENT_NAME = "DocumentIdCacheListener";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DocumentIdCache.class);
+
+  @Requirement
+  private RemoteObservationManagerContext remoteObservationManagerContext;
+
+  @Requirement
+  private DocumentIdCache docIdCache;
+
+  @Override
+  public String getName() {
+    return COMPONENT_NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentDeletedEvent(),
+        new WikiDeletedEvent());
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    if (remoteObservationManagerContext.isRemoteState()) {
+      if (event instanceof WikiDeletedEvent) {
+        LOGGER.info("WikiDeletedEvent '{}': clearing doc id cache",
+            ((WikiDeletedEvent) event).getWikiId());
+        docIdCache.clear();
+      } else {
+        XWikiDocument doc = (XWikiDocument) source;
+        LOGGER.debug("DocumentEvent: invalidating doc id cache for '{}'",
+            doc.getDocumentReference());
+        docIdCache.remove(doc.getDocumentReference(), doc.getLanguage());
+      }
+    }
+  }
+
+}
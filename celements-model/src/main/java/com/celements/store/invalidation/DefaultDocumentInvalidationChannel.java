@@ -0,0 +1,177 @@
+package com.celements.store.invalidation;
+
+import static com.celements.model.util.ReferenceSerializationMode.*;
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.remote.NetworkAdapter;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
+
+import com.celements.configuration.CelementsAllPropertiesConfigurationSource;
+import com.celements.model.util.ModelUtils;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+@Component
+public class DefaultDocumentInvalidationChannel implements DocumentInvalidationChannel {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+      DefaultDocumentInvalidationChannel.class);
+
+  private static final String PARAM_PREFIX = "celements.store.docCache.invalidation";
+  public static final String PARAM_ENABLED = PARAM_PREFIX + ".enabled";
+  public static final String PARAM_BATCH_DELAY = PARAM_PREFIX + ".batchDelayMs";
+  public static final String PARAM_DOC_EVENT_FALLBACK = PARAM_PREFIX + ".documentEventFallback";
+
+  @Requirement(CelementsAllPropertiesConfigurationSource.NAME)
+  private ConfigurationSource cfgSrc;
+
+  @Requirement
+  private RemoteObservationManagerConfiguration remoteCfg;
+
+  @Requirement
+  private ComponentManager componentManager;
+
+  @Requirement
+  private ModelUtils modelUtils;
+
+  private final Supplier<Boolean> enabled = Suppliers.memoize(
+      () -> cfgSrc.getProperty(PARAM_ENABLED, false) && remoteCfg.isEnabled());
+
+  private final Supplier<Boolean> documentEventFallback = Suppliers.memoize(
+      () -> cfgSrc.getProperty(PARAM_DOC_EVENT_FALLBACK, false));
+
+  private final Supplier<NetworkAdapter> networkAdapter = Suppliers.memoize(() -> {
+    try {
+      return componentManager.lookup(NetworkAdapter.class, remoteCfg.getNetworkAdapter());
+    } catch (ComponentLookupException exc) {
+      throw new IllegalStateException("failed to lookup network adapter", exc);
+    }
+  });
+
+  private final Supplier<ScheduledExecutorService> executor = Suppliers.memoize(
+      () -> Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("cel-doc-invalidation-%d").setDaemon(true).build()));
+
+  /**
+   * pending invalidations by their coalesce key, a later one replaces an earlier
+   */
+  private final ConcurrentMap<String, DocumentInvalidation> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+  private final LongAdder publishedCount = new LongAdder();
+  private final LongAdder sentCount = new LongAdder();
+  private final LongAdder sentBatchCount = new LongAdder();
+  private final LongAdder sentPayload = new LongAdder();
+  private final LongAdder receivedCount = new LongAdder();
+  private final LongAdder receivedBatchCount = new LongAdder();
+  private final LongAdder receivedPayload = new LongAdder();
+  private final LongAdder latencySumMillis = new LongAdder();
+  private final LongAccumulator latencyMaxMillis = new LongAccumulator(Math::max, 0);
+
+  @Override
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  @Override
+  public boolean isDocumentEventFallback() {
+    return documentEventFallback.get();
+  }
+
+  @Override
+  public void publish(DocumentReference docRef, String lang, String version) {
+    if (isEnabled()) {
+      DocumentInvalidation invalidation = new DocumentInvalidation(
+          docRef.getWikiReference().getName(), modelUtils.serializeRef(docRef, LOCAL), lang,
+          version);
+      pending.put(invalidation.getCoalesceKey(), invalidation);
+      publishedCount.increment();
+      if (flushScheduled.compareAndSet(false, true)) {
+        executor.get().schedule(this::flush, getBatchDelay(), MILLISECONDS);
+      }
+    }
+  }
+
+  private long getBatchDelay() {
+    return Math.max(0, cfgSrc.getProperty(PARAM_BATCH_DELAY, 5));
+  }
+
+  /**
+   * sends all pending invalidations as one batch
+   */
+  void flush() {
+    flushScheduled.set(false);
+    List<DocumentInvalidation> batch = new ArrayList<>();
+    for (String key : pending.keySet()) {
+      DocumentInvalidation invalidation = pending.remove(key);
+      if (invalidation != null) {
+        batch.add(invalidation);
+      }
+    }
+    if (!batch.isEmpty()) {
+      try {
+        DocumentInvalidationEvent event = new DocumentInvalidationEvent(batch,
+            System.currentTimeMillis());
+        RemoteEventData remoteEvent = new RemoteEventData();
+        remoteEvent.setEvent(event);
+        networkAdapter.get().send(remoteEvent);
+        sentBatchCount.increment();
+        sentCount.add(batch.size());
+        sentPayload.add(event.getPayloadLength());
+        LOGGER.debug("flush: sent {}", batch);
+      } catch (RuntimeException exc) {
+        LOGGER.error("flush: failed to send {}", batch, exc);
+      }
+    }
+  }
+
+  @Override
+  public void received(DocumentInvalidationEvent event) {
+    receivedBatchCount.increment();
+    receivedCount.add(event.getInvalidations().size());
+    receivedPayload.add(event.getPayloadLength());
+    long latency = Math.max(0, System.currentTimeMillis() - event.getSentTimeMillis());
+    latencySumMillis.add(latency);
+    latencyMaxMillis.accumulate(latency);
+  }
+
+  @Override
+  public Map<String, Long> getMetrics() {
+    long batches = receivedBatchCount.sum();
+    return ImmutableMap.<String, Long>builder()
+        .put("pending", (long) pending.size())
+        .put("published", publishedCount.sum())
+        .put("sent", sentCount.sum())
+        .put("sentBatches", sentBatchCount.sum())
+        .put("sentPayload", sentPayload.sum())
+        .put("received", receivedCount.sum())
+        .put("receivedBatches", batches)
+        .put("receivedPayload", receivedPayload.sum())
+        .put("latencyAvgMillis", (batches > 0) ? (latencySumMillis.sum() / batches) : 0L)
+        .put("latencyMaxMillis", latencyMaxMillis.get())
+        .build();
+  }
+
+}
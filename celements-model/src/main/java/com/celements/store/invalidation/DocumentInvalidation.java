@@ -0,0 +1,105 @@
+package com.celements.store.invalidation;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.validation.constraints.NotNull;
+
+import com.google.common.base.Strings;
+
+/**
+ * immutable (wiki, docKey, lang, version) tuple invalidating a document translation in the caches
+ * of the other cluster nodes. An absent version denotes a deleted document.
+ */
+@Immutable
+public final class DocumentInvalidation implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String wiki;
+  private final String docKey;
+  private final String lang;
+  private final String version;
+
+  /**
+   * @param docKey
+   *          the local serialized document reference, e.g. "Space.Doc"
+   * @param version
+   *          the saved version or null if the document has been deleted
+   */
+  public DocumentInvalidation(@NotNull String wiki, @NotNull String docKey, @Nullable String lang,
+      @Nullable String version) {
+    this.wiki = checkNotNull(Strings.emptyToNull(wiki));
+    this.docKey = checkNotNull(Strings.emptyToNull(docKey));
+    this.lang = Strings.nullToEmpty(lang);
+    this.version = Strings.emptyToNull(version);
+  }
+
+  @NotNull
+  public String getWiki() {
+    return wiki;
+  }
+
+  @NotNull
+  public String getDocKey() {
+    return docKey;
+  }
+
+  @NotNull
+  public String getLang() {
+    return lang;
+  }
+
+  @NotNull
+  public Optional<String> getVersion() {
+    return Optional.ofNullable(version);
+  }
+
+  public boolean isDeleted() {
+    return version == null;
+  }
+
+  /**
+   * @return the length of the carried strings, approximates the size of the invalidation on the
+   *         wire without its serialization overhead
+   */
+  public int getPayloadLength() {
+    return wiki.length() + docKey.length() + lang.length() + Strings.nullToEmpty(version).length();
+  }
+
+  /**
+   * @return the key on which invalidations of the same document translation are coalesced
+   */
+  @NotNull
+  public String getCoalesceKey() {
+    return wiki + ":" + docKey + ":" + lang;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(wiki, docKey, lang, version);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (obj instanceof DocumentInvalidation) {
+      DocumentInvalidation other = (DocumentInvalidation) obj;
+      return this.wiki.equals(other.wiki) && this.docKey.equals(other.docKey)
+          && this.lang.equals(other.lang) && Objects.equals(this.version, other.version);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return getCoalesceKey() + " (" + (isDeleted() ? "deleted" : version) + ")";
+  }
+
+}
@@ -0,0 +1,53 @@
+package com.celements.store.invalidation;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.component.annotation.ComponentRole;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Lightweight cluster channel for document cache invalidations. Only {@link DocumentInvalidation}
+ * tuples are sent, batched and coalesced over a short delay into a single
+ * {@link DocumentInvalidationEvent}. The full remote document events are still sent for other
+ * listeners, but only invalidate the document cache as fallback for lost batches if configured,
+ * see {@link #isDocumentEventFallback()}.
+ */
+@ComponentRole
+public interface DocumentInvalidationChannel {
+
+  /**
+   * @return true if enabled by configuration and remote observation is active
+   */
+  boolean isEnabled();
+
+  /**
+   * @return true if remote document events still invalidate the document cache with the channel
+   *         enabled, unless the cache already holds the saved version
+   */
+  boolean isDocumentEventFallback();
+
+  /**
+   * queues an invalidation to be sent to the other cluster nodes, a no-op if not enabled
+   *
+   * @param version
+   *          the saved version or null if the document has been deleted
+   */
+  void publish(@NotNull DocumentReference docRef, @Nullable String lang,
+      @Nullable String version);
+
+  /**
+   * records the metrics of an invalidation batch received from another node
+   */
+  void received(@NotNull DocumentInvalidationEvent event);
+
+  /**
+   * @return a snapshot of the sent and received counts, payload lengths and latencies of this
+   *         node, see {@link DocumentInvalidationEvent#getPayloadLength()}
+   */
+  @NotNull
+  Map<String, Long> getMetrics();
+
+}
@@ -0,0 +1,70 @@
+package com.celements.store.invalidation;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.annotation.concurrent.Immutable;
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.observation.event.Event;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * batch of coalesced {@link DocumentInvalidation}s sent by a cluster node. It's shipped as is
+ * without any document or context data and notified as remote event on the receiving nodes.
+ */
+@Immutable
+public class DocumentInvalidationEvent implements Event, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final ImmutableList<DocumentInvalidation> invalidations;
+  private final long sentTimeMillis;
+
+  /**
+   * matcher event for listeners
+   */
+  public DocumentInvalidationEvent() {
+    this(ImmutableList.of(), 0);
+  }
+
+  public DocumentInvalidationEvent(@NotNull List<DocumentInvalidation> invalidations,
+      long sentTimeMillis) {
+    this.invalidations = ImmutableList.copyOf(checkNotNull(invalidations));
+    this.sentTimeMillis = sentTimeMillis;
+  }
+
+  @NotNull
+  public List<DocumentInvalidation> getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * @return the summed {@link DocumentInvalidation#getPayloadLength()} of the batch
+   */
+  public long getPayloadLength() {
+    return invalidations.stream().mapToLong(DocumentInvalidation::getPayloadLength).sum();
+  }
+
+  /**
+   * @return the wall clock time of the sending node, thus latencies derived from it are subject to
+   *         clock skew between the nodes
+   */
+  public long getSentTimeMillis() {
+    return sentTimeMillis;
+  }
+
+  @Override
+  public boolean matches(Object otherEvent) {
+    return otherEvent instanceof DocumentInvalidationEvent;
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentInvalidationEvent [sent=" + sentTimeMillis + ", " + invalidations + "]";
+  }
+
+}
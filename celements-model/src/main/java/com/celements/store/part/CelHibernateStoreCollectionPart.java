@@ -1,10 +1,17 @@
 package com.celements.store.part;
 
+import static com.celements.model.util.ReferenceSerializationMode.*;
 import static com.xpn.xwiki.XWikiException.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
@@ -17,6 +24,8 @@ import org.xwiki.model.reference.DocumentReference;
 
 import com.celements.store.CelHibernateStore;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
@@ -24,17 +33,26 @@ import com.xpn.xwiki.objects.BaseCollection;
 import com.xpn.xwiki.objects.BaseElement;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
+import com.xpn.xwiki.objects.StringListProperty;
 import com.xpn.xwiki.objects.StringProperty;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.StringClass;
 import com.xpn.xwiki.objects.classes.TextAreaClass;
 
+import one.util.streamex.EntryStream;
+import one.util.streamex.StreamEx;
+
 //TODO CELDEV-626 - CelHibernateStore refactoring
 public class CelHibernateStoreCollectionPart {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CelHibernateStore.class);
 
+  private static final String STRING_TABLE = StringProperty.class.getSimpleName();
+  private static final String LARGE_STRING_TABLE = LargeStringProperty.class.getSimpleName();
+  private static final String LIST_TABLE = DBStringListProperty.class.getSimpleName();
+
   private final CelHibernateStore store;
 
   public CelHibernateStoreCollectionPart(CelHibernateStore store) {
@@ -142,37 +160,8 @@ public class CelHibernateStoreCollectionPart {
       // If the class reference is null in the loaded object then skip loading properties
       if (classReference != null) {
 
-        BaseClass bclass = null;
-        if (!classReference.equals(object.getDocumentReference())) {
-          // Let's check if the class has a custom mapping
-          bclass = object.getXClass(context);
-        } else {
-          // We need to get it from the document otherwise
-          // we will go in an endless loop
-          if (doc != null) {
-            bclass = doc.getXClass();
-          }
-        }
-
-        List<String> handledProps = new ArrayList<>();
-        try {
-          if ((bclass != null) && (bclass.hasCustomMapping())
-              && context.getWiki().hasCustomMappings()) {
-            Session dynamicSession = session.getSession(EntityMode.MAP);
-            Map<String, ?> map = (Map<String, ?>) dynamicSession.load(bclass.getName(), new Long(
-                object.getId()));
-            // Let's make sure to look for null fields in the dynamic mapping
-            bclass.fromValueMap(map, object);
-            for (String prop : bclass.getCustomMappingPropertyList(context)) {
-              if (map.get(prop) != null) {
-                handledProps.add(prop);
-              }
-            }
-          }
-        } catch (HibernateException exc) {
-          LOGGER.error("Failed loading custom mapping for doc [{}], class [{}], nb [{}]",
-              object.getDocumentReference(), object.getXClassReference(), object.getNumber(), exc);
-        }
+        BaseClass bclass = getXClass(object, doc, context);
+        List<String> handledProps = loadCustomMappedFields(object, bclass, session, context);
 
         // Load strings, integers, dates all at once
 
@@ -246,6 +235,235 @@ public class CelHibernateStoreCollectionPart {
     }
   }
 
+  private BaseClass getXClass(BaseCollection object, XWikiDocument doc, XWikiContext context) {
+    BaseClass bclass = null;
+    if (!object.getXClassReference().equals(object.getDocumentReference())) {
+      // Let's check if the class has a custom mapping
+      bclass = object.getXClass(context);
+    } else if (doc != null) {
+      // We need to get it from the document otherwise we will go in an endless loop
+      bclass = doc.getXClass();
+    }
+    return bclass;
+  }
+
+  /**
+   * @return the names of the fields loaded from the custom mapping of the given class
+   */
+  private List<String> loadCustomMappedFields(BaseCollection object, BaseClass bclass,
+      Session session, XWikiContext context) {
+    List<String> handledProps = new ArrayList<>();
+    try {
+      if ((bclass != null) && (bclass.hasCustomMapping())
+          && context.getWiki().hasCustomMappings()) {
+        Session dynamicSession = session.getSession(EntityMode.MAP);
+        Map<String, ?> map = (Map<String, ?>) dynamicSession.load(bclass.getName(), new Long(
+            object.getId()));
+        // Let's make sure to look for null fields in the dynamic mapping
+        bclass.fromValueMap(map, object);
+        for (String prop : bclass.getCustomMappingPropertyList(context)) {
+          if (map.get(prop) != null) {
+            handledProps.add(prop);
+          }
+        }
+      }
+    } catch (HibernateException exc) {
+      LOGGER.error("Failed loading custom mapping for doc [{}], class [{}], nb [{}]",
+          object.getDocumentReference(), object.getXClassReference(), object.getNumber(), exc);
+    }
+    return handledProps;
+  }
+
+  /**
+   * Loads the properties of all given objects of the document set-based, i.e. with one query for
+   * the property names and types and one query per property table, instead of one query per object
+   * and one load per property. The objects are expected to be loaded already (see
+   * {@link #loadXWikiCollection} with alreadyLoaded=true) and must be called within a transaction.
+   */
+  public void loadXWikiCollections(XWikiDocument doc, Collection<BaseObject> objects,
+      XWikiContext context) throws XWikiException, HibernateException {
+    loadXWikiCollections(ImmutableList.of(doc), objects, context);
+  }
+
+  /**
+   * Bulk variant of {@link #loadXWikiCollections(XWikiDocument, Collection, XWikiContext)} loading
+   * the properties of all given objects of multiple documents with the same amount of queries.
+   */
+  public void loadXWikiCollections(Collection<XWikiDocument> docs, Collection<BaseObject> objects,
+      XWikiContext context) throws XWikiException, HibernateException {
+    if (objects.isEmpty()) {
+      return;
+    }
+    Session session = store.getSession(context);
+    Map<DocumentReference, XWikiDocument> docMap = StreamEx.of(docs)
+        .toMap(XWikiDocument::getDocumentReference, doc -> doc, (doc1, doc2) -> doc1);
+    List<String> docNames = StreamEx.of(docs).map(doc -> store.serialize(doc, LOCAL))
+        .distinct().toList();
+    Map<Long, BaseObject> objMap = new HashMap<>();
+    Map<Long, BaseClass> classMap = new HashMap<>();
+    Map<Long, List<String>> handledPropsMap = new HashMap<>();
+    for (BaseObject object : objects) {
+      if (object.getXClassReference() != null) {
+        BaseClass bclass = getXClass(object, docMap.get(object.getDocumentReference()), context);
+        objMap.put(object.getId(), object);
+        classMap.put(object.getId(), bclass);
+        handledPropsMap.put(object.getId(),
+            loadCustomMappedFields(object, bclass, session, context));
+      }
+    }
+    List<Object[]> propRows = loadPropertyTypes(session, docNames);
+    Map<String, Map<Long, Map<String, Object>>> values = loadPropertyValues(session, docNames,
+        StreamEx.of(propRows).map(row -> (String) row[2]).toSet());
+    for (Object[] row : propRows) {
+      Long objId = (Long) row[0];
+      String name = (String) row[1];
+      BaseObject object = objMap.get(objId);
+      if ((object == null) || handledPropsMap.get(objId).contains(name)) {
+        continue;
+      }
+      BaseProperty property = createProperty(object, classMap.get(objId), name,
+          (String) row[2], values);
+      object.addField(name, property);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Object[]> loadPropertyTypes(Session session, List<String> docNames) {
+    Query query = session.createQuery("select prop.id.id, prop.id.name, prop.classType "
+        + "from BaseProperty as prop, BaseObject as obj "
+        + "where obj.name in (:names) and obj.id = prop.id.id");
+    query.setParameterList("names", docNames);
+    return query.list();
+  }
+
+  /**
+   * @return per property table (represented by the simple name of its mapped type) the values
+   *         mapped by object id and property name. only tables required for the given class types
+   *         are queried.
+   */
+  private Map<String, Map<Long, Map<String, Object>>> loadPropertyValues(Session session,
+      List<String> docNames, Set<String> classTypes) {
+    Set<String> tableTypes = StreamEx.of(classTypes)
+        .map(CelHibernateStoreCollectionPart::getTableType)
+        .toCollection(TreeSet::new);
+    if (tableTypes.contains(STRING_TABLE) || tableTypes.contains(LARGE_STRING_TABLE)) {
+      // both are required for the string/large string mismatch workaround
+      tableTypes.add(STRING_TABLE);
+      tableTypes.add(LARGE_STRING_TABLE);
+    }
+    Map<String, Map<Long, Map<String, Object>>> values = new HashMap<>();
+    for (String tableType : tableTypes) {
+      values.put(tableType, tableType.equals(LIST_TABLE)
+          ? loadListPropertyValues(session, docNames)
+          : loadPropertyTableValues(session, docNames, tableType));
+    }
+    return values;
+  }
+
+  private Map<Long, Map<String, Object>> loadPropertyTableValues(Session session,
+      List<String> docNames, String tableType) {
+    Query query = session.createQuery("select prop.id.id, prop.id.name, prop.value from "
+        + tableType + " as prop, BaseObject as obj "
+        + "where obj.name in (:names) and obj.id = prop.id.id");
+    query.setParameterList("names", docNames);
+    Map<Long, Map<String, Object>> values = new HashMap<>();
+    for (Object obj : query.list()) {
+      Object[] row = (Object[]) obj;
+      values.computeIfAbsent((Long) row[0], id -> new HashMap<>()).put((String) row[1], row[2]);
+    }
+    return values;
+  }
+
+  private Map<Long, Map<String, Object>> loadListPropertyValues(Session session,
+      List<String> docNames) {
+    // left join to get a row without item for empty lists
+    Query query = session.createQuery("select prop.id.id, prop.id.name, index(item), item "
+        + "from DBStringListProperty as prop left join prop.list as item, BaseObject as obj "
+        + "where obj.name in (:names) and obj.id = prop.id.id");
+    query.setParameterList("names", docNames);
+    Map<Long, Map<String, SortedMap<Integer, String>>> items = new HashMap<>();
+    for (Object obj : query.list()) {
+      Object[] row = (Object[]) obj;
+      SortedMap<Integer, String> list = items.computeIfAbsent((Long) row[0], id -> new HashMap<>())
+          .computeIfAbsent((String) row[1], name -> new TreeMap<>());
+      if (row[2] != null) {
+        list.put((Integer) row[2], (String) row[3]);
+      }
+    }
+    return EntryStream.of(items)
+        .mapValues(props -> EntryStream.of(props)
+            .<Object>mapValues(list -> new ArrayList<>(list.values()))
+            .toMap())
+        .toMap();
+  }
+
+  private BaseProperty createProperty(BaseObject object, BaseClass bclass, String name,
+      String classType, Map<String, Map<Long, Map<String, Object>>> values)
+      throws XWikiException {
+    BaseProperty property = newProperty(object, name, classType);
+    String tableType = getTableType(classType);
+    if (hasValue(values, tableType, object.getId(), name)) {
+      property.setValue(getValue(values, tableType, object.getId(), name));
+    } else if (tableType.equals(STRING_TABLE)
+        && hasValue(values, LARGE_STRING_TABLE, object.getId(), name)) {
+      // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
+      if ((bclass != null) && (bclass.get(name) instanceof TextAreaClass)) {
+        property = newProperty(object, name, LargeStringProperty.class.getName());
+      }
+      property.setValue(getValue(values, LARGE_STRING_TABLE, object.getId(), name));
+    } else if (tableType.equals(LARGE_STRING_TABLE)
+        && hasValue(values, STRING_TABLE, object.getId(), name)) {
+      // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
+      if ((bclass != null) && (bclass.get(name) instanceof StringClass)) {
+        property = newProperty(object, name, StringProperty.class.getName());
+      }
+      property.setValue(getValue(values, STRING_TABLE, object.getId(), name));
+    } else {
+      LOGGER.warn("loadXWikiCollections - no data for {}: {}", property.getId(), property);
+      return property;
+    }
+    CelHibernateStorePropertyPart.executePostLoadActions(property);
+    return property;
+  }
+
+  private BaseProperty newProperty(BaseObject object, String name, String classType)
+      throws XWikiException {
+    try {
+      BaseProperty property = (BaseProperty) Class.forName(classType).newInstance();
+      property.setObject(object);
+      property.setName(name);
+      return property;
+    } catch (ReflectiveOperationException | ClassCastException exc) {
+      throw new XWikiException(MODULE_XWIKI_STORE, ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
+          "Exception while loading property '" + name + "' for object: " + object, exc);
+    }
+  }
+
+  private static boolean hasValue(Map<String, Map<Long, Map<String, Object>>> values,
+      String tableType, long objId, String name) {
+    return values.getOrDefault(tableType, ImmutableMap.of())
+        .getOrDefault(objId, ImmutableMap.of())
+        .containsKey(name);
+  }
+
+  private static Object getValue(Map<String, Map<Long, Map<String, Object>>> values,
+      String tableType, long objId, String name) {
+    return values.get(tableType).get(objId).get(name);
+  }
+
+  /**
+   * @return the simple name of the mapped type representing the property table for the given class
+   *         type, e.g. {@link StringListProperty} is stored in the table of
+   *         {@link LargeStringProperty}
+   */
+  private static String getTableType(String classType) {
+    String simpleName = classType.substring(classType.lastIndexOf('.') + 1);
+    if (simpleName.equals(StringListProperty.class.getSimpleName())) {
+      return LARGE_STRING_TABLE;
+    }
+    return simpleName;
+  }
+
   public void deleteXWikiCollection(BaseCollection object, XWikiContext context,
       boolean bTransaction, boolean evict) throws XWikiException, HibernateException {
     if (object == null) {
@@ -12,7 +12,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
@@ -23,25 +25,24 @@ import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.model.EntityType;
-import org.xwiki.model.reference.ClassReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.WikiReference;
 
-import com.celements.model.classes.ClassDefinition;
 import com.celements.model.object.xwiki.XWikiObjectEditor;
 import com.celements.model.reference.RefBuilder;
 import com.celements.store.CelHibernateStore;
+import com.celements.store.id.DocumentId;
+import com.celements.store.id.DocumentIdCache;
 import com.celements.store.id.IdVersion;
-import com.celements.web.classes.oldcore.XWikiGroupsClass;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.classes.BaseClass;
-import com.xpn.xwiki.web.Utils;
 
 import one.util.streamex.EntryStream;
+import one.util.streamex.StreamEx;
 
 //TODO CELDEV-626 - CelHibernateStore refactoring
 public class CelHibernateStoreDocumentPart {
@@ -131,6 +132,9 @@ public class CelHibernateStoreDocumentPart {
         store.endTransaction(context, commit);
       }
     }
+    // only cache the id once committed, a failing commit would leave a phantom id
+    store.getDocIdCache().put(doc.getDocumentReference(), doc.getLanguage(),
+        new DocumentId(doc.getId(), doc.getIdVersion()));
   }
 
   private void deleteAndSaveXObjects(XWikiDocument doc, XWikiContext context)
@@ -166,8 +170,16 @@ public class CelHibernateStoreDocumentPart {
         LOGGER.info("loadXWikiDoc - no existing doc for [{}:{}]",
             defer(() -> store.serialize(docRefToLoad, GLOBAL)), doc.getLanguage());
       }
-      session.load(doc, docId);
-      validateLoadedDoc(doc, docRefToLoad);
+      try {
+        session.load(doc, docId);
+        validateLoadedDoc(doc, docRefToLoad);
+      } catch (ObjectNotFoundException | XWikiException exc) {
+        // the cached doc id may be outdated, ensure it's resolved from the database next time
+        store.getDocIdCache().remove(docRefToLoad, doc.getLanguage());
+        throw exc;
+      }
+      store.getDocIdCache().put(docRefToLoad, doc.getLanguage(),
+          new DocumentId(doc.getId(), doc.getIdVersion()));
       sanitizeDoc(doc);
 
       // Loading the attachment list
@@ -175,21 +187,11 @@ public class CelHibernateStoreDocumentPart {
         store.loadAttachmentList(doc, context, false);
       }
 
-      // TODO: handle the case where there are no xWikiClass and xWikiObject in the Database
-      BaseClass bclass = new BaseClass();
-      String cxml = doc.getXClassXML();
-      if (cxml != null) {
-        bclass.fromXML(cxml);
-        bclass.setDocumentReference(docRefToLoad);
-        doc.setXClass(bclass);
-      }
-      // Store this XWikiClass in the context so that we can use it in case of recursive usage
-      // of classes
-      context.addBaseClass(bclass);
+      loadXClass(doc, context);
 
       if (doc.hasElement(XWikiDocument.HAS_OBJECTS)) {
         Iterator<BaseObject> objIter = loadXObjects(doc, context);
-        Map<Integer, BaseObject> groupObjs = new HashMap<>();
+        List<BaseObject> objects = new ArrayList<>();
         while (objIter.hasNext()) {
           BaseObject loadedObject = objIter.next();
           if (!loadedObject.getDocumentReference().equals(docRefToLoad)) {
@@ -198,24 +200,12 @@ public class CelHibernateStoreDocumentPart {
             continue;
           }
           BaseObject object = copyToNewXObject(doc, loadedObject, context);
-          if (isGroupsObject(object)) {
-            // Groups objects are handled differently.
-            groupObjs.put(object.getNumber(), object);
-          } else {
-            store.loadXWikiCollection(object, doc, context, false, true);
-          }
+          objects.add(object);
           doc.setXObject(object.getNumber(), object);
         }
-        if (groupObjs.size() > 0) {
-          loadFieldsForGroupObjects(doc, groupObjs, context);
-        }
+        store.loadXWikiCollections(doc, objects, context);
       }
-
-      doc.setContentDirty(false);
-      // FIXME can be set to 'false' after CELDEV-784, see CELDEV-785
-      doc.setMetaDataDirty(true);
-      // We need to ensure that the loaded document becomes the original document
-      doc.setOriginalDocument(doc.clone());
+      finishLoadedDoc(doc);
     } catch (ObjectNotFoundException e) { // document doesn't exist
       doc.setNew(true);
     } finally {
@@ -226,16 +216,190 @@ public class CelHibernateStoreDocumentPart {
     return doc;
   }
 
+  /**
+   * Bulk variant of {@link #loadXWikiDoc(XWikiDocument, XWikiContext)} loading the given
+   * documents with one query each for the doc ids, documents, attachments and objects as well as
+   * one query per property table.
+   *
+   * @return the loaded documents in the order of the given documents. for not existing documents
+   *         the given document is returned marked as new.
+   */
+  public List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException, HibernateException {
+    List<DocumentReference> docRefsToLoad = StreamEx.of(docs)
+        .map(doc -> RefBuilder.from(doc.getDocumentReference()).build(DocumentReference.class))
+        .toList();
+    docRefsToLoad.forEach(docRef -> validateDatabase(docRef, context));
+    List<XWikiDocument> ret = new ArrayList<>(docs.size());
+    if (docs.isEmpty()) {
+      return ret;
+    }
+    boolean bTransaction = true;
+    try {
+      store.checkHibernate(context);
+      // the documents to load are still empty, thus the first one is as good as any other
+      SessionFactory sfactory = store.injectCustomMappingsInSessionFactory(docs.get(0), context);
+      bTransaction = store.beginTransaction(sfactory, false, context);
+      Session session = store.getSession(context);
+      session.setFlushMode(FlushMode.MANUAL);
+
+      List<Long> docIds = determineDocIds(session, docs);
+      Map<Long, XWikiDocument> loadedDocs = loadXWikiDocsById(session, docIds);
+      for (int i = 0; i < docs.size(); i++) {
+        XWikiDocument doc = docs.get(i);
+        DocumentReference docRefToLoad = docRefsToLoad.get(i);
+        XWikiDocument loadedDoc = loadedDocs.get(docIds.get(i));
+        if (loadedDoc != null) {
+          try {
+            validateLoadedDoc(loadedDoc, docRefToLoad);
+          } catch (XWikiException xwe) {
+            store.getDocIdCache().remove(docRefToLoad, doc.getLanguage());
+            throw xwe;
+          }
+          loadedDoc.setDocumentReference(docRefToLoad);
+          store.getDocIdCache().put(docRefToLoad, doc.getLanguage(),
+              new DocumentId(loadedDoc.getId(), loadedDoc.getIdVersion()));
+          sanitizeDoc(loadedDoc);
+          ret.add(loadedDoc);
+        } else {
+          LOGGER.info("loadXWikiDocs - no existing doc for [{}:{}]",
+              defer(() -> store.serialize(docRefToLoad, GLOBAL)), doc.getLanguage());
+          store.getDocIdCache().remove(docRefToLoad, doc.getLanguage());
+          doc.setNew(true);
+          ret.add(doc);
+        }
+      }
+      // docs requested multiple times share the same loaded instance
+      List<XWikiDocument> existingDocs = StreamEx.of(ret).remove(XWikiDocument::isNew)
+          .distinct(XWikiDocument::getId).toList();
+      loadAttachmentLists(session, existingDocs);
+      for (XWikiDocument doc : existingDocs) {
+        loadXClass(doc, context);
+      }
+      loadXObjects(existingDocs, context);
+      existingDocs.forEach(this::finishLoadedDoc);
+    } finally {
+      if (bTransaction) {
+        store.endTransaction(context, false);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return the doc ids in the order of the given docs, see {@link #determineDocId}
+   */
+  private List<Long> determineDocIds(Session session, List<XWikiDocument> docs) {
+    List<XWikiDocument> uncachedDocs = StreamEx.of(docs)
+        .remove(doc -> store.getDocIdCache().get(doc.getDocumentReference(), doc.getLanguage())
+            .isPresent())
+        .toList();
+    Map<String, Long> existingDocIds = store.loadExistingDocIds(session, uncachedDocs);
+    return StreamEx.of(docs)
+        .map(doc -> store.getDocIdCache().get(doc.getDocumentReference(), doc.getLanguage())
+            .map(DocumentId::getId)
+            .orElseGet(() -> existingDocIds.getOrDefault(store.getDocKey(doc), 0L)))
+        .toList();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<Long, XWikiDocument> loadXWikiDocsById(Session session, List<Long> docIds) {
+    Set<Long> ids = StreamEx.of(docIds).remove(id -> id == 0).toSet();
+    if (ids.isEmpty()) {
+      return new HashMap<>();
+    }
+    Query query = session.createQuery("from XWikiDocument as doc where doc.id in (:ids)");
+    query.setParameterList("ids", ids);
+    return StreamEx.of((List<XWikiDocument>) query.list())
+        .toMap(XWikiDocument::getId, doc -> doc, (doc1, doc2) -> doc1);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void loadAttachmentLists(Session session, List<XWikiDocument> docs) {
+    Map<Long, XWikiDocument> docsWithAtt = StreamEx.of(docs)
+        .filter(doc -> doc.hasElement(XWikiDocument.HAS_ATTACHMENTS))
+        .toMap(XWikiDocument::getId, doc -> doc, (doc1, doc2) -> doc1);
+    if (docsWithAtt.isEmpty()) {
+      return;
+    }
+    Query query = session.createQuery(
+        "from XWikiAttachment as attach where attach.docId in (:docids)");
+    query.setParameterList("docids", docsWithAtt.keySet());
+    Map<Long, List<XWikiAttachment>> attachments = StreamEx
+        .of((List<XWikiAttachment>) query.list())
+        .groupingBy(XWikiAttachment::getDocId);
+    docsWithAtt.forEach((docId, doc) -> {
+      List<XWikiAttachment> attList = attachments.getOrDefault(docId, new ArrayList<>());
+      attList.forEach(att -> att.setDoc(doc));
+      doc.setAttachmentList(attList);
+    });
+  }
+
+  private void loadXClass(XWikiDocument doc, XWikiContext context) {
+    // TODO: handle the case where there are no xWikiClass and xWikiObject in the Database
+    BaseClass bclass = new BaseClass();
+    String cxml = doc.getXClassXML();
+    if (cxml != null) {
+      bclass.fromXML(cxml);
+      bclass.setDocumentReference(doc.getDocumentReference());
+      doc.setXClass(bclass);
+    }
+    // Store this XWikiClass in the context so that we can use it in case of recursive usage
+    // of classes
+    context.addBaseClass(bclass);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void loadXObjects(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException {
+    // objects are stored by document name, thus if a translation and its default language
+    // document are loaded together the objects belong to the default language document only
+    Map<String, XWikiDocument> docsWithObj = StreamEx.of(docs)
+        .filter(doc -> doc.hasElement(XWikiDocument.HAS_OBJECTS))
+        .toMap(doc -> store.serialize(doc, LOCAL), doc -> doc,
+            (doc1, doc2) -> (doc1.getTranslation() != 0) ? doc2 : doc1);
+    if (docsWithObj.isEmpty()) {
+      return;
+    }
+    Query query = store.getSession(context).createQuery("from BaseObject as obj "
+        + "where obj.name in (:names) order by obj.name, obj.className, obj.number");
+    query.setParameterList("names", docsWithObj.keySet());
+    List<BaseObject> objects = new ArrayList<>();
+    for (BaseObject loadedObject : (List<BaseObject>) query.list()) {
+      XWikiDocument doc = docsWithObj.get(loadedObject.getName());
+      if ((doc == null)
+          || !loadedObject.getDocumentReference().equals(doc.getDocumentReference())) {
+        LOGGER.warn("loadXWikiDocs - skipping obj [{}], no matching doc", loadedObject);
+        continue;
+      }
+      BaseObject object = copyToNewXObject(doc, loadedObject, context);
+      objects.add(object);
+      doc.setXObject(object.getNumber(), object);
+    }
+    store.loadXWikiCollections(docsWithObj.values(), objects, context);
+  }
+
+  private void finishLoadedDoc(XWikiDocument doc) {
+    doc.setContentDirty(false);
+    // FIXME can be set to 'false' after CELDEV-784, see CELDEV-785
+    doc.setMetaDataDirty(true);
+    // We need to ensure that the loaded document becomes the original document
+    doc.setOriginalDocument(doc.clone());
+  }
+
   /**
    * @return the doc id for fullName and language if one exists. this is needed because we don't
    *         know before loading if a collision has occurred or which {@link IdVersion} was used on
-   *         save. returns 0 if no id exists.
+   *         save. returns 0 if no id exists. resolved ids are cached in the
+   *         {@link DocumentIdCache}.
    */
   long determineDocId(Session session, DocumentReference docRef, String lang) {
-    return EntryStream.of(store.loadExistingDocKeys(session, docRef, lang))
-        .filterValues(store.getDocKey(docRef, lang)::equals)
-        .keys().findFirst()
-        .orElse(0L);
+    return store.getDocIdCache().get(docRef, lang)
+        .map(DocumentId::getId)
+        .orElseGet(() -> EntryStream.of(store.loadExistingDocKeys(session, docRef, lang))
+            .filterValues(store.getDocKey(docRef, lang)::equals)
+            .keys().findFirst()
+            .orElse(0L));
   }
 
   private void validateLoadedDoc(XWikiDocument doc, DocumentReference expectedDocRef)
@@ -281,29 +445,6 @@ public class CelHibernateStoreDocumentPart {
     return object;
   }
 
-  private boolean isGroupsObject(BaseObject object) {
-    ClassReference classRef = new ClassReference(object.getXClassReference());
-    return classRef.equals(getXWikiGroupsClass().getClassReference());
-  }
-
-  // AFAICT this was added as an emergency patch because loading of objects has proven too slow and
-  // the objects which cause the most overhead are the XWikiGroups objects as each group object
-  // (each group member) would otherwise cost 2 database queries. This will do every group member in
-  // a single query.
-  private void loadFieldsForGroupObjects(XWikiDocument doc, Map<Integer, BaseObject> groupObjs,
-      XWikiContext context) {
-    String hql = "select obj.number, prop.value from StringProperty as prop, BaseObject as obj "
-        + "where obj.name = :name and obj.className = 'XWiki.XWikiGroups' and obj.id = prop.id.id "
-        + "and prop.id.name = 'member'";
-    Query query = store.getSession(context).createQuery(hql);
-    query.setText("name", store.serialize(doc, LOCAL));
-    Iterator<?> dataIter = query.iterate();
-    while (dataIter.hasNext()) {
-      Object[] row = (Object[]) dataIter.next();
-      groupObjs.get(row[0]).setStringValue("member", (String) row[1]);
-    }
-  }
-
   public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context)
       throws XWikiException, HibernateException {
     validateDatabase(doc.getDocumentReference(), context);
@@ -343,6 +484,7 @@ public class CelHibernateStoreDocumentPart {
       context.getWiki().getVersioningStore().deleteArchive(doc, false, context);
       session.delete(doc);
       commit = true;
+      store.getDocIdCache().remove(doc.getDocumentReference(), doc.getLanguage());
       // We need to ensure that the deleted document becomes the original document
       doc.setOriginalDocument(doc.clone());
     } finally {
@@ -352,10 +494,6 @@ public class CelHibernateStoreDocumentPart {
     }
   }
 
-  private ClassDefinition getXWikiGroupsClass() {
-    return Utils.getComponent(ClassDefinition.class, XWikiGroupsClass.CLASS_DEF_HINT);
-  }
-
   private void validateDocNaming(DocumentReference docRef) {
     checkArgument(isMatchingEntityType(store.serialize(docRef, LOCAL), EntityType.DOCUMENT),
         "illegal doc naming [%s]", docRef);
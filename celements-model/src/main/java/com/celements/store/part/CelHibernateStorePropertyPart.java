@@ -49,7 +49,7 @@ public class CelHibernateStorePropertyPart {
     }
   }
 
-  private void executePostLoadActions(PropertyInterface property) {
+  static void executePostLoadActions(PropertyInterface property) {
     if (property instanceof BaseStringProperty) {
       // In Oracle, empty string are converted to NULL. Since an undefined property is not found
       // at all, it's safe to assume that a retrieved NULL value should actually be an empty string
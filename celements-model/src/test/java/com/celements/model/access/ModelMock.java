@@ -3,7 +3,9 @@ package com.celements.model.access;
 import static com.celements.common.test.CelementsTestUtils.*;
 import static com.google.common.base.Preconditions.*;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -131,6 +133,18 @@ public class ModelMock extends DefaultModelAccessFacade {
     return getDocRecord(docRef, lang).doc();
   }
 
+  @Override
+  public Map<DocumentReference, XWikiDocument> getDocuments(
+      Collection<DocumentReference> docRefs) {
+    Map<DocumentReference, XWikiDocument> ret = new LinkedHashMap<>();
+    for (DocumentReference docRef : docRefs) {
+      if (isRegistered(docRef)) {
+        ret.put(docRef, getDocRecord(docRef).doc());
+      }
+    }
+    return ret;
+  }
+
   @Override
   public XWikiDocument createDocument(DocumentReference docRef, String lang) {
     return registerDoc(docRef, lang).doc();
@@ -0,0 +1,81 @@
+package com.celements.model.object.xwiki;
+
+import static com.celements.model.classes.TestClassDefinition.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.objects.BaseObject;
+
+public class XWikiObjectHqlTest extends AbstractComponentTest {
+
+  private static final String SELECT_DOCS = "select distinct doc.space, doc.name from "
+      + "XWikiDocument as doc, BaseObject as obj where doc.translation = 0 "
+      + "and doc.fullName = obj.name and ";
+
+  @Test
+  public void test_forDocuments() {
+    XWikiObjectHql hql = XWikiObjectHql.forDocuments(XWikiObjectFetcher.empty()
+        .filter(FIELD_MY_STRING, "val").getQuery());
+    assertEquals(SELECT_DOCS + "(obj.className = :p0 and exists (from StringProperty as prop0 "
+        + "where prop0.id.id = obj.id and prop0.id.name = :p1 and prop0.value is not null "
+        + "and trim(prop0.value) <> '' and prop0.value in (:p2))) order by doc.space, doc.name",
+        hql.getStatement());
+    assertEquals(ImmutableMap.of("p0", NAME, "p1", "myString", "p2", "val"),
+        hql.getParameters());
+  }
+
+  @Test
+  public void test_forDocuments_multipleRestrictions() {
+    XWikiObjectHql hql = XWikiObjectHql.forDocuments(XWikiObjectFetcher.empty()
+        .filter(FIELD_MY_INT, ImmutableList.of(1, 2))
+        .filterAbsent(FIELD_MY_STRING)
+        .filter(3)
+        .getQuery());
+    assertEquals(SELECT_DOCS + "(obj.className = :p0 and exists (from IntegerProperty as prop0 "
+        + "where prop0.id.id = obj.id and prop0.id.name = :p1 and prop0.value is not null "
+        + "and prop0.value in (:p2, :p3)) and not exists (from StringProperty as prop1 "
+        + "where prop1.id.id = obj.id and prop1.id.name = :p4 and prop1.value is not null "
+        + "and trim(prop1.value) <> '') and obj.number = :p5) order by doc.space, doc.name",
+        hql.getStatement());
+    assertEquals(ImmutableList.of(NAME, "myInt", 1, 2, "myString", 3),
+        ImmutableList.copyOf(hql.getParameters().values()));
+  }
+
+  @Test
+  public void test_forDocuments_noValues() {
+    XWikiObjectHql hql = XWikiObjectHql.forDocuments(XWikiObjectFetcher.empty()
+        .filter(FIELD_MY_STRING, Collections.<String>emptyList()).getQuery());
+    assertEquals(SELECT_DOCS + "(obj.className = :p0 and 1 = 0) order by doc.space, doc.name",
+        hql.getStatement());
+  }
+
+  @Test
+  public void test_forDocuments_unsupported() {
+    assertThrows(IllegalArgumentException.class, () -> XWikiObjectHql.forDocuments(
+        XWikiObjectFetcher.empty().filter(new BaseObject()).getQuery()));
+    assertThrows(IllegalArgumentException.class, () -> XWikiObjectHql.forDocuments(
+        XWikiObjectFetcher.empty().filter(FIELD_MY_LIST_MS, ImmutableList.of("a")).getQuery()));
+  }
+
+  @Test
+  public void test_forValues() {
+    XWikiObjectHql hql = XWikiObjectHql.forValues(XWikiObjectFetcher.empty()
+        .filter(FIELD_MY_INT, 1).getQuery(), FIELD_MY_STRING);
+    assertEquals("select prop.value from XWikiDocument as doc, BaseObject as obj, "
+        + "StringProperty as prop where doc.translation = 0 and doc.fullName = obj.name "
+        + "and (obj.className = :p0 and exists (from IntegerProperty as prop0 "
+        + "where prop0.id.id = obj.id and prop0.id.name = :p1 and prop0.value is not null "
+        + "and prop0.value in (:p2))) and prop.id.id = obj.id and prop.id.name = :p3 "
+        + "and prop.value is not null and trim(prop.value) <> '' "
+        + "order by doc.space, doc.name, obj.number", hql.getStatement());
+    assertEquals(ImmutableList.of(NAME, "myInt", 1, "myString"),
+        ImmutableList.copyOf(hql.getParameters().values()));
+  }
+
+}
@@ -81,6 +81,25 @@ public class ModelUtilsTest extends AbstractComponentTest {
     assertEquals(docRef, modelUtils.resolveRef("doc", DocumentReference.class, spaceRef));
   }
 
+  @Test
+  public void test_resolveRef_cached() {
+    DocumentReference prefsDocRef = new DocumentReference("wiki", "XWiki", "XWikiPreferences");
+    DocumentReference resolved = modelUtils.resolveRef("XWiki.XWikiPreferences",
+        DocumentReference.class);
+    assertEquals(prefsDocRef, resolved);
+    assertSame(resolved, modelUtils.resolveRef("XWiki.XWikiPreferences",
+        DocumentReference.class));
+    assertSame(resolved, modelUtils.resolveRef("XWiki.XWikiPreferences",
+        DocumentReference.class, wikiRef));
+    assertEquals(new DocumentReference("otherWiki", "XWiki", "XWikiPreferences"),
+        modelUtils.resolveRef("XWiki.XWikiPreferences", DocumentReference.class,
+            new WikiReference("otherWiki")));
+    assertEquals(new SpaceReference("XWiki", wikiRef), modelUtils.resolveRef("XWiki",
+        SpaceReference.class));
+    assertEquals(prefsDocRef, modelUtils.resolveRef("XWikiPreferences", DocumentReference.class,
+        new SpaceReference("XWiki", wikiRef)));
+  }
+
   @Test
   public void test_resolveRef_noParamChange() {
     assertEquals(spaceRef, modelUtils.resolveRef("wiki:space", SpaceReference.class, wikiRef));
@@ -7,10 +7,12 @@ import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.util.Collections;
+import java.util.List;
 
 import org.easymock.Capture;
 import org.easymock.LogicalOperator;
 import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -24,6 +26,7 @@ import com.celements.common.test.AbstractComponentTest;
 import com.celements.model.access.IModelAccessFacade;
 import com.celements.store.id.CelementsIdComputer;
 import com.celements.store.id.CelementsIdComputer.IdComputationException;
+import com.celements.store.id.DocumentId;
 import com.celements.store.id.IdVersion;
 import com.celements.store.part.XWikiDummyDocComparator;
 import com.google.common.collect.ImmutableList;
@@ -129,6 +132,112 @@ public class CelHibernateStoreTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  @Test
+  public void test_loadXWikiDocs() throws Exception {
+    DocumentReference missingDocRef = new ImmutableDocumentReference("xwikidb", "space", "missing");
+    XWikiDocument transDoc = new XWikiDocument(docRef);
+    transDoc.setLanguage("de");
+    XWikiDocument missingDoc = new XWikiDocument(missingDocRef);
+    long docId = computeDocId(docRef, "");
+    long transDocId = computeDocId(docRef, "de");
+    Session sessionMock = createSessionMock(doc);
+    expectLoadExistingDocs(sessionMock, ImmutableList.of(
+        new Object[] { docId, doc.getFullName(), "" },
+        new Object[] { transDocId, doc.getFullName(), "de" }));
+    expectLoadDocsById(sessionMock, ImmutableList.of(createLoadedDoc(docRef, "", docId),
+        createLoadedDoc(docRef, "de", transDocId)));
+
+    replayDefault();
+    CelHibernateStore store = getStore(sessionMock);
+    store.getDocIdCache().clear();
+    List<XWikiDocument> ret = store.loadXWikiDocs(ImmutableList.of(doc, transDoc, missingDoc,
+        new XWikiDocument(docRef)), getContext());
+    verifyDefault();
+
+    assertEquals(4, ret.size());
+    assertEquals(docId, ret.get(0).getId());
+    assertEquals(docRef, ret.get(0).getDocumentReference());
+    assertEquals("", ret.get(0).getLanguage());
+    assertFalse(ret.get(0).isNew());
+    assertFalse(ret.get(0).isContentDirty());
+    assertNotNull(ret.get(0).getOriginalDocument());
+    assertEquals(transDocId, ret.get(1).getId());
+    assertEquals("de", ret.get(1).getLanguage());
+    assertFalse(ret.get(1).isNew());
+    assertSame("missing doc is returned marked as new", missingDoc, ret.get(2));
+    assertTrue(missingDoc.isNew());
+    assertSame("docs requested twice share the loaded instance", ret.get(0), ret.get(3));
+    assertEquals(docId, store.getDocIdCache().get(docRef, "").get().getId());
+    assertEquals(transDocId, store.getDocIdCache().get(docRef, "de").get().getId());
+    assertFalse(store.getDocIdCache().get(missingDocRef, "").isPresent());
+  }
+
+  @Test
+  public void test_loadXWikiDocs_docIdCached() throws Exception {
+    DocumentReference docRef2 = new ImmutableDocumentReference("xwikidb", "space", "doc2");
+    long docId = computeDocId(docRef, "");
+    long docId2 = computeDocId(docRef2, "");
+    Session sessionMock = createSessionMock(doc);
+    // the cached doc id isn't resolved again, thus only the row of doc2 exists in the database
+    expectLoadExistingDocs(sessionMock, ImmutableList.of(
+        new Object[] { docId2, "space.doc2", "" }));
+    expectLoadDocsById(sessionMock, ImmutableList.of(createLoadedDoc(docRef, "", docId),
+        createLoadedDoc(docRef2, "", docId2)));
+
+    replayDefault();
+    CelHibernateStore store = getStore(sessionMock);
+    store.getDocIdCache().clear();
+    store.getDocIdCache().put(docRef, "", new DocumentId(docId, IdVersion.CELEMENTS_3));
+    List<XWikiDocument> ret = store.loadXWikiDocs(ImmutableList.of(doc,
+        new XWikiDocument(docRef2)), getContext());
+    verifyDefault();
+
+    assertEquals(2, ret.size());
+    assertEquals(docId, ret.get(0).getId());
+    assertFalse(ret.get(0).isNew());
+    assertEquals(docId2, ret.get(1).getId());
+    assertEquals(docRef2, ret.get(1).getDocumentReference());
+    assertFalse(ret.get(1).isNew());
+    assertEquals(docId2, store.getDocIdCache().get(docRef2, "").get().getId());
+  }
+
+  @Test
+  public void test_loadXWikiDocs_objectsOfTranslation() throws Exception {
+    XWikiDocument transDoc = new XWikiDocument(docRef);
+    transDoc.setLanguage("de");
+    long docId = computeDocId(docRef, "");
+    long transDocId = computeDocId(docRef, "de");
+    XWikiDocument loadedDoc = createLoadedDoc(docRef, "", docId);
+    loadedDoc.setElements(XWikiDocument.HAS_OBJECTS);
+    XWikiDocument loadedTransDoc = createLoadedDoc(docRef, "de", transDocId);
+    loadedTransDoc.setElements(XWikiDocument.HAS_OBJECTS);
+    BaseObject obj = new BaseObject();
+    obj.setDocumentReference(docRef);
+    obj.setXClassReference(docRef);
+    obj.setNumber(0);
+    obj.setId(1L, IdVersion.CELEMENTS_3);
+    Session sessionMock = createSessionMock(doc);
+    expectLoadExistingDocs(sessionMock, ImmutableList.of(
+        new Object[] { docId, doc.getFullName(), "" },
+        new Object[] { transDocId, doc.getFullName(), "de" }));
+    expectLoadDocsById(sessionMock, ImmutableList.of(loadedDoc, loadedTransDoc));
+    expectLoadObjectsOfDocs(sessionMock, ImmutableList.of(obj));
+
+    replayDefault();
+    CelHibernateStore store = getStore(sessionMock);
+    store.getDocIdCache().clear();
+    // the translation first, it must not take the objects of the default language document
+    List<XWikiDocument> ret = store.loadXWikiDocs(ImmutableList.of(transDoc, doc), getContext());
+    verifyDefault();
+
+    assertEquals(2, ret.size());
+    assertEquals("de", ret.get(0).getLanguage());
+    assertTrue(ret.get(0).getXObjects().isEmpty());
+    assertEquals("", ret.get(1).getLanguage());
+    assertEquals(1, ret.get(1).getXObjects(docRef).size());
+    assertEquals(docRef, ret.get(1).getXObject(docRef, 0).getDocumentReference());
+  }
+
   @Test
   public void test_saveXWikiDoc_immutability() throws Exception {
     Capture<XWikiDocument> docCapture = newCapture();
@@ -168,6 +277,44 @@ public class CelHibernateStoreTest extends AbstractComponentTest {
     assertFalse(doc.isMetaDataDirty());
   }
 
+  @Test
+  public void test_saveXWikiDoc_save_cachesId() throws Exception {
+    Session sessionMock = createSessionMock(doc);
+    expectLoadExistingDocs(sessionMock, ImmutableList.of());
+    expect(sessionMock.save(cmp(doc, new XWikiDummyDocComparator(), LogicalOperator.EQUAL)))
+        .andReturn(null);
+    transactionMock.commit();
+    expect(sessionMock.close()).andReturn(null);
+
+    replayDefault();
+    CelHibernateStore store = getStore(sessionMock);
+    store.getDocIdCache().clear();
+    store.saveXWikiDoc(doc, getContext());
+    verifyDefault();
+
+    assertEquals(doc.getId(), store.getDocIdCache().get(docRef, "").get().getId());
+  }
+
+  @Test
+  public void test_saveXWikiDoc_commitFails() throws Exception {
+    Session sessionMock = createSessionMock(doc);
+    expectLoadExistingDocs(sessionMock, ImmutableList.of());
+    expect(sessionMock.save(cmp(doc, new XWikiDummyDocComparator(), LogicalOperator.EQUAL)))
+        .andReturn(null);
+    transactionMock.commit();
+    expectLastCall().andThrow(new HibernateException("commit failed"));
+    expect(sessionMock.close()).andReturn(null);
+
+    replayDefault();
+    CelHibernateStore store = getStore(sessionMock);
+    store.getDocIdCache().clear();
+    assertThrows(XWikiException.class, () -> store.saveXWikiDoc(doc, getContext()));
+    verifyDefault();
+
+    assertFalse("failed save mustn't cache the id",
+        store.getDocIdCache().get(docRef, "").isPresent());
+  }
+
   @Test
   public void test_saveXWikiDoc_update() throws Exception {
     long docId = computeDocId(START_COLLISION_COUNT_DEFAULT);
@@ -256,6 +403,21 @@ public class CelHibernateStoreTest extends AbstractComponentTest {
     return sessionMock;
   }
 
+  private XWikiDocument createLoadedDoc(DocumentReference docRef, String lang, long docId) {
+    XWikiDocument loadedDoc = new XWikiDocument(docRef);
+    loadedDoc.setLanguage(lang);
+    loadedDoc.setTranslation(lang.isEmpty() ? 0 : 1);
+    loadedDoc.setId(docId, IdVersion.CELEMENTS_3);
+    loadedDoc.setElements(0);
+    return loadedDoc;
+  }
+
+  private long computeDocId(DocumentReference docRef, String lang)
+      throws IdComputationException {
+    return Utils.getComponent(CelementsIdComputer.class)
+        .computeDocumentId(docRef, lang, START_COLLISION_COUNT_DEFAULT);
+  }
+
   private long computeDocId(int collisionCount) throws IdComputationException {
     return Utils.getComponent(CelementsIdComputer.class)
         .computeDocumentId(docRef, "", (byte) collisionCount);
@@ -0,0 +1,92 @@
+package com.celements.store;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.model.reference.RefBuilder;
+import com.celements.model.util.ModelUtils;
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Microbenchmark comparing the former serialized reference keys of {@link DocumentCacheStore}
+ * with {@link DocCacheKey}, both rebuilt per cache access and carried through a whole load path
+ * (exists cache, doc cache with and without language) as the store does. Not part of the regular test run since its name doesn't match the
+ * surefire includes, run it with {@code mvn test -Dtest=DocCacheKeyBenchmark}.
+ */
+public class DocCacheKeyBenchmark extends AbstractComponentTest {
+
+  private static final int DOCS = 1000;
+  private static final int ROUNDS = 5;
+  private static final int ITERATIONS = 200;
+
+  private final WikiReference contextWiki = new WikiReference("wiki");
+  private final DocumentReference[] docRefs = new DocumentReference[DOCS];
+  private int blackhole;
+
+  @Test
+  public void benchmark() {
+    for (int i = 0; i < DOCS; i++) {
+      docRefs[i] = new DocumentReference("wiki", "Space" + (i % 10), "Doc" + i);
+    }
+    ModelUtils modelUtils = Utils.getComponent(ModelUtils.class);
+    for (int round = 0; round < ROUNDS; round++) {
+      long serializedNanos = measure(() -> {
+        for (DocumentReference docRef : docRefs) {
+          String key = modelUtils.serializeRef(RefBuilder.from(docRef).with(contextWiki)
+              .build(DocumentReference.class));
+          String keyWithLang = key + ":" + "de";
+          blackhole += key.hashCode() + keyWithLang.hashCode();
+        }
+      });
+      long cacheKeyNanos = measure(() -> {
+        for (DocumentReference docRef : docRefs) {
+          DocCacheKey keyWithLang = DocCacheKey.of(contextWiki.getName(), docRef, "de");
+          blackhole += keyWithLang.withoutLang().hashCode() + keyWithLang.hashCode();
+        }
+      });
+      long cacheKeyStringNanos = measure(() -> {
+        for (DocumentReference docRef : docRefs) {
+          DocCacheKey keyWithLang = DocCacheKey.of(contextWiki.getName(), docRef, "de");
+          blackhole += keyWithLang.withoutLang().toString().hashCode()
+              + keyWithLang.toString().hashCode();
+        }
+      });
+      long carriedKeyNanos = measure(() -> {
+        for (DocumentReference docRef : docRefs) {
+          DocCacheKey keyWithLang = DocCacheKey.of(contextWiki.getName(), docRef, "de");
+          for (int access = 0; access < 3; access++) {
+            blackhole += keyWithLang.withoutLang().toString().hashCode()
+                + keyWithLang.toString().hashCode();
+          }
+        }
+      });
+      long rebuiltKeyNanos = measure(() -> {
+        for (DocumentReference docRef : docRefs) {
+          for (int access = 0; access < 3; access++) {
+            DocCacheKey keyWithLang = DocCacheKey.of(contextWiki.getName(), docRef, "de");
+            blackhole += keyWithLang.withoutLang().toString().hashCode()
+                + keyWithLang.toString().hashCode();
+          }
+        }
+      });
+      System.out.println(String.format("round %d - ns/key: serializeRef %d, DocCacheKey %d,"
+          + " DocCacheKey.toString %d, load path carried %d, load path rebuilt %d", round,
+          serializedNanos, cacheKeyNanos, cacheKeyStringNanos, carriedKeyNanos,
+          rebuiltKeyNanos));
+    }
+    assertNotEquals(0, blackhole);
+  }
+
+  private long measure(Runnable run) {
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      run.run();
+    }
+    return (System.nanoTime() - start) / ((long) ITERATIONS * DOCS);
+  }
+
+}
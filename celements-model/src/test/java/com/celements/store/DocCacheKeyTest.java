@@ -0,0 +1,50 @@
+package com.celements.store;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.model.util.ModelUtils;
+import com.xpn.xwiki.web.Utils;
+
+public class DocCacheKeyTest extends AbstractComponentTest {
+
+  @Test
+  public void test_toString() {
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    assertEquals("wiki:space.page", DocCacheKey.of("wiki", docRef, null).toString());
+    assertEquals("other:space.page", DocCacheKey.of("other", docRef, "").toString());
+    assertEquals("wiki:space.page:fr", DocCacheKey.of("wiki", docRef, "fr").toString());
+  }
+
+  @Test
+  public void test_toString_escaped() {
+    DocumentReference docRef = new DocumentReference("wi\\ki", "sp.a:ce", "pa.g\\e:x");
+    assertEquals(Utils.getComponent(ModelUtils.class).serializeRef(docRef),
+        DocCacheKey.of("wi\\ki", docRef, "").toString());
+  }
+
+  @Test
+  public void test_equals() {
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    DocCacheKey key = DocCacheKey.of("wiki", docRef, "fr");
+    assertEquals(key, DocCacheKey.of("wiki", new DocumentReference("other", "space", "page"),
+        "fr"));
+    assertEquals(key.hashCode(), DocCacheKey.of("wiki", docRef, "fr").hashCode());
+    assertNotEquals(key, DocCacheKey.of("wiki", docRef, "de"));
+    assertNotEquals(key, DocCacheKey.of("other", docRef, "fr"));
+    assertNotEquals(key, DocCacheKey.of("wiki", new DocumentReference("wiki", "space", "p"),
+        "fr"));
+  }
+
+  @Test
+  public void test_withoutLang() {
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    DocCacheKey key = DocCacheKey.of("wiki", docRef, "");
+    assertSame(key, key.withoutLang());
+    assertEquals(key, DocCacheKey.of("wiki", docRef, "fr").withoutLang());
+  }
+
+}
@@ -4,6 +4,8 @@ import static com.celements.common.test.CelementsTestUtils.*;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.util.List;
+
 import org.easymock.Capture;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +17,9 @@ import com.celements.common.test.AbstractComponentTest;
 import com.celements.configuration.CelementsAllPropertiesConfigurationSource;
 import com.celements.model.util.ModelUtils;
 import com.celements.model.util.References;
+import com.celements.store.DocumentCacheStore.InvalidateState;
+import com.celements.store.invalidation.DocumentInvalidation;
+import com.google.common.collect.ImmutableList;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 import com.xpn.xwiki.web.Utils;
@@ -203,8 +208,55 @@ public class DocumentCacheStoreTest extends AbstractComponentTest {
     assertNotNull("doc expected in cache", docCacheStore.getDocFromCache(key));
     assertTrue("doc expected in exists cache", docCacheStore.exists(existingDocument,
         getContext()));
-    docCacheStore.invalidateDocCache(key);
+    docCacheStore.invalidateDocCache(docCacheStore.getCacheKey(existingDocument));
+    assertNull("doc not in cache anymore", docCacheStore.getDocFromCache(key));
+    verifyDefault();
+  }
+
+  @Test
+  public void testRemoveDocFromCache_invalidation() throws Exception {
+    getContext().setDatabase("wiki");
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    XWikiDocument savedDoc = new XWikiDocument(docRef);
+    savedDoc.setNew(false);
+    savedDoc.setVersion("2.1");
+    savedDoc.setOriginalDocument(savedDoc.clone());
+    expect(mockStore.loadXWikiDoc(isA(XWikiDocument.class), same(getContext()))).andReturn(
+        savedDoc).once();
+    replayDefault();
+    docCacheStore.initalize();
+    XWikiDocument existingDocument = docCacheStore.loadXWikiDoc(new XWikiDocument(docRef),
+        getContext());
+    String key = docCacheStore.getKeyWithLang(existingDocument);
+    assertEquals(InvalidateState.UP_TO_DATE, docCacheStore.removeDocFromCache(
+        new DocumentInvalidation("wiki", "space.page", "", "2.1")));
+    assertSame("cached version is up to date", existingDocument,
+        docCacheStore.getDocFromCache(key));
+    assertEquals(InvalidateState.REMOVED, docCacheStore.removeDocFromCache(
+        new DocumentInvalidation("wiki", "space.page", "", "3.1")));
+    assertNull("doc not in cache anymore", docCacheStore.getDocFromCache(key));
+    assertTrue(docCacheStore.getExistFromCache(key));
+    verifyDefault();
+  }
+
+  @Test
+  public void testRemoveDocFromCache_invalidation_deleted() throws Exception {
+    getContext().setDatabase("wiki");
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    XWikiDocument savedDoc = new XWikiDocument(docRef);
+    savedDoc.setNew(false);
+    savedDoc.setOriginalDocument(savedDoc.clone());
+    expect(mockStore.loadXWikiDoc(isA(XWikiDocument.class), same(getContext()))).andReturn(
+        savedDoc).once();
+    replayDefault();
+    docCacheStore.initalize();
+    XWikiDocument existingDocument = docCacheStore.loadXWikiDoc(new XWikiDocument(docRef),
+        getContext());
+    String key = docCacheStore.getKeyWithLang(existingDocument);
+    assertEquals(InvalidateState.REMOVED, docCacheStore.removeDocFromCache(
+        new DocumentInvalidation("wiki", "space.page", "", null)));
     assertNull("doc not in cache anymore", docCacheStore.getDocFromCache(key));
+    assertFalse(docCacheStore.getExistFromCache(key));
     verifyDefault();
   }
 
@@ -236,6 +288,94 @@ public class DocumentCacheStoreTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  @Test
+  public void testLoadXWikiDocs() throws Exception {
+    getContext().setDatabase("wiki");
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    DocumentReference docRefNotExists = new DocumentReference("wiki", "space", "notExists");
+    XWikiDocument savedDoc = new XWikiDocument(docRef);
+    savedDoc.setNew(false);
+    savedDoc.setOriginalDocument(savedDoc.clone());
+    expect(mockStore.loadXWikiDoc(isA(XWikiDocument.class), same(getContext()))).andReturn(
+        savedDoc).once();
+    expect(mockStore.loadXWikiDoc(isA(XWikiDocument.class), same(getContext()))).andReturn(
+        new XWikiDocument(docRefNotExists)).once();
+    replayDefault();
+    docCacheStore.initalize();
+    List<XWikiDocument> docs = docCacheStore.loadXWikiDocs(ImmutableList.of(
+        new XWikiDocument(docRef), new XWikiDocument(docRefNotExists), new XWikiDocument(docRef)),
+        getContext());
+    assertEquals(3, docs.size());
+    assertSame(savedDoc, docs.get(0));
+    assertTrue(savedDoc.isFromCache());
+    assertTrue(docs.get(1).isNew());
+    assertEquals(docRefNotExists, docs.get(1).getDocumentReference());
+    assertSame(savedDoc, docs.get(2));
+    assertSame(savedDoc, docCacheStore.getDocFromCache(docCacheStore.getKeyWithLang(savedDoc)));
+    assertFalse(docCacheStore.getExistFromCache(docCacheStore.getKeyWithLang(docs.get(1))));
+
+    docs = docCacheStore.loadXWikiDocs(ImmutableList.of(new XWikiDocument(docRefNotExists),
+        new XWikiDocument(docRef)), getContext());
+    assertTrue(docs.get(0).isNew());
+    assertSame(savedDoc, docs.get(1));
+    verifyDefault();
+  }
+
+  @Test
+  public void testLoadXWikiDocs_bulk() throws Exception {
+    BulkLoadStoreExtension bulkStoreMock = createDefaultMock(BulkLoadStoreExtension.class);
+    registerComponentMock(XWikiStoreInterface.class, "bulkStoreHint", bulkStoreMock);
+    getConfigurationSource().setProperty("celements.store.docCache.backingStore",
+        "bulkStoreHint");
+    getContext().setDatabase("wiki");
+    DocumentReference cachedDocRef = new DocumentReference("wiki", "space", "cached");
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    DocumentReference missingDocRef = new DocumentReference("wiki", "space", "missing");
+    XWikiDocument cachedDoc = createSavedDoc(cachedDocRef, "");
+    XWikiDocument savedDoc = createSavedDoc(docRef, "");
+    XWikiDocument savedTransDoc = createSavedDoc(docRef, "de");
+    expect(bulkStoreMock.loadXWikiDoc(isA(XWikiDocument.class), same(getContext()))).andReturn(
+        cachedDoc).once();
+    Capture<List<XWikiDocument>> buildDocsCapture = newCapture();
+    expect(bulkStoreMock.loadXWikiDocs(capture(buildDocsCapture), same(getContext())))
+        .andReturn(ImmutableList.of(savedDoc, savedTransDoc, new XWikiDocument(missingDocRef)))
+        .once();
+    replayDefault();
+    docCacheStore.initalize();
+    assertSame(cachedDoc, docCacheStore.loadXWikiDocs(ImmutableList.of(
+        new XWikiDocument(cachedDocRef)), getContext()).get(0));
+    XWikiDocument transDoc = new XWikiDocument(docRef);
+    transDoc.setLanguage("de");
+    List<XWikiDocument> docs = docCacheStore.loadXWikiDocs(ImmutableList.of(
+        new XWikiDocument(cachedDocRef), new XWikiDocument(docRef), transDoc,
+        new XWikiDocument(missingDocRef)), getContext());
+    assertEquals(4, docs.size());
+    assertSame("partial cache hit", cachedDoc, docs.get(0));
+    assertSame(savedDoc, docs.get(1));
+    assertTrue(savedDoc.isFromCache());
+    assertSame("translation loaded in the same batch", savedTransDoc, docs.get(2));
+    assertTrue(docs.get(3).isNew());
+    assertEquals(missingDocRef, docs.get(3).getDocumentReference());
+    List<XWikiDocument> buildDocs = buildDocsCapture.getValue();
+    assertEquals("only the cache misses are bulk loaded", 3, buildDocs.size());
+    assertEquals(docRef, buildDocs.get(0).getDocumentReference());
+    assertEquals("", buildDocs.get(0).getLanguage());
+    assertEquals(docRef, buildDocs.get(1).getDocumentReference());
+    assertEquals("de", buildDocs.get(1).getLanguage());
+    assertEquals(missingDocRef, buildDocs.get(2).getDocumentReference());
+    assertSame(savedDoc, docCacheStore.getDocFromCache(docCacheStore.getKeyWithLang(savedDoc)));
+    assertSame(savedTransDoc, docCacheStore.getDocFromCache(docCacheStore.getKeyWithLang(
+        savedTransDoc)));
+    assertFalse(docCacheStore.getExistFromCache(docCacheStore.getKeyWithLang(docs.get(3))));
+
+    docs = docCacheStore.loadXWikiDocs(ImmutableList.of(new XWikiDocument(missingDocRef),
+        transDoc, new XWikiDocument(docRef)), getContext());
+    assertTrue(docs.get(0).isNew());
+    assertSame(savedTransDoc, docs.get(1));
+    assertSame(savedDoc, docs.get(2));
+    verifyDefault();
+  }
+
   @Test
   public void testLoadXWikiDoc_different_contextDb_WikiRef() throws Exception {
     getContext().setDatabase("xwikimydb");
@@ -391,6 +531,16 @@ public class DocumentCacheStoreTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  private XWikiDocument createSavedDoc(DocumentReference docRef, String lang) {
+    XWikiDocument savedDoc = new XWikiDocument(docRef);
+    savedDoc.setNew(false);
+    savedDoc.setLanguage(lang);
+    savedDoc.setDefaultLanguage("");
+    savedDoc.setTranslation(lang.isEmpty() ? 0 : 1);
+    savedDoc.setOriginalDocument(savedDoc.clone());
+    return savedDoc;
+  }
+
   private static final String serialize(DocumentReference docRef) {
     return Utils.getComponent(ModelUtils.class).serializeRef(docRef);
   }
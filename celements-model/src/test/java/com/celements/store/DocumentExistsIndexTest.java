@@ -0,0 +1,94 @@
+package com.celements.store;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.model.util.ModelUtils;
+import com.xpn.xwiki.web.Utils;
+
+public class DocumentExistsIndexTest extends AbstractComponentTest {
+
+  private QueryManager queryManagerMock;
+  private DocumentExistsIndex index;
+  private DocumentReference docRef;
+
+  @Before
+  public void prepareTest() {
+    queryManagerMock = createDefaultMock(QueryManager.class);
+    index = new DocumentExistsIndex(() -> queryManagerMock, Utils.getComponent(ModelUtils.class));
+    docRef = new DocumentReference("wiki", "space", "page");
+  }
+
+  @Test
+  public void test_exists() throws Exception {
+    expectBuild(new Object[] { "space", "page", "" }, new Object[] { "space", "page", "de" });
+    replayDefault();
+    assertEquals(Optional.of(true), index.exists(docRef));
+    assertEquals(Optional.of(true), index.exists(docRef, ""));
+    assertEquals(Optional.of(true), index.exists(docRef, "de"));
+    assertEquals(Optional.of(false), index.exists(docRef, "fr"));
+    assertEquals(Optional.of(false), index.exists(new DocumentReference("wiki", "space", "x")));
+    assertEquals(1, index.size());
+    assertTrue(index.getMemoryFootprint() > 0);
+    verifyDefault();
+  }
+
+  @Test
+  public void test_add_remove() throws Exception {
+    expectBuild(new Object[] { "space", "page", "" });
+    replayDefault();
+    index.add(docRef, "de"); // ignored, index not yet built
+    assertEquals(Optional.of(false), index.exists(docRef, "de"));
+    index.add(docRef, "de");
+    assertEquals(Optional.of(true), index.exists(docRef, "de"));
+    index.remove(docRef, "");
+    assertEquals(Optional.of(false), index.exists(docRef, ""));
+    assertEquals(Optional.of(true), index.exists(docRef));
+    index.remove(docRef, "de");
+    assertEquals(Optional.of(false), index.exists(docRef));
+    assertEquals(0, index.size());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_buildFailed() throws Exception {
+    expect(queryManagerMock.createQuery(anyObject(String.class), eq(Query.HQL)))
+        .andThrow(new QueryException("", null, null));
+    replayDefault();
+    assertEquals(Optional.empty(), index.exists(docRef));
+    assertEquals(Optional.empty(), index.exists(docRef, ""));
+    verifyDefault();
+  }
+
+  @Test
+  public void test_clear() throws Exception {
+    expectBuild(new Object[] { "space", "page", "" });
+    expectBuild();
+    replayDefault();
+    assertEquals(Optional.of(true), index.exists(docRef));
+    index.clear();
+    assertEquals(Optional.of(false), index.exists(docRef));
+    verifyDefault();
+  }
+
+  private void expectBuild(Object[]... rows) throws QueryException {
+    Query queryMock = createDefaultMock(Query.class);
+    expect(queryManagerMock.createQuery(anyObject(String.class), eq(Query.HQL)))
+        .andReturn(queryMock);
+    expect(queryMock.setWiki("wiki")).andReturn(queryMock);
+    expect(queryMock.<Object[]>execute()).andReturn(Arrays.asList(rows));
+  }
+
+}
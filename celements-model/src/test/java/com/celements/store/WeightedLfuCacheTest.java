@@ -0,0 +1,145 @@
+package com.celements.store;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.google.common.collect.ImmutableList;
+
+public class WeightedLfuCacheTest extends AbstractComponentTest {
+
+  private WeightedLfuCache<Integer> cache;
+
+  @Before
+  public void prepareTest() {
+    cache = new WeightedLfuCache<>(1000, 1000, Integer::longValue);
+  }
+
+  @Test
+  public void test_set_get() {
+    cache.set("a", 10);
+    assertEquals(10, (int) cache.get("a"));
+    assertEquals(10, cache.getWeight());
+    cache.set("a", 20);
+    assertEquals(20, (int) cache.get("a"));
+    assertEquals(20, cache.getWeight());
+    assertNull(cache.get("b"));
+  }
+
+  @Test
+  public void test_set_tooHeavy() {
+    cache.set("a", 10);
+    cache.set("a", 1000);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void test_remove() {
+    cache.set("a", 10);
+    cache.set("b", 20);
+    cache.remove("a");
+    assertNull(cache.get("a"));
+    assertEquals(20, cache.getWeight());
+    cache.removeAll();
+    assertNull(cache.get("b"));
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void test_listeners() {
+    List<String> events = new ArrayList<>();
+    cache.addCacheEntryListener(new CacheEntryListener<Integer>() {
+
+      @Override
+      public void cacheEntryAdded(CacheEntryEvent<Integer> event) {
+        events.add("added " + event.getEntry().getKey() + "=" + event.getEntry().getValue());
+      }
+
+      @Override
+      public void cacheEntryModified(CacheEntryEvent<Integer> event) {
+        events.add("modified " + event.getEntry().getKey() + "=" + event.getEntry().getValue());
+      }
+
+      @Override
+      public void cacheEntryRemoved(CacheEntryEvent<Integer> event) {
+        events.add("removed " + event.getEntry().getKey() + "=" + event.getEntry().getValue());
+      }
+    });
+    cache.set("a", 10);
+    cache.set("a", 20);
+    cache.set("b", 30);
+    cache.remove("a");
+    cache.remove("a");
+    cache.set("b", 1000);
+    cache.set("c", 40);
+    cache.removeAll();
+    assertEquals(ImmutableList.of("added a=10", "modified a=20", "added b=30", "removed a=20",
+        "removed b=30", "added c=40", "removed c=40"), events);
+  }
+
+  @Test
+  public void test_listeners_eviction() {
+    Set<String> removed = new HashSet<>();
+    cache.addCacheEntryListener(new CacheEntryListener<Integer>() {
+
+      @Override
+      public void cacheEntryAdded(CacheEntryEvent<Integer> event) {}
+
+      @Override
+      public void cacheEntryModified(CacheEntryEvent<Integer> event) {}
+
+      @Override
+      public void cacheEntryRemoved(CacheEntryEvent<Integer> event) {
+        assertSame(cache, event.getCache());
+        removed.add(event.getEntry().getKey());
+      }
+    });
+    for (int i = 0; i < 500; i++) {
+      cache.set("key" + i, 10);
+    }
+    for (int i = 0; i < 500; i++) {
+      assertEquals("key" + i, cache.get("key" + i) == null, removed.contains("key" + i));
+    }
+    assertEquals(500 - cache.size(), removed.size());
+  }
+
+  @Test
+  public void test_maxWeight() {
+    for (int i = 0; i < 500; i++) {
+      cache.set("key" + i, 1 + (i % 30));
+      assertTrue(cache.getWeight() <= cache.getMaxWeight());
+    }
+    assertTrue(cache.size() > 0);
+  }
+
+  @Test
+  public void test_scanResistance() {
+    for (int i = 0; i < 50; i++) {
+      cache.set("hot" + i, 10);
+    }
+    for (int j = 0; j < 5; j++) {
+      for (int i = 0; i < 50; i++) {
+        assertNotNull(cache.get("hot" + i));
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      cache.set("scan" + i, 10);
+    }
+    for (int i = 0; i < 50; i++) {
+      assertNotNull("hot" + i, cache.get("hot" + i));
+    }
+    assertTrue(cache.getWeight() <= cache.getMaxWeight());
+  }
+
+}
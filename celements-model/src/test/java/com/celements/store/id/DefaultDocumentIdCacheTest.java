@@ -0,0 +1,67 @@
+package com.celements.store.id;
+
+import static org.junit.Assert.*;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.xpn.xwiki.web.Utils;
+
+public class DefaultDocumentIdCacheTest extends AbstractComponentTest {
+
+  private DocumentIdCache docIdCache;
+  private DocumentReference docRef;
+
+  @Before
+  public void prepareTest() {
+    docIdCache = Utils.getComponent(DocumentIdCache.class);
+    docRef = new DocumentReference("db", "space", "page");
+  }
+
+  @Test
+  public void test_get_miss() {
+    assertEquals(Optional.empty(), docIdCache.get(docRef, ""));
+  }
+
+  @Test
+  public void test_put_get() {
+    DocumentId docId = new DocumentId(5, IdVersion.CELEMENTS_3);
+    docIdCache.put(docRef, "", docId);
+    assertEquals(Optional.of(docId), docIdCache.get(docRef, ""));
+    assertEquals(Optional.of(docId), docIdCache.get(docRef, null));
+    assertEquals(Optional.empty(), docIdCache.get(docRef, "de"));
+    assertEquals(Optional.empty(), docIdCache.get(
+        new DocumentReference("otherdb", "space", "page"), ""));
+  }
+
+  @Test
+  public void test_put_lang() {
+    DocumentId docId = new DocumentId(5, IdVersion.CELEMENTS_3);
+    DocumentId docIdDe = new DocumentId(6, IdVersion.XWIKI_2);
+    docIdCache.put(docRef, "", docId);
+    docIdCache.put(docRef, "de", docIdDe);
+    assertEquals(Optional.of(docId), docIdCache.get(docRef, ""));
+    assertEquals(Optional.of(docIdDe), docIdCache.get(docRef, "de"));
+  }
+
+  @Test
+  public void test_remove() {
+    docIdCache.put(docRef, "", new DocumentId(5, IdVersion.CELEMENTS_3));
+    docIdCache.put(docRef, "de", new DocumentId(6, IdVersion.CELEMENTS_3));
+    docIdCache.remove(docRef, "de");
+    assertTrue(docIdCache.get(docRef, "").isPresent());
+    assertFalse(docIdCache.get(docRef, "de").isPresent());
+  }
+
+  @Test
+  public void test_clear() {
+    docIdCache.put(docRef, "", new DocumentId(5, IdVersion.CELEMENTS_3));
+    docIdCache.clear();
+    assertFalse(docIdCache.get(docRef, "").isPresent());
+  }
+
+}
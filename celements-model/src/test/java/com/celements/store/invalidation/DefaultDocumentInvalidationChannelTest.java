@@ -0,0 +1,111 @@
+package com.celements.store.invalidation;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.remote.NetworkAdapter;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.configuration.CelementsAllPropertiesConfigurationSource;
+import com.google.common.collect.ImmutableList;
+import com.xpn.xwiki.web.Utils;
+
+public class DefaultDocumentInvalidationChannelTest extends AbstractComponentTest {
+
+  private RemoteObservationManagerConfiguration remoteCfgMock;
+  private NetworkAdapter networkAdapterMock;
+  private DefaultDocumentInvalidationChannel channel;
+  private DocumentReference docRef;
+
+  @Before
+  public void prepareTest() throws Exception {
+    remoteCfgMock = registerComponentMock(RemoteObservationManagerConfiguration.class);
+    networkAdapterMock = registerComponentMock(NetworkAdapter.class, "jgroups");
+    registerComponentMock(ConfigurationSource.class, CelementsAllPropertiesConfigurationSource.NAME,
+        getConfigurationSource());
+    getConfigurationSource().setProperty(DefaultDocumentInvalidationChannel.PARAM_ENABLED, true);
+    // prevent the scheduled flush, the tests flush explicitly
+    getConfigurationSource().setProperty(DefaultDocumentInvalidationChannel.PARAM_BATCH_DELAY,
+        60 * 60 * 1000);
+    channel = (DefaultDocumentInvalidationChannel) Utils.getComponent(
+        DocumentInvalidationChannel.class);
+    docRef = new DocumentReference("wiki", "space", "page");
+  }
+
+  @Test
+  public void test_publish_coalesced() {
+    expect(remoteCfgMock.isEnabled()).andReturn(true).anyTimes();
+    expect(remoteCfgMock.getNetworkAdapter()).andReturn("jgroups").anyTimes();
+    Capture<RemoteEventData> remoteEventCapture = newCapture();
+    networkAdapterMock.send(capture(remoteEventCapture));
+    expectLastCall().once();
+    replayDefault();
+    channel.publish(docRef, "", "1.1");
+    channel.publish(docRef, "de", "1.1");
+    channel.publish(docRef, "", "2.1");
+    channel.flush();
+    channel.flush(); // nothing pending, nothing sent
+    verifyDefault();
+    List<DocumentInvalidation> invalidations = ((DocumentInvalidationEvent) remoteEventCapture
+        .getValue().getEvent()).getInvalidations();
+    assertEquals(2, invalidations.size());
+    assertTrue(invalidations.contains(new DocumentInvalidation("wiki", "space.page", "", "2.1")));
+    assertTrue(invalidations.contains(new DocumentInvalidation("wiki", "space.page", "de",
+        "1.1")));
+    assertEquals(3L, (long) channel.getMetrics().get("published"));
+    assertEquals(2L, (long) channel.getMetrics().get("sent"));
+    assertEquals(1L, (long) channel.getMetrics().get("sentBatches"));
+    assertEquals(36L, (long) channel.getMetrics().get("sentPayload"));
+  }
+
+  @Test
+  public void test_isDocumentEventFallback() {
+    replayDefault();
+    assertFalse(channel.isDocumentEventFallback());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_isDocumentEventFallback_configured() {
+    getConfigurationSource().setProperty(
+        DefaultDocumentInvalidationChannel.PARAM_DOC_EVENT_FALLBACK, true);
+    replayDefault();
+    assertTrue(channel.isDocumentEventFallback());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_publish_disabled() {
+    expect(remoteCfgMock.isEnabled()).andReturn(false).anyTimes();
+    replayDefault();
+    assertFalse(channel.isEnabled());
+    channel.publish(docRef, "", null);
+    channel.flush();
+    verifyDefault();
+    assertEquals(0L, (long) channel.getMetrics().get("published"));
+  }
+
+  @Test
+  public void test_received() {
+    replayDefault();
+    channel.received(new DocumentInvalidationEvent(ImmutableList.of(
+        new DocumentInvalidation("wiki", "space.page", "", null)),
+        System.currentTimeMillis() - 10));
+    verifyDefault();
+    assertEquals(1L, (long) channel.getMetrics().get("received"));
+    assertEquals(1L, (long) channel.getMetrics().get("receivedBatches"));
+    assertEquals(14L, (long) channel.getMetrics().get("receivedPayload"));
+    assertTrue(channel.getMetrics().get("latencyMaxMillis") >= 10);
+  }
+
+}
@@ -0,0 +1,209 @@
+package com.celements.store.part;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static com.celements.model.util.ReferenceSerializationMode.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.store.CelHibernateStore;
+import com.celements.store.TestHibernateQuery;
+import com.celements.store.id.IdVersion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.DBStringListProperty;
+import com.xpn.xwiki.objects.IntegerProperty;
+import com.xpn.xwiki.objects.LargeStringProperty;
+import com.xpn.xwiki.objects.StringProperty;
+
+public class CelHibernateStoreCollectionPartTest extends AbstractComponentTest {
+
+  private static final String TYPES_HQL = "select prop.id.id, prop.id.name, prop.classType "
+      + "from BaseProperty as prop, BaseObject as obj "
+      + "where obj.name in (:names) and obj.id = prop.id.id";
+  private static final String VALUES_HQL = "select prop.id.id, prop.id.name, prop.value from ";
+  private static final String LIST_HQL = "select prop.id.id, prop.id.name, index(item), item "
+      + "from DBStringListProperty as prop left join prop.list as item, BaseObject as obj "
+      + "where obj.name in (:names) and obj.id = prop.id.id";
+
+  private CelHibernateStoreCollectionPart storePart;
+
+  private CelHibernateStore storeMock;
+  private Session sessionMock;
+  private XWikiDocument doc1;
+  private XWikiDocument doc2;
+  private final List<Object[]> typeRows = new ArrayList<>();
+  private final List<Object[]> valueRows = new ArrayList<>();
+  private final List<Object[]> listRows = new ArrayList<>();
+  private final Set<String> queriedTables = new TreeSet<>();
+  private final Set<Object> queriedNames = new TreeSet<>();
+
+  @Before
+  public void prepareTest() throws Exception {
+    storeMock = createDefaultMock(CelHibernateStore.class);
+    sessionMock = createDefaultMock(Session.class);
+    expect(storeMock.getSession(same(getContext()))).andReturn(sessionMock).anyTimes();
+    expect(getWikiMock().getXClass(isA(DocumentReference.class), isA(XWikiContext.class)))
+        .andReturn(null).anyTimes();
+    doc1 = new XWikiDocument(new DocumentReference("xwikidb", "Space", "Doc1"));
+    doc2 = new XWikiDocument(new DocumentReference("xwikidb", "Space", "Doc2"));
+    for (XWikiDocument doc : ImmutableList.of(doc1, doc2)) {
+      expect(storeMock.serialize(same(doc), eq(LOCAL))).andReturn(doc.getFullName()).anyTimes();
+    }
+    storePart = new CelHibernateStoreCollectionPart(storeMock);
+  }
+
+  @Test
+  public void test_loadXWikiCollections_mixedTypes() throws Exception {
+    BaseObject obj = createObject(doc1, 1);
+    addRow(obj, "str", StringProperty.class, "val");
+    addRow(obj, "num", IntegerProperty.class, 5);
+    addRow(obj, "text", LargeStringProperty.class, "long text");
+    addListRow(obj, "list", 1, "b");
+    addListRow(obj, "list", 0, "a");
+    expectQueries();
+
+    replayDefault();
+    storePart.loadXWikiCollections(ImmutableList.of(doc1), ImmutableList.of(obj), getContext());
+    verifyDefault();
+
+    assertEquals("val", obj.getStringValue("str"));
+    assertEquals(5, obj.getIntValue("num"));
+    assertEquals("long text", obj.getLargeStringValue("text"));
+    assertEquals(ImmutableList.of("a", "b"), obj.getListValue("list"));
+    assertEquals(ImmutableSet.of("IntegerProperty", "LargeStringProperty", "StringProperty"),
+        queriedTables);
+  }
+
+  @Test
+  public void test_loadXWikiCollections_onlyRequiredTables() throws Exception {
+    BaseObject obj = createObject(doc1, 1);
+    addRow(obj, "num", IntegerProperty.class, 5);
+    expectQueries();
+
+    replayDefault();
+    storePart.loadXWikiCollections(ImmutableList.of(doc1), ImmutableList.of(obj), getContext());
+    verifyDefault();
+
+    assertEquals(5, obj.getIntValue("num"));
+    assertEquals(ImmutableSet.of("IntegerProperty"), queriedTables);
+  }
+
+  @Test
+  public void test_loadXWikiCollections_emptyList() throws Exception {
+    BaseObject obj = createObject(doc1, 1);
+    addListRow(obj, "empty", null, null);
+    addListRow(obj, "list", 0, "a");
+    expectQueries();
+
+    replayDefault();
+    storePart.loadXWikiCollections(ImmutableList.of(doc1), ImmutableList.of(obj), getContext());
+    verifyDefault();
+
+    assertTrue(obj.get("empty") instanceof DBStringListProperty);
+    assertEquals(ImmutableList.of(), obj.getListValue("empty"));
+    assertEquals(ImmutableList.of("a"), obj.getListValue("list"));
+    assertEquals(ImmutableSet.of(), queriedTables);
+  }
+
+  @Test
+  public void test_loadXWikiCollections_multipleDocs() throws Exception {
+    BaseObject obj1 = createObject(doc1, 1);
+    BaseObject obj2 = createObject(doc2, 2);
+    BaseObject obj3 = createObject(doc2, 3);
+    addRow(obj1, "str", StringProperty.class, "val1");
+    addRow(obj2, "str", StringProperty.class, "val2");
+    addRow(obj3, "num", IntegerProperty.class, 3);
+    addListRow(obj2, "list", 0, "c");
+    addListRow(obj3, "list", null, null);
+    expectQueries();
+
+    replayDefault();
+    storePart.loadXWikiCollections(ImmutableList.of(doc1, doc2), ImmutableList.of(obj1, obj2,
+        obj3), getContext());
+    verifyDefault();
+
+    assertEquals(ImmutableSet.of("Space.Doc1", "Space.Doc2"), queriedNames);
+    assertEquals("val1", obj1.getStringValue("str"));
+    assertNull(obj1.get("num"));
+    assertEquals("val2", obj2.getStringValue("str"));
+    assertEquals(ImmutableList.of("c"), obj2.getListValue("list"));
+    assertEquals(3, obj3.getIntValue("num"));
+    assertEquals(ImmutableList.of(), obj3.getListValue("list"));
+  }
+
+  @Test
+  public void test_loadXWikiCollections_noObjects() throws Exception {
+    replayDefault();
+    storePart.loadXWikiCollections(ImmutableList.of(doc1), ImmutableList.of(), getContext());
+    verifyDefault();
+  }
+
+  private BaseObject createObject(XWikiDocument doc, long id) {
+    BaseObject obj = new BaseObject();
+    obj.setDocumentReference(doc.getDocumentReference());
+    obj.setXClassReference(new DocumentReference("xwikidb", "Classes", "TestClass"));
+    obj.setId(id, IdVersion.CELEMENTS_3);
+    return obj;
+  }
+
+  private void addRow(BaseObject obj, String name, Class<?> type, Object value) {
+    typeRows.add(new Object[] { obj.getId(), name, type.getName() });
+    valueRows.add(new Object[] { obj.getId(), name, value, type.getSimpleName() });
+  }
+
+  private void addListRow(BaseObject obj, String name, Integer index, String item) {
+    if (listRows.stream().noneMatch(row -> row[0].equals(obj.getId()) && row[1].equals(name))) {
+      typeRows.add(new Object[] { obj.getId(), name, DBStringListProperty.class.getName() });
+    }
+    listRows.add(new Object[] { obj.getId(), name, index, item });
+  }
+
+  private void expectQueries() {
+    expect(sessionMock.createQuery(eq(TYPES_HQL))).andReturn(new TestQuery(TYPES_HQL,
+        typeRows));
+    expect(sessionMock.createQuery(startsWith(VALUES_HQL))).andAnswer(() -> {
+      String hql = (String) getCurrentArguments()[0];
+      String table = hql.substring(VALUES_HQL.length(), hql.indexOf(' ', VALUES_HQL.length()));
+      queriedTables.add(table);
+      List<Object[]> rows = new ArrayList<>();
+      valueRows.stream().filter(row -> row[3].equals(table)).forEach(rows::add);
+      return new TestQuery(hql, rows);
+    }).anyTimes();
+    if (!listRows.isEmpty()) {
+      expect(sessionMock.createQuery(eq(LIST_HQL))).andReturn(new TestQuery(LIST_HQL, listRows));
+    }
+  }
+
+  private class TestQuery extends TestHibernateQuery<Object[]> {
+
+    private final List<Object[]> rows;
+
+    TestQuery(String hql, List<Object[]> rows) {
+      super(hql);
+      this.rows = rows;
+    }
+
+    @Override
+    public List<Object[]> list() throws HibernateException {
+      queriedNames.addAll((Collection<?>) params.get("names"));
+      return rows;
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package org.xwiki.observation;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * {@link EventListener} notified asynchronously on dispatcher threads of its own, thus the
+ * notifying thread, e.g. a document save, doesn't wait for it. Each dispatcher thread has a bounded
+ * queue, if it's full the notifying thread blocks until there is space again (back-pressure), for
+ * a limited time after which it delivers the notification itself. Notifications from within
+ * {@link #onEvent} to a full queue are delivered immediately on the dispatcher thread.
+ * <p>
+ * CAUTION: {@link #onEvent} is executed without the execution context of the notifying thread.
+ * Event source and data may still be modified by the notifying thread and thus should only be
+ * accessed if they are immutable or have been copied by the listener in
+ * {@link #getOrderingKey}.
+ *
+ * @since 6.2
+ */
+public interface AsyncEventListener extends EventListener {
+
+  int DEFAULT_QUEUE_CAPACITY = 1000;
+
+  /**
+   * @return the maximum amount of pending notifications per dispatcher thread
+   */
+  default int getQueueCapacity() {
+    return DEFAULT_QUEUE_CAPACITY;
+  }
+
+  /**
+   * @return the amount of dispatcher threads, only more than one if the listener is thread safe
+   */
+  default int getDispatcherThreads() {
+    return 1;
+  }
+
+  /**
+   * Notifications with equal ordering keys are delivered by the same dispatcher thread in the order
+   * they have been notified, e.g. the document reference for document events. Called on the
+   * notifying thread.
+   *
+   * @return the ordering key or null if the notification may be delivered by any dispatcher thread
+   */
+  default Object getOrderingKey(Event event, Object source, Object data) {
+    return null;
+  }
+
+}
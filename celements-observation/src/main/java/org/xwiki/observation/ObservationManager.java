@@ -20,6 +20,10 @@
  */
 package org.xwiki.observation;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import org.xwiki.component.annotation.ComponentRole;
 import org.xwiki.observation.event.Event;
 
@@ -112,4 +116,25 @@ public interface ObservationManager {
    */
   void notify(Event event, Object source);
 
+  /**
+   * Stops the asynchronous dispatching of all {@link AsyncEventListener}s and waits for their
+   * pending notifications to be delivered. Notifications afterwards are delivered synchronously.
+   * Called automatically on {@link org.xwiki.observation.event.ApplicationStoppedEvent}.
+   *
+   * @return true if all pending notifications have been delivered within the timeout
+   * @since 6.2
+   */
+  default boolean drainAsyncListeners(long timeout, TimeUnit unit) {
+    return true;
+  }
+
+  /**
+   * @return the dispatch metrics (dispatched, completed, failed, blocked, queued, ...) per
+   *         {@link AsyncEventListener} name
+   * @since 6.2
+   */
+  default Map<String, Map<String, Long>> getAsyncListenerMetrics() {
+    return Collections.emptyMap();
+  }
+
 }
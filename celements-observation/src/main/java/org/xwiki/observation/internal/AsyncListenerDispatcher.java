@@ -0,0 +1,160 @@
+package org.xwiki.observation.internal;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.AsyncEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Delivers the notifications of an {@link AsyncEventListener} on its own single threaded
+ * executors, one per dispatcher thread, each with a bounded queue. Notifications are assigned to
+ * an executor by their ordering key, thus equal keys are delivered in order.
+ * <p>
+ * If a queue is full the notifying thread blocks for at most {@value #MAX_BLOCK_SECONDS} seconds
+ * and then delivers the notification itself. Notifications by the dispatcher threads themselves,
+ * i.e. from within {@link AsyncEventListener#onEvent}, are delivered immediately since waiting for
+ * their own queue would dead lock. Both break the delivery order.
+ */
+class AsyncListenerDispatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncListenerDispatcher.class);
+
+  static final long MAX_BLOCK_SECONDS = 10;
+
+  private final AsyncEventListener listener;
+  private final ThreadPoolExecutor[] executors;
+  private final AtomicInteger roundRobin = new AtomicInteger();
+  private final Set<Thread> dispatcherThreads = ConcurrentHashMap.newKeySet();
+
+  private final LongAdder dispatchedCount = new LongAdder();
+  private final LongAdder completedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private final LongAdder blockedCount = new LongAdder();
+  private final LongAdder blockedNanos = new LongAdder();
+  private final LongAdder callerRunsCount = new LongAdder();
+
+  AsyncListenerDispatcher(AsyncEventListener listener) {
+    this.listener = listener;
+    ThreadFactory threadFactory = new ThreadFactoryBuilder()
+        .setNameFormat("cel-observation-" + listener.getName() + "-%d")
+        .setDaemon(true)
+        .build();
+    ThreadFactory dispatcherThreadFactory = runnable -> {
+      Thread thread = threadFactory.newThread(runnable);
+      dispatcherThreads.add(thread);
+      return thread;
+    };
+    int capacity = Math.max(1, listener.getQueueCapacity());
+    this.executors = new ThreadPoolExecutor[Math.max(1, listener.getDispatcherThreads())];
+    for (int i = 0; i < executors.length; i++) {
+      executors[i] = new ThreadPoolExecutor(1, 1, 0, MILLISECONDS,
+          new ArrayBlockingQueue<>(capacity), dispatcherThreadFactory, this::onQueueFull);
+    }
+  }
+
+  void dispatch(Event event, Object source, Object data) {
+    Object key = listener.getOrderingKey(event, source, data);
+    int hash = (key != null) ? key.hashCode() : roundRobin.getAndIncrement();
+    dispatchedCount.increment();
+    executors[Math.floorMod(hash, executors.length)].execute(() -> deliver(event, source, data));
+  }
+
+  private void deliver(Event event, Object source, Object data) {
+    try {
+      listener.onEvent(event, source, data);
+      completedCount.increment();
+    } catch (Exception exc) {
+      // protect from bad listeners
+      failedCount.increment();
+      LOGGER.error("Fail to send event [{}] to async listener [{}]", event, listener, exc);
+    }
+  }
+
+  /**
+   * blocks the notifying thread until the queue has space again, at most
+   * {@value #MAX_BLOCK_SECONDS} seconds. After shutdown, on timeout or for dispatcher threads the
+   * notification is delivered synchronously instead.
+   */
+  private void onQueueFull(Runnable task, ThreadPoolExecutor executor) {
+    if (executor.isShutdown() || dispatcherThreads.contains(Thread.currentThread())) {
+      callerRunsCount.increment();
+      task.run();
+      return;
+    }
+    blockedCount.increment();
+    long start = System.nanoTime();
+    boolean queued = false;
+    try {
+      queued = executor.getQueue().offer(task, MAX_BLOCK_SECONDS, SECONDS);
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    } finally {
+      blockedNanos.add(System.nanoTime() - start);
+    }
+    if (!queued) {
+      LOGGER.info("onQueueFull: delivering synchronously to async listener [{}]",
+          listener.getName());
+      callerRunsCount.increment();
+      task.run();
+    }
+  }
+
+  /**
+   * @return true if all pending notifications have been delivered within the timeout
+   */
+  boolean drain(long timeout, TimeUnit unit) {
+    for (ThreadPoolExecutor executor : executors) {
+      executor.shutdown();
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    boolean terminated = true;
+    try {
+      for (ThreadPoolExecutor executor : executors) {
+        terminated &= executor.awaitTermination(deadline - System.nanoTime(), NANOSECONDS);
+      }
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      terminated = false;
+    }
+    if (!terminated) {
+      LOGGER.warn("drain: pending notifications left for async listener [{}]",
+          listener.getName());
+    }
+    return terminated;
+  }
+
+  Map<String, Long> getMetrics() {
+    long queued = 0;
+    long capacity = 0;
+    for (ThreadPoolExecutor executor : executors) {
+      queued += executor.getQueue().size();
+      capacity += executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+    return ImmutableMap.<String, Long>builder()
+        .put("dispatched", dispatchedCount.sum())
+        .put("completed", completedCount.sum())
+        .put("failed", failedCount.sum())
+        .put("queued", queued)
+        .put("capacity", capacity)
+        .put("blocked", blockedCount.sum())
+        .put("blockedMillis", NANOSECONDS.toMillis(blockedNanos.sum()))
+        .put("callerRuns", callerRunsCount.sum())
+        .build();
+  }
+
+}
@@ -20,11 +20,17 @@
  */
 package org.xwiki.observation.internal;
 
+import static java.util.concurrent.TimeUnit.*;
+
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,18 +40,24 @@ import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.observation.AsyncEventListener;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
 import org.xwiki.observation.event.Event;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import one.util.streamex.EntryStream;
+
 /**
  * Default implementation of the {@link ObservationManager}.
  * <p>
- * This component use synchronized for concurrent protection instead of having
- * {@link java.util.concurrent.ConcurrentHashMap} everywhere because it's more efficient since most
- * of methods access to
- * several maps and generally do enumerations.
+ * The registered listeners are held in an immutable {@link Registry} which is replaced on every
+ * modification. Per notified event class the registry compiles an {@link EventDispatchTable}
+ * including the listeners of super classes, so that {@link #notify} calls execute fast without any
+ * locking. Modifications are rare and synchronized.
  *
  * @version $Id$
  */
@@ -55,19 +67,19 @@ public class DefaultObservationManager implements ObservationManager, Initializa
   private static final Logger LOGGER = LoggerFactory.getLogger(DefaultObservationManager.class);
 
   /**
-   * Registered listeners indexed on Event classes so that it's fast to find all the listeners
-   * registered for a given
-   * event, so that {@link #notify} calls execute fast and in a fixed amount a time.
-   *
-   * @todo Should we allow event inheritance?
+   * Maximum time to wait on {@link ApplicationStoppedEvent} for pending asynchronous notifications.
    */
-  private Map<Class<? extends Event>, Map<String, RegisteredListener>> listenersByEvent = new ConcurrentHashMap<>();
+  private static final long DRAIN_TIMEOUT_SECONDS = 30;
 
   /**
-   * Registered listeners index by listener name. It makes it fast to perform operations on already
-   * registered listeners.
+   * Dispatchers of the registered {@link AsyncEventListener}s indexed by listener name.
    */
-  private Map<String, EventListener> listenersByName = new ConcurrentHashMap<>();
+  private Map<String, AsyncListenerDispatcher> asyncDispatchers = new ConcurrentHashMap<>();
+
+  /**
+   * CAUTION: replaced on every modification, thus volatile is needed.
+   */
+  private volatile Registry registry = new Registry(ImmutableMap.of(), ImmutableList.of());
 
   /**
    * Used to find all components implementing {@link EventListener} to register them automatically.
@@ -76,49 +88,66 @@ public class DefaultObservationManager implements ObservationManager, Initializa
   private ComponentManager componentManager;
 
   /**
-   * Helper class to store the list of events of a given type associated with a given listener. We
-   * need this for performance reasons and also in order to be able to add events after a listener
-   * has been registered.
+   * Helper class to store the list of events associated with a given listener.
    */
-  private static class RegisteredListener {
-
-    /**
-     * Events of a given type associated with a given listener.
-     */
-    private List<Event> events = new ArrayList<>();
+  static final class RegisteredListener {
 
     /**
      * Listener associated with the events.
      */
-    private EventListener listener;
+    final EventListener listener;
 
     /**
-     * @param listener
-     *          the listener associated with the events.
-     * @param event
-     *          the first event to associate with the passed listener. More events are added by
-     *          calling {@link #addEvent(Event)}
+     * Immutable events associated with the listener.
      */
-    RegisteredListener(EventListener listener, Event event) {
-      addEvent(event);
+    final List<Event> events;
+
+    RegisteredListener(EventListener listener, List<Event> events) {
       this.listener = listener;
+      this.events = ImmutableList.copyOf(events);
     }
 
+  }
+
+  /**
+   * Immutable snapshot of the registered listeners with their lazily compiled dispatch tables.
+   */
+  private final class Registry {
+
     /**
-     * @param event
-     *          the event to add
+     * Registered listeners indexed by listener name in registration order.
      */
-    void addEvent(Event event) {
-      this.events.add(event);
-    }
+    private final Map<String, RegisteredListener> listeners;
+
+    private final ConcurrentMap<Class<? extends Event>, EventDispatchTable> dispatchTables;
 
     /**
-     * @param event
-     *          the event to remove
+     * @param eventClasses
+     *          the event classes to compile the dispatch tables for upfront
      */
-    void removeEvent(Event event) {
-      this.events.remove(event);
+    Registry(Map<String, RegisteredListener> listeners,
+        Iterable<Class<? extends Event>> eventClasses) {
+      this.listeners = ImmutableMap.copyOf(listeners);
+      this.dispatchTables = new ConcurrentHashMap<>();
+      eventClasses.forEach(this::getDispatchTable);
+    }
+
+    EventDispatchTable getDispatchTable(Class<? extends Event> eventClass) {
+      return dispatchTables.computeIfAbsent(eventClass,
+          clazz -> EventDispatchTable.compile(clazz, listeners, asyncDispatchers::get));
     }
+
+  }
+
+  /**
+   * Compiles a new registry from the modified listeners and swaps it atomically. The dispatch
+   * tables of all event classes notified so far are compiled upfront.
+   */
+  private synchronized void updateRegistry(Consumer<Map<String, RegisteredListener>> modifier) {
+    Map<String, RegisteredListener> listeners = new LinkedHashMap<>(this.registry.listeners);
+    modifier.accept(listeners);
+    Set<Class<? extends Event>> eventClasses = this.registry.dispatchTables.keySet();
+    this.registry = new Registry(listeners, ImmutableList.copyOf(eventClasses));
   }
 
   /**
@@ -131,9 +160,8 @@ public class DefaultObservationManager implements ObservationManager, Initializa
   @Override
   public void initialize() throws InitializationException {
     try {
-      for (EventListener listener : this.componentManager.lookupList(EventListener.class)) {
-        addListener(listener);
-      }
+      List<EventListener> listeners = this.componentManager.lookupList(EventListener.class);
+      updateRegistry(registered -> listeners.forEach(listener -> register(registered, listener)));
     } catch (ComponentLookupException e) {
       throw new InitializationException("Failed to lookup Event Listeners", e);
     }
@@ -141,132 +169,98 @@ public class DefaultObservationManager implements ObservationManager, Initializa
 
   @Override
   public void addListener(EventListener eventListener) {
+    updateRegistry(registered -> register(registered, eventListener));
+  }
+
+  private void register(Map<String, RegisteredListener> registered, EventListener eventListener) {
     // Register the listener by name. If already registered, override it.
-    EventListener previousListener = this.listenersByName.put(eventListener.getName(),
-        eventListener);
+    RegisteredListener previousListener = registered.put(eventListener.getName(),
+        new RegisteredListener(eventListener, eventListener.getEvents()));
 
     // If the passed event listener name is already registered, log a warning
     if (previousListener != null) {
       LOGGER.warn(
           "The [" + eventListener.getClass().getName() + "] listener has overwritten a previously "
-              + "registered listener [" + previousListener.getClass().getName()
+              + "registered listener [" + previousListener.listener.getClass().getName()
               + "] since they both are registered under the same id [" + eventListener.getName()
               + "]."
               + " In the future consider removing a Listener first if you really want to register it again.");
     }
 
-    // For each event defined for this listener, add it to the Event Map.
-    for (Event event : eventListener.getEvents()) {
-      // Check if this is a new Event type not already registered
-      Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
-      if (eventListeners == null) {
-        // No listener registered for this event yet. Create a map to store listeners for this
-        // event.
-        eventListeners = new ConcurrentHashMap<>();
-        this.listenersByEvent.put(event.getClass(), eventListeners);
-        // There is no RegisteredListener yet, create one
-        eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-      } else {
-        // Add an event to existing RegisteredListener object
-        RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
-        if (registeredListener == null) {
-          eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-        } else {
-          registeredListener.addEvent(event);
-        }
-      }
+    AsyncListenerDispatcher previousDispatcher = (eventListener instanceof AsyncEventListener)
+        ? this.asyncDispatchers.put(eventListener.getName(),
+            new AsyncListenerDispatcher((AsyncEventListener) eventListener))
+        : this.asyncDispatchers.remove(eventListener.getName());
+    if (previousDispatcher != null) {
+      previousDispatcher.drain(0, SECONDS);
     }
   }
 
   @Override
   public void removeListener(String listenerName) {
-    this.listenersByName.remove(listenerName);
-    for (Map.Entry<Class<? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
-        .entrySet()) {
-      entry.getValue().remove(listenerName);
-      if (entry.getValue().isEmpty()) {
-        this.listenersByEvent.remove(entry.getKey());
-      }
+    updateRegistry(registered -> registered.remove(listenerName));
+    AsyncListenerDispatcher dispatcher = this.asyncDispatchers.remove(listenerName);
+    if (dispatcher != null) {
+      dispatcher.drain(0, SECONDS);
     }
   }
 
   @Override
   public void addEvent(String listenerName, Event event) {
-    Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
-    RegisteredListener listener = listeners.get(listenerName);
-    if (listener != null) {
-      listener.addEvent(event);
-    }
+    updateRegistry(registered -> registered.computeIfPresent(listenerName,
+        (name, listener) -> new RegisteredListener(listener.listener, ImmutableList.<Event>builder()
+            .addAll(listener.events).add(event).build())));
   }
 
   @Override
   public void removeEvent(String listenerName, Event event) {
-    Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
-    RegisteredListener listener = listeners.get(listenerName);
-    if (listener != null) {
-      listener.removeEvent(event);
-    }
+    updateRegistry(registered -> registered.computeIfPresent(listenerName, (name, listener) -> {
+      List<Event> events = new ArrayList<>(listener.events);
+      events.remove(event);
+      return new RegisteredListener(listener.listener, events);
+    }));
   }
 
   @Override
   public EventListener getListener(String listenerName) {
-    return this.listenersByName.get(listenerName);
+    RegisteredListener registered = this.registry.listeners.get(listenerName);
+    return (registered != null) ? registered.listener : null;
   }
 
+  /**
+   * Call the registered listeners matching the passed Event, including the ones registered with
+   * events of super classes or with {@link org.xwiki.observation.event.AllEvent}. The definition of
+   * <em>source</em> and <em>data</em> is purely up to the communicating classes.
+   */
   @Override
   public void notify(Event event, Object source, Object data) {
-    // Find all listeners for this event
-    Map<String, RegisteredListener> regListeners = this.listenersByEvent.get(event.getClass());
-    if (regListeners != null) {
-      notify(regListeners.values(), event, source, data);
-    }
+    this.registry.getDispatchTable(event.getClass()).dispatch(event, source, data);
 
-    // Find listener listening all events
-    Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent
-        .get(AllEvent.class);
-    if (allEventRegListeners != null) {
-      notify(allEventRegListeners.values(), event, source, data);
+    if (event instanceof ApplicationStoppedEvent) {
+      drainAsyncListeners(DRAIN_TIMEOUT_SECONDS, SECONDS);
     }
   }
 
-  /**
-   * Call the provided listeners matching the passed Event. The definition of <em>source</em> and
-   * <em>data</em> is
-   * purely up to the communicating classes.
-   *
-   * @param listeners
-   *          the listeners to notify
-   * @param event
-   *          the event to pass to the registered listeners
-   * @param source
-   *          the source of the event (or <code>null</code>)
-   * @param data
-   *          the additional data related to the event (or <code>null</code>)
-   */
-  private void notify(Collection<RegisteredListener> listeners, Event event, Object source,
-      Object data) {
-    for (RegisteredListener listener : listeners) {
-      // Verify that one of the events matches and send the first matching event
-      for (Event listenerEvent : listener.events) {
-        if (listenerEvent.matches(event)) {
-          try {
-            listener.listener.onEvent(event, source, data);
-          } catch (Exception e) {
-            // protect from bad listeners
-            LOGGER.error("Fail to send event [" + event + "] to listener [" + listener.listener
-                + "]", e);
-          }
-          // Only send the first matching event since the listener should only be called once per
-          // event.
-          break;
-        }
-      }
+  @Override
+  public void notify(Event event, Object source) {
+    notify(event, source, null);
+  }
+
+  @Override
+  public boolean drainAsyncListeners(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    boolean drained = true;
+    for (AsyncListenerDispatcher dispatcher : this.asyncDispatchers.values()) {
+      drained &= dispatcher.drain(Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
     }
+    return drained;
   }
 
   @Override
-  public void notify(Event event, Object source) {
-    notify(event, source, null);
+  public Map<String, Map<String, Long>> getAsyncListenerMetrics() {
+    return EntryStream.of(this.asyncDispatchers)
+        .mapValues(AsyncListenerDispatcher::getMetrics)
+        .toMap();
   }
 
 }
@@ -0,0 +1,191 @@
+package org.xwiki.observation.internal;
+
+import static java.util.stream.Collectors.*;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.AbstractFilterableEvent;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.FixedNameEventFilter;
+import org.xwiki.observation.internal.DefaultObservationManager.RegisteredListener;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Immutable dispatch table of all listeners for one concrete event class, compiled by
+ * {@link DefaultObservationManager} from its registered listeners. It includes the listeners
+ * registered with events of super classes and with {@link AllEvent}. Listeners only matching by a
+ * fixed name, e.g. a {@link FixedNameEventFilter}, are looked up by hash instead of calling
+ * {@link Event#matches} on each of them.
+ */
+final class EventDispatchTable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultObservationManager.class);
+
+  private static final Entry[] NO_ENTRIES = new Entry[0];
+  private static final Method FILTERABLE_MATCHES = getMatchesMethod(AbstractFilterableEvent.class);
+  private static final Method ACTION_MATCHES = getMatchesMethod(ActionExecutionEvent.class);
+
+  private final Entry[] entries;
+  private final Map<String, Entry[]> entriesByKey;
+  private final Function<Event, String> keyFunction;
+  private final Entry[] allEventEntries;
+
+  private EventDispatchTable(List<Entry> entries, ListMultimap<String, Entry> entriesByKey,
+      Function<Event, String> keyFunction, List<Entry> allEventEntries) {
+    this.entries = entries.toArray(NO_ENTRIES);
+    ImmutableMap.Builder<String, Entry[]> builder = ImmutableMap.builder();
+    entriesByKey.asMap().forEach((key, keyEntries) -> builder.put(key,
+        keyEntries.toArray(NO_ENTRIES)));
+    this.entriesByKey = builder.build();
+    this.keyFunction = keyFunction;
+    this.allEventEntries = allEventEntries.toArray(NO_ENTRIES);
+  }
+
+  /**
+   * Call the listeners matching the passed event, each at most once. The listeners of
+   * {@link AllEvent} are called last, after the linear and the keyed listeners.
+   */
+  void dispatch(Event event, Object source, Object data) {
+    for (Entry entry : entries) {
+      if (entry.matches(event)) {
+        entry.notify(event, source, data);
+      }
+    }
+    if (!entriesByKey.isEmpty()) {
+      String key = keyFunction.apply(event);
+      for (Entry entry : (key != null) ? entriesByKey.getOrDefault(key, NO_ENTRIES) : NO_ENTRIES) {
+        entry.notify(event, source, data);
+      }
+    }
+    for (Entry entry : allEventEntries) {
+      entry.notify(event, source, data);
+    }
+  }
+
+  /**
+   * @param eventClass
+   *          the concrete class of the notified events
+   * @param registeredListeners
+   *          the registered listeners by name in registration order
+   * @param asyncDispatchers
+   *          provides the dispatcher of a listener name if it's asynchronous
+   */
+  static EventDispatchTable compile(Class<? extends Event> eventClass,
+      Map<String, RegisteredListener> registeredListeners,
+      Function<String, AsyncListenerDispatcher> asyncDispatchers) {
+    List<Entry> entries = new ArrayList<>();
+    List<Entry> allEventEntries = new ArrayList<>();
+    ListMultimap<String, Entry> entriesByKey = ArrayListMultimap.create();
+    registeredListeners.forEach((name, registered) -> {
+      AsyncListenerDispatcher dispatcher = asyncDispatchers.apply(name);
+      List<Event> candidates = registered.events.stream()
+          .filter(event -> event.getClass().isAssignableFrom(eventClass))
+          .collect(toList());
+      List<Optional<String>> keys = candidates.stream()
+          .map(EventDispatchTable::getMatchKey)
+          .collect(toList());
+      if (registered.events.stream().anyMatch(AllEvent.class::isInstance)) {
+        allEventEntries.add(new Entry(registered.listener, dispatcher));
+      } else if (candidates.isEmpty()) {
+        // not listening to this event class
+      } else if (keys.stream().allMatch(Optional::isPresent)) {
+        Entry entry = new Entry(registered.listener, dispatcher);
+        keys.stream().map(Optional::get).distinct().forEach(key -> entriesByKey.put(key, entry));
+      } else {
+        entries.add(new Entry(registered.listener, dispatcher, candidates.toArray(new Event[0])));
+      }
+    });
+    return new EventDispatchTable(entries, entriesByKey, getKeyFunction(eventClass),
+        allEventEntries);
+  }
+
+  /**
+   * @return the key if the registered event matches an other event solely on its equality, i.e.
+   *         the matching isn't customised by overriding {@link Event#matches}
+   */
+  private static Optional<String> getMatchKey(Event event) {
+    Method matches = getMatchesMethod(event.getClass());
+    if (FILTERABLE_MATCHES.equals(matches)) {
+      EventFilter filter = ((AbstractFilterableEvent) event).getEventFilter();
+      if ((filter != null) && (filter.getClass() == FixedNameEventFilter.class)) {
+        return Optional.ofNullable(filter.getFilter());
+      }
+    } else if (ACTION_MATCHES.equals(matches)) {
+      return Optional.ofNullable(((ActionExecutionEvent) event).getActionName());
+    }
+    return Optional.empty();
+  }
+
+  private static Function<Event, String> getKeyFunction(Class<? extends Event> eventClass) {
+    if (AbstractFilterableEvent.class.isAssignableFrom(eventClass)) {
+      return event -> Optional.ofNullable(((AbstractFilterableEvent) event).getEventFilter())
+          .map(EventFilter::getFilter)
+          .orElse(null);
+    } else if (ActionExecutionEvent.class.isAssignableFrom(eventClass)) {
+      return event -> ((ActionExecutionEvent) event).getActionName();
+    }
+    return event -> null;
+  }
+
+  private static Method getMatchesMethod(Class<?> eventClass) {
+    try {
+      return eventClass.getMethod("matches", Object.class);
+    } catch (NoSuchMethodException exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  private static final class Entry {
+
+    private final EventListener listener;
+    private final AsyncListenerDispatcher dispatcher;
+    /**
+     * the listener's events to match, empty if already matched by key or listening to all events
+     */
+    private final Event[] matchers;
+
+    private Entry(EventListener listener, AsyncListenerDispatcher dispatcher, Event... matchers) {
+      this.listener = listener;
+      this.dispatcher = dispatcher;
+      this.matchers = matchers;
+    }
+
+    private boolean matches(Event event) {
+      for (Event matcher : matchers) {
+        if (matcher.matches(event)) {
+          return true;
+        }
+      }
+      return (matchers.length == 0);
+    }
+
+    private void notify(Event event, Object source, Object data) {
+      if (dispatcher != null) {
+        dispatcher.dispatch(event, source, data);
+      } else {
+        try {
+          listener.onEvent(event, source, data);
+        } catch (Exception exc) {
+          // protect from bad listeners
+          LOGGER.error("Fail to send event [" + event + "] to listener [" + listener + "]", exc);
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,151 @@
+package org.xwiki.observation;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.DefaultObservationManager;
+
+/**
+ * Unit tests for the {@link AsyncEventListener} dispatching of {@link ObservationManager}.
+ */
+public class AsyncObservationManagerTest {
+
+  private ObservationManager manager;
+  private TestAsyncListener listener;
+
+  @Before
+  public void setUp() {
+    manager = new DefaultObservationManager();
+    listener = new TestAsyncListener();
+    manager.addListener(listener);
+  }
+
+  @After
+  public void tearDown() {
+    manager.drainAsyncListeners(1, SECONDS);
+  }
+
+  @Test
+  public void test_notify_async() throws Exception {
+    CountDownLatch blockListener = new CountDownLatch(1);
+    listener.block = blockListener;
+    manager.notify(new ActionExecutionEvent("view"), "source");
+    // returns while the listener is still blocked
+    assertTrue(listener.received.isEmpty());
+    blockListener.countDown();
+    assertTrue(manager.drainAsyncListeners(1, SECONDS));
+    assertEquals(Arrays.asList("source"), listener.received);
+    assertNotEquals(Thread.currentThread().getName(), listener.threadName);
+    assertEquals(1L, (long) manager.getAsyncListenerMetrics().get(listener.getName())
+        .get("completed"));
+  }
+
+  @Test
+  public void test_notify_ordered() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      manager.notify(new ActionExecutionEvent("view"), i);
+    }
+    assertTrue(manager.drainAsyncListeners(1, SECONDS));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, listener.received.get(i));
+    }
+  }
+
+  @Test
+  public void test_notify_afterDrain_sync() throws Exception {
+    manager.notify(new ApplicationStoppedEvent(), "stopped");
+    manager.notify(new ActionExecutionEvent("view"), "afterStop");
+    assertEquals(Arrays.asList("stopped", "afterStop"), listener.received);
+    assertEquals(Thread.currentThread().getName(), listener.threadName);
+    assertEquals(1L, (long) manager.getAsyncListenerMetrics().get(listener.getName())
+        .get("callerRuns"));
+  }
+
+  @Test
+  public void test_notify_fromListener_queueFull() throws Exception {
+    FanOutListener fanOut = new FanOutListener();
+    manager.addListener(fanOut);
+    manager.notify(new ActionExecutionEvent("edit"), "fanOut");
+    assertTrue(manager.drainAsyncListeners(5, SECONDS));
+    assertEquals(11, fanOut.received.size());
+    assertTrue(manager.getAsyncListenerMetrics().get(fanOut.getName()).get("callerRuns") > 0);
+  }
+
+  /**
+   * notifies itself from within its notification, more often than its queue can hold
+   */
+  private class FanOutListener implements AsyncEventListener {
+
+    private final List<Object> received = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String getName() {
+      return "fanOutListener";
+    }
+
+    @Override
+    public List<Event> getEvents() {
+      return Arrays.<Event>asList(new ActionExecutionEvent("edit"));
+    }
+
+    @Override
+    public int getQueueCapacity() {
+      return 1;
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data) {
+      received.add(source);
+      if ("fanOut".equals(source)) {
+        for (int i = 0; i < 10; i++) {
+          manager.notify(new ActionExecutionEvent("edit"), i);
+        }
+      }
+    }
+
+  }
+
+  private class TestAsyncListener implements AsyncEventListener {
+
+    private final List<Object> received = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch block;
+    private volatile String threadName;
+
+    @Override
+    public String getName() {
+      return "testAsyncListener";
+    }
+
+    @Override
+    public List<Event> getEvents() {
+      return Arrays.<Event>asList(new ActionExecutionEvent("view"),
+          new ApplicationStoppedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data) {
+      try {
+        if (block != null) {
+          block.await(1, SECONDS);
+        }
+      } catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+      }
+      threadName = Thread.currentThread().getName();
+      received.add(source);
+    }
+
+  }
+
+}
@@ -24,13 +24,17 @@ import java.util.Arrays;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.Sequence;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.ActionExecutionEvent;
 import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
 import org.xwiki.observation.internal.DefaultObservationManager;
 
 /**
@@ -281,4 +285,238 @@ public class ObservationManagerTest {
     this.manager.notify(eventMatcher1, "some source", "some data");
     this.manager.notify(eventMatcher2, "some source", "some data");
   }
+
+  /**
+   * Verify that a listener registered with an event receives the matching events of its subclasses.
+   */
+  @Test
+  public void testRegisterListenerForSuperclassEvent() {
+    final EventListener listener = this.context.mock(EventListener.class);
+    final Event subEvent = new ActionExecutionEvent("action1") {
+
+      private static final long serialVersionUID = 1L;
+    };
+    final Event otherSubEvent = new ActionExecutionEvent("action2") {
+
+      private static final long serialVersionUID = 1L;
+    };
+
+    this.context.checking(new Expectations() {
+
+      {
+        allowing(listener).getName();
+        will(returnValue("mylistener"));
+        allowing(listener).getEvents();
+        will(returnValue(Arrays.asList(new ActionExecutionEvent("action1"))));
+
+        oneOf(listener).onEvent(with(same(subEvent)), with(any(Object.class)),
+            with(any(Object.class)));
+      }
+    });
+
+    this.manager.addListener(listener);
+    this.manager.notify(subEvent, "some source", "some data");
+    this.manager.notify(otherSubEvent, "some source", "some data");
+  }
+
+  /**
+   * Verify that listeners registered with a fixed name are looked up by the notified name.
+   */
+  @Test
+  public void testRegisterListenerForFixedName() {
+    final EventListener listener = this.context.mock(EventListener.class);
+    final Event event = new TestFilterableEvent("doc1");
+
+    this.context.checking(new Expectations() {
+
+      {
+        allowing(listener).getName();
+        will(returnValue("mylistener"));
+        allowing(listener).getEvents();
+        will(returnValue(Arrays.asList(new TestFilterableEvent("doc1"))));
+
+        oneOf(listener).onEvent(with(same(event)), with(any(Object.class)),
+            with(any(Object.class)));
+      }
+    });
+
+    this.manager.addListener(listener);
+    this.manager.notify(event, "some source", "some data");
+    this.manager.notify(new TestFilterableEvent("doc2"), "some source", "some data");
+    this.manager.notify(new TestFilterableEvent(), "some source", "some data");
+  }
+
+  /**
+   * Verify that listeners registered with a regular expression are notified of matching names.
+   */
+  @Test
+  public void testRegisterListenerForRegex() {
+    final EventListener listener = this.context.mock(EventListener.class);
+    final Event event1 = new TestFilterableEvent("doc1");
+    final Event event2 = new TestFilterableEvent("doc2");
+
+    this.context.checking(new Expectations() {
+
+      {
+        allowing(listener).getName();
+        will(returnValue("mylistener"));
+        allowing(listener).getEvents();
+        will(returnValue(Arrays.asList(new TestFilterableEvent(new RegexEventFilter("doc\\d")))));
+
+        oneOf(listener).onEvent(with(same(event1)), with(any(Object.class)),
+            with(any(Object.class)));
+        oneOf(listener).onEvent(with(same(event2)), with(any(Object.class)),
+            with(any(Object.class)));
+      }
+    });
+
+    this.manager.addListener(listener);
+    this.manager.notify(event1, "some source", "some data");
+    this.manager.notify(new TestFilterableEvent("other"), "some source", "some data");
+    this.manager.notify(event2, "some source", "some data");
+  }
+
+  /**
+   * Verify that the events of a subclass implementing a further interface are dispatched to the
+   * listeners of the superclass but not to listeners of other classes sharing the interface.
+   */
+  @Test
+  public void testRegisterListenerForEventWithSuperinterface() {
+    final EventListener listener = this.context.mock(EventListener.class, "listener");
+    final EventListener otherListener = this.context.mock(EventListener.class, "other");
+    final Event event = new TestMarkedEvent("doc1");
+
+    this.context.checking(new Expectations() {
+
+      {
+        allowing(listener).getName();
+        will(returnValue("mylistener"));
+        allowing(listener).getEvents();
+        will(returnValue(Arrays.asList(new TestFilterableEvent("doc1"),
+            new TestFilterableEvent(new RegexEventFilter("doc.*")))));
+        allowing(otherListener).getName();
+        will(returnValue("otherlistener"));
+        allowing(otherListener).getEvents();
+        will(returnValue(Arrays.asList(new TestOtherMarkedEvent())));
+
+        oneOf(listener).onEvent(with(same(event)), with(any(Object.class)),
+            with(any(Object.class)));
+        never(otherListener).onEvent(with(any(Event.class)), with(any(Object.class)),
+            with(any(Object.class)));
+      }
+    });
+
+    this.manager.addListener(listener);
+    this.manager.addListener(otherListener);
+    this.manager.notify(event, "some source", "some data");
+  }
+
+  /**
+   * Verify that removing a listener after a notification swaps the compiled dispatch table.
+   */
+  @Test
+  public void testRemoveListenerAfterNotify() {
+    final EventListener listener = this.context.mock(EventListener.class);
+    final Event event = new TestFilterableEvent("doc1");
+
+    this.context.checking(new Expectations() {
+
+      {
+        allowing(listener).getName();
+        will(returnValue("mylistener"));
+        allowing(listener).getEvents();
+        will(returnValue(Arrays.asList(new TestFilterableEvent("doc1"))));
+
+        oneOf(listener).onEvent(with(same(event)), with(any(Object.class)),
+            with(any(Object.class)));
+      }
+    });
+
+    this.manager.addListener(listener);
+    this.manager.notify(event, "some source", "some data");
+    this.manager.removeListener("mylistener");
+    Assert.assertNull(this.manager.getListener("mylistener"));
+    this.manager.notify(event, "some source", "some data");
+  }
+
+  /**
+   * Verify that the listeners of all events are notified after the matching and keyed listeners,
+   * irrespective of the registration order.
+   */
+  @Test
+  public void testNotifyListenersForAllEventsLast() {
+    final EventListener allListener = this.context.mock(EventListener.class, "all");
+    final EventListener regexListener = this.context.mock(EventListener.class, "regex");
+    final EventListener nameListener = this.context.mock(EventListener.class, "name");
+    final Event event = new TestFilterableEvent("doc1");
+    final Sequence sequence = this.context.sequence("notification");
+
+    this.context.checking(new Expectations() {
+
+      {
+        allowing(allListener).getName();
+        will(returnValue("alllistener"));
+        allowing(allListener).getEvents();
+        will(returnValue(Arrays.asList(AllEvent.ALLEVENT)));
+        allowing(regexListener).getName();
+        will(returnValue("regexlistener"));
+        allowing(regexListener).getEvents();
+        will(returnValue(Arrays.asList(new TestFilterableEvent(new RegexEventFilter("doc.*")))));
+        allowing(nameListener).getName();
+        will(returnValue("namelistener"));
+        allowing(nameListener).getEvents();
+        will(returnValue(Arrays.asList(new TestFilterableEvent("doc1"))));
+
+        oneOf(regexListener).onEvent(with(same(event)), with(any(Object.class)),
+            with(any(Object.class)));
+        inSequence(sequence);
+        oneOf(nameListener).onEvent(with(same(event)), with(any(Object.class)),
+            with(any(Object.class)));
+        inSequence(sequence);
+        oneOf(allListener).onEvent(with(same(event)), with(any(Object.class)),
+            with(any(Object.class)));
+        inSequence(sequence);
+      }
+    });
+
+    this.manager.addListener(allListener);
+    this.manager.addListener(nameListener);
+    this.manager.addListener(regexListener);
+    this.manager.notify(event, "some source", "some data");
+  }
+
+  private static class TestFilterableEvent extends AbstractFilterableEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    TestFilterableEvent() {
+      super();
+    }
+
+    TestFilterableEvent(String name) {
+      super(name);
+    }
+
+    TestFilterableEvent(EventFilter filter) {
+      super(filter);
+    }
+  }
+
+  private interface MarkerEvent extends Event {}
+
+  private static class TestMarkedEvent extends TestFilterableEvent implements MarkerEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    TestMarkedEvent(String name) {
+      super(name);
+    }
+  }
+
+  private static class TestOtherMarkedEvent extends AbstractFilterableEvent implements
+      MarkerEvent {
+
+    private static final long serialVersionUID = 1L;
+  }
+
 }
@@ -0,0 +1,95 @@
+package org.xwiki.model.internal.reference;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+
+/**
+ * JMH benchmark comparing the single pass string reference resolver and serializer with the
+ * previous implementations {@link LegacyStringEntityReferenceResolver} and
+ * {@link LegacyStringEntityReferenceSerializer}, for names of the common "wiki:space.page" forms.
+ * Only compiled with the benchmark profile, run it with {@code mvn -Pbenchmark test-compile
+ * exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main
+ * -Dexec.args=StringEntityReferenceBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringEntityReferenceBenchmark {
+
+  private static final int NAMES = 1000;
+
+  /**
+   * JMH requires parameter fields to be public
+   */
+  @Param({ "current", "legacy" })
+  public String implementation;
+
+  private final WikiReference defaultWikiRef = new WikiReference("wiki");
+  private final String[] names = new String[NAMES];
+  private final EntityReference[] refs = new EntityReference[NAMES];
+  private EntityReferenceResolver<String> resolver;
+  private EntityReferenceSerializer<String> serializer;
+  private int index;
+
+  @Setup
+  public void setup() {
+    if ("legacy".equals(implementation)) {
+      resolver = new LegacyStringEntityReferenceResolver();
+      serializer = new LegacyStringEntityReferenceSerializer();
+    } else {
+      resolver = new ExplicitStringEntityReferenceResolver();
+      serializer = new DefaultStringEntityReferenceSerializer();
+    }
+    for (int i = 0; i < NAMES; i++) {
+      switch (i % 4) {
+        case 0:
+          names[i] = "XWiki.XWikiPreferences";
+          break;
+        case 1:
+          names[i] = "wiki:Space" + (i % 10) + ".Doc" + i;
+          break;
+        case 2:
+          names[i] = "Space" + (i % 10) + ".Doc" + i;
+          break;
+        default:
+          names[i] = "wiki:Sp\\.ace.Do\\\\c" + i;
+      }
+      refs[i] = resolver.resolve(names[i], EntityType.DOCUMENT, defaultWikiRef);
+    }
+  }
+
+  private int next() {
+    index = (index + 1) % NAMES;
+    return index;
+  }
+
+  @Benchmark
+  public EntityReference resolve() {
+    return resolver.resolve(names[next()], EntityType.DOCUMENT, defaultWikiRef);
+  }
+
+  @Benchmark
+  public String serialize() {
+    return serializer.serialize(refs[next()]);
+  }
+
+}
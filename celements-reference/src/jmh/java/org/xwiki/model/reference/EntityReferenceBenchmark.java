@@ -0,0 +1,100 @@
+package org.xwiki.model.reference;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.internal.reference.ExplicitStringEntityReferenceResolver;
+
+/**
+ * JMH benchmark for hashing, comparing and resolving typical {@link DocumentReference}s, e.g. as
+ * keys of hash based collections. Only compiled with the benchmark profile, run it with
+ * {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=EntityReferenceBenchmark}, add
+ * {@code -jvmArgsAppend -Dcelements.reference.interning=true} to the args to measure with
+ * interned parents.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityReferenceBenchmark {
+
+  /**
+   * JMH requires parameter fields to be public
+   */
+  @Param({ "10", "1000" })
+  public int docs;
+
+  private final ExplicitStringEntityReferenceResolver resolver =
+      new ExplicitStringEntityReferenceResolver();
+
+  private String[] fullNames;
+  private DocumentReference[] docRefs;
+  private DocumentReference[] docRefCopies;
+  private Map<DocumentReference, Integer> docRefMap;
+  private int index;
+
+  @Setup
+  public void setup() {
+    fullNames = new String[docs];
+    docRefs = new DocumentReference[docs];
+    docRefCopies = new DocumentReference[docs];
+    docRefMap = new HashMap<>();
+    for (int i = 0; i < docs; i++) {
+      fullNames[i] = "wiki:Space" + (i % 10) + ".Doc" + i;
+      docRefs[i] = new DocumentReference("wiki", "Space" + (i % 10), "Doc" + i);
+      docRefCopies[i] = new DocumentReference("wiki", "Space" + (i % 10), "Doc" + i);
+      docRefMap.put(docRefs[i], i);
+    }
+  }
+
+  private int next() {
+    index = (index + 1) % docs;
+    return index;
+  }
+
+  @Benchmark
+  public int hashCodeOfCopy() {
+    // a fresh copy to measure the first hash code calculation as well
+    return new DocumentReference(docRefs[next()]).hashCode();
+  }
+
+  @Benchmark
+  public int hashCodeMemoized() {
+    return docRefs[next()].hashCode();
+  }
+
+  @Benchmark
+  public void equals(Blackhole bh) {
+    int i = next();
+    bh.consume(docRefs[i].equals(docRefCopies[i]));
+    bh.consume(docRefs[i].equals(docRefCopies[docs - 1 - i]));
+  }
+
+  @Benchmark
+  public Integer mapLookup() {
+    return docRefMap.get(docRefCopies[next()]);
+  }
+
+  @Benchmark
+  public DocumentReference resolve() {
+    return new DocumentReference(resolver.resolve(fullNames[next()], EntityType.DOCUMENT));
+  }
+
+}
@@ -24,11 +24,11 @@ import static org.xwiki.model.internal.reference.StringReferenceSeparators.*;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
@@ -64,16 +64,6 @@ public abstract class AbstractStringEntityReferenceResolver extends AbstractEnti
           EntityType.DOCUMENT, EntityType.SPACE, EntityType.WIKI))
       .build();
 
-  /**
-   * Array of character to unescape in entity names.
-   */
-  private static final String[] ESCAPEMATCHING = { DBLESCAPE, ESCAPE };
-
-  /**
-   * The replacement array corresponding to the array in {@link #ESCAPEMATCHING} array.
-   */
-  private static final String[] ESCAPEMATCHINGREPLACE = { ESCAPE, "" };
-
   @Override
   public EntityReference resolve(String entityReferenceRepresentation, EntityType type,
       Object... parameters) {
@@ -85,118 +75,93 @@ public abstract class AbstractStringEntityReferenceResolver extends AbstractEnti
       throw new RuntimeException("No parsing definition found for Entity Type [" + type + "]");
     }
     // Handle the case when the passed representation is null. In this case we consider it similar
-    // to passing
-    // an empty string.
-    StringBuilder representation;
-    if (entityReferenceRepresentation == null) {
-      representation = new StringBuilder();
-    } else {
-      representation = new StringBuilder(entityReferenceRepresentation);
-    }
-    EntityReference reference = null;
+    // to passing an empty string.
+    String representation = Strings.nullToEmpty(entityReferenceRepresentation);
     List<Character> separatorsForType = SEPARATORS.get(type);
     List<EntityType> entityTypesForType = ENTITYTYPES.get(type);
-    // Iterate over the representation string looking for iterators in the correct order (rightmost
-    // separator
-    // looked for first).
+    String[] names = new String[entityTypesForType.size()];
+    // Single pass over the representation from right to left looking for the separators in the
+    // correct order (rightmost separator looked for first), end marks the unparsed part.
+    int end = representation.length();
     for (int i = 0; i < separatorsForType.size(); i++) {
-      String name;
-      if (representation.length() > 0) {
-        name = getSegmentName(representation, separatorsForType.get(i), entityTypesForType.get(i),
-            parameters);
-      } else {
-        // There's no definition for the current segment use default values
-        name = resolveDefaultValue(entityTypesForType.get(i), parameters);
-      }
-      if (name != null) {
-        EntityReference newReference = new EntityReference(name, entityTypesForType.get(i));
-        if (reference != null) {
-          reference = reference.appendParent(newReference);
+      if (end > 0) {
+        int sepIdx = lastIndexOfSeparator(representation, separatorsForType.get(i), end);
+        if (sepIdx == (end - 1)) {
+          names[i] = resolveDefaultValue(entityTypesForType.get(i), parameters);
         } else {
-          reference = newReference;
+          names[i] = unescape(representation, sepIdx + 1, end);
         }
+        end = Math.max(sepIdx, 0);
+      } else {
+        // There's no definition for the current segment use default values
+        names[i] = resolveDefaultValue(entityTypesForType.get(i), parameters);
       }
     }
     // Handle last entity reference's name
-    String name;
-    if (representation.length() > 0) {
-      name = StringUtils.replaceEach(representation.toString(), ESCAPEMATCHING,
-          ESCAPEMATCHINGREPLACE);
+    int last = separatorsForType.size();
+    if (end > 0) {
+      names[last] = unescape(representation, 0, end);
     } else {
-      name = resolveDefaultValue(entityTypesForType.get(separatorsForType.size()), parameters);
+      names[last] = resolveDefaultValue(entityTypesForType.get(last), parameters);
     }
-    if (name != null) {
-      EntityReference newReference = new EntityReference(name,
-          entityTypesForType.get(separatorsForType.size()));
-      if (reference != null) {
-        reference = reference.appendParent(newReference);
-      } else {
-        reference = newReference;
+    // Build the chain from its root without cloning it for each appended parent
+    EntityReference reference = null;
+    for (int i = last; i >= 0; i--) {
+      if (names[i] != null) {
+        reference = new EntityReference(names[i], entityTypesForType.get(i), reference);
       }
     }
     return reference;
   }
 
   /**
-   * Retrieve a segment name.
+   * Search the last non escaped separator, i.e. not preceded by an odd number of backslashes.
    *
    * @param representation
-   *          the current string representation of the reference
+   *          the string representation of the reference
    * @param separator
-   *          the separator for the segment
-   * @param entityType
-   *          the type of the segment, used to get a default value if the name is empty
-   * @param parameters
-   *          optional parameters, forwarded to get a default value
-   * @return the segment name
+   *          the separator to search
+   * @param end
+   *          the end (exclusive) of the part to search
+   * @return the index of the separator or -1 if not found
    */
-  private String getSegmentName(StringBuilder representation, char separator, EntityType entityType,
-      Object... parameters) {
-    String name = null;
-    // Search all characters for a non escaped separator. If found, then consider the part after the
-    // character as
-    // the reference name and continue parsing the part before the separator.
-    boolean found = false;
-    int i = representation.length();
-    while (--i >= 0) {
-      char currentChar = representation.charAt(i);
-      int nextIndex = i - 1;
-      char nextChar = 0;
-      if (nextIndex >= 0) {
-        nextChar = representation.charAt(nextIndex);
+  private int lastIndexOfSeparator(String representation, char separator, int end) {
+    int i = end;
+    while ((i = representation.lastIndexOf(separator, i - 1)) >= 0) {
+      if ((getNumberOfCharsBefore(CESCAPE, representation, i - 1) % 2) == 0) {
+        return i;
       }
+    }
+    return -1;
+  }
 
-      if (currentChar == separator) {
-        int numberOfBackslashes = getNumberOfCharsBefore(CESCAPE, representation, nextIndex);
-
-        if ((numberOfBackslashes % 2) == 0) {
-          // Found a valid separator (not escaped), separate content on its left from content on its
-          // right
-          if (i == (representation.length() - 1)) {
-            name = resolveDefaultValue(entityType, parameters);
-          } else {
-            name = representation.substring(i + 1, representation.length());
-          }
-          representation.delete(i, representation.length());
-          found = true;
-          break;
-        } else {
-          // Unescape the character
-          representation.delete(nextIndex, i);
-          --i;
-        }
-      } else if (nextChar == CESCAPE) {
-        // Unescape the character
-        representation.delete(nextIndex, i);
-        --i;
-      }
+  /**
+   * Unescape a segment, a backslash escapes the following character. A trailing single backslash
+   * is kept as is.
+   *
+   * @param representation
+   *          the string representation of the reference
+   * @param begin
+   *          the begin (inclusive) of the segment
+   * @param end
+   *          the end (exclusive) of the segment
+   * @return the unescaped segment name, without copying if nothing is escaped
+   */
+  private String unescape(String representation, int begin, int end) {
+    int escapeIdx = representation.indexOf(CESCAPE, begin);
+    if ((escapeIdx < 0) || (escapeIdx >= end)) {
+      return representation.substring(begin, end);
     }
-    // If not found then the full buffer is the current reference segment
-    if (!found) {
-      name = representation.toString();
-      representation.setLength(0);
+    StringBuilder name = new StringBuilder(end - begin);
+    name.append(representation, begin, escapeIdx);
+    for (int i = escapeIdx; i < end; i++) {
+      char c = representation.charAt(i);
+      if ((c == CESCAPE) && ((i + 1) < end)) {
+        c = representation.charAt(++i);
+      }
+      name.append(c);
     }
-    return name;
+    return name.toString();
   }
 
   /**
@@ -211,7 +176,7 @@ public abstract class AbstractStringEntityReferenceResolver extends AbstractEnti
    *          the current position where the search is started in backward direction
    * @return the number of character in the found group
    */
-  private int getNumberOfCharsBefore(char c, StringBuilder representation, int currentPosition) {
+  private int getNumberOfCharsBefore(char c, String representation, int currentPosition) {
     int position = currentPosition;
     while ((position >= 0) && (representation.charAt(position) == c)) {
       --position;
@@ -21,13 +21,15 @@ package org.xwiki.model.internal.reference;
 
 import static org.xwiki.model.internal.reference.StringReferenceSeparators.*;
 
-import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
 /**
  * Generate a string representation of an entity reference (eg "wiki:space.page" for a document
  * reference in the "wiki"
@@ -40,28 +42,42 @@ import org.xwiki.model.reference.EntityReference;
 public class DefaultStringEntityReferenceSerializer
     extends AbstractStringEntityReferenceSerializer {
 
+  /**
+   * The characters to escape for each type of entity, see
+   * {@link StringReferenceSeparators#ESCAPES}. Root references only escape the escape character.
+   */
+  private static final Map<EntityType, String> ESCAPECHARS = ImmutableMap.copyOf(
+      Maps.transformValues(ESCAPES, chars -> String.join("", chars)));
+
   @Override
   protected void serializeEntityReference(EntityReference currentReference,
       StringBuilder representation,
       boolean isLastReference, Object... parameters) {
     EntityType currentType = currentReference.getType();
     EntityReference currentParent = currentReference.getParent();
-    List<String> currentEscapeChars = ESCAPES.get(currentType);
+    String currentEscapeChars = ESCAPECHARS.getOrDefault(currentType, ESCAPE);
     // Add my separator if I am not the first one in the representation
     if ((currentParent != null) && (representation.length() > 0)) {
       if (currentParent.getType() == EntityType.WIKI) {
-        representation.append(WIKISEP);
+        representation.append(CWIKISEP);
       } else {
-        representation.append(currentEscapeChars.get(0));
+        representation.append(currentEscapeChars.charAt(0));
       }
     }
-    // If we're on the Root reference then we don't need to escape anything
-    if (currentEscapeChars != null) {
-      representation.append(StringUtils.replaceEach(currentReference.getName(),
-          currentEscapeChars.toArray(new String[0]),
-          REPLACEMENTS.get(currentType).toArray(new String[0])));
-    } else {
-      representation.append(currentReference.getName().replace(ESCAPE, DBLESCAPE));
+    appendEscaped(representation, currentReference.getName(), currentEscapeChars);
+  }
+
+  /**
+   * Append the name in a single pass, each character to escape is prefixed with a backslash.
+   */
+  private static void appendEscaped(StringBuilder representation, String name,
+      String escapeChars) {
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (escapeChars.indexOf(c) >= 0) {
+        representation.append(CESCAPE);
+      }
+      representation.append(c);
     }
   }
 }
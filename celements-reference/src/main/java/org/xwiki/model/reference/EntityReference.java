@@ -76,6 +76,12 @@ public class EntityReference implements Serializable, Comparable<EntityReference
    */
   private final ImmutableMap<String, Serializable> parameters;
 
+  /**
+   * Memoized hash code, 0 if not yet computed. Racy single-check is fine since all fields are
+   * effectively immutable.
+   */
+  private transient int hash;
+
   /**
    * Clone an EntityReference.
    *
@@ -238,7 +244,7 @@ public class EntityReference implements Serializable, Comparable<EntityReference
    *          the parent for this entity, may be null for a root entity.
    */
   protected void setParent(EntityReference parent) {
-    this.parent = parent;
+    this.parent = ReferenceInterner.intern(parent);
   }
 
   /**
@@ -420,10 +426,14 @@ public class EntityReference implements Serializable, Comparable<EntityReference
 
   @Override
   public boolean equals(Object obj) {
-    if (obj instanceof EntityReference) {
+    if (this == obj) {
+      return true;
+    } else if (obj instanceof EntityReference) {
       EntityReference other = (EntityReference) obj;
-      return Objects.equals(this.name, other.name)
+      // the memoized hashes reject most unequal references without walking the parent chain
+      return (this.hashCode() == other.hashCode())
           && Objects.equals(this.type, other.type)
+          && Objects.equals(this.name, other.name)
           && Objects.equals(this.parent, other.parent)
           && Objects.equals(this.parameters, other.parameters);
     }
@@ -432,7 +442,12 @@ public class EntityReference implements Serializable, Comparable<EntityReference
 
   @Override
   public int hashCode() {
-    return Objects.hash(name, type, parent, parameters);
+    int h = hash;
+    if (h == 0) {
+      h = Objects.hash(name, type, parent, parameters);
+      hash = h;
+    }
+    return h;
   }
 
   @Override
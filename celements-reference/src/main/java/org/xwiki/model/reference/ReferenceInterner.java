@@ -0,0 +1,39 @@
+package org.xwiki.model.reference;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Optional weak interning pool for the wiki and space parents of references, thus the many
+ * document references of the same space share their parent instances. It's enabled with the
+ * system property {@value #PROPERTY_ENABLED}. Only exact {@link WikiReference} and
+ * {@link SpaceReference} instances are interned since {@link EntityReference#equals} disregards
+ * the class, but callers rely on it, e.g. {@link DocumentReference#getParent()}.
+ */
+final class ReferenceInterner {
+
+  static final String PROPERTY_ENABLED = "celements.reference.interning";
+
+  private static final boolean ENABLED = Boolean.getBoolean(PROPERTY_ENABLED);
+
+  private static final Interner<EntityReference> POOL = Interners.newWeakInterner();
+
+  private ReferenceInterner() {}
+
+  /**
+   * @return the canonical instance equal to the given parent if interning is enabled, else the
+   *         given parent
+   */
+  static EntityReference intern(EntityReference parent) {
+    return ENABLED ? forceIntern(parent) : parent;
+  }
+
+  static EntityReference forceIntern(EntityReference parent) {
+    if ((parent != null) && ((parent.getClass() == WikiReference.class)
+        || (parent.getClass() == SpaceReference.class))) {
+      return POOL.intern(parent);
+    }
+    return parent;
+  }
+
+}
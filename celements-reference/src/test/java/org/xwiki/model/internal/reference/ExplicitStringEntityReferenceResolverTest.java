@@ -27,6 +27,7 @@ import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 
 /**
  * Unit tests for {@link org.xwiki.model.internal.reference.ExplicitStringEntityReferenceResolver}.
@@ -95,6 +96,22 @@ public class ExplicitStringEntityReferenceResolverTest {
     assertEquals(EntityType.WIKI, reference.getParent().getParent().getType());
   }
 
+  @Test
+  public void testResolveSerializeRoundTrip() {
+    EntityReferenceSerializer<String> serializer = new DefaultStringEntityReferenceSerializer();
+    EntityReference wikiRef = new EntityReference("wiki", EntityType.WIKI);
+    for (String name : new String[] { "wiki:XWiki.XWikiPreferences", "wiki:Space.Doc",
+        "wiki:Sp\\.ace.Do\\\\c", "wiki:Sp\\:ace.D\\.o:c" }) {
+      assertEquals(name, serializer.serialize(this.resolver.resolve(name, EntityType.DOCUMENT,
+          wikiRef)));
+    }
+    EntityReference reference = this.resolver.resolve("Sp\\.ace.Do\\\\c", EntityType.DOCUMENT,
+        wikiRef);
+    assertEquals("Do\\c", reference.getName());
+    assertEquals("Sp.ace", reference.getParent().getName());
+    assertEquals("wiki", reference.getParent().getParent().getName());
+  }
+
   @Test
   public void testResolveWithNoExplicitAndPartialReference() {
     try {
@@ -172,6 +172,21 @@ public class EntityReferenceTest {
     assertFalse(reference7.equals(reference10));
   }
 
+  @Test
+  public void testHashCode_memoized() {
+    EntityReference reference1 = new EntityReference("page", EntityType.DOCUMENT,
+        new EntityReference("space", EntityType.SPACE,
+            new EntityReference("wiki", EntityType.WIKI)));
+    EntityReference reference2 = new EntityReference("page", EntityType.DOCUMENT,
+        new EntityReference("space", EntityType.SPACE,
+            new EntityReference("wiki", EntityType.WIKI)));
+    int hash = reference1.hashCode();
+    assertEquals(hash, reference1.hashCode());
+    assertEquals(hash, reference2.hashCode());
+    assertEquals(hash, new EntityReference(reference1).hashCode());
+    assertEquals(hash, new DocumentReference("wiki", "space", "page").hashCode());
+  }
+
   @Test
   public void testHashCode() {
     EntityReference reference1 = new EntityReference("page", EntityType.DOCUMENT,
@@ -0,0 +1,56 @@
+package org.xwiki.model.reference;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.xwiki.model.EntityType;
+
+public class ReferenceInternerTest {
+
+  @Test
+  public void test_forceIntern_wiki() {
+    WikiReference wikiRef = new WikiReference("wiki");
+    assertSame(wikiRef, ReferenceInterner.forceIntern(wikiRef));
+    assertSame(wikiRef, ReferenceInterner.forceIntern(new WikiReference("wiki")));
+  }
+
+  @Test
+  public void test_forceIntern_space() {
+    SpaceReference spaceRef = new SpaceReference("space", new WikiReference("wiki"));
+    assertSame(spaceRef, ReferenceInterner.forceIntern(spaceRef));
+    assertSame(spaceRef, ReferenceInterner.forceIntern(new SpaceReference("space",
+        new WikiReference("wiki"))));
+    assertNotSame(spaceRef, ReferenceInterner.forceIntern(new SpaceReference("space2",
+        new WikiReference("wiki"))));
+  }
+
+  @Test
+  public void test_forceIntern_sharedParent() {
+    DocumentReference docRef1 = new DocumentReference("wiki", "spaceShared", "page1");
+    DocumentReference docRef2 = new DocumentReference("wiki", "spaceShared", "page2");
+    EntityReference parent = ReferenceInterner.forceIntern(docRef1.getParent());
+    assertSame(parent, ReferenceInterner.forceIntern(docRef2.getParent()));
+    assertEquals(docRef1.getParent(), parent);
+    assertEquals(docRef1.getParent().hashCode(), parent.hashCode());
+    assertSame(SpaceReference.class, parent.getClass());
+    assertEquals(docRef1, new DocumentReference("page1", (SpaceReference) parent));
+    assertEquals(docRef1.hashCode(), new DocumentReference("page1",
+        (SpaceReference) parent).hashCode());
+  }
+
+  @Test
+  public void test_forceIntern_otherClasses() {
+    ReferenceInterner.forceIntern(new SpaceReference("space", new WikiReference("wiki")));
+    EntityReference entityRef = new EntityReference("space", EntityType.SPACE,
+        new EntityReference("wiki", EntityType.WIKI));
+    assertSame(entityRef, ReferenceInterner.forceIntern(entityRef));
+    DocumentReference docRef = new DocumentReference("wiki", "space", "page");
+    assertSame(docRef, ReferenceInterner.forceIntern(docRef));
+  }
+
+  @Test
+  public void test_forceIntern_null() {
+    assertNull(ReferenceInterner.forceIntern(null));
+  }
+
+}
@@ -116,6 +116,8 @@ import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDeletedDocument;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.doc.XWikiDocumentArchive;
+import com.xpn.xwiki.internal.cache.query.QueryResultCache;
+import com.xpn.xwiki.internal.cache.rendering.RenderingDependencies;
 import com.xpn.xwiki.internal.event.AttachmentAddedEvent;
 import com.xpn.xwiki.internal.event.AttachmentDeletedEvent;
 import com.xpn.xwiki.internal.event.AttachmentUpdatedEvent;
@@ -247,6 +249,8 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
 
   private boolean isReadOnly = false;
 
+  private final XWikiPreferenceIndex preferenceIndex = new XWikiPreferenceIndex();
+
   public static final String MACROS_FILE = "/templates/macros.txt";
 
   /**
@@ -581,6 +585,11 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
   }
 
   public void resetRenderingEngine(XWikiContext context) throws XWikiException {
+    // unregisters the previous engine from the observation manager before replacing it
+    XWikiRenderingEngine previous = getRenderingEngine();
+    if (previous != null) {
+      previous.dispose();
+    }
     // Prepare the Rendering Engine
     setRenderingEngine(new DefaultXWikiRenderingEngine(this, context));
   }
@@ -848,9 +857,22 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
   }
 
   public XWikiDocument getDocument(XWikiDocument doc, XWikiContext context) throws XWikiException {
+    RenderingDependencies.record(context, doc.getDocumentReference());
     return getStore().loadXWikiDoc(doc, context);
   }
 
+  /**
+   * Bulk variant of {@link #getDocument(XWikiDocument, XWikiContext)}, see
+   * {@link XWikiStoreInterface#loadXWikiDocs(List, XWikiContext)}.
+   *
+   * @since 6.2
+   */
+  public List<XWikiDocument> getDocuments(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException {
+    docs.forEach(doc -> RenderingDependencies.record(context, doc.getDocumentReference()));
+    return getStore().loadXWikiDocs(docs, context);
+  }
+
   public XWikiDocument getDocument(XWikiDocument doc, String revision, XWikiContext context)
       throws XWikiException {
     XWikiDocument newdoc;
@@ -1626,29 +1648,7 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
   public String getXWikiPreference(String prefname, String fallback_param, String default_value,
       XWikiContext context) {
     try {
-      DocumentReference xwikiPreferencesReference = new DocumentReference("XWikiPreferences",
-          new SpaceReference("XWiki", new WikiReference(context.getDatabase())));
-      XWikiDocument doc = getDocument(xwikiPreferencesReference, context);
-      // First we try to get a translated preference object
-      BaseObject object = doc.getXObject(xwikiPreferencesReference, "default_language",
-          context.getLanguage(), true);
-      String result = "";
-
-      if (object != null) {
-        try {
-          result = object.getStringValue(prefname);
-        } catch (Exception e) {
-          LOG.warn("Exception while getting wiki preference [" + prefname + "]", e);
-        }
-      }
-      // If empty we take it from the default pref object
-      if (result.equals("")) {
-        object = doc.getXObject();
-        if (object != null) {
-          result = object.getStringValue(prefname);
-        }
-      }
-
+      String result = getPreferences(null, context).get(prefname);
       if (!result.equals("")) {
         return result;
       }
@@ -1679,22 +1679,7 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
     // doc is not set).
     if (space != null) {
       try {
-        XWikiDocument doc = getDocument(space + ".WebPreferences", context);
-
-        // First we try to get a translated preference object
-        DocumentReference xwikiPreferencesReference = new DocumentReference("XWikiPreferences",
-            new SpaceReference("XWiki", new WikiReference(context.getDatabase())));
-        BaseObject object = doc.getXObject(xwikiPreferencesReference, "default_language",
-            context.getLanguage(), true);
-        String result = "";
-        if (object != null) {
-          try {
-            result = object.getStringValue(preference);
-          } catch (Exception e) {
-            LOG.warn("Exception while getting space preference [" + preference + "]", e);
-          }
-        }
-
+        String result = getPreferences(space, context).get(preference);
         if (!result.equals("")) {
           return result;
         }
@@ -1705,6 +1690,41 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
     return getXWikiPreference(preference, defaultValue, context);
   }
 
+  /**
+   * @param space
+   *          the space of the WebPreferences, null for the wiki XWiki.XWikiPreferences
+   * @return the preferences for the context language, from the {@link XWikiPreferenceIndex} if
+   *         indexed. The translated preferences object is taken first, the wiki preferences fall
+   *         back on the default object of the document.
+   */
+  private XWikiPreferenceIndex.Preferences getPreferences(String space, XWikiContext context)
+      throws XWikiException {
+    String wiki = context.getDatabase();
+    String language = context.getLanguage();
+    XWikiPreferenceIndex.Preferences preferences = preferenceIndex.get(wiki, space, language);
+    if (preferences != null) {
+      // as if the document had been read, see getDocument
+      RenderingDependencies.record(context, preferences.getDocumentReference());
+    } else {
+      long generation = preferenceIndex.getGeneration();
+      DocumentReference xwikiPreferencesReference = new DocumentReference(
+          XWikiPreferenceIndex.WIKI_PREFERENCES_NAME, new SpaceReference(
+              XWikiPreferenceIndex.WIKI_PREFERENCES_SPACE, new WikiReference(wiki)));
+      XWikiDocument doc;
+      if (space == null) {
+        doc = getDocument(xwikiPreferencesReference, context);
+      } else {
+        doc = getDocument(space + "." + XWikiPreferenceIndex.SPACE_PREFERENCES_NAME, context);
+      }
+      BaseObject object = doc.getXObject(xwikiPreferencesReference, "default_language", language,
+          true);
+      preferences = XWikiPreferenceIndex.resolve(doc.getDocumentReference(), object,
+          (space == null) ? doc.getXObject() : null);
+      preferenceIndex.put(wiki, space, language, preferences, generation);
+    }
+    return preferences;
+  }
+
   public String getUserPreference(String prefname, XWikiContext context) {
     try {
       String user = context.getUser();
@@ -2164,6 +2184,9 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
       this.groupService.flushCache();
     }
 
+    this.preferenceIndex.invalidateAll();
+    Utils.getComponent(QueryResultCache.class).flush();
+
     // Flush the Cache Stores
     Utils.getComponentList(XWikiStoreInterface.class).stream()
         .flatMap(tryCast(XWikiCacheStoreInterface.class))
@@ -5613,6 +5636,8 @@ public class XWiki implements XWikiDocChangeNotificationInterface, EventListener
     XWikiDocument originalDoc = doc.getOriginalDocument();
     XWikiContext context = (XWikiContext) data;
 
+    this.preferenceIndex.invalidate(doc.getDocumentReference());
+
     ObservationManager om = Utils.getComponent(ObservationManager.class);
     String reference = defaultEntityReferenceSerializer.get().serialize(doc.getDocumentReference());
 
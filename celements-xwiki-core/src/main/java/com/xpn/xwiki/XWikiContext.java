@@ -21,16 +21,23 @@
 
 package com.xpn.xwiki;
 
+import static java.util.Objects.*;
+
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 
 import org.apache.commons.collections.map.LRUMap;
@@ -56,7 +63,15 @@ import com.xpn.xwiki.web.XWikiResponse;
 import com.xpn.xwiki.web.XWikiServletRequestStub;
 import com.xpn.xwiki.web.XWikiURLFactory;
 
-public class XWikiContext extends Hashtable<Object, Object> {
+/**
+ * The XWiki request context. The well-known keys, see {@link #SLOT_KEYS}, are stored in field
+ * backed slots, all others in a plain map. Like the request it belongs to, a context is confined
+ * to a single thread and thus isn't synchronized. Work handed over to other threads must use its
+ * own context, see {@link #fork()}.
+ * <p>
+ * Like the {@link java.util.Hashtable} it replaces, null keys and values aren't permitted.
+ */
+public class XWikiContext extends AbstractMap<Object, Object> {
 
   public static final int MODE_SERVLET = 0;
 
@@ -88,6 +103,26 @@ public class XWikiContext extends Hashtable<Object, Object> {
 
   private static final String ORIGINAL_WIKI_KEY = "originalWiki";
 
+  private static final String DOC_KEY = "doc";
+
+  private static final String UTIL_KEY = "util";
+
+  private static final String MSG_KEY = "msg";
+
+  /**
+   * the keys stored in {@link #slots}, the index of a key is its slot, see {@link #slotOf(Object)}
+   */
+  static final List<String> SLOT_KEYS = List.of(WIKI_KEY, ORIGINAL_WIKI_KEY, "user", "language",
+      DOC_KEY, "tdoc", "cdoc", "sdoc", "idoc", "vcontext", MSG_KEY, UTIL_KEY);
+
+  private final Object[] slots = new Object[SLOT_KEYS.size()];
+
+  private int slotCount = 0;
+
+  private final Map<Object, Object> attributes = new HashMap<>();
+
+  private Set<Entry<Object, Object>> entrySet;
+
   private boolean finished = false;
 
   private XWiki wiki;
@@ -128,15 +163,14 @@ public class XWikiContext extends Hashtable<Object, Object> {
 
   // Used to avoid recursive loading of documents if there are recursives usage of classes
   @SuppressWarnings("unchecked")
-  private Map<DocumentReference, BaseClass> classCache = Collections
-      .synchronizedMap(new LRUMap(this.classCacheSize));
+  private final Map<DocumentReference, BaseClass> classCache = new LRUMap(this.classCacheSize);
 
   // Used to avoid reloading archives in the same request
   @SuppressWarnings("unchecked")
-  private Map<String, XWikiDocumentArchive> archiveCache = Collections
-      .synchronizedMap(new LRUMap(this.archiveCacheSize));
+  private final Map<String, XWikiDocumentArchive> archiveCache = new LRUMap(
+      this.archiveCacheSize);
 
-  private List<String> displayedFields = Collections.synchronizedList(new ArrayList<String>());
+  private final List<String> displayedFields = new ArrayList<>();
 
   /**
    * Used to resolve a string into a proper Document Reference using the current document's
@@ -154,6 +188,48 @@ public class XWikiContext extends Hashtable<Object, Object> {
 
   public XWikiContext() {}
 
+  /**
+   * Creates a copy of this context to be handed over to an other thread, e.g. for background
+   * work. The values themselves aren't copied, but the copy has its own map and caches, thus
+   * modifications don't affect this context and vice versa.
+   *
+   * @return a new context with the state of this context
+   */
+  public XWikiContext fork() {
+    XWikiContext fork = new XWikiContext();
+    fork.finished = this.finished;
+    fork.wiki = this.wiki;
+    fork.engine_context = this.engine_context;
+    fork.request = this.request;
+    fork.response = this.response;
+    fork.form = this.form;
+    fork.action = this.action;
+    fork.orig_database = this.orig_database;
+    fork.database = this.database;
+    fork.user = this.user;
+    fork.language = this.language;
+    fork.interfaceLanguage = this.interfaceLanguage;
+    fork.uri = this.uri;
+    fork.urlFactory = this.urlFactory;
+    fork.cacheDuration = this.cacheDuration;
+    System.arraycopy(this.slots, 0, fork.slots, 0, this.slots.length);
+    fork.slotCount = this.slotCount;
+    fork.attributes.putAll(this.attributes);
+    fork.classCache.putAll(this.classCache);
+    fork.archiveCache.putAll(this.archiveCache);
+    fork.displayedFields.addAll(this.displayedFields);
+    return fork;
+  }
+
+  /**
+   * @deprecated since 6.2 instead use {@link #fork()}
+   */
+  @Override
+  @Deprecated
+  public XWikiContext clone() {
+    return fork();
+  }
+
   /**
    * @deprecated instead use {@link XWikiProvider}
    */
@@ -166,10 +242,10 @@ public class XWikiContext extends Hashtable<Object, Object> {
   }
 
   public Util getUtil() {
-    Util util = (Util) this.get("util");
+    Util util = (Util) slots[slotOf(UTIL_KEY)];
     if (util == null) {
       util = new Util();
-      this.put("util", util);
+      this.put(UTIL_KEY, util);
     }
     return util;
   }
@@ -222,39 +298,86 @@ public class XWikiContext extends Hashtable<Object, Object> {
 
   public void setDatabase(String database) {
     this.database = database;
-    if (database == null) {
-      super.remove(WIKI_KEY);
-    } else {
-      super.put(WIKI_KEY, database);
-    }
+    setSlot(slotOf(WIKI_KEY), database);
     if (this.orig_database == null) {
       this.orig_database = database;
-      if (database == null) {
-        super.remove(ORIGINAL_WIKI_KEY);
-      } else {
-        super.put(ORIGINAL_WIKI_KEY, database);
+      setSlot(slotOf(ORIGINAL_WIKI_KEY), database);
+    }
+  }
+
+  /**
+   * @return the slot of a well-known key, -1 for any other key
+   */
+  private static int slotOf(Object key) {
+    if (key instanceof String) {
+      switch ((String) key) {
+        case WIKI_KEY:
+          return 0;
+        case ORIGINAL_WIKI_KEY:
+          return 1;
+        case USER_KEY:
+          return 2;
+        case LANGUAGE_KEY:
+          return 3;
+        case DOC_KEY:
+          return 4;
+        case "tdoc":
+          return 5;
+        case "cdoc":
+          return 6;
+        case "sdoc":
+          return 7;
+        case "idoc":
+          return 8;
+        case "vcontext":
+          return 9;
+        case MSG_KEY:
+          return 10;
+        case UTIL_KEY:
+          return 11;
+        default:
+          return -1;
       }
     }
+    return -1;
+  }
+
+  private Object setSlot(int slot, Object value) {
+    Object previous = slots[slot];
+    slots[slot] = value;
+    slotCount += ((value != null) ? 1 : 0) - ((previous != null) ? 1 : 0);
+    return previous;
+  }
+
+  @Override
+  public Object get(Object key) {
+    int slot = slotOf(requireNonNull(key));
+    return (slot >= 0) ? slots[slot] : attributes.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
   }
 
   /**
    * {@inheritDoc}
    * <p>
    * Make sure to keep {@link #database} field and map synchronized.
-   *
-   * @see java.util.Hashtable#put(java.lang.Object, java.lang.Object)
    */
   @Override
-  public synchronized Object put(Object key, Object value) {
+  public Object put(Object key, Object value) {
+    requireNonNull(value);
     Object previous;
-
+    int slot = slotOf(requireNonNull(key));
     if (WIKI_KEY.equals(key)) {
       previous = get(WIKI_KEY);
       setDatabase((String) value);
+    } else if (slot >= 0) {
+      previous = setSlot(slot, value);
     } else {
-      previous = super.put(key, value);
+      previous = attributes.put(key, value);
     }
-
     return previous;
   }
 
@@ -262,23 +385,125 @@ public class XWikiContext extends Hashtable<Object, Object> {
    * {@inheritDoc}
    * <p>
    * Make sure to keep {@link #database} field and map synchronized.
-   *
-   * @see java.util.Hashtable#remove(java.lang.Object)
    */
   @Override
-  public synchronized Object remove(Object key) {
+  public Object remove(Object key) {
     Object previous;
-
+    int slot = slotOf(requireNonNull(key));
     if (WIKI_KEY.equals(key)) {
       previous = get(WIKI_KEY);
       setDatabase(null);
+    } else if (slot >= 0) {
+      previous = setSlot(slot, null);
     } else {
-      previous = super.remove(key);
+      previous = attributes.remove(key);
     }
-
     return previous;
   }
 
+  @Override
+  public int size() {
+    return slotCount + attributes.size();
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(slots, null);
+    slotCount = 0;
+    attributes.clear();
+  }
+
+  @Override
+  public Set<Entry<Object, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private class EntrySet extends AbstractSet<Entry<Object, Object>> {
+
+    @Override
+    public int size() {
+      return XWikiContext.this.size();
+    }
+
+    @Override
+    public void clear() {
+      XWikiContext.this.clear();
+    }
+
+    @Override
+    public Iterator<Entry<Object, Object>> iterator() {
+      return new EntryIterator();
+    }
+
+  }
+
+  /**
+   * iterates the set slots first and the attributes afterwards
+   */
+  private class EntryIterator implements Iterator<Entry<Object, Object>> {
+
+    private final Iterator<Entry<Object, Object>> attributeIter = attributes.entrySet()
+        .iterator();
+    private int nextSlot = nextSetSlot(0);
+    private int lastSlot = -1;
+
+    private int nextSetSlot(int from) {
+      int slot = from;
+      while ((slot < slots.length) && (slots[slot] == null)) {
+        slot++;
+      }
+      return slot;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return (nextSlot < slots.length) || attributeIter.hasNext();
+    }
+
+    @Override
+    public Entry<Object, Object> next() {
+      if (nextSlot < slots.length) {
+        lastSlot = nextSlot;
+        nextSlot = nextSetSlot(nextSlot + 1);
+        return new SlotEntry(lastSlot);
+      } else if (attributeIter.hasNext()) {
+        lastSlot = -1;
+        return attributeIter.next();
+      }
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public void remove() {
+      if (lastSlot >= 0) {
+        XWikiContext.this.remove(SLOT_KEYS.get(lastSlot));
+        lastSlot = -1;
+      } else {
+        attributeIter.remove();
+      }
+    }
+
+  }
+
+  private class SlotEntry extends SimpleEntry<Object, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    private SlotEntry(int slot) {
+      super(SLOT_KEYS.get(slot), slots[slot]);
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      super.setValue(value);
+      return put(getKey(), value);
+    }
+
+  }
+
   public String getOriginalDatabase() {
     return this.orig_database;
   }
@@ -313,15 +538,11 @@ public class XWikiContext extends Hashtable<Object, Object> {
   }
 
   public XWikiDocument getDoc() {
-    return (XWikiDocument) get("doc");
+    return (XWikiDocument) slots[slotOf(DOC_KEY)];
   }
 
   public void setDoc(XWikiDocument doc) {
-    if (doc == null) {
-      remove("doc");
-    } else {
-      put("doc", doc);
-    }
+    setSlot(slotOf(DOC_KEY), doc);
   }
 
   public void setUser(String user, boolean main) {
@@ -527,10 +748,10 @@ public class XWikiContext extends Hashtable<Object, Object> {
   }
 
   public XWikiMessageTool getMessageTool() {
-    XWikiMessageTool msg = ((XWikiMessageTool) get("msg"));
+    XWikiMessageTool msg = ((XWikiMessageTool) slots[slotOf(MSG_KEY)]);
     if (msg == null) {
       getWiki().prepareResources(this);
-      msg = ((XWikiMessageTool) get("msg"));
+      msg = ((XWikiMessageTool) slots[slotOf(MSG_KEY)]);
     }
     return msg;
   }
@@ -0,0 +1,186 @@
+package com.xpn.xwiki;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Index of the resolved wiki and space preferences read by {@link XWiki#getXWikiPreference} and
+ * {@link XWiki#getSpacePreference}, per wiki, space and language. The nested maps are keyed by the
+ * plain names, thus a lookup doesn't allocate. The preferences of a document are dropped once it's
+ * saved or deleted, see {@link #invalidate}.
+ */
+@ThreadSafe
+final class XWikiPreferenceIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(XWikiPreferenceIndex.class);
+
+  static final int CAPACITY = 10000;
+
+  static final String WIKI_PREFERENCES_SPACE = "XWiki";
+  static final String WIKI_PREFERENCES_NAME = "XWikiPreferences";
+  static final String SPACE_PREFERENCES_NAME = "WebPreferences";
+
+  /**
+   * space key of the wiki preferences, no valid space name
+   */
+  private static final String WIKI_KEY = "";
+
+  /**
+   * language key if the context has none, no valid language
+   */
+  private static final String NO_LANGUAGE_KEY = "\u0000";
+
+  /**
+   * the resolved preferences of a document for a language
+   */
+  @Immutable
+  static final class Preferences {
+
+    private final DocumentReference documentReference;
+    private final Map<String, String> values;
+
+    private Preferences(DocumentReference documentReference, Map<String, String> values) {
+      this.documentReference = documentReference;
+      this.values = values;
+    }
+
+    DocumentReference getDocumentReference() {
+      return documentReference;
+    }
+
+    /**
+     * @return the value of the preference, empty if not set
+     */
+    @NotNull
+    String get(String name) {
+      String value = values.get(name);
+      return (value != null) ? value : "";
+    }
+
+  }
+
+  /**
+   * wiki -> space -> language -> preferences
+   */
+  private final Map<String, Map<String, Map<String, Preferences>>> wikis =
+      new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * incremented on each invalidation, preferences read before aren't indexed
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * @param space
+   *          the space of the preferences, null for the wiki preferences
+   * @return the indexed preferences, null if not indexed
+   */
+  Preferences get(@NotNull String wiki, String space, String language) {
+    Map<String, Map<String, Preferences>> spaces = wikis.get(wiki);
+    if (spaces != null) {
+      Map<String, Preferences> languages = spaces.get(getSpaceKey(space));
+      if (languages != null) {
+        return languages.get(getLanguageKey(language));
+      }
+    }
+    return null;
+  }
+
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Indexes the preferences unless invalidated since the given generation, e.g. when the document
+   * was saved while it was being read.
+   */
+  void put(@NotNull String wiki, String space, String language,
+      @NotNull Preferences preferences, long readGeneration) {
+    if (size.incrementAndGet() > CAPACITY) {
+      LOGGER.debug("put: capacity reached, clearing index");
+      wikis.clear();
+      size.set(1);
+    }
+    Map<String, Preferences> languages = wikis
+        .computeIfAbsent(wiki, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(getSpaceKey(space), key -> new ConcurrentHashMap<>());
+    String languageKey = getLanguageKey(language);
+    languages.put(languageKey, preferences);
+    if (generation.get() != readGeneration) {
+      languages.remove(languageKey, preferences);
+    }
+  }
+
+  /**
+   * Drops the indexed preferences read from the given document, if it's a preferences document.
+   */
+  void invalidate(@NotNull DocumentReference docRef) {
+    String space = null;
+    if (SPACE_PREFERENCES_NAME.equals(docRef.getName())) {
+      space = docRef.getLastSpaceReference().getName();
+    } else if (WIKI_PREFERENCES_NAME.equals(docRef.getName())
+        && WIKI_PREFERENCES_SPACE.equals(docRef.getLastSpaceReference().getName())) {
+      space = WIKI_KEY;
+    }
+    if (space != null) {
+      generation.incrementAndGet();
+      Map<String, Map<String, Preferences>> spaces = wikis.get(
+          docRef.getWikiReference().getName());
+      if ((spaces != null) && (spaces.remove(space) != null)) {
+        LOGGER.debug("invalidate: dropped preferences of [{}]", docRef);
+      }
+    }
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    wikis.clear();
+    size.set(0);
+  }
+
+  /**
+   * @param translated
+   *          the preferences object of the language, may be null
+   * @param fallback
+   *          the object to take the preferences empty in the translated object from, may be null
+   */
+  static Preferences resolve(@NotNull DocumentReference docRef, BaseObject translated,
+      BaseObject fallback) {
+    Map<String, String> values = new HashMap<>();
+    for (BaseObject object : new BaseObject[] { translated, fallback }) {
+      if (object != null) {
+        for (String name : object.getPropertyList()) {
+          String value = object.getStringValue(name);
+          if (!value.isEmpty()) {
+            values.putIfAbsent(name, value);
+          }
+        }
+      }
+    }
+    return new Preferences(docRef, ImmutableMap.copyOf(values));
+  }
+
+  private static String getSpaceKey(String space) {
+    return (space != null) ? space : WIKI_KEY;
+  }
+
+  private static String getLanguageKey(String language) {
+    return (language != null) ? language : NO_LANGUAGE_KEY;
+  }
+
+}
@@ -322,6 +322,12 @@ public class XWikiDocument implements DocumentModelBridge {
    */
   private final Map<DocumentReference, List<BaseObject>> xObjects;
 
+  /**
+   * Source of a copy-on-write clone, see {@link #cloneCopyOnWrite()}. The xobjects are copied from
+   * this document on the first access to {@link #getXObjects()}, until then reads are delegated.
+   */
+  private XWikiDocument xObjectsSource;
+
   private List<XWikiAttachment> attachmentList;
 
   // Caching
@@ -1961,10 +1967,34 @@ public class XWikiDocument implements DocumentModelBridge {
    * @since 2.2M1
    */
   public Map<DocumentReference, List<BaseObject>> getXObjects() {
+    copyXObjectsFromSource();
     return this.xObjects;
   }
 
+  /**
+   * @return the xobjects for reading only, for a copy-on-write clone these are the not yet copied
+   *         xobjects of its source document. Thus neither the map nor the xobjects may be modified.
+   */
+  private Map<DocumentReference, List<BaseObject>> getXObjectsForRead() {
+    return (this.xObjectsSource != null) ? this.xObjectsSource.getXObjectsForRead() : this.xObjects;
+  }
+
+  private void copyXObjectsFromSource() {
+    if (this.xObjectsSource != null) {
+      XWikiDocument source = this.xObjectsSource;
+      this.xObjectsSource = null;
+      boolean contentDirty = isContentDirty();
+      boolean metaDataDirty = isMetaDataDirty();
+      cloneXObjects(source, true);
+      setContentDirty(contentDirty);
+      setMetaDataDirty(metaDataDirty);
+    }
+  }
+
   public Set<DocumentReference> getXObjectClassRefs() {
+    if (this.xObjectsSource != null) {
+      return Collections.unmodifiableSet(getXObjectsForRead().keySet());
+    }
     return this.xObjects.keySet();
   }
 
@@ -1991,6 +2021,7 @@ public class XWikiDocument implements DocumentModelBridge {
    * @since 2.2M1
    */
   public void setXObjects(Map<DocumentReference, List<BaseObject>> objects) {
+    this.xObjectsSource = null;
     this.xObjects.clear();
     this.xObjects.putAll(objects);
   }
@@ -2118,6 +2149,21 @@ public class XWikiDocument implements DocumentModelBridge {
     return getXObjects().get(classReference);
   }
 
+  /**
+   * Read-only variant of {@link #getXObjects(DocumentReference)} which doesn't copy the xobjects of
+   * a copy-on-write clone, see {@link #cloneCopyOnWrite()}. Thus neither the list nor the xobjects
+   * may be modified, clone them instead.
+   *
+   * @since 6.2
+   */
+  public List<BaseObject> getXObjectsReadOnly(DocumentReference classReference) {
+    List<BaseObject> objects = null;
+    if (classReference != null) {
+      objects = getXObjectsForRead().get(classReference);
+    }
+    return (objects != null) ? Collections.unmodifiableList(objects) : null;
+  }
+
   /**
    * @deprecated since 2.2M1 use {@link #getXObjects(DocumentReference)} instead
    */
@@ -2437,10 +2483,11 @@ public class XWikiDocument implements DocumentModelBridge {
    */
   private void cloneXObjects(XWikiDocument templatedoc, boolean keepsIdentity) {
     // clean map
+    this.xObjectsSource = null;
     this.xObjects.clear();
 
     // fill map
-    for (Map.Entry<DocumentReference, List<BaseObject>> entry : templatedoc.getXObjects()
+    for (Map.Entry<DocumentReference, List<BaseObject>> entry : templatedoc.getXObjectsForRead()
         .entrySet()) {
       List<BaseObject> tobjects = entry.getValue();
 
@@ -3309,7 +3356,22 @@ public class XWikiDocument implements DocumentModelBridge {
 
   @Override
   public XWikiDocument clone() {
-    return cloneInternal(getDocumentReference(), true);
+    return cloneInternal(getDocumentReference(), true, false);
+  }
+
+  /**
+   * Clones the document without copying its xobjects, they are only copied on the first access to
+   * {@link #getXObjects()} or any method using it, e.g. to edit an xobject. Reading xobjects via
+   * {@link #getXObjectsReadOnly(DocumentReference)} doesn't copy them.
+   * <p>
+   * CAUTION: only use this on documents which aren't modified anymore, e.g. documents from the
+   * document cache. Changes on this document's xobjects are visible to the clone until they're
+   * copied.
+   *
+   * @since 6.2
+   */
+  public XWikiDocument cloneCopyOnWrite() {
+    return cloneInternal(getDocumentReference(), true, true);
   }
 
   /**
@@ -3318,11 +3380,11 @@ public class XWikiDocument implements DocumentModelBridge {
    * @since 2.2.3
    */
   public XWikiDocument duplicate(DocumentReference newDocumentReference) {
-    return cloneInternal(newDocumentReference, false);
+    return cloneInternal(newDocumentReference, false, false);
   }
 
   private XWikiDocument cloneInternal(DocumentReference newDocumentReference,
-      boolean keepsIdentity) {
+      boolean keepsIdentity, boolean copyOnWrite) {
     XWikiDocument doc = null;
     try {
       doc = getClass().getConstructor(DocumentReference.class).newInstance(newDocumentReference);
@@ -3360,7 +3422,11 @@ public class XWikiDocument implements DocumentModelBridge {
       doc.setSyntax(getSyntax());
       doc.setHidden(isHidden());
 
-      if (keepsIdentity) {
+      if (keepsIdentity && copyOnWrite) {
+        doc.setXClassXML(getXClassXML());
+        doc.xObjectsSource = (this.xObjectsSource != null) ? this.xObjectsSource : this;
+        doc.cloneAttachments(this);
+      } else if (keepsIdentity) {
         doc.setXClassXML(getXClassXML());
         doc.cloneXObjects(this);
         doc.cloneAttachments(this);
@@ -209,7 +209,7 @@ public class HtmlPackager {
     VelocityContext oldVelocityContext = (VelocityContext) context.get("vcontext");
 
     try {
-      XWikiContext renderContext = (XWikiContext) context.clone();
+      XWikiContext renderContext = context.fork();
       renderContext.put("action", "view");
 
       ExecutionContext ec = new ExecutionContext();
@@ -21,8 +21,13 @@ package com.xpn.xwiki.internal.cache;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.xwiki.bridge.event.AbstractDocumentEvent;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
@@ -32,6 +37,8 @@ import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.annotation.Requirement;
@@ -44,9 +51,12 @@ import org.xwiki.observation.event.Event;
 
 /**
  * Specialized cache component related to documents. It automatically clean the cache when the
- * document is related.
+ * document or one of the dependencies of an entry is modified.
  * <p>
- * TODO: add support for dependencies
+ * The entries are looked up by document in an in-memory reverse index. It isn't updated on
+ * eviction by the underlying cache, so its size is bounded to a multiple of the cache capacity
+ * and it's cleared together with the cache when exceeded. Each removal triggered by a document
+ * modification changes the generation, data computed before isn't stored afterwards.
  *
  * @param <C>
  *          the type of the data stored in the cache
@@ -63,6 +73,11 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
   private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatedEvent(),
       new DocumentUpdatedEvent(), new DocumentDeletedEvent());
 
+  /**
+   * Bounds the reverse index if the capacity of the cache isn't configured.
+   */
+  private static final int DEFAULT_MAX_INDEXED_KEYS = 100000;
+
   /**
    * Used to listen to document modification events.
    *
@@ -101,14 +116,14 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
     public void onEvent(Event event, Object source, Object data) {
       String documentReferenceString = ((AbstractDocumentEvent) event).getEventFilter().getFilter();
 
-      Collection<String> keys = mappingCache.get(documentReferenceString);
+      generation.incrementAndGet();
+      Set<String> keys = keysByDocument.remove(documentReferenceString);
 
       if (keys != null) {
+        indexedKeyCount.addAndGet(-keys.size());
         for (String key : keys) {
           cache.remove(key);
         }
-
-        mappingCache.remove(documentReferenceString);
       }
     }
   }
@@ -136,9 +151,24 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
   private Cache<C> cache;
 
   /**
-   * The cache used to follow multiple cache entries related to the same document.
+   * The keys of the cache entries related to each document.
+   */
+  private final ConcurrentMap<String, Set<String>> keysByDocument = new ConcurrentHashMap<>();
+
+  /**
+   * The amount of keys in {@link #keysByDocument}.
+   */
+  private final AtomicInteger indexedKeyCount = new AtomicInteger();
+
+  /**
+   * Changed by each removal triggered by a document modification, see {@link #getGeneration()}.
    */
-  private Cache<Collection<String>> mappingCache;
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * The maximum amount of keys in {@link #keysByDocument}.
+   */
+  private int maxIndexedKeys = DEFAULT_MAX_INDEXED_KEYS;
 
   /**
    * The identifier of the cache and event listener.
@@ -162,11 +192,11 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
 
     this.cache = this.cacheManager.createNewCache(cacheConfiguration);
 
-    CacheConfiguration mappingCacheConfiguration = (CacheConfiguration) cacheConfiguration.clone();
-    mappingCacheConfiguration
-        .setConfigurationId(cacheConfiguration.getConfigurationId() + ".mapping");
-
-    this.mappingCache = this.cacheManager.createNewCache(cacheConfiguration);
+    Object eviction = cacheConfiguration.get(EntryEvictionConfiguration.CONFIGURATIONID);
+    if ((eviction instanceof LRUEvictionConfiguration)
+        && (((LRUEvictionConfiguration) eviction).getMaxEntries() > 0)) {
+      this.maxIndexedKeys = 10 * ((LRUEvictionConfiguration) eviction).getMaxEntries();
+    }
 
     this.observationManager.addListener(this.listener);
   }
@@ -192,19 +222,68 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
    */
   @Override
   public void set(C data, DocumentReference documentReference, Object... extensions) {
+    set(data, Collections.<DocumentReference>emptyList(), getGeneration(), documentReference,
+        extensions);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see com.xpn.xwiki.internal.cache.DocumentCache#getGeneration()
+   */
+  @Override
+  public long getGeneration() {
+    return this.generation.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see com.xpn.xwiki.internal.cache.DocumentCache#set(java.lang.Object, java.util.Collection,
+   *      long, org.xwiki.model.reference.DocumentReference, java.lang.Object[])
+   */
+  @Override
+  public void set(C data, Collection<DocumentReference> dependencies, long generation,
+      DocumentReference documentReference, Object... extensions) {
+    if (generation != getGeneration()) {
+      return;
+    }
+
     String key = getKey(documentReference, extensions);
-    this.cache.set(key, data);
 
-    String documentReferenceString = this.serializer.serialize(documentReference);
+    if (this.indexedKeyCount.get() >= this.maxIndexedKeys) {
+      // the index mostly refers to evicted entries, start over to bound its size
+      clear();
+    }
 
-    Collection<String> keys = this.mappingCache.get(documentReferenceString);
+    index(this.serializer.serialize(documentReference), key);
+    for (DocumentReference dependency : dependencies) {
+      if (!dependency.equals(documentReference)) {
+        index(this.serializer.serialize(dependency), key);
+      }
+    }
 
-    if (keys == null) {
-      keys = new HashSet<>();
-      this.mappingCache.set(documentReferenceString, keys);
+    this.cache.set(key, data);
+
+    if (generation != getGeneration()) {
+      // a document has been modified while storing, the data may be outdated
+      this.cache.remove(key);
     }
+  }
 
-    keys.add(key);
+  /**
+   * Relate the cache entry to the document.
+   *
+   * @param documentReferenceString
+   *          the serialized reference of the document
+   * @param key
+   *          the key of the cache entry
+   */
+  private void index(String documentReferenceString, String key) {
+    if (this.keysByDocument.computeIfAbsent(documentReferenceString,
+        k -> ConcurrentHashMap.newKeySet()).add(key)) {
+      this.indexedKeyCount.incrementAndGet();
+    }
   }
 
   /**
@@ -256,10 +335,10 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
 
     String documentReferenceString = serializer.serialize(documentReference);
 
-    Collection<String> keys = mappingCache.get(documentReferenceString);
+    Set<String> keys = this.keysByDocument.get(documentReferenceString);
 
-    if (keys != null) {
-      keys.remove(key);
+    if ((keys != null) && keys.remove(key)) {
+      this.indexedKeyCount.decrementAndGet();
     }
   }
 
@@ -270,8 +349,17 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
    */
   @Override
   public void removeAll() {
+    this.generation.incrementAndGet();
+    clear();
+  }
+
+  /**
+   * Remove all the entries and their index.
+   */
+  private void clear() {
+    this.keysByDocument.clear();
+    this.indexedKeyCount.set(0);
     this.cache.removeAll();
-    this.mappingCache.removeAll();
   }
 
   /**
@@ -281,7 +369,9 @@ public class DefaultDocumentCache<C> implements DocumentCache<C> {
    */
   @Override
   public void dispose() {
+    this.observationManager.removeListener(this.name);
     this.cache.dispose();
-    this.mappingCache.dispose();
+    this.keysByDocument.clear();
+    this.indexedKeyCount.set(0);
   }
 }
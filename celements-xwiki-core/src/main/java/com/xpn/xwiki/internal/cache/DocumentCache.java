@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.internal.cache;
 
+import java.util.Collection;
+
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.component.annotation.ComponentRole;
@@ -70,6 +72,30 @@ public interface DocumentCache<C> {
    */
   void set(C data, DocumentReference documentReference, Object... extensions);
 
+  /**
+   * @return the current generation, changed by each removal triggered by a document modification
+   */
+  long getGeneration();
+
+  /**
+   * Add a new value or overwrite the existing one associated with the provided key. The value is
+   * removed when the document or any of the given dependencies is modified. It isn't stored if
+   * any document has been modified since the given generation, it may be outdated.
+   *
+   * @param data
+   *          the data to store
+   * @param dependencies
+   *          the references of the other documents the data depends on
+   * @param generation
+   *          the {@link #getGeneration()} before the data has been computed
+   * @param documentReference
+   *          the reference of the document
+   * @param extensions
+   *          the extensions to the document reference
+   */
+  void set(C data, Collection<DocumentReference> dependencies, long generation,
+      DocumentReference documentReference, Object... extensions);
+
   /**
    * Remove from the cache the value associated to the provided key elements.
    *
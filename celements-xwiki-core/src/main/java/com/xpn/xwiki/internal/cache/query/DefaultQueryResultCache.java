@@ -0,0 +1,410 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.query;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.hibernate.EntityMode;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.query.Query;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentArchive;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.doc.XWikiLink;
+import com.xpn.xwiki.doc.rcs.XWikiRCSNodeContent;
+import com.xpn.xwiki.doc.rcs.XWikiRCSNodeInfo;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.objects.classes.PropertyClass;
+import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
+
+/**
+ * Default implementation of {@link QueryResultCache}. Since document events are propagated to the
+ * other cluster nodes by the remote observation, their entries are evicted as well. Remote events
+ * don't carry the previous state of the document, thus they evict all entries of the wiki. As a
+ * safety net for writes bypassing the document events, e.g. direct database updates, entries
+ * expire after a configurable time to live.
+ *
+ * @version $Id$
+ */
+@Component
+public class DefaultQueryResultCache implements QueryResultCache, EventListener, Initializable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultQueryResultCache.class);
+
+  /**
+   * Identifier of the query result cache.
+   */
+  private static final String NAME = "core.querycache";
+
+  /**
+   * Name of the property indicating if the cache is enabled or not.
+   */
+  private static final String PROPNAME_ENABLED = NAME + ".enabled";
+
+  /**
+   * Name of the property listing the patterns of the statements to cache, the query name for named
+   * queries.
+   */
+  private static final String PROPNAME_QUERIES = NAME + ".queries";
+
+  /**
+   * Name of the property indicating the maximum number of cached results.
+   */
+  private static final String PROPNAME_SIZE = NAME + ".size";
+
+  /**
+   * The default size of the cache.
+   */
+  private static final int PROPVALUE_SIZE = 1000;
+
+  /**
+   * Name of the property indicating the time to live of the cached results in seconds, 0 to never
+   * expire them.
+   */
+  private static final String PROPNAME_DURATION = NAME + ".duration";
+
+  /**
+   * The default time to live of the cached results in seconds.
+   */
+  private static final int PROPVALUE_DURATION = 3600;
+
+  /**
+   * Entities written on each document save, additionally to the class definition.
+   */
+  private static final List<Class<?>> DOCUMENT_ENTITIES = Arrays.<Class<?>>asList(
+      XWikiDocument.class, XWikiLink.class, XWikiRCSNodeInfo.class, XWikiRCSNodeContent.class);
+
+  /**
+   * Entities written on the save of a document with attachments.
+   */
+  private static final List<Class<?>> ATTACHMENT_ENTITIES = Arrays.<Class<?>>asList(
+      XWikiAttachment.class, XWikiAttachmentContent.class, XWikiAttachmentArchive.class);
+
+  private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatedEvent(),
+      new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+  /**
+   * xwiki.properties file configurations.
+   */
+  @Requirement("xwikiproperties")
+  private ConfigurationSource farmConfiguration;
+
+  @Requirement
+  private CacheManager cacheManager;
+
+  @Requirement
+  private HibernateSessionFactory sessionFactory;
+
+  @Requirement
+  private ObservationManager observationManager;
+
+  @Requirement
+  private RemoteObservationManagerContext remoteObservationManagerContext;
+
+  private boolean enabled;
+
+  private Pattern queryPattern;
+
+  private QueryResults results;
+
+  private volatile MappedTables mappedTables;
+
+  @Override
+  public void initialize() throws InitializationException {
+    List<?> queries = this.farmConfiguration.getProperty(PROPNAME_QUERIES, List.class);
+    this.enabled = this.farmConfiguration.getProperty(PROPNAME_ENABLED, false)
+        && (queries != null) && !queries.isEmpty();
+    if (this.enabled) {
+      this.queryPattern = Pattern.compile(queries.stream()
+          .map(query -> "(?:" + query.toString().trim() + ")")
+          .collect(Collectors.joining("|")));
+      try {
+        this.results = new QueryResults(this.cacheManager.<QueryResults.Entry>createNewCache(
+            newCacheConfiguration()));
+      } catch (CacheException e) {
+        throw new InitializationException("Failed to initialize core query cache", e);
+      }
+      this.observationManager.addListener(this);
+    }
+  }
+
+  private CacheConfiguration newCacheConfiguration() {
+    CacheConfiguration cacheConfiguration = new CacheConfiguration();
+    cacheConfiguration.setConfigurationId(NAME);
+    LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+    lru.setMaxEntries(this.farmConfiguration.getProperty(PROPNAME_SIZE, PROPVALUE_SIZE));
+    int duration = this.farmConfiguration.getProperty(PROPNAME_DURATION, PROPVALUE_DURATION);
+    if (duration > 0) {
+      lru.setTimeToLive(duration);
+    }
+    cacheConfiguration.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
+    return cacheConfiguration;
+  }
+
+  @Override
+  public boolean isCached(Query query) {
+    return this.enabled && this.queryPattern.matcher(query.getStatement()).matches();
+  }
+
+  @Override
+  public long getGeneration() {
+    return this.enabled ? this.results.getGeneration() : 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> List<T> get(String wiki, Query query) {
+    if (isCached(query)) {
+      List<Object> result = this.results.get(wiki, QueryResults.Key.of(query));
+      if (result != null) {
+        // callers may modify the returned list
+        return (List<T>) new ArrayList<>(result);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void set(String wiki, Query query, List<?> result, Collection<String> tables,
+      long generation) {
+    if (isCached(query)) {
+      if (getCacheableTables().containsAll(tables)) {
+        this.results.put(wiki, QueryResults.Key.of(query), result, tables, generation);
+      } else {
+        LOGGER.debug("set: not caching [{}], reads tables {} not invalidated by documents",
+            query.getStatement(), tables);
+      }
+    }
+  }
+
+  @Override
+  public void invalidate(String wiki, Collection<String> tables) {
+    if (this.enabled) {
+      this.results.invalidate(wiki, tables);
+    }
+  }
+
+  @Override
+  public void invalidate(String wiki) {
+    if (this.enabled) {
+      this.results.invalidate(wiki);
+    }
+  }
+
+  @Override
+  public void flush() {
+    if (this.enabled) {
+      this.results.invalidateAll();
+    }
+  }
+
+  @Override
+  public Map<String, Map<String, Long>> getStatistics() {
+    return this.enabled ? this.results.getStatistics() : Collections.emptyMap();
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return EVENTS;
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    XWikiDocument document = (XWikiDocument) source;
+    if (this.remoteObservationManagerContext.isRemoteState()) {
+      invalidate(document.getWikiName());
+    } else {
+      invalidate(document.getWikiName(), getDocumentTables(document,
+          document.getOriginalDocument()));
+    }
+  }
+
+  /**
+   * @return the tables written by saving or deleting the given document
+   */
+  private Set<String> getDocumentTables(XWikiDocument document, XWikiDocument oldDocument) {
+    MappedTables mapped = getMappedTables();
+    Set<String> tables = new HashSet<>(mapped.documentTables);
+    for (XWikiDocument doc : Arrays.asList(document, oldDocument)) {
+      if (doc != null) {
+        if (!doc.getAttachmentList().isEmpty()) {
+          tables.addAll(mapped.attachmentTables);
+        }
+        // the class references don't copy the objects of a copy-on-write clone
+        for (DocumentReference classRef : doc.getXObjectClassRefs()) {
+          tables.addAll(mapped.objectTables);
+          tables.addAll(mapped.customTables.getOrDefault(classRef.getLastSpaceReference()
+              .getName() + "." + classRef.getName(), Collections.emptySet()));
+        }
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * @return the tables possibly written by saving or deleting any document
+   */
+  private Set<String> getCacheableTables() {
+    return getMappedTables().allTables;
+  }
+
+  /**
+   * @return the tables by entity kind, computed once per session factory since it is rebuilt when
+   *         custom mappings change
+   */
+  private MappedTables getMappedTables() {
+    SessionFactoryImplementor factory = (SessionFactoryImplementor) this.sessionFactory
+        .getSessionFactory();
+    MappedTables mapped = this.mappedTables;
+    if ((mapped == null) || (mapped.factory != factory)) {
+      LOGGER.debug("getMappedTables: computing for session factory [{}]", factory);
+      mapped = new MappedTables(factory);
+      this.mappedTables = mapped;
+    }
+    return mapped;
+  }
+
+  private static boolean isDocumentEntity(Class<?> mappedClass) {
+    return DOCUMENT_ENTITIES.contains(mappedClass) || (mappedClass == BaseClass.class)
+        || PropertyClass.class.isAssignableFrom(mappedClass);
+  }
+
+  private static boolean isObjectEntity(Class<?> mappedClass) {
+    return (mappedClass == BaseObject.class) || BaseProperty.class.isAssignableFrom(mappedClass);
+  }
+
+  /**
+   * @param filter
+   *          accepts an entity by its name and mapped class, the latter is null for custom mapped
+   *          classes
+   * @return the tables of the accepted entities, including the tables of their super classes and
+   *         collections
+   */
+  @SuppressWarnings("unchecked")
+  private static Set<String> getTables(SessionFactoryImplementor factory,
+      BiPredicate<String, Class<?>> filter) {
+    Set<String> entityNames = new HashSet<>();
+    Set<String> tables = new HashSet<>();
+    for (Map.Entry<String, ClassMetadata> entry : ((Map<String, ClassMetadata>) factory
+        .getAllClassMetadata()).entrySet()) {
+      if (filter.test(entry.getKey(), entry.getValue().getMappedClass(EntityMode.POJO))) {
+        entityNames.add(entry.getKey());
+        addTables(tables, factory.getEntityPersister(entry.getKey()).getQuerySpaces());
+      }
+    }
+    for (String role : (Set<String>) factory.getAllCollectionMetadata().keySet()) {
+      if (entityNames.contains(role.substring(0, role.lastIndexOf('.')))) {
+        addTables(tables, factory.getCollectionPersister(role).getCollectionSpaces());
+      }
+    }
+    return tables;
+  }
+
+  private static void addTables(Set<String> tables, Serializable[] spaces) {
+    for (Serializable space : spaces) {
+      tables.add(space.toString());
+    }
+  }
+
+  /**
+   * The tables written by document saves, grouped like they are affected by a save.
+   */
+  private static final class MappedTables {
+
+    private final SessionFactory factory;
+    private final Set<String> documentTables;
+    private final Set<String> attachmentTables;
+    private final Set<String> objectTables;
+
+    /**
+     * custom mapped class name -> tables
+     */
+    private final Map<String, Set<String>> customTables = new HashMap<>();
+    private final Set<String> allTables = new HashSet<>();
+
+    @SuppressWarnings("unchecked")
+    private MappedTables(SessionFactoryImplementor factory) {
+      this.factory = factory;
+      this.documentTables = getTables(factory, (entityName, mappedClass) -> (mappedClass != null)
+          && isDocumentEntity(mappedClass));
+      this.attachmentTables = getTables(factory, (entityName, mappedClass) -> ATTACHMENT_ENTITIES
+          .contains(mappedClass));
+      this.objectTables = getTables(factory, (entityName, mappedClass) -> (mappedClass != null)
+          && isObjectEntity(mappedClass));
+      for (Map.Entry<String, ClassMetadata> entry : ((Map<String, ClassMetadata>) factory
+          .getAllClassMetadata()).entrySet()) {
+        if (entry.getValue().getMappedClass(EntityMode.POJO) == null) {
+          this.customTables.put(entry.getKey(), getTables(factory, (entityName,
+              mappedClass) -> entityName.equals(entry.getKey())));
+        }
+      }
+      this.allTables.addAll(this.documentTables);
+      this.allTables.addAll(this.attachmentTables);
+      this.allTables.addAll(this.objectTables);
+      this.customTables.values().forEach(this.allTables::addAll);
+    }
+
+  }
+
+}
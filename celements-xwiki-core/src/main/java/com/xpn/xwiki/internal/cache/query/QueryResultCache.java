@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.component.annotation.ComponentRole;
+import org.xwiki.query.Query;
+
+/**
+ * Shared cache of the results of the HQL queries executed by
+ * {@link com.xpn.xwiki.store.hibernate.query.HqlQueryExecutor}. Only the configured queries are
+ * cached, keyed by wiki, statement, bound values, offset and limit. Each entry records the tables
+ * read by the query and is evicted as soon as a document event of its wiki affects one of them.
+ *
+ * @version $Id$
+ */
+@ComponentRole
+public interface QueryResultCache {
+
+  /**
+   * @return true if the results of the query are to be cached
+   */
+  boolean isCached(Query query);
+
+  /**
+   * @return the current generation, to be passed to {@link #set} for a result read afterwards
+   */
+  long getGeneration();
+
+  /**
+   * @param wiki
+   *          the wiki the query is executed on
+   * @return a copy of the cached result, null if not cached
+   */
+  <T> List<T> get(String wiki, Query query);
+
+  /**
+   * Caches the result unless an invalidation happened since the given generation or the query
+   * reads tables not invalidated by document events.
+   *
+   * @param wiki
+   *          the wiki the query has been executed on
+   * @param result
+   *          the result of the query, must not contain mapped entities
+   * @param tables
+   *          the tables read by the query
+   * @param generation
+   *          the {@link #getGeneration()} before the query has been executed
+   */
+  void set(String wiki, Query query, List<?> result, Collection<String> tables, long generation);
+
+  /**
+   * Removes the cached results of the wiki reading any of the given tables.
+   */
+  void invalidate(String wiki, Collection<String> tables);
+
+  /**
+   * Removes all cached results of the wiki, e.g. after a bulk write bypassing the documents.
+   */
+  void invalidate(String wiki);
+
+  /**
+   * Removes all cached results.
+   */
+  void flush();
+
+  /**
+   * @return the hits and misses by statement, the query name for named queries
+   */
+  Map<String, Map<String, Long>> getStatistics();
+
+}
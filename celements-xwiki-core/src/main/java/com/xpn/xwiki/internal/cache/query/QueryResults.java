@@ -0,0 +1,290 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.query.Query;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Store of the query results by wiki, each recording the tables it has been read from. The results
+ * are held by a {@link Cache}, evicting them by its own configuration. The ids of the results of a
+ * wiki are indexed on the side to invalidate them by table without iterating the cache.
+ *
+ * @version $Id$
+ */
+@ThreadSafe
+final class QueryResults {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryResults.class);
+
+  /**
+   * Identifies the result of a query within a wiki.
+   */
+  @Immutable
+  static final class Key {
+
+    private final String statement;
+    private final boolean named;
+    private final Map<String, Object> namedParameters;
+    private final Map<Integer, Object> positionalParameters;
+    private final int offset;
+    private final int limit;
+
+    Key(String statement, boolean named, Map<String, Object> namedParameters,
+        Map<Integer, Object> positionalParameters, int offset, int limit) {
+      this.statement = statement;
+      this.named = named;
+      // bound values may be null, thus no immutable maps. sorted for a stable toString
+      this.namedParameters = Collections.unmodifiableMap(new TreeMap<>(namedParameters));
+      this.positionalParameters = Collections.unmodifiableMap(new TreeMap<>(
+          positionalParameters));
+      this.offset = offset;
+      this.limit = limit;
+    }
+
+    static Key of(Query query) {
+      return new Key(query.getStatement(), query.isNamed(), query.getNamedParameters(),
+          query.getPositionalParameters(), query.getOffset(), query.getLimit());
+    }
+
+    String getStatement() {
+      return statement;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(statement, named, namedParameters, positionalParameters, offset, limit);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Key) {
+        Key other = (Key) obj;
+        return this.statement.equals(other.statement) && (this.named == other.named)
+            && this.namedParameters.equals(other.namedParameters)
+            && this.positionalParameters.equals(other.positionalParameters)
+            && (this.offset == other.offset) && (this.limit == other.limit);
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return "Key [statement=" + statement + ", named=" + named + ", namedParameters="
+          + namedParameters + ", positionalParameters=" + positionalParameters + ", offset="
+          + offset + ", limit=" + limit + "]";
+    }
+
+  }
+
+  /**
+   * A stored result, holding its key since distinct keys may share the same cache id.
+   */
+  @Immutable
+  static final class Entry {
+
+    private final Key key;
+    private final List<Object> result;
+
+    private Entry(Key key, List<?> result) {
+      this.key = key;
+      // rows may contain null values, thus no immutable list
+      this.result = Collections.unmodifiableList(new ArrayList<>(result));
+    }
+
+  }
+
+  private final Cache<Entry> cache;
+
+  /**
+   * wiki -> id -> tables of the stored results. Each map is guarded by itself and never removed,
+   * to not lose an id added concurrently to an invalidation.
+   */
+  private final ConcurrentMap<String, Map<String, Set<String>>> index = new ConcurrentHashMap<>();
+
+  /**
+   * ids removed from the cache, e.g. by eviction, to be dropped from the index
+   */
+  private final Queue<String> removedIds = new ConcurrentLinkedQueue<>();
+
+  /**
+   * incremented on each invalidation, results read before aren't stored
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final ConcurrentMap<String, LongAdder> hits = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongAdder> misses = new ConcurrentHashMap<>();
+
+  QueryResults(Cache<Entry> cache) {
+    this.cache = cache;
+    cache.addCacheEntryListener(new CacheEntryListener<Entry>() {
+
+      @Override
+      public void cacheEntryAdded(CacheEntryEvent<Entry> event) {}
+
+      @Override
+      public void cacheEntryModified(CacheEntryEvent<Entry> event) {}
+
+      @Override
+      public void cacheEntryRemoved(CacheEntryEvent<Entry> event) {
+        // the index isn't locked here since the cache may notify within set
+        removedIds.add(event.getEntry().getKey());
+      }
+    });
+  }
+
+  /**
+   * @return the stored result, null if not stored
+   */
+  List<Object> get(String wiki, Key key) {
+    Entry entry = cache.get(getId(wiki, key));
+    if ((entry != null) && !entry.key.equals(key)) {
+      entry = null;
+    }
+    (entry != null ? hits : misses).computeIfAbsent(key.getStatement(),
+        statement -> new LongAdder()).increment();
+    return (entry != null) ? entry.result : null;
+  }
+
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Stores the result unless invalidated since the given generation, e.g. when a document was
+   * saved while the query was executed.
+   */
+  void put(String wiki, Key key, List<?> result, Collection<String> tables,
+      long readGeneration) {
+    dropRemovedIds();
+    String id = getId(wiki, key);
+    Map<String, Set<String>> ids = getIds(wiki);
+    synchronized (ids) {
+      cache.set(id, new Entry(key, result));
+      ids.put(id, ImmutableSet.copyOf(tables));
+      if (generation.get() != readGeneration) {
+        cache.remove(id);
+        ids.remove(id);
+      }
+    }
+  }
+
+  /**
+   * Removes the results of the wiki read from any of the given tables.
+   */
+  void invalidate(String wiki, Collection<String> tables) {
+    generation.incrementAndGet();
+    Map<String, Set<String>> ids = getIds(wiki);
+    synchronized (ids) {
+      Iterator<Map.Entry<String, Set<String>>> iter = ids.entrySet().iterator();
+      while (iter.hasNext()) {
+        Map.Entry<String, Set<String>> entry = iter.next();
+        if (!Collections.disjoint(entry.getValue(), tables)) {
+          LOGGER.debug("invalidate: removing [{}] reading {}", entry.getKey(), tables);
+          cache.remove(entry.getKey());
+          iter.remove();
+        }
+      }
+    }
+  }
+
+  void invalidate(String wiki) {
+    generation.incrementAndGet();
+    Map<String, Set<String>> ids = getIds(wiki);
+    synchronized (ids) {
+      ids.keySet().forEach(cache::remove);
+      ids.clear();
+    }
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    index.keySet().forEach(this::invalidate);
+  }
+
+  private Map<String, Set<String>> getIds(String wiki) {
+    return index.computeIfAbsent(wiki, w -> new HashMap<>());
+  }
+
+  private static String getId(String wiki, Key key) {
+    return wiki + ":" + key;
+  }
+
+  /**
+   * Drops the ids no longer held by the cache from the index, keeping the index as small as the
+   * cache. Ids of results stored again since their removal are kept.
+   */
+  private void dropRemovedIds() {
+    String id;
+    while ((id = removedIds.poll()) != null) {
+      for (Map<String, Set<String>> ids : index.values()) {
+        synchronized (ids) {
+          if (ids.containsKey(id) && (cache.get(id) == null)) {
+            ids.remove(id);
+          }
+        }
+      }
+    }
+  }
+
+  Map<String, Map<String, Long>> getStatistics() {
+    ImmutableMap.Builder<String, Map<String, Long>> builder = ImmutableMap.builder();
+    for (String statement : ImmutableSet.<String>builder().addAll(hits.keySet())
+        .addAll(misses.keySet()).build()) {
+      builder.put(statement, ImmutableMap.of(
+          "hits", getCount(hits, statement),
+          "misses", getCount(misses, statement)));
+    }
+    return builder.build();
+  }
+
+  private static long getCount(Map<String, LongAdder> counts, String statement) {
+    LongAdder count = counts.get(statement);
+    return (count != null) ? count.sum() : 0L;
+  }
+
+}
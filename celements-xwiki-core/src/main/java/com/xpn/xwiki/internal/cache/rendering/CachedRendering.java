@@ -0,0 +1,34 @@
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.Set;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Rendered content as stored in the {@link DefaultRenderingCache} together with the documents it
+ * has been rendered from.
+ */
+@Immutable
+final class CachedRendering {
+
+  private final String content;
+  private final Set<DocumentReference> dependencies;
+
+  CachedRendering(String content, Set<DocumentReference> dependencies) {
+    this.content = content;
+    this.dependencies = ImmutableSet.copyOf(dependencies);
+  }
+
+  String getContent() {
+    return content;
+  }
+
+  Set<DocumentReference> getDependencies() {
+    return dependencies;
+  }
+
+}
@@ -19,6 +19,11 @@
  */
 package com.xpn.xwiki.internal.cache.rendering;
 
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
@@ -33,7 +38,10 @@ import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.internal.cache.DocumentCache;
 
 /**
- * Default implementation of {@link RenderingCache}.
+ * Default implementation of {@link RenderingCache}. Each rendered content is stored with the
+ * documents read while rendering it, see {@link RenderingDependencies}, and is evicted when any of
+ * them is modified. Thus the configured duration only bounds the staleness of content depending on
+ * data not read as document, e.g. query results.
  *
  * @version $Id$
  * @since 2.4M1
@@ -41,6 +49,8 @@ import com.xpn.xwiki.internal.cache.DocumentCache;
 @Component
 public class DefaultRenderingCache implements RenderingCache, Initializable {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultRenderingCache.class);
+
   /**
    * Identifier of the rendering cache.
    */
@@ -56,7 +66,7 @@ public class DefaultRenderingCache implements RenderingCache, Initializable {
    * Actually cache object.
    */
   @Requirement
-  private DocumentCache<String> cache;
+  private DocumentCache<CachedRendering> cache;
 
   /**
    * {@inheritDoc}
@@ -98,11 +108,25 @@ public class DefaultRenderingCache implements RenderingCache, Initializable {
       String refresh = context.getRequest() != null ? context.getRequest().getParameter("refresh")
           : null;
 
+      CachedRendering cached = null;
       if (!"1".equals(refresh)) {
-        renderedContent = this.cache.get(documentReference, source, getAction(context),
+        cached = this.cache.get(documentReference, source, getAction(context),
             context.getLanguage(),
             getQueryString(context));
       }
+      if (cached != null) {
+        // the enclosing renderings depend on the documents this content was rendered from
+        RenderingDependencies.recordAll(context, cached.getDependencies());
+        renderedContent = cached.getContent();
+      } else {
+        RenderingDependencies.start(context, documentReference, source,
+            this.cache.getGeneration());
+        // preferences are read from the configuration snapshots without loading their documents
+        RenderingDependencies.record(context, new DocumentReference(
+            documentReference.getWikiReference().getName(), "XWiki", "XWikiPreferences"));
+        RenderingDependencies.record(context, new DocumentReference("WebPreferences",
+            documentReference.getLastSpaceReference()));
+      }
     }
 
     return renderedContent;
@@ -119,9 +143,19 @@ public class DefaultRenderingCache implements RenderingCache, Initializable {
       String renderedContent,
       XWikiContext context) {
     if (this.configuration.isCached(documentReference)) {
-      this.cache.set(renderedContent, documentReference, source, getAction(context),
-          context.getLanguage(),
-          getQueryString(context));
+      long generation = RenderingDependencies.getGeneration(context, documentReference, source)
+          .orElseGet(this.cache::getGeneration);
+      Optional<Set<DocumentReference>> dependencies = RenderingDependencies.stop(context,
+          documentReference, source);
+      if (dependencies.isPresent()) {
+        this.cache.set(new CachedRendering(renderedContent, dependencies.get()),
+            dependencies.get(), generation, documentReference, source, getAction(context),
+            context.getLanguage(),
+            getQueryString(context));
+      } else {
+        LOGGER.debug("setRenderedContent: not caching [{}], too many dependencies",
+            documentReference);
+      }
     }
   }
 
@@ -34,7 +34,9 @@ import com.xpn.xwiki.XWikiContext;
 public interface RenderingCache {
 
   /**
-   * The stored result of the rendering of the provided source.
+   * The stored result of the rendering of the provided source. If it has not been cached yet, the
+   * documents read until the matching {@link #setRenderedContent} are recorded as dependencies of
+   * the rendering, see {@link RenderingDependencies}.
    *
    * @param documentReference
    *          the reference of the document being rendered
@@ -49,7 +51,7 @@ public interface RenderingCache {
 
   /**
    * Stored the result of the provided source rendering if the cache is enabled for the provided
-   * document.
+   * document. It's evicted as soon as any of the documents it has been rendered from is modified.
    *
    * @param documentReference
    *          the reference of the document being rendered
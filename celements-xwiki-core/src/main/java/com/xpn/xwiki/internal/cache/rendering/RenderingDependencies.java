@@ -0,0 +1,169 @@
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Records the documents read while rendering content for the {@link RenderingCache}, see
+ * {@link #record}. The renderings in progress are kept as a stack of frames in the context, a
+ * document read is a dependency of all of them since nested renderings end up in the content of
+ * the enclosing ones. The frames are only visible to the thread having started them, since forked
+ * contexts share them.
+ * <p>
+ * A frame recording more than {@value #MAX_DEPENDENCIES} documents overflows, its content can't
+ * be invalidated precisely and thus shouldn't be cached.
+ */
+public final class RenderingDependencies {
+
+  static final String CONTEXT_KEY = "renderingcache.dependencies";
+
+  static final int MAX_DEPENDENCIES = 1000;
+
+  private static final class Frame {
+
+    private final DocumentReference documentReference;
+    private final String source;
+    private final long generation;
+    private final Set<DocumentReference> dependencies = new HashSet<>();
+    private boolean overflow;
+
+    private Frame(DocumentReference documentReference, String source, long generation) {
+      this.documentReference = documentReference;
+      this.source = source;
+      this.generation = generation;
+    }
+
+    private boolean matches(DocumentReference documentReference, String source) {
+      return this.documentReference.equals(documentReference) && this.source.equals(source);
+    }
+
+    private void add(DocumentReference dependency) {
+      if (!overflow && dependencies.add(dependency)
+          && (dependencies.size() > MAX_DEPENDENCIES)) {
+        overflow = true;
+        dependencies.clear();
+      }
+    }
+
+  }
+
+  private static final class Frames extends ArrayDeque<Frame> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Thread owner = Thread.currentThread();
+
+  }
+
+  private RenderingDependencies() {}
+
+  /**
+   * Records the given document as a dependency of all renderings in progress. Cheap if no
+   * rendering is being recorded.
+   */
+  public static void record(@NotNull XWikiContext context, DocumentReference documentReference) {
+    Deque<Frame> frames = getFrames(context);
+    if ((frames != null) && (documentReference != null)) {
+      for (Frame frame : frames) {
+        frame.add(documentReference);
+      }
+    }
+  }
+
+  /**
+   * Records the dependencies of content taken from the cache instead of being rendered.
+   */
+  static void recordAll(@NotNull XWikiContext context,
+      @NotNull Collection<DocumentReference> dependencies) {
+    Deque<Frame> frames = getFrames(context);
+    if (frames != null) {
+      for (Frame frame : frames) {
+        dependencies.forEach(frame::add);
+      }
+    }
+  }
+
+  /**
+   * Starts recording the dependencies of the given rendering, to be ended with {@link #stop}.
+   *
+   * @param generation
+   *          the {@link com.xpn.xwiki.internal.cache.DocumentCache#getGeneration()} before
+   *          rendering, see {@link #getGeneration}
+   */
+  static void start(@NotNull XWikiContext context, @NotNull DocumentReference documentReference,
+      @NotNull String source, long generation) {
+    Deque<Frame> frames = getFrames(context);
+    if (frames == null) {
+      frames = new Frames();
+      context.put(CONTEXT_KEY, frames);
+    }
+    frames.push(new Frame(documentReference, source, generation));
+  }
+
+  /**
+   * Stops recording the dependencies of the given rendering. Frames started later and not stopped,
+   * e.g. due to failed renderings, are discarded.
+   *
+   * @return the recorded dependencies (none if the rendering wasn't recorded), empty if they
+   *         overflowed
+   */
+  static Optional<Set<DocumentReference>> stop(@NotNull XWikiContext context,
+      @NotNull DocumentReference documentReference, @NotNull String source) {
+    Deque<Frame> frames = getFrames(context);
+    if (frames != null) {
+      for (Iterator<Frame> iter = frames.iterator(); iter.hasNext();) {
+        if (iter.next().matches(documentReference, source)) {
+          Frame frame;
+          do {
+            frame = frames.pop();
+          } while (!frame.matches(documentReference, source));
+          if (frames.isEmpty()) {
+            context.remove(CONTEXT_KEY);
+          }
+          return frame.overflow ? Optional.empty()
+              : Optional.of(ImmutableSet.copyOf(frame.dependencies));
+        }
+      }
+    }
+    return Optional.of(ImmutableSet.of());
+  }
+
+  /**
+   * @return the generation given to {@link #start} for the given rendering, empty if it isn't
+   *         recorded
+   */
+  static OptionalLong getGeneration(@NotNull XWikiContext context,
+      @NotNull DocumentReference documentReference, @NotNull String source) {
+    Deque<Frame> frames = getFrames(context);
+    if (frames != null) {
+      for (Frame frame : frames) {
+        if (frame.matches(documentReference, source)) {
+          return OptionalLong.of(frame.generation);
+        }
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  private static Deque<Frame> getFrames(XWikiContext context) {
+    Object frames = context.get(CONTEXT_KEY);
+    if ((frames instanceof Frames) && (((Frames) frames).owner == Thread.currentThread())) {
+      return (Frames) frames;
+    }
+    return null;
+  }
+
+}
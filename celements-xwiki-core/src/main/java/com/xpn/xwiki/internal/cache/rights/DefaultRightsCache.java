@@ -0,0 +1,262 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rights;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Default implementation of {@link RightsCache}. Decisions are cached per checked document and
+ * dropped with any event of that document. All decisions are dropped if a document changes which
+ * may affect the rights of other documents: preferences, global rights, groups and wiki
+ * descriptors. Remote events drop all decisions since their documents are loaded lazily and the
+ * objects of a deleted document aren't known anymore.
+ *
+ * @version $Id$
+ */
+@Component
+public class DefaultRightsCache implements RightsCache, EventListener, Initializable {
+
+  /**
+   * Identifier of the rights cache.
+   */
+  private static final String NAME = "core.rightscache";
+
+  /**
+   * Name of the property indicating if the cache is enabled or not.
+   */
+  private static final String PROPNAME_ENABLED = NAME + ".enabled";
+
+  /**
+   * Name of the property indicating the number of documents with cached decisions and the number
+   * of cached compiled rights.
+   */
+  private static final String PROPNAME_SIZE = NAME + ".size";
+
+  /**
+   * The default size of the cache.
+   */
+  private static final int PROPVALUE_SIZE = 10000;
+
+  private static final List<String> ACL_CLASSES = Arrays.asList("XWiki.XWikiRights",
+      "XWiki.XWikiGlobalRights");
+
+  private static final List<String> ACL_FIELDS = Arrays.asList("users", "groups");
+
+  /**
+   * Classes of which objects may affect the rights of other documents.
+   */
+  private static final List<String> GLOBAL_CLASSES = Arrays.asList("XWiki.XWikiGlobalRights",
+      "XWiki.XWikiGroups", "XWiki.XWikiServerClass");
+
+  private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatedEvent(),
+      new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+  /**
+   * xwiki.properties file configurations.
+   */
+  @Requirement("xwikiproperties")
+  private ConfigurationSource farmConfiguration;
+
+  @Requirement
+  private CacheManager cacheManager;
+
+  @Requirement
+  private ObservationManager observationManager;
+
+  @Requirement
+  private EntityReferenceSerializer<String> serializer;
+
+  @Requirement
+  private RemoteObservationManagerContext remoteObservationManagerContext;
+
+  private boolean enabled;
+
+  /**
+   * cached decisions by document, each by user and access level
+   */
+  private Cache<ConcurrentMap<String, Boolean>> decisionCache;
+
+  private Cache<RightsAcl> aclCache;
+
+  /**
+   * incremented on each invalidation to prevent caching decisions computed before
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  @Override
+  public void initialize() throws InitializationException {
+    this.enabled = this.farmConfiguration.getProperty(PROPNAME_ENABLED, false);
+    if (this.enabled) {
+      try {
+        this.decisionCache = this.cacheManager.createNewCache(newCacheConfiguration(
+            NAME + ".decisions"));
+        this.aclCache = this.cacheManager.createNewCache(newCacheConfiguration(NAME + ".acls"));
+      } catch (CacheException e) {
+        throw new InitializationException("Failed to initialize core rights cache", e);
+      }
+      this.observationManager.addListener(this);
+    }
+  }
+
+  private CacheConfiguration newCacheConfiguration(String id) {
+    CacheConfiguration cacheConfiguration = new CacheConfiguration();
+    cacheConfiguration.setConfigurationId(id);
+    LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+    lru.setMaxEntries(this.farmConfiguration.getProperty(PROPNAME_SIZE, PROPVALUE_SIZE));
+    cacheConfiguration.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
+    return cacheConfiguration;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  @Override
+  public long getGeneration() {
+    return this.generation.get();
+  }
+
+  @Override
+  public Boolean getDecision(String docKey, String decisionKey) {
+    if (isEnabled()) {
+      ConcurrentMap<String, Boolean> decisions = this.decisionCache.get(docKey);
+      if (decisions != null) {
+        return decisions.get(decisionKey);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void setDecision(String docKey, String decisionKey, boolean decision, long generation) {
+    if (isEnabled()) {
+      ConcurrentMap<String, Boolean> decisions = this.decisionCache.get(docKey);
+      if (decisions == null) {
+        decisions = new ConcurrentHashMap<>();
+        this.decisionCache.set(docKey, decisions);
+      }
+      decisions.put(decisionKey, decision);
+      if (generation != getGeneration()) {
+        // invalidated while computing, the decision may be outdated
+        decisions.remove(decisionKey);
+      }
+    }
+  }
+
+  @Override
+  public RightsAcl getAcl(XWikiDocument doc, String className, String fieldName) {
+    if (!isEnabled() || doc.isNew()) {
+      return RightsAcl.compile(doc, className, fieldName);
+    }
+    String key = getAclKey(this.serializer.serialize(doc.getDocumentReference()), className,
+        fieldName);
+    RightsAcl acl = this.aclCache.get(key);
+    if ((acl == null) || !acl.isCompiledFrom(doc)) {
+      acl = RightsAcl.compile(doc, className, fieldName);
+      this.aclCache.set(key, acl);
+    }
+    return acl;
+  }
+
+  private String getAclKey(String docKey, String className, String fieldName) {
+    return docKey + "|" + className + "|" + fieldName;
+  }
+
+  @Override
+  public void flush() {
+    if (isEnabled()) {
+      this.generation.incrementAndGet();
+      this.decisionCache.removeAll();
+      this.aclCache.removeAll();
+    }
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return EVENTS;
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    XWikiDocument document = (XWikiDocument) source;
+    XWikiDocument oldDocument = document.getOriginalDocument();
+    String docKey = this.serializer.serialize(document.getDocumentReference());
+    this.generation.incrementAndGet();
+    this.decisionCache.remove(docKey);
+    for (String className : ACL_CLASSES) {
+      for (String fieldName : ACL_FIELDS) {
+        this.aclCache.remove(getAclKey(docKey, className, fieldName));
+      }
+    }
+    if (this.remoteObservationManagerContext.isRemoteState()
+        || affectsOtherDocuments(document) || affectsOtherDocuments(oldDocument)) {
+      this.decisionCache.removeAll();
+    }
+  }
+
+  private boolean affectsOtherDocuments(XWikiDocument document) {
+    if (document == null) {
+      return false;
+    }
+    if ("WebPreferences".equals(document.getPageName())
+        || "XWiki.XWikiPreferences".equals(document.getFullName())) {
+      return true;
+    }
+    for (String className : GLOBAL_CLASSES) {
+      if (document.getObject(className) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
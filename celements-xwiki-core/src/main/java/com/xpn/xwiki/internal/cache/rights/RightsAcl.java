@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rights;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.classes.GroupsClass;
+
+/**
+ * The rights objects of one class of a document compiled for a lookup by access level, e.g. the
+ * XWiki.XWikiGlobalRights of a space's WebPreferences. User and group names without a space are
+ * prefixed with "XWiki.".
+ *
+ * @version $Id$
+ */
+@Immutable
+public final class RightsAcl {
+
+  private final String version;
+
+  private final Map<String, Set<String>> allowNames;
+
+  private final Map<String, Set<String>> denyNames;
+
+  private RightsAcl(String version, Map<String, Set<String>> allowNames,
+      Map<String, Set<String>> denyNames) {
+    this.version = version;
+    this.allowNames = toImmutable(allowNames);
+    this.denyNames = toImmutable(denyNames);
+  }
+
+  private static Map<String, Set<String>> toImmutable(Map<String, Set<String>> names) {
+    ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+    names.forEach((level, levelNames) -> builder.put(level, ImmutableSet.copyOf(levelNames)));
+    return builder.build();
+  }
+
+  /**
+   * @param doc
+   *          the document containing the rights objects
+   * @param className
+   *          XWiki.XWikiRights or XWiki.XWikiGlobalRights
+   * @param fieldName
+   *          users or groups
+   */
+  public static RightsAcl compile(XWikiDocument doc, String className, String fieldName) {
+    Map<String, Set<String>> allowNames = new HashMap<>();
+    Map<String, Set<String>> denyNames = new HashMap<>();
+    List<BaseObject> objs = doc.getObjects(className);
+    if (objs != null) {
+      for (BaseObject obj : objs) {
+        if (obj != null) {
+          Set<String> names = getNames(obj.getStringValue(fieldName));
+          Map<String, Set<String>> namesByLevel = (obj.getIntValue("allow") == 1) ? allowNames
+              : denyNames;
+          String levels = StringUtils.defaultString(obj.getStringValue("levels"));
+          for (String level : StringUtils.split(levels, " ,|")) {
+            namesByLevel.computeIfAbsent(level, l -> new HashSet<>()).addAll(names);
+          }
+        }
+      }
+    }
+    return new RightsAcl(doc.getVersion(), allowNames, denyNames);
+  }
+
+  private static Set<String> getNames(String value) {
+    Set<String> names = new HashSet<>();
+    for (String name : GroupsClass.getListFromString(value)) {
+      names.add((name.indexOf('.') == -1) ? ("XWiki." + name) : name);
+    }
+    return names;
+  }
+
+  /**
+   * @return true if compiled from the given version of the document
+   */
+  public boolean isCompiledFrom(XWikiDocument doc) {
+    return Objects.equals(version, doc.getVersion());
+  }
+
+  /**
+   * @param level
+   *          the access level
+   * @param allow
+   *          true for allowing rights objects, false for denying ones
+   * @return the user or group names of the rights objects with this level, null if there is no
+   *         such object
+   */
+  public Set<String> getNames(String level, boolean allow) {
+    return (allow ? allowNames : denyNames).get(level);
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rights;
+
+import org.xwiki.component.annotation.ComponentRole;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Shared cache of the rights decisions and the compiled rights objects used by
+ * {@link com.xpn.xwiki.user.impl.xwiki.XWikiRightServiceImpl}. Entries are invalidated by the
+ * document events of rights, group and preferences documents.
+ *
+ * @version $Id$
+ */
+@ComponentRole
+public interface RightsCache {
+
+  /**
+   * @return true if decisions and compiled rights are cached, false if they are always computed
+   */
+  boolean isEnabled();
+
+  /**
+   * @return the current generation, to be passed to
+   *         {@link #setDecision(String, String, boolean, long)} for a decision computed afterwards
+   */
+  long getGeneration();
+
+  /**
+   * @param docKey
+   *          the prefixed full name of the document the right is checked on
+   * @param decisionKey
+   *          identifies the user or group and access level checked
+   * @return the cached decision, null if it has not yet been cached
+   */
+  Boolean getDecision(String docKey, String decisionKey);
+
+  /**
+   * Caches the decision unless an invalidation happened since the given generation.
+   *
+   * @param docKey
+   *          the prefixed full name of the document the right is checked on
+   * @param decisionKey
+   *          identifies the user or group and access level checked
+   * @param decision
+   *          true if the access is allowed
+   * @param generation
+   *          the {@link #getGeneration()} before the decision has been computed
+   */
+  void setDecision(String docKey, String decisionKey, boolean decision, long generation);
+
+  /**
+   * @param doc
+   *          the document containing the rights objects
+   * @param className
+   *          XWiki.XWikiRights or XWiki.XWikiGlobalRights
+   * @param fieldName
+   *          users or groups
+   * @return the compiled rights objects, cached if the document is persisted
+   */
+  RightsAcl getAcl(XWikiDocument doc, String className, String fieldName);
+
+  /**
+   * Removes all cached decisions and compiled rights.
+   */
+  void flush();
+
+}
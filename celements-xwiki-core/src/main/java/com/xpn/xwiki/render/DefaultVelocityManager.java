@@ -20,6 +20,8 @@
  */
 package com.xpn.xwiki.render;
 
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -27,10 +29,18 @@ import java.util.Properties;
 import org.apache.commons.lang.StringUtils;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.Requirement;
 import org.xwiki.context.Execution;
 import org.xwiki.rendering.syntax.SyntaxFactory;
+import org.xwiki.velocity.VelocityConfiguration;
 import org.xwiki.velocity.VelocityEngine;
 import org.xwiki.velocity.VelocityFactory;
 import org.xwiki.velocity.VelocityManager;
@@ -53,7 +63,11 @@ import com.xpn.xwiki.web.Utils;
  * @since 1.5M1
  */
 @Component
-public class DefaultVelocityManager implements VelocityManager {
+public class DefaultVelocityManager implements VelocityManager, VelocityTemplateEvaluator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultVelocityManager.class);
+
+  private static final int DEFAULT_TEMPLATE_CACHE_CAPACITY = 1000;
 
   /**
    * Store one VelocityEngine instance per skin since a skin is allowed to have a global velocimacro
@@ -64,6 +78,19 @@ public class DefaultVelocityManager implements VelocityManager {
   @Requirement
   private Execution execution;
 
+  @Requirement
+  private CacheManager cacheManager;
+
+  @Requirement
+  private VelocityConfiguration velocityConfiguration;
+
+  /**
+   * lazily created since the capacity is configured in the wiki, null if disabled
+   */
+  private volatile VelocityTemplateCache templateCache;
+
+  private volatile boolean templateCacheInitialized;
+
   @Override
   public VelocityContext getVelocityContext() {
     // The Velocity Context is set in VelocityRequestInterceptor, when the XWiki Request is
@@ -180,12 +207,106 @@ public class DefaultVelocityManager implements VelocityManager {
 
     // Create a Velocity context using the Velocity Manager associated to the current skin's
     // macros.vm
+    XWikiContext xcontext = getXWikiContext();
+    return getVelocityEngine(getVelocityEngineCacheKey(xcontext), xcontext);
+  }
+
+  @Override
+  public boolean evaluate(VelocityContext vcontext, Writer writer, String templateName,
+      String content) throws XWikiVelocityException {
+    XWikiContext xcontext = getXWikiContext();
+    String cacheKey = getVelocityEngineCacheKey(xcontext);
+    VelocityEngine velocityEngine = getVelocityEngine(cacheKey, xcontext);
+    VelocityTemplateCache cache = getTemplateCache(xcontext);
+    if (cache != null) {
+      return cache.evaluate(velocityEngine, cacheKey, vcontext, writer, templateName, content);
+    }
+    return velocityEngine.evaluate(vcontext, writer, templateName, content);
+  }
+
+  @Override
+  public Map<String, Long> getTemplateCacheMetrics() {
+    VelocityTemplateCache cache = this.templateCache;
+    return (cache != null) ? cache.getMetrics() : Collections.<String, Long>emptyMap();
+  }
+
+  @Override
+  public void flushTemplateCache() {
+    VelocityTemplateCache cache = this.templateCache;
+    if (cache != null) {
+      cache.removeAll();
+    }
+  }
+
+  /**
+   * The capacity of the template cache is configured with
+   * "xwiki.render.velocity.templatecache.capacity", 0 disables it.
+   */
+  private VelocityTemplateCache getTemplateCache(XWikiContext xcontext) {
+    if (!this.templateCacheInitialized) {
+      synchronized (this) {
+        if (!this.templateCacheInitialized) {
+          int capacity = DEFAULT_TEMPLATE_CACHE_CAPACITY;
+          String capacityParam = xcontext.getWiki().Param(
+              "xwiki.render.velocity.templatecache.capacity");
+          if (capacityParam != null) {
+            try {
+              capacity = Integer.parseInt(capacityParam.trim());
+            } catch (NumberFormatException exc) {
+              LOGGER.warn("invalid velocity template cache capacity [{}], using default [{}]",
+                  capacityParam, DEFAULT_TEMPLATE_CACHE_CAPACITY);
+            }
+          }
+          if (capacity > 0) {
+            this.templateCache = createTemplateCache(capacity);
+          }
+          this.templateCacheInitialized = true;
+        }
+      }
+    }
+    return this.templateCache;
+  }
+
+  private VelocityTemplateCache createTemplateCache(int capacity) {
+    try {
+      CacheConfiguration configuration = new CacheConfiguration();
+      configuration.setConfigurationId("xwiki.velocity.templatecache");
+      LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+      lru.setMaxEntries(capacity);
+      configuration.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
+      return new VelocityTemplateCache(this.cacheManager
+          .<VelocityTemplateCache.Template>createNewCache(configuration));
+    } catch (CacheException exc) {
+      LOGGER.error("Failed to create velocity template cache, templates aren't cached", exc);
+      return null;
+    }
+  }
+
+  /**
+   * @return the configured include event handlers extended by the {@link VelocityRuntimeRegistry}
+   */
+  private String getIncludeEventHandlers() {
+    String handlers = VelocityRuntimeRegistry.class.getName();
+    Object configured = this.velocityConfiguration.getProperties().get(
+        RuntimeConstants.EVENTHANDLER_INCLUDE);
+    if ((configured != null) && !configured.toString().trim().isEmpty()) {
+      handlers = configured + "," + handlers;
+    }
+    return handlers;
+  }
 
+  private XWikiContext getXWikiContext() {
+    return (XWikiContext) this.execution.getContext().getProperty("xwikicontext");
+  }
+
+  private String getVelocityEngineCacheKey(XWikiContext xcontext) {
     // Get the location of the skin's macros.vm file
-    XWikiContext xcontext = (XWikiContext) this.execution.getContext().getProperty("xwikicontext");
     String skin = xcontext.getWiki().getSkin(xcontext);
-    String cacheKey = getVelocityEngineCacheKey(skin, xcontext);
+    return getVelocityEngineCacheKey(skin, xcontext);
+  }
 
+  private VelocityEngine getVelocityEngine(String cacheKey, XWikiContext xcontext)
+      throws XWikiVelocityException {
     // Get the Velocity Engine to use
     VelocityFactory velocityFactory = Utils.getComponent(VelocityFactory.class);
     VelocityEngine velocityEngine;
@@ -201,6 +322,9 @@ public class DefaultVelocityManager implements VelocityManager {
         macroList = "/templates/macros.vm" + (cacheKey.equals("default") ? "" : "," + cacheKey);
       }
       properties.put(RuntimeConstants.VM_LIBRARY, macroList);
+      // registers the runtime of the engine for the template cache
+      properties.put(VelocityRuntimeRegistry.PROPERTY_ENGINE_KEY, cacheKey);
+      properties.put(RuntimeConstants.EVENTHANDLER_INCLUDE, getIncludeEventHandlers());
       velocityEngine = velocityFactory.createVelocityEngine(cacheKey, properties);
     }
 
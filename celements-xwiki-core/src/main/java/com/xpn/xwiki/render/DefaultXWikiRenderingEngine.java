@@ -25,16 +25,24 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
@@ -44,10 +52,15 @@ import com.xpn.xwiki.render.groovy.XWikiGroovyRenderer;
 import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.XWikiRequest;
 
-public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
+public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine, EventListener {
 
   private static final Log LOG = LogFactory.getLog(XWikiRenderingEngine.class);
 
+  private static final String NAME = "DefaultXWikiRenderingEngine";
+
+  private static final List<Event> EVENTS = List.of(new DocumentUpdatedEvent(),
+      new DocumentDeletedEvent());
+
   /** The default order in which the rendering engines will be run on the input. */
   private final String[] defaultRenderingOrder = { "macromapping", "groovy",
       "velocity", "plugin", "wiki", "wikiwiki" };
@@ -58,6 +71,8 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
 
   private Cache<XWikiRenderingCache> cache;
 
+  private volatile SingleFlightRenderingCache renderCache;
+
   public DefaultXWikiRenderingEngine(XWiki xwiki, XWikiContext context) throws XWikiException {
     String[] renderingOrder = xwiki.getConfig().getPropertyAsList("xwiki.render.renderingorder");
     if ((renderingOrder == null) || (renderingOrder.length == 0)) {
@@ -98,6 +113,29 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
     }
 
     initCache(context);
+
+    // invalidate the cached contents of saved and deleted documents
+    Utils.getComponent(ObservationManager.class).addListener(this);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return EVENTS;
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    SingleFlightRenderingCache current = this.renderCache;
+    if ((current != null) && (source instanceof XWikiDocument)) {
+      XWikiDocument doc = (XWikiDocument) source;
+      current.invalidate(SingleFlightRenderingCache.getDocKey(doc.getDatabase(),
+          doc.getFullName()));
+    }
   }
 
   @Override
@@ -128,6 +166,8 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
       configuration.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
 
       this.cache = context.getWiki().getCacheFactory().newCache(configuration);
+      this.renderCache = new SingleFlightRenderingCache(this.cache, iCapacity,
+          context.getWiki().ParamAsLong("xwiki.render.cache.waitTimeout", 10000));
     } catch (CacheException e) {
       throw new XWikiException(XWikiException.MODULE_XWIKI_CACHE,
           XWikiException.ERROR_CACHE_INITIALIZING,
@@ -139,6 +179,22 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
     return this.cache;
   }
 
+  /**
+   * @return the rendering cache metrics, e.g. hits, misses, coalesced waits and render time
+   */
+  public Map<String, Long> getCacheMetrics() {
+    SingleFlightRenderingCache current = this.renderCache;
+    return (current != null) ? current.getMetrics() : Map.of();
+  }
+
+  /**
+   * @return the render count and time per content document
+   */
+  public Map<String, Map<String, Long>> getDocumentRenderMetrics() {
+    SingleFlightRenderingCache current = this.renderCache;
+    return (current != null) ? current.getDocumentMetrics() : Map.of();
+  }
+
   @Override
   public void addRenderer(String name, XWikiRenderer renderer) {
     this.renderers.add(renderer);
@@ -219,7 +275,6 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
       XWikiDocument includingdoc,
       XWikiContext context) {
     String key = getKey(text, contentdoc, includingdoc, context);
-    int currentCacheDuration = context.getCacheDuration();
 
     try {
       if (this.cache == null) {
@@ -227,101 +282,119 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
       }
     } catch (XWikiException e) {}
 
-    synchronized (key) {
-      try {
-        XWikiRenderingCache cacheObject = (this.cache != null) ? this.cache.get(key) : null;
-
-        if (cacheObject != null) {
-          XWikiRequest request = context.getRequest();
-          boolean refresh = ((request != null) && ("1".equals(request.get("refresh"))))
-              || "inline".equals(context.getAction()) || "admin".equals(context.getAction());
-          if ((cacheObject.isValid() && (!refresh))) {
-            addToCached(key, context);
-            return cacheObject.getContent();
-          } else {
-            addToRefreshed(key, context);
-          }
-        }
-      } catch (Exception e) {}
-
-      try {
-        // We need to make sure we don't use the cache duretion currently in the system
-        context.setCacheDuration((int) context.getWiki().ParamAsLong(
-            "xwiki.rendering.defaultCacheDuration", 0));
+    SingleFlightRenderingCache current = this.renderCache;
+    if (current == null) {
+      return render(key, text, onlyInterpret, contentdoc, includingdoc, context).getContent();
+    }
+    SingleFlightRenderingCache.Result result = current.get(key,
+        getDocKeys(contentdoc, includingdoc), isRefresh(context),
+        () -> render(key, text, onlyInterpret, contentdoc, includingdoc, context));
+    switch (result.getOutcome()) {
+      case HIT:
+      case STALE:
+      case COALESCED:
+        addToCached(key, context);
+        break;
+      case REFRESHED:
+        addToRefreshed(key, context);
+        break;
+      default:
+        break;
+    }
+    return result.getContent();
+  }
 
-        String content = text;
+  private boolean isRefresh(XWikiContext context) {
+    XWikiRequest request = context.getRequest();
+    return ((request != null) && ("1".equals(request.get("refresh"))))
+        || "inline".equals(context.getAction()) || "admin".equals(context.getAction());
+  }
 
-        // Which is the current idoc and sdoc
-        XWikiDocument idoc = (XWikiDocument) context.get("idoc");
-        XWikiDocument sdoc = (XWikiDocument) context.get("sdoc");
-        // We put the including and security doc in the context
-        // It will be needed to verify programming rights
-        context.put("idoc", includingdoc);
-        context.put("sdoc", contentdoc);
+  /**
+   * @return the keys of the documents the rendered content depends on, the content doc first
+   */
+  private Set<String> getDocKeys(XWikiDocument contentdoc, XWikiDocument includingdoc) {
+    Set<String> docKeys = new LinkedHashSet<>();
+    for (XWikiDocument doc : new XWikiDocument[] { contentdoc, includingdoc }) {
+      if (doc != null) {
+        docKeys.add(SingleFlightRenderingCache.getDocKey(doc.getDatabase(), doc.getFullName()));
+      }
+    }
+    return docKeys;
+  }
 
-        // Let's call the beginRendering loop
-        if (context.getWiki().getPluginManager() != null) {
-          context.getWiki().getPluginManager().beginRendering(context);
-        }
+  /**
+   * @return the rendered content with the cache duration requested during rendering
+   */
+  private XWikiRenderingCache render(String key, String text, boolean onlyInterpret,
+      XWikiDocument contentdoc, XWikiDocument includingdoc, XWikiContext context) {
+    int currentCacheDuration = context.getCacheDuration();
+    try {
+      // We need to make sure we don't use the cache duretion currently in the system
+      context.setCacheDuration((int) context.getWiki().ParamAsLong(
+          "xwiki.rendering.defaultCacheDuration", 0));
+
+      String content = text;
+
+      // Which is the current idoc and sdoc
+      XWikiDocument idoc = (XWikiDocument) context.get("idoc");
+      XWikiDocument sdoc = (XWikiDocument) context.get("sdoc");
+      // We put the including and security doc in the context
+      // It will be needed to verify programming rights
+      context.put("idoc", includingdoc);
+      context.put("sdoc", contentdoc);
+
+      // Let's call the beginRendering loop
+      if (context.getWiki().getPluginManager() != null) {
+        context.getWiki().getPluginManager().beginRendering(context);
+      }
 
-        try {
-          for (XWikiRenderer element : this.renderers) {
-            XWikiRenderer renderer = (element);
-            String rendererName = renderer.getClass().getName();
-            if (shouldRender(contentdoc, rendererName, context)) {
-              // Check if only XWikiInterpreter should be executed
-              if (onlyInterpret) {
-                if (XWikiInterpreter.class.isAssignableFrom(renderer.getClass())) {
-                  XWikiInterpreter interpreter = (XWikiInterpreter) renderer;
-                  content = interpreter.interpret(content, includingdoc, context);
-                }
-              } else {
-                content = renderer.render(content, contentdoc, includingdoc, context);
+      try {
+        for (XWikiRenderer element : this.renderers) {
+          XWikiRenderer renderer = (element);
+          String rendererName = renderer.getClass().getName();
+          if (shouldRender(contentdoc, rendererName, context)) {
+            // Check if only XWikiInterpreter should be executed
+            if (onlyInterpret) {
+              if (XWikiInterpreter.class.isAssignableFrom(renderer.getClass())) {
+                XWikiInterpreter interpreter = (XWikiInterpreter) renderer;
+                content = interpreter.interpret(content, includingdoc, context);
               }
             } else {
-              if (LOG.isDebugEnabled()) {
-                LOG.debug("skip renderer: " + rendererName + " for the document "
-                    + contentdoc.getFullName());
-              }
+              content = renderer.render(content, contentdoc, includingdoc, context);
             }
-          }
-          content = Utils.replacePlaceholders(content, context);
-        } finally {
-          // Remove including doc or set the previous one
-          if (idoc == null) {
-            context.remove("idoc");
           } else {
-            context.put("idoc", idoc);
-          }
-
-          // Remove security doc or set the previous one
-          if (sdoc == null) {
-            context.remove("sdoc");
-          } else {
-            context.put("sdoc", sdoc);
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("skip renderer: " + rendererName + " for the document "
+                  + contentdoc.getFullName());
+            }
           }
+        }
+        content = Utils.replacePlaceholders(content, context);
+      } finally {
+        // Remove including doc or set the previous one
+        if (idoc == null) {
+          context.remove("idoc");
+        } else {
+          context.put("idoc", idoc);
+        }
 
-          // Let's call the endRendering loop
-          if (context.getWiki().getPluginManager() != null) {
-            context.getWiki().getPluginManager().endRendering(context);
-          }
+        // Remove security doc or set the previous one
+        if (sdoc == null) {
+          context.remove("sdoc");
+        } else {
+          context.put("sdoc", sdoc);
         }
 
-        try {
-          int cacheDuration = context.getCacheDuration();
-          if (cacheDuration > 0) {
-            XWikiRenderingCache cacheObject = new XWikiRenderingCache(key, content, cacheDuration,
-                new Date());
-            this.cache.set(key, cacheObject);
-          }
-        } catch (Exception e) {
-          LOG.error("cache exception", e);
+        // Let's call the endRendering loop
+        if (context.getWiki().getPluginManager() != null) {
+          context.getWiki().getPluginManager().endRendering(context);
         }
-        return content;
-      } finally {
-        // We need to make sure we reset the cache Duration
-        context.setCacheDuration(currentCacheDuration);
       }
+      return new XWikiRenderingCache(key, content, context.getCacheDuration(), new Date());
+    } finally {
+      // We need to make sure we reset the cache Duration
+      context.setCacheDuration(currentCacheDuration);
     }
   }
 
@@ -374,6 +447,17 @@ public class DefaultXWikiRenderingEngine implements XWikiRenderingEngine {
       (element).flushCache();
     }
     if (this.cache != null) {
+      this.renderCache = null;
+      this.cache.dispose();
+      this.cache = null;
+    }
+  }
+
+  @Override
+  public void dispose() {
+    Utils.getComponent(ObservationManager.class).removeListener(getName());
+    if (this.cache != null) {
+      this.renderCache = null;
       this.cache.dispose();
       this.cache = null;
     }
@@ -0,0 +1,387 @@
+package com.xpn.xwiki.render;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Rendering cache of the {@link DefaultXWikiRenderingEngine} computing each key at most once at a
+ * time: concurrent callers of an uncached key wait for the rendering in progress instead of
+ * rendering it themselves, callers of an expired key get the expired content while it's being
+ * rendered again. Since a rendering decides itself if it may be cached, see
+ * {@link com.xpn.xwiki.XWikiContext#setCacheDuration(int)}, waiting callers render on their own if
+ * the awaited result isn't cacheable, and such keys aren't coalesced anymore.
+ * <p>
+ * Cached keys are indexed by the documents they were rendered from, see {@link #invalidate}, and
+ * dropped from the index once removed from the underlying cache, e.g. by eviction. A rendering
+ * isn't cached if an invalidation happened while rendering, it may be outdated.
+ */
+@ThreadSafe
+final class SingleFlightRenderingCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SingleFlightRenderingCache.class);
+
+  /**
+   * maximum amount of documents for which render metrics are collected
+   */
+  static final int MAX_DOCUMENT_METRICS = 1000;
+
+  enum Outcome {
+    /** valid cached content */
+    HIT,
+    /** expired cached content, rendered again by an other caller */
+    STALE,
+    /** content rendered by an other caller in the meantime */
+    COALESCED,
+    /** rendered while expired or refresh requested */
+    REFRESHED,
+    /** rendered */
+    RENDERED
+  }
+
+  @FunctionalInterface
+  interface Rendering {
+
+    /**
+     * @return the rendered content, it's only cached with a positive cache duration
+     */
+    @NotNull
+    XWikiRenderingCache render();
+  }
+
+  static final class Result {
+
+    private final String content;
+    private final Outcome outcome;
+
+    private Result(String content, Outcome outcome) {
+      this.content = content;
+      this.outcome = outcome;
+    }
+
+    String getContent() {
+      return content;
+    }
+
+    Outcome getOutcome() {
+      return outcome;
+    }
+
+  }
+
+  private static final class Flight {
+
+    private final Thread owner = Thread.currentThread();
+    private final CompletableFuture<XWikiRenderingCache> result = new CompletableFuture<>();
+
+  }
+
+  private static final class DocumentMetrics {
+
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+
+  }
+
+  private final Cache<XWikiRenderingCache> cache;
+  private final int maxUncacheableKeys;
+  private final long waitTimeoutMillis;
+
+  private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+  private final Set<String> uncacheableKeys = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<String, Set<String>> keysByDoc = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<String>> docKeysByKey = new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+  private final ConcurrentMap<String, DocumentMetrics> documentMetrics = new ConcurrentHashMap<>();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder staleCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder waitCount = new LongAdder();
+  private final LongAdder coalescedCount = new LongAdder();
+  private final LongAdder waitTimeoutCount = new LongAdder();
+  private final LongAdder renderCount = new LongAdder();
+  private final LongAdder renderNanos = new LongAdder();
+  private final LongAdder invalidationCount = new LongAdder();
+
+  /**
+   * @param cache
+   *          the underlying cache
+   * @param capacity
+   *          the capacity of the underlying cache, bounds the amount of remembered uncacheable
+   *          keys
+   * @param waitTimeoutMillis
+   *          the maximum time to wait for an other caller's rendering
+   */
+  SingleFlightRenderingCache(@NotNull Cache<XWikiRenderingCache> cache, int capacity,
+      long waitTimeoutMillis) {
+    this.cache = cache;
+    this.maxUncacheableKeys = 10 * Math.max(1, capacity);
+    this.waitTimeoutMillis = waitTimeoutMillis;
+    cache.addCacheEntryListener(new CacheEntryListener<XWikiRenderingCache>() {
+
+      @Override
+      public void cacheEntryAdded(CacheEntryEvent<XWikiRenderingCache> event) {}
+
+      @Override
+      public void cacheEntryModified(CacheEntryEvent<XWikiRenderingCache> event) {}
+
+      @Override
+      public void cacheEntryRemoved(CacheEntryEvent<XWikiRenderingCache> event) {
+        unindex(event.getEntry().getKey());
+      }
+    });
+  }
+
+  Cache<XWikiRenderingCache> getCache() {
+    return cache;
+  }
+
+  /**
+   * @param key
+   *          the cache key
+   * @param docKeys
+   *          the documents the rendered content depends on, see {@link #getDocKey}
+   * @param refresh
+   *          true to render even if validly cached
+   * @param rendering
+   *          renders the content if needed
+   */
+  Result get(String key, Collection<String> docKeys, boolean refresh, Rendering rendering) {
+    XWikiRenderingCache cached = getCached(key);
+    if ((cached != null) && !refresh && cached.isValid()) {
+      hitCount.increment();
+      return new Result(cached.getContent(), Outcome.HIT);
+    }
+    Outcome renderOutcome = (cached != null) ? Outcome.REFRESHED : Outcome.RENDERED;
+    if (refresh || uncacheableKeys.contains(key)) {
+      missCount.increment();
+      return new Result(render(key, docKeys, rendering), renderOutcome);
+    }
+    Flight flight = new Flight();
+    Flight running = flights.putIfAbsent(key, flight);
+    if (running == null) {
+      missCount.increment();
+      try {
+        return new Result(render(key, docKeys, rendering, flight), renderOutcome);
+      } finally {
+        flights.remove(key, flight);
+      }
+    } else if (running.owner == Thread.currentThread()) {
+      // recursive rendering of the same key, waiting would dead lock
+      missCount.increment();
+      return new Result(render(key, docKeys, rendering), renderOutcome);
+    } else if (cached != null) {
+      staleCount.increment();
+      return new Result(cached.getContent(), Outcome.STALE);
+    } else {
+      XWikiRenderingCache awaited = await(key, running);
+      if (awaited != null) {
+        coalescedCount.increment();
+        return new Result(awaited.getContent(), Outcome.COALESCED);
+      }
+      missCount.increment();
+      return new Result(render(key, docKeys, rendering), renderOutcome);
+    }
+  }
+
+  private XWikiRenderingCache getCached(String key) {
+    try {
+      return cache.get(key);
+    } catch (RuntimeException exc) {
+      LOGGER.warn("get: failed for [{}]", key, exc);
+      return null;
+    }
+  }
+
+  /**
+   * @return the awaited result if it has been cached, else null
+   */
+  private XWikiRenderingCache await(String key, Flight running) {
+    waitCount.increment();
+    try {
+      return running.result.get(waitTimeoutMillis, MILLISECONDS);
+    } catch (TimeoutException exc) {
+      waitTimeoutCount.increment();
+      LOGGER.info("await: timed out for [{}]", key);
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException exc) {
+      LOGGER.debug("await: failed for [{}]", key, exc);
+    }
+    return null;
+  }
+
+  private String render(String key, Collection<String> docKeys, Rendering rendering) {
+    return render(key, docKeys, rendering, null);
+  }
+
+  private String render(String key, Collection<String> docKeys, Rendering rendering,
+      Flight flight) {
+    XWikiRenderingCache rendered = null;
+    long renderGeneration = generation.get();
+    long start = System.nanoTime();
+    try {
+      rendered = rendering.render();
+    } finally {
+      long nanos = System.nanoTime() - start;
+      recordRender(docKeys, nanos);
+      boolean cached = (rendered != null)
+          && store(key, docKeys, rendered, renderGeneration);
+      if (flight != null) {
+        flight.result.complete(cached ? rendered : null);
+      }
+    }
+    return rendered.getContent();
+  }
+
+  private void recordRender(Collection<String> docKeys, long nanos) {
+    renderCount.increment();
+    renderNanos.add(nanos);
+    String docKey = docKeys.isEmpty() ? "" : docKeys.iterator().next();
+    DocumentMetrics metrics = documentMetrics.get(docKey);
+    if ((metrics == null) && (documentMetrics.size() < MAX_DOCUMENT_METRICS)) {
+      metrics = documentMetrics.computeIfAbsent(docKey, k -> new DocumentMetrics());
+    }
+    if (metrics != null) {
+      metrics.renders.increment();
+      metrics.renderNanos.add(nanos);
+    }
+  }
+
+  private boolean store(String key, Collection<String> docKeys, XWikiRenderingCache rendered,
+      long renderGeneration) {
+    if (rendered.getCacheDuration() <= 0) {
+      if (uncacheableKeys.size() >= maxUncacheableKeys) {
+        uncacheableKeys.clear();
+      }
+      uncacheableKeys.add(key);
+      return false;
+    }
+    try {
+      uncacheableKeys.remove(key);
+      index(key, docKeys);
+      cache.set(key, rendered);
+      if (renderGeneration != generation.get()) {
+        // invalidated while rendering, the content may be outdated
+        cache.remove(key);
+        return false;
+      }
+      return true;
+    } catch (RuntimeException exc) {
+      LOGGER.error("cache exception", exc);
+      return false;
+    }
+  }
+
+  private void index(String key, Collection<String> docKeys) {
+    unindex(key);
+    docKeysByKey.put(key, ImmutableSet.copyOf(docKeys));
+    for (String docKey : docKeys) {
+      // computed atomically to not add the key to a set concurrently dropped by unindex
+      keysByDoc.compute(docKey, (k, keys) -> {
+        keys = (keys != null) ? keys : ConcurrentHashMap.newKeySet();
+        keys.add(key);
+        return keys;
+      });
+    }
+  }
+
+  /**
+   * drops the key from the index, called for each key removed from the underlying cache
+   */
+  private void unindex(String key) {
+    Set<String> docKeys = docKeysByKey.remove(key);
+    if (docKeys != null) {
+      for (String docKey : docKeys) {
+        keysByDoc.computeIfPresent(docKey, (k, keys) -> {
+          keys.remove(key);
+          return keys.isEmpty() ? null : keys;
+        });
+      }
+    }
+  }
+
+  /**
+   * Removes all cached contents rendered from the given document.
+   */
+  void invalidate(String docKey) {
+    generation.incrementAndGet();
+    Set<String> keys = keysByDoc.remove(docKey);
+    if (keys != null) {
+      for (String key : keys) {
+        unindex(key);
+        cache.remove(key);
+        invalidationCount.increment();
+      }
+    }
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    clear();
+  }
+
+  private void clear() {
+    keysByDoc.clear();
+    docKeysByKey.clear();
+    cache.removeAll();
+  }
+
+  static String getDocKey(String database, String fullName) {
+    return database + ":" + fullName;
+  }
+
+  Map<String, Long> getMetrics() {
+    long lookups = hitCount.sum() + staleCount.sum() + coalescedCount.sum() + missCount.sum();
+    return ImmutableMap.<String, Long>builder()
+        .put("hits", hitCount.sum())
+        .put("staleHits", staleCount.sum())
+        .put("misses", missCount.sum())
+        .put("coalescedWaits", waitCount.sum())
+        .put("coalescedHits", coalescedCount.sum())
+        .put("waitTimeouts", waitTimeoutCount.sum())
+        .put("hitRatioPercent", (lookups > 0)
+            ? (100 * (lookups - missCount.sum())) / lookups
+            : 0L)
+        .put("renders", renderCount.sum())
+        .put("renderMillis", NANOSECONDS.toMillis(renderNanos.sum()))
+        .put("invalidations", invalidationCount.sum())
+        .put("inFlight", (long) flights.size())
+        .put("indexedKeys", (long) docKeysByKey.size())
+        .build();
+  }
+
+  /**
+   * @return the render count and time per document (limited to {@value #MAX_DOCUMENT_METRICS})
+   */
+  Map<String, Map<String, Long>> getDocumentMetrics() {
+    ImmutableMap.Builder<String, Map<String, Long>> builder = ImmutableMap.builder();
+    documentMetrics.forEach((docKey, metrics) -> builder.put(docKey, ImmutableMap.of(
+        "renders", metrics.renders.sum(),
+        "renderMillis", NANOSECONDS.toMillis(metrics.renderNanos.sum()))));
+    return builder.build();
+  }
+
+}
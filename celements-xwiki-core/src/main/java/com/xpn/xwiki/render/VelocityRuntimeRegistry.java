@@ -0,0 +1,48 @@
+package com.xpn.xwiki.render;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.velocity.app.event.IncludeEventHandler;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.util.RuntimeServicesAware;
+
+/**
+ * Registers the runtime of each Velocity Engine created by the {@link DefaultVelocityManager} by
+ * its engine key, since the xwiki engine API doesn't expose it. Velocity passes its runtime to
+ * the event handlers configured with {@link RuntimeConstants#EVENTHANDLER_INCLUDE} while
+ * initialising, the engine key is read from the {@link #PROPERTY_ENGINE_KEY} property. Includes
+ * are passed through unchanged.
+ */
+public class VelocityRuntimeRegistry implements IncludeEventHandler, RuntimeServicesAware {
+
+  public static final String PROPERTY_ENGINE_KEY = "xwiki.render.velocity.enginekey";
+
+  /**
+   * the runtime of the last initialised engine per key, since engines may be recreated
+   */
+  private static final ConcurrentMap<String, RuntimeServices> RUNTIMES = new ConcurrentHashMap<>();
+
+  static Optional<RuntimeServices> getRuntime(@NotNull String engineKey) {
+    return Optional.ofNullable(RUNTIMES.get(engineKey));
+  }
+
+  @Override
+  public void setRuntimeServices(RuntimeServices runtime) {
+    Object engineKey = runtime.getProperty(PROPERTY_ENGINE_KEY);
+    if (engineKey != null) {
+      RUNTIMES.put(engineKey.toString(), runtime);
+    }
+  }
+
+  @Override
+  public String includeEvent(String includeResourcePath, String currentResourcePath,
+      String directiveName) {
+    return includeResourcePath;
+  }
+
+}
@@ -0,0 +1,169 @@
+package com.xpn.xwiki.render;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.validation.constraints.NotNull;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.velocity.VelocityEngine;
+import org.xwiki.velocity.XWikiVelocityException;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Cache of the parsed and initialised templates evaluated by the {@link DefaultVelocityManager},
+ * keyed by the engine key, the template name and the content hash. A template is thus parsed once
+ * per content version instead of on every evaluation. The template name is part of the key since
+ * the parsed macro calls are bound to it as macro namespace. Like the engine itself, the template
+ * is rendered with its name as current template and without dumping the namespace.
+ * <p>
+ * Templates defining macros or stopping the rendering are always evaluated by the engine, since
+ * their effects aren't repeated when rendering a parsed template again. So are all templates if
+ * the runtime of the engine isn't registered, see {@link VelocityRuntimeRegistry}.
+ */
+@ThreadSafe
+final class VelocityTemplateCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VelocityTemplateCache.class);
+
+  /**
+   * directives which take effect while parsing or end the rendering
+   */
+  private static final String[] UNCACHEABLE_DIRECTIVES = { "#macro", "#{macro}", "#stop",
+      "#{stop}" };
+
+  @Immutable
+  static final class Template {
+
+    private final RuntimeServices runtime;
+    private final String content;
+    private final SimpleNode node;
+
+    private Template(RuntimeServices runtime, String content, SimpleNode node) {
+      this.runtime = runtime;
+      this.content = content;
+      this.node = node;
+    }
+
+  }
+
+  private final Cache<Template> cache;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder uncacheableCount = new LongAdder();
+  private final LongAdder parseNanos = new LongAdder();
+
+  VelocityTemplateCache(@NotNull Cache<Template> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Evaluates the content like {@link VelocityEngine#evaluate}, parsing it only if not yet cached.
+   *
+   * @param engineKey
+   *          the key the engine is cached with, see {@link DefaultVelocityManager}
+   */
+  boolean evaluate(@NotNull VelocityEngine engine, @NotNull String engineKey, Context vcontext,
+      Writer writer, String templateName, @NotNull String content) throws XWikiVelocityException {
+    Optional<RuntimeServices> runtime = VelocityRuntimeRegistry.getRuntime(engineKey);
+    if (runtime.isPresent() && isCacheable(content)) {
+      Optional<Template> template = getTemplate(runtime.get(), engineKey, templateName, content);
+      if (template.isPresent()) {
+        render(template.get(), vcontext, writer, templateName);
+        return true;
+      }
+    } else {
+      uncacheableCount.increment();
+    }
+    return engine.evaluate(vcontext, writer, templateName, content);
+  }
+
+  static boolean isCacheable(String content) {
+    for (String directive : UNCACHEABLE_DIRECTIVES) {
+      if (content.contains(directive)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static String getKey(String engineKey, String templateName, String content) {
+    return engineKey + ':' + templateName + ':' + content.length() + ':' + content.hashCode();
+  }
+
+  /**
+   * @return the cached or newly parsed template, empty if it isn't parsable, the engine then
+   *         reports the error
+   */
+  Optional<Template> getTemplate(RuntimeServices runtime, String engineKey, String templateName,
+      String content) {
+    String key = getKey(engineKey, templateName, content);
+    Template template = cache.get(key);
+    // the engine may have been recreated with the same key
+    if ((template != null) && (template.runtime == runtime) && template.content.equals(content)) {
+      hitCount.increment();
+      return Optional.of(template);
+    }
+    missCount.increment();
+    long start = System.nanoTime();
+    try {
+      SimpleNode node = runtime.parse(new StringReader(content), templateName, false);
+      // initialised once and rendered many times, as velocity does for its own templates
+      node.init(new InternalContextAdapterImpl(new VelocityContext()), runtime);
+      template = new Template(runtime, content, node);
+      cache.set(key, template);
+      return Optional.of(template);
+    } catch (ParseException exc) {
+      LOGGER.debug("getTemplate: unparsable [{}]", templateName, exc);
+    } catch (Exception exc) {
+      LOGGER.info("getTemplate: failed to initialise [{}]", templateName, exc);
+    } finally {
+      parseNanos.add(System.nanoTime() - start);
+    }
+    return Optional.empty();
+  }
+
+  void render(Template template, Context vcontext, Writer writer, String templateName)
+      throws XWikiVelocityException {
+    InternalContextAdapterImpl ica = new InternalContextAdapterImpl(vcontext);
+    ica.pushCurrentTemplateName(templateName);
+    try {
+      template.node.render(ica, writer);
+    } catch (Exception exc) {
+      throw new XWikiVelocityException("Failed to evaluate content with id [" + templateName + "]",
+          exc);
+    } finally {
+      ica.popCurrentTemplateName();
+    }
+  }
+
+  void removeAll() {
+    cache.removeAll();
+  }
+
+  Map<String, Long> getMetrics() {
+    return ImmutableMap.of(
+        "hits", hitCount.sum(),
+        "misses", missCount.sum(),
+        "uncacheable", uncacheableCount.sum(),
+        "parseMillis", NANOSECONDS.toMillis(parseNanos.sum()));
+  }
+
+}
@@ -0,0 +1,33 @@
+package com.xpn.xwiki.render;
+
+import java.io.Writer;
+import java.util.Map;
+
+import org.apache.velocity.VelocityContext;
+import org.xwiki.component.annotation.ComponentRole;
+import org.xwiki.velocity.XWikiVelocityException;
+
+/**
+ * Evaluates Velocity content with the current Velocity Engine of the
+ * {@link org.xwiki.velocity.VelocityManager}, parsing the content only once per version, see
+ * {@link VelocityTemplateCache}.
+ */
+@ComponentRole
+public interface VelocityTemplateEvaluator {
+
+  /**
+   * Evaluates the content like {@link org.xwiki.velocity.VelocityEngine#evaluate}.
+   *
+   * @return true if successful
+   */
+  boolean evaluate(VelocityContext vcontext, Writer writer, String templateName, String content)
+      throws XWikiVelocityException;
+
+  /**
+   * @return the hits, misses and parse time of the template cache, empty if it's disabled
+   */
+  Map<String, Long> getTemplateCacheMetrics();
+
+  void flushTemplateCache();
+
+}
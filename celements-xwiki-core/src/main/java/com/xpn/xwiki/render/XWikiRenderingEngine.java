@@ -51,6 +51,12 @@ public interface XWikiRenderingEngine {
 
   void flushCache();
 
+  /**
+   * Releases the resources of the engine, e.g. when replaced by a new one. The engine must not be
+   * used afterwards.
+   */
+  void dispose();
+
   String convertMultiLine(String macroname, String params, String data, String allcontent,
       XWikiVirtualMacro macro,
       XWikiContext context);
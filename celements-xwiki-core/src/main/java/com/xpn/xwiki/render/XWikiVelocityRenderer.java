@@ -108,15 +108,16 @@ public class XWikiVelocityRenderer implements XWikiRenderer, XWikiInterpreter {
    */
   @Override
   public void flushCache() {
-    // To change body of implemented methods use File | Settings | File Templates.
+    Utils.getComponent(VelocityTemplateEvaluator.class).flushTemplateCache();
   }
 
   public static String evaluate(String content, String name, VelocityContext vcontext,
       XWikiContext context) {
     StringWriter writer = new StringWriter();
     try {
-      VelocityManager velocityManager = Utils.getComponent(VelocityManager.class);
-      velocityManager.getVelocityEngine().evaluate(vcontext, writer, name, content);
+      // parses the content only once per version
+      Utils.getComponent(VelocityTemplateEvaluator.class).evaluate(vcontext, writer, name,
+          content);
       return writer.toString();
     } catch (Exception e) {
       e.printStackTrace();
@@ -29,11 +29,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.StringTokenizer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -86,6 +93,11 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
 
   public static final String NAME = "xwikiHibernate";
 
+  /**
+   * rows queried at once by {@link #streamDocuments}
+   */
+  static final int STREAM_BATCH_SIZE = 100;
+
   private Map<String, String[]> validTypesMap = new HashMap<>();
 
   /**
@@ -1014,7 +1026,7 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
     List<String> links;
     try {
       // Create new clean context to avoid wiki manager plugin requests in same session
-      XWikiContext renderContext = (XWikiContext) context.clone();
+      XWikiContext renderContext = context.fork();
       renderContext.setDoc(doc);
       econtext.set(XWIKI_CONTEXT, renderContext);
       Utils.getComponent(ExecutionContextManager.class).initialize(econtext);
@@ -1577,6 +1589,81 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
       boolean customMapping,
       boolean checkRight, int nb, int start, List<?> parameterValues, XWikiContext context)
       throws XWikiException {
+    List<Object[]> documentDatas = searchDocumentDatas(wheresql, distinctbylanguage, customMapping,
+        nb, start, parameterValues, context);
+
+    // Resolve documents. We use two separated sessions because rights service could need to switch
+    // database to
+    // check rights
+    List<XWikiDocument> documents = new ArrayList<>();
+    for (Object[] result : documentDatas) {
+      XWikiDocument doc = new XWikiDocument(
+          new DocumentReference(context.getDatabase(), (String) result[0], (String) result[1]));
+      if (checkRight && context.hasRequest()
+          && !context.getWiki().getRightService().checkAccess("view", doc, context)) {
+        continue;
+      }
+      documents.add(resolveDocument(doc.getDocumentReference(), result, distinctbylanguage,
+          context));
+    }
+
+    return documents;
+  }
+
+  /**
+   * Streams the documents matching the where clause like {@link #searchDocuments(String, boolean,
+   * boolean, boolean, int, int, List, XWikiContext)}, but lazily. The matching rows are queried in
+   * batches of {@value #STREAM_BATCH_SIZE}, the next batch only once the documents of the previous
+   * one are consumed. The rights of a batch are checked in bulk, see
+   * {@link com.xpn.xwiki.user.api.XWikiRightService#filterAccess}, before its visible documents are
+   * loaded. Thus paging the stream, e.g. {@code skip(start).limit(nb)}, returns full pages of
+   * visible documents and queries and loads only the rows needed for them.
+   * <p>
+   * Since the stream is consumed outside of this method, failures are thrown as
+   * {@link IllegalStateException} caused by the {@link XWikiException}. The batches are paged by
+   * offset, hence the where clause should order the documents.
+   */
+  public Stream<XWikiDocument> streamDocuments(String wheresql, boolean distinctbylanguage,
+      boolean customMapping, boolean checkRight, List<?> parameterValues, XWikiContext context) {
+    Iterator<List<XWikiDocument>> batches = new Iterator<List<XWikiDocument>>() {
+
+      private int start = 0;
+      private boolean exhausted = false;
+
+      @Override
+      public boolean hasNext() {
+        return !exhausted;
+      }
+
+      @Override
+      public List<XWikiDocument> next() {
+        if (exhausted) {
+          throw new NoSuchElementException();
+        }
+        try {
+          List<Object[]> documentDatas = searchDocumentDatas(wheresql, distinctbylanguage,
+              customMapping, STREAM_BATCH_SIZE, start, parameterValues, context);
+          start += documentDatas.size();
+          exhausted = (documentDatas.size() < STREAM_BATCH_SIZE);
+          return resolveDocuments(documentDatas, distinctbylanguage, checkRight, context);
+        } catch (XWikiException exc) {
+          exhausted = true;
+          throw new IllegalStateException("Failed to stream documents for [" + wheresql + "]",
+              exc);
+        }
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches,
+        Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .flatMap(List::stream);
+  }
+
+  /**
+   * @return the (space, name[, language]) rows of the documents matching the where clause
+   */
+  List<Object[]> searchDocumentDatas(String wheresql, boolean distinctbylanguage,
+      boolean customMapping, int nb, int start, List<?> parameterValues, XWikiContext context)
+      throws XWikiException {
     // Search documents
     List<Object[]> documentDatas = new ArrayList<>();
     boolean bTransaction = true;
@@ -1623,33 +1710,80 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
       } catch (Exception e) {}
     }
 
-    // Resolve documents. We use two separated sessions because rights service could need to switch
-    // database to
-    // check rights
-    List<XWikiDocument> documents = new ArrayList<>();
+    return documentDatas;
+  }
+
+  /**
+   * Resolves the documents of the given rows, filtered in bulk by the view right if requested. The
+   * visible documents are loaded in bulk, see {@link com.xpn.xwiki.XWiki#getDocuments}, followed by
+   * their requested translations.
+   */
+  private List<XWikiDocument> resolveDocuments(List<Object[]> documentDatas,
+      boolean distinctbylanguage, boolean checkRight, XWikiContext context)
+      throws XWikiException {
+    List<XWikiDocument> docs = new ArrayList<>(documentDatas.size());
+    Map<XWikiDocument, Object[]> rows = new IdentityHashMap<>();
     for (Object[] result : documentDatas) {
       XWikiDocument doc = new XWikiDocument(
           new DocumentReference(context.getDatabase(), (String) result[0], (String) result[1]));
-      if (checkRight && context.hasRequest()
-          && !context.getWiki().getRightService().checkAccess("view", doc, context)) {
-        continue;
-      }
+      doc.setContentDirty(true);
+      docs.add(doc);
+      rows.put(doc, result);
+    }
+    if (checkRight && context.hasRequest()) {
+      docs = context.getWiki().getRightService().filterAccess("view", docs, context);
+    }
+    if (docs.isEmpty()) {
+      return docs;
+    }
+    List<XWikiDocument> documents = new ArrayList<>(context.getWiki().getDocuments(docs,
+        context));
+    if (distinctbylanguage) {
+      resolveTranslations(documents, docs.stream().map(doc -> (String) rows.get(doc)[2])
+          .collect(Collectors.toList()), context);
+    }
+    return documents;
+  }
 
-      DocumentReference documentReference = doc.getDocumentReference();
-      if (distinctbylanguage) {
-        String language = (String) result[2];
-        XWikiDocument document = context.getWiki().getDocument(documentReference, context);
-        if ((language == null) || (language.equals(""))) {
-          documents.add(document);
-        } else {
-          documents.add(document.getTranslatedDocument(language, context));
+  /**
+   * Replaces the loaded documents by their translation in the given language in bulk, like
+   * {@link XWikiDocument#getTranslatedDocument(String, XWikiContext)}.
+   */
+  private void resolveTranslations(List<XWikiDocument> documents, List<String> languages,
+      XWikiContext context) throws XWikiException {
+    List<Integer> indexes = new ArrayList<>();
+    List<XWikiDocument> translations = new ArrayList<>();
+    for (int i = 0; i < documents.size(); i++) {
+      XWikiDocument document = documents.get(i);
+      String language = languages.get(i);
+      if (StringUtils.isNotEmpty(language) && !language.equals(document.getLanguage())
+          && !language.equals(document.getDefaultLanguage())) {
+        XWikiDocument translation = new XWikiDocument(document.getDocumentReference());
+        translation.setLanguage(language);
+        indexes.add(i);
+        translations.add(translation);
+      }
+    }
+    if (!translations.isEmpty()) {
+      List<XWikiDocument> loaded = context.getWiki().getDocuments(translations, context);
+      for (int i = 0; i < indexes.size(); i++) {
+        if (!loaded.get(i).isNew() && loaded.get(i).isTrans()) {
+          documents.set(indexes.get(i), loaded.get(i));
         }
-      } else {
-        documents.add(context.getWiki().getDocument(documentReference, context));
       }
     }
+  }
 
-    return documents;
+  private XWikiDocument resolveDocument(DocumentReference documentReference, Object[] result,
+      boolean distinctbylanguage, XWikiContext context) throws XWikiException {
+    XWikiDocument document = context.getWiki().getDocument(documentReference, context);
+    if (distinctbylanguage) {
+      String language = (String) result[2];
+      if ((language != null) && !language.equals("")) {
+        document = document.getTranslatedDocument(language, context);
+      }
+    }
+    return document;
   }
 
   /**
@@ -21,6 +21,7 @@
 
 package com.xpn.xwiki.store;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.xwiki.component.annotation.ComponentRole;
@@ -45,6 +46,23 @@ public interface XWikiStoreInterface {
 
   XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException;
 
+  /**
+   * Bulk variant of {@link #loadXWikiDoc(XWikiDocument, XWikiContext)}, stores may load the
+   * documents with less queries. All given documents have to belong to the context wiki.
+   *
+   * @return the loaded documents in the order of the given documents. not existing documents are
+   *         returned as new documents.
+   * @since 6.2
+   */
+  default List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> docs, XWikiContext context)
+      throws XWikiException {
+    List<XWikiDocument> loadedDocs = new ArrayList<>(docs.size());
+    for (XWikiDocument doc : docs) {
+      loadedDocs.add(loadXWikiDoc(doc, context));
+    }
+    return loadedDocs;
+  }
+
   void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException;
 
   List<String> getClassList(XWikiContext context) throws XWikiException;
@@ -22,10 +22,17 @@ package com.xpn.xwiki.store.hibernate.query;
 import static com.celements.execution.XWikiExecutionProp.*;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
 
+import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.engine.query.HQLQueryPlan;
+import org.hibernate.type.Type;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.Requirement;
 import org.xwiki.component.phase.Initializable;
@@ -40,6 +47,7 @@ import org.xwiki.query.QueryExecutor;
 import com.google.common.base.Strings;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.internal.cache.query.QueryResultCache;
 import com.xpn.xwiki.store.XWikiHibernateBaseStore.HibernateCallback;
 import com.xpn.xwiki.store.XWikiHibernateStore;
 import com.xpn.xwiki.store.XWikiStoreInterface;
@@ -73,6 +81,9 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable {
   @Requirement
   private Execution execution;
 
+  @Requirement
+  private QueryResultCache queryResultCache;
+
   /**
    * {@inheritDoc}
    *
@@ -95,6 +106,14 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable {
         wikiName = getXContext().getDatabase();
       }
       WikiReference wikiRef = new WikiReference(wikiName);
+      boolean cached = this.queryResultCache.isCached(query);
+      if (cached) {
+        List<T> result = this.queryResultCache.get(wikiRef.getName(), query);
+        if (result != null) {
+          return result;
+        }
+      }
+      long generation = this.queryResultCache.getGeneration();
       return getStore().executeRead(wikiRef, true, new HibernateCallback<List<T>>() {
 
         @Override
@@ -102,7 +121,12 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable {
         public List<T> doInHibernate(Session session) {
           org.hibernate.Query hquery = createHibernateQuery(session, query);
           populateParameters(hquery, query);
-          return hquery.list();
+          List<T> result = hquery.list();
+          if (cached) {
+            getQueryTables(session, hquery).ifPresent(tables -> queryResultCache.set(
+                wikiRef.getName(), query, result, tables, generation));
+          }
+          return result;
         }
       });
     } catch (XWikiException e) {
@@ -156,6 +180,31 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable {
     }
   }
 
+  /**
+   * @return the tables read by the query, absent if it's an SQL query or returns mapped entities,
+   *         which can't be shared between sessions
+   */
+  private Optional<Set<String>> getQueryTables(Session session, org.hibernate.Query hquery) {
+    if (hquery instanceof SQLQuery) {
+      return Optional.empty();
+    }
+    HQLQueryPlan plan = ((SessionImplementor) session).getFactory().getQueryPlanCache()
+        .getHQLQueryPlan(hquery.getQueryString(), false, Collections.emptyMap());
+    if (plan.getReturnMetadata() == null) {
+      return Optional.empty();
+    }
+    for (Type type : plan.getReturnMetadata().getReturnTypes()) {
+      if (type.isEntityType() || type.isCollectionType()) {
+        return Optional.empty();
+      }
+    }
+    Set<String> tables = new HashSet<>();
+    for (Object space : plan.getQuerySpaces()) {
+      tables.add(space.toString());
+    }
+    return Optional.of(tables);
+  }
+
   protected XWikiHibernateStore getStore() {
     return (XWikiHibernateStore) Utils.getComponent(XWikiStoreInterface.class, "hibernate");
   }
@@ -21,6 +21,7 @@
 
 package com.xpn.xwiki.user.api;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.xpn.xwiki.XWikiContext;
@@ -83,6 +84,33 @@ public interface XWikiRightService {
   boolean checkAccess(String action, XWikiDocument doc, XWikiContext context)
       throws XWikiException;
 
+  /**
+   * Filters the documents on which the current user has the right to execute {@code action}, see
+   * {@link #checkAccess}. Implementations may check the documents in bulk, e.g. authenticating the
+   * user only once, and should not request the login for denied documents.
+   *
+   * @param action
+   *          the action to be executed on the documents
+   * @param docs
+   *          the documents to perform the action on
+   * @param context
+   *          the xwiki context in which to perform the verification
+   * @return the documents on which the user has the right to execute {@code action}, in the given
+   *         order
+   * @throws XWikiException
+   *           if something goes wrong during the rights checking process
+   */
+  default List<XWikiDocument> filterAccess(String action, List<XWikiDocument> docs,
+      XWikiContext context) throws XWikiException {
+    List<XWikiDocument> result = new ArrayList<>(docs.size());
+    for (XWikiDocument doc : docs) {
+      if (checkAccess(action, doc, context)) {
+        result.add(doc);
+      }
+    }
+    return result;
+  }
+
   /**
    * Verifies if the user identified by {@code username} has the access level identified by
    * {@code right} on the
@@ -150,7 +150,7 @@ public class MyFormAuthenticator extends FormAuthenticator implements XWikiAuthe
       // 3) if xwiki.authentication.always is set to 1 in xwiki.cfg file, authenticate
       if ((principal == null) || !StringUtils.endsWith(principal.getName(), "XWiki." + username)
           || (context.getWiki().ParamAsLong("xwiki.authentication.always", 0) == 1)) {
-        principal = authenticate(username, password, context);
+        principal = authenticateRemembered(username, password, context);
 
         if (principal != null) {
           LOGGER.debug("User {} has been authentified from cookie", principal.getName());
@@ -279,6 +279,29 @@ public class MyFormAuthenticator extends FormAuthenticator implements XWikiAuthe
     return context.getWiki().getAuthService().authenticate(username, password, context);
   }
 
+  /**
+   * Authenticates the remembered login, unless it has been authenticated recently, see
+   * {@link RememberedLoginCache}.
+   */
+  private Principal authenticateRemembered(String username, String password,
+      XWikiContext context) throws XWikiException {
+    RememberedLoginCache cache = (this.persistentLoginManager instanceof MyPersistentLoginManager)
+        ? ((MyPersistentLoginManager) this.persistentLoginManager).getRememberedLoginCache()
+        : null;
+    if ((cache == null) || (username == null) || (password == null)
+        || (context.getDatabase() == null)) {
+      return authenticate(username, password, context);
+    }
+    Principal principal = cache.get(context.getDatabase(), username, password);
+    if (principal == null) {
+      principal = authenticate(username, password, context);
+      if (principal != null) {
+        cache.put(context.getDatabase(), username, password, principal);
+      }
+    }
+    return principal;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -21,6 +21,7 @@
 
 package com.xpn.xwiki.user.impl.xwiki;
 
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -117,6 +118,16 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
    */
   protected String cookiePrefix = "";
 
+  /**
+   * The ciphers of each thread, since creating them is expensive and they aren't thread safe.
+   */
+  private final ThreadLocal<Cipher> ciphers = new ThreadLocal<>();
+
+  /**
+   * The principals recently authenticated from the remembered login, null if not cached.
+   */
+  private RememberedLoginCache rememberedLoginCache;
+
   /**
    * Default constructor. The configuration is done outside, in
    * {@link XWikiAuthServiceImpl#getAuthenticator(com.xpn.xwiki.XWikiContext)}, so no parameters are
@@ -380,7 +391,10 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
       return null;
     }
     MessageDigest md5 = null;
-    StringBuffer sbValueBeforeMD5 = new StringBuffer();
+    StringBuilder sbValueBeforeMD5 = new StringBuilder();
+    // the inherited valueBeforeMD5 and valueAfterMD5 fields aren't used since this instance is
+    // shared by all requests
+    String valueAfterMD5 = null;
 
     try {
       md5 = MessageDigest.getInstance("MD5");
@@ -395,11 +409,10 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
       }
       sbValueBeforeMD5.append(this.validationKey.toString());
 
-      this.valueBeforeMD5 = sbValueBeforeMD5.toString();
-      md5.update(this.valueBeforeMD5.getBytes());
+      md5.update(sbValueBeforeMD5.toString().getBytes());
 
       byte[] array = md5.digest();
-      StringBuffer sb = new StringBuffer();
+      StringBuilder sb = new StringBuilder();
       for (byte element : array) {
         int b = element & 0xFF;
         if (b < 0x10) {
@@ -407,11 +420,11 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
         }
         sb.append(Integer.toHexString(b));
       }
-      this.valueAfterMD5 = sb.toString();
+      valueAfterMD5 = sb.toString();
     } catch (Exception e) {
       LOG.error(e);
     }
-    return this.valueAfterMD5;
+    return valueAfterMD5;
   }
 
   /**
@@ -421,12 +434,11 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
    * @param clearText
    *          The text to be encrypted.
    * @return clearText, encrypted.
-   * @todo Optimize this code by creating the Cipher only once.
    */
   public String encryptText(String clearText) {
     try {
-      Cipher c1 = Cipher.getInstance(this.cipherParameters);
       if (this.secretKey != null) {
+        Cipher c1 = getCipher();
         c1.init(Cipher.ENCRYPT_MODE, this.secretKey);
         byte[] clearTextBytes;
         clearTextBytes = clearText.getBytes();
@@ -663,7 +675,7 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
       // See XWIKI-2211
       byte[] decodedEncryptedText = Base64
           .decodeBase64(encryptedText.replaceAll("_", "=").getBytes("ISO-8859-1"));
-      Cipher c1 = Cipher.getInstance(this.cipherParameters);
+      Cipher c1 = getCipher();
       c1.init(Cipher.DECRYPT_MODE, this.secretKey);
       byte[] decryptedText = c1.doFinal(decodedEncryptedText);
       return new String(decryptedText);
@@ -673,6 +685,19 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
     }
   }
 
+  /**
+   * @return the cipher of the current thread for the configured cipher parameters, it has to be
+   *         initialised before each use
+   */
+  private Cipher getCipher() throws GeneralSecurityException {
+    Cipher cipher = this.ciphers.get();
+    if ((cipher == null) || !cipher.getAlgorithm().equals(this.cipherParameters)) {
+      cipher = Cipher.getInstance(this.cipherParameters);
+      this.ciphers.set(cipher);
+    }
+    return cipher;
+  }
+
   /**
    * Returns the original client IP. Needed because request.getRemoteAddr returns the address of the
    * last requesting
@@ -714,4 +739,22 @@ public class MyPersistentLoginManager extends DefaultPersistentLoginManager {
   public String getCookiePrefix() {
     return this.cookiePrefix;
   }
+
+  /**
+   * Setter for the cache of the principals authenticated from the remembered login.
+   *
+   * @param cache
+   *          the cache, null to authenticate on each request
+   */
+  void setRememberedLoginCache(RememberedLoginCache cache) {
+    this.rememberedLoginCache = cache;
+  }
+
+  /**
+   * @return the cache of the principals authenticated from the remembered login, null if not
+   *         cached
+   */
+  RememberedLoginCache getRememberedLoginCache() {
+    return this.rememberedLoginCache;
+  }
 }
@@ -0,0 +1,190 @@
+package com.xpn.xwiki.user.impl.xwiki;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Short living cache of the principals authenticated from remembered login cookies, sparing the
+ * user document loading and password hashing on each request carrying the cookies. The entries are
+ * keyed by a salted digest of the wiki and the remembered credentials, thus the credentials
+ * themselves aren't kept in memory. They expire after the configured time to live and are removed
+ * as soon as the password of the user is changed or the user is deleted.
+ */
+@ThreadSafe
+final class RememberedLoginCache implements EventListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RememberedLoginCache.class);
+
+  static final String NAME = "rememberedlogincache";
+
+  private static final String CLASS_XWIKIUSERS = "XWiki.XWikiUsers";
+
+  private static final String FIELD_PASSWORD = "password";
+
+  private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentUpdatedEvent(),
+      new DocumentDeletedEvent());
+
+  private static final class Entry {
+
+    private final Principal principal;
+    private final String user;
+    private final long expiresAt;
+
+    private Entry(Principal principal, String user, long expiresAt) {
+      this.principal = principal;
+      this.user = user;
+      this.expiresAt = expiresAt;
+    }
+
+  }
+
+  private final int capacity;
+  private final long timeToLiveMillis;
+  private final byte[] salt = new byte[16];
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder invalidationCount = new LongAdder();
+
+  /**
+   * @param capacity
+   *          the maximum amount of cached logins
+   * @param timeToLiveMillis
+   *          the time after which a cached login has to be authenticated again
+   */
+  RememberedLoginCache(int capacity, long timeToLiveMillis) {
+    this.capacity = capacity;
+    this.timeToLiveMillis = timeToLiveMillis;
+    new SecureRandom().nextBytes(this.salt);
+  }
+
+  /**
+   * @return the principal previously authenticated in the wiki with the given credentials, null
+   *         if not cached or expired
+   */
+  Principal get(@NotNull String wiki, @NotNull String username, @NotNull String password) {
+    String key = getKey(wiki, username, password);
+    Entry entry = entries.get(key);
+    if ((entry != null) && (entry.expiresAt - System.currentTimeMillis() > 0)) {
+      hitCount.increment();
+      return entry.principal;
+    } else if (entry != null) {
+      entries.remove(key, entry);
+    }
+    missCount.increment();
+    return null;
+  }
+
+  /**
+   * Caches the principal authenticated in the wiki with the given credentials.
+   */
+  void put(@NotNull String wiki, @NotNull String username, @NotNull String password,
+      @NotNull Principal principal) {
+    if (entries.size() >= capacity) {
+      long now = System.currentTimeMillis();
+      entries.values().removeIf(entry -> (entry.expiresAt - now <= 0));
+      if (entries.size() >= capacity) {
+        entries.clear();
+      }
+    }
+    String user = principal.getName().contains(":") ? principal.getName()
+        : wiki + ":" + principal.getName();
+    entries.put(getKey(wiki, username, password), new Entry(principal, user,
+        System.currentTimeMillis() + timeToLiveMillis));
+  }
+
+  /**
+   * Removes all cached logins of the given user.
+   *
+   * @param user
+   *          the prefixed full name of the user document, e.g. "xwiki:XWiki.Admin"
+   */
+  void invalidate(@NotNull String user) {
+    if (entries.values().removeIf(entry -> entry.user.equals(user))) {
+      invalidationCount.increment();
+      LOGGER.debug("invalidate: removed cached logins of [{}]", user);
+    }
+  }
+
+  void invalidateAll() {
+    entries.clear();
+  }
+
+  private String getKey(String wiki, String username, String password) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(salt);
+      for (String value : new String[] { wiki, username, password }) {
+        digest.update(value.getBytes(UTF_8));
+        digest.update((byte) 0);
+      }
+      return Base64.getEncoder().encodeToString(digest.digest());
+    } catch (NoSuchAlgorithmException exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  Map<String, Long> getMetrics() {
+    return ImmutableMap.of(
+        "hits", hitCount.sum(),
+        "misses", missCount.sum(),
+        "invalidations", invalidationCount.sum(),
+        "size", (long) entries.size());
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return EVENTS;
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    XWikiDocument document = (XWikiDocument) source;
+    XWikiDocument oldDocument = document.getOriginalDocument();
+    if ((event instanceof DocumentDeletedEvent) || (oldDocument == null)
+        || !Objects.equals(getPassword(document), getPassword(oldDocument))) {
+      DocumentReference docRef = document.getDocumentReference();
+      invalidate(docRef.getWikiReference().getName() + ":" + docRef.getLastSpaceReference()
+          .getName() + "." + docRef.getName());
+    }
+  }
+
+  private static String getPassword(XWikiDocument document) {
+    return (document.getObject(CLASS_XWIKIUSERS) != null)
+        ? document.getStringValue(CLASS_XWIKIUSERS, FIELD_PASSWORD)
+        : null;
+  }
+
+}
@@ -23,9 +23,11 @@ package com.xpn.xwiki.user.impl.xwiki;
 import java.io.IOException;
 import java.net.URL;
 import java.security.Principal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -42,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.ObservationManager;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
@@ -87,6 +90,13 @@ public class XWikiAuthServiceImpl extends AbstractXWikiAuthService {
    */
   protected Map<String, XWikiAuthenticator> authenticators = new ConcurrentHashMap<>();
 
+  /**
+   * The principals recently authenticated from remembered logins of all wikis, null if disabled.
+   */
+  private RememberedLoginCache rememberedLoginCache;
+
+  private boolean rememberedLoginCacheInitialized;
+
   protected XWikiAuthenticator getAuthenticator(XWikiContext context) throws XWikiException {
     String wikiName = context.getDatabase();
 
@@ -203,6 +213,8 @@ public class XWikiAuthServiceImpl extends AbstractXWikiAuthService {
           persistent.setEncryptionKey(xwiki.Param("xwiki.authentication.encryptionKey"));
         }
 
+        persistent.setRememberedLoginCache(getRememberedLoginCache(xwiki));
+
         sconfig.setPersistentLoginManager(persistent);
 
         MyFilterConfig fconfig = new MyFilterConfig();
@@ -222,6 +234,34 @@ public class XWikiAuthServiceImpl extends AbstractXWikiAuthService {
     }
   }
 
+  /**
+   * The remembered login cache is configured with the time to live in seconds
+   * "xwiki.authentication.rememberedlogin.cache.ttl" and the capacity
+   * "xwiki.authentication.rememberedlogin.cache.capacity", 0 disables it.
+   */
+  private synchronized RememberedLoginCache getRememberedLoginCache(XWiki xwiki) {
+    if (!this.rememberedLoginCacheInitialized) {
+      long ttl = xwiki.ParamAsLong("xwiki.authentication.rememberedlogin.cache.ttl", 60);
+      long capacity = xwiki.ParamAsLong("xwiki.authentication.rememberedlogin.cache.capacity",
+          1000);
+      if ((ttl > 0) && (capacity > 0)) {
+        this.rememberedLoginCache = new RememberedLoginCache((int) capacity,
+            TimeUnit.SECONDS.toMillis(ttl));
+        Utils.getComponent(ObservationManager.class).addListener(this.rememberedLoginCache);
+      }
+      this.rememberedLoginCacheInitialized = true;
+    }
+    return this.rememberedLoginCache;
+  }
+
+  /**
+   * @return the hits, misses and invalidations of the remembered login cache, empty if disabled
+   */
+  public synchronized Map<String, Long> getRememberedLoginCacheMetrics() {
+    return (this.rememberedLoginCache != null) ? this.rememberedLoginCache.getMetrics()
+        : Collections.<String, Long>emptyMap();
+  }
+
   @Override
   public XWikiUser checkAuth(XWikiContext context) throws XWikiException {
     // Debug time taken.
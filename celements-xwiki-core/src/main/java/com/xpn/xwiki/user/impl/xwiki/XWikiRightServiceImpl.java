@@ -28,9 +28,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.Set;
+import java.util.function.Supplier;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,11 +40,12 @@ import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 
+import com.google.common.base.Suppliers;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
-import com.xpn.xwiki.objects.BaseObject;
-import com.xpn.xwiki.objects.classes.GroupsClass;
+import com.xpn.xwiki.internal.cache.rights.RightsAcl;
+import com.xpn.xwiki.internal.cache.rights.RightsCache;
 import com.xpn.xwiki.user.api.XWikiGroupService;
 import com.xpn.xwiki.user.api.XWikiRightNotFoundException;
 import com.xpn.xwiki.user.api.XWikiRightService;
@@ -81,6 +82,12 @@ public class XWikiRightServiceImpl implements XWikiRightService {
   private EntityReferenceSerializer<String> entityReferenceSerializer = Utils
       .getComponent(EntityReferenceSerializer.class);
 
+  /**
+   * Shared cache of the decisions and compiled rights objects.
+   */
+  private final Supplier<RightsCache> rightsCache = Suppliers.memoize(
+      () -> Utils.getComponent(RightsCache.class));
+
   protected void logAllow(String username, String page, String action, String info) {
     if (LOG.isDebugEnabled()) {
       LOG.debug(
@@ -269,6 +276,59 @@ public class XWikiRightServiceImpl implements XWikiRightService {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The user is authenticated once, then the access level is verified for each document. Unlike
+   * {@link #checkAccess} the login isn't requested.
+   */
+  @Override
+  public List<XWikiDocument> filterAccess(String action, List<XWikiDocument> docs,
+      XWikiContext context) throws XWikiException {
+    String right = getRight(action);
+    if (docs.isEmpty() || right.equals("login") || right.equals("delete")) {
+      return XWikiRightService.super.filterAccess(action, docs, context);
+    }
+    String username;
+    XWikiUser user = context.getXWikiUser();
+    if (user == null) {
+      boolean needsAuth = needsAuth(right, context);
+      try {
+        user = context.getWiki().checkAuth(context);
+      } catch (XWikiException e) {
+        if (needsAuth) {
+          throw e;
+        }
+      }
+      if ((user == null) && needsAuth) {
+        logDeny("unauthentified", docs.size() + " documents", action, "Authentication needed");
+        return Collections.emptyList();
+      }
+      username = (user == null) ? XWikiRightService.GUEST_USER_FULLNAME : user.getUser();
+      context.setUser(username);
+    } else {
+      username = user.getUser();
+    }
+    if ((context.getDatabase() != null) && (username.indexOf(":") == -1)) {
+      username = context.getDatabase() + ":" + username;
+    }
+    List<XWikiDocument> result = new ArrayList<>(docs.size());
+    for (XWikiDocument doc : docs) {
+      String docname = (context.getDatabase() != null)
+          ? context.getDatabase() + ":" + doc.getFullName()
+          : doc.getFullName();
+      try {
+        if (context.getWiki().getRightService().hasAccessLevel(right, username, docname,
+            context)) {
+          result.add(doc);
+        }
+      } catch (Exception e) {
+        logDeny(username, docname, action, "access manager exception " + e.getMessage());
+      }
+    }
+    return result;
+  }
+
   private boolean needsAuth(String right, XWikiContext context) {
     boolean needsAuth = false;
 
@@ -337,104 +397,50 @@ public class XWikiRightServiceImpl implements XWikiRightService {
           + "," + allow + "," + global);
     }
 
-    Vector<BaseObject> vobj = doc.getObjects(className);
-    if (vobj != null) {
+    RightsAcl acl = this.rightsCache.get().getAcl(doc, className, fieldName);
+    Set<String> users = acl.getNames(accessLevel, allow);
+    if (users != null) {
       if (LOG.isDebugEnabled()) {
-        LOG.debug("Checking objects " + vobj.size());
+        LOG.debug("Found a right for " + allow);
+        LOG.debug("Checking match: " + userOrGroupName + " in " + users);
       }
-
-      for (int i = 0; i < vobj.size(); i++) {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Checking object " + i);
-        }
-
-        BaseObject bobj = vobj.get(i);
-
-        if (bobj == null) {
+      found = true;
+
+      // In the case where the document database and the user database is the same
+      // then we allow the usage of the short name, otherwise the fully qualified
+      // name is requested
+      if (doc.getWikiName()
+          .equals(userOrGroupDocumentReference.getWikiReference().getName())) {
+        if (users.contains(shortname)) {
           if (LOG.isDebugEnabled()) {
-            LOG.debug("Bypass object " + i);
+            LOG.debug("Found matching right in " + users + " for " + shortname);
           }
 
-          continue;
+          return true;
         }
 
-        String users = bobj.getStringValue(fieldName);
-        String levels = bobj.getStringValue("levels");
-        boolean allowdeny = (bobj.getIntValue("allow") == 1);
-
-        if (allowdeny == allow) {
+        // We should also allow to skip "XWiki." from the usernames and group
+        // lists
+        String veryshortname = shortname.substring(shortname.indexOf(".") + 1);
+        if (users.contains(veryshortname)) {
           if (LOG.isDebugEnabled()) {
-            LOG.debug("Checking match: " + accessLevel + " in " + levels);
+            LOG.debug("Found matching right in " + users + " for " + shortname);
           }
 
-          String[] levelsarray = StringUtils.split(levels, " ,|");
-          if (ArrayUtils.contains(levelsarray, accessLevel)) {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Found a right for " + allow);
-            }
-            found = true;
-
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Checking match: " + userOrGroupName + " in " + users);
-            }
-
-            String[] userarray = GroupsClass.getListFromString(users).toArray(new String[0]);
-
-            for (int ii = 0; ii < userarray.length; ii++) {
-              String value = userarray[ii];
-              if (value.indexOf(".") == -1) {
-                userarray[ii] = "XWiki." + value;
-              }
-            }
-
-            if (LOG.isDebugEnabled()) {
-              LOG.debug(
-                  "Checking match: " + userOrGroupName + " in " + StringUtils.join(userarray, ","));
-            }
-
-            // In the case where the document database and the user database is the same
-            // then we allow the usage of the short name, otherwise the fully qualified
-            // name is requested
-            if (doc.getWikiName()
-                .equals(userOrGroupDocumentReference.getWikiReference().getName())) {
-              if (ArrayUtils.contains(userarray, shortname)) {
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("Found matching right in " + users + " for " + shortname);
-                }
-
-                return true;
-              }
-
-              // We should also allow to skip "XWiki." from the usernames and group
-              // lists
-              String veryshortname = shortname.substring(shortname.indexOf(".") + 1);
-              if (ArrayUtils.contains(userarray, veryshortname)) {
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("Found matching right in " + users + " for " + shortname);
-                }
-
-                return true;
-              }
-            }
+          return true;
+        }
+      }
 
-            if ((context.getDatabase() != null)
-                && (ArrayUtils.contains(userarray, userOrGroupName))) {
-              if (LOG.isDebugEnabled()) {
-                LOG.debug("Found matching right in " + users + " for " + userOrGroupName);
-              }
+      if ((context.getDatabase() != null) && users.contains(userOrGroupName)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Found matching right in " + users + " for " + userOrGroupName);
+        }
 
-              return true;
-            }
+        return true;
+      }
 
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Failed match: " + userOrGroupName + " in " + users);
-            }
-          }
-        } else {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Bypass object " + i + " because wrong allow/deny");
-          }
-        }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Failed match: " + userOrGroupName + " in " + users);
       }
     }
 
@@ -563,10 +569,7 @@ public class XWikiRightServiceImpl implements XWikiRightService {
               .resolve(entityReference));
     }
 
-    boolean deny = false;
     boolean allow;
-    boolean allow_found = false;
-    boolean deny_found = false;
     boolean isReadOnly = context.getWiki().isReadOnly();
     String database = context.getDatabase();
     XWikiDocument currentdoc = null;
@@ -603,204 +606,233 @@ public class XWikiRightServiceImpl implements XWikiRightService {
       return allow;
     }
 
-    try {
-      currentdoc = currentdoc == null ? context.getWiki().getDocument(entityReference, context)
-          : currentdoc;
-
-      // We need to make sure we are in the context of the document which rights is being checked
-      context.setDatabase(currentdoc.getDatabase());
-
-      // Verify Wiki Owner
-      String wikiOwner = context.getWiki().getWikiOwner(currentdoc.getDatabase(), context);
-      if ((wikiOwner != null) && wikiOwner.equals(userOrGroupName)) {
-        logAllow(userOrGroupName, entityReference, accessLevel,
-            "admin level from wiki ownership");
-
-        return true;
+    RightsCache cache = this.rightsCache.get();
+    String docKey = null;
+    String decisionKey = null;
+    long generation = 0;
+    if (cache.isEnabled()) {
+      // names may be relative to the context wiki, e.g. for guest
+      docKey = this.entityReferenceSerializer.serialize(
+          this.currentMixedDocumentReferenceResolver.resolve(entityReference));
+      decisionKey = database + ":" + accessLevel + ":" + user + ":" + userOrGroupName;
+      generation = cache.getGeneration();
+      Boolean decision = cache.getDecision(docKey, decisionKey);
+      if (decision != null) {
+        return decision;
       }
+    }
 
-      XWikiDocument entityWikiPreferences = context.getWiki().getDocument("XWiki.XWikiPreferences",
+    try {
+      allow = checkAccessLevel(accessLevel, userOrGroupName, entityReference, user, currentdoc,
           context);
+    } catch (XWikiException e) {
+      logDeny(userOrGroupName, entityReference, accessLevel, "global level (exception)", e);
 
-      // Verify XWiki register right
-      if (accessLevel.equals("register")) {
-        try {
-          allow = checkRight(userOrGroupName, entityWikiPreferences, "register", user, true, true,
-              context);
-          if (allow) {
-            logAllow(userOrGroupName, entityReference, accessLevel, "register level");
+      return false;
+    } finally {
+      context.setDatabase(database);
+    }
+    if (cache.isEnabled()) {
+      cache.setDecision(docKey, decisionKey, allow, generation);
+    }
+    return allow;
+  }
 
-            return true;
-          } else {
-            logDeny(userOrGroupName, entityReference, accessLevel, "register level");
+  private boolean checkAccessLevel(String accessLevel, String userOrGroupName,
+      String entityReference, boolean user, XWikiDocument currentdoc, XWikiContext context)
+      throws XWikiException {
+    boolean deny = false;
+    boolean allow;
+    boolean allow_found = false;
+    boolean deny_found = false;
+    currentdoc = currentdoc == null ? context.getWiki().getDocument(entityReference, context)
+        : currentdoc;
 
-            return false;
-          }
-        } catch (XWikiRightNotFoundException e) {
-          try {
-            deny = checkRight(userOrGroupName, entityWikiPreferences, "register", user, false, true,
-                context);
-            if (deny) {
-              return false;
-            }
-          } catch (XWikiRightNotFoundException e1) {}
-        }
+    // We need to make sure we are in the context of the document which rights is being checked
+    context.setDatabase(currentdoc.getDatabase());
 
-        logAllow(userOrGroupName, entityReference, accessLevel, "register level (no right found)");
+    // Verify Wiki Owner
+    String wikiOwner = context.getWiki().getWikiOwner(currentdoc.getDatabase(), context);
+    if ((wikiOwner != null) && wikiOwner.equals(userOrGroupName)) {
+      logAllow(userOrGroupName, entityReference, accessLevel,
+          "admin level from wiki ownership");
 
-        return true;
-      }
+      return true;
+    }
 
-      int maxRecursiveSpaceChecks = context.getWiki().getMaxRecursiveSpaceChecks(context);
-      boolean isSuperUser = isSuperUser(accessLevel, userOrGroupName, entityReference, user,
-          entityWikiPreferences,
-          maxRecursiveSpaceChecks, context);
-      if (isSuperUser) {
-        logAllow(userOrGroupName, entityReference, accessLevel, "admin level");
+    XWikiDocument entityWikiPreferences = context.getWiki().getDocument("XWiki.XWikiPreferences",
+        context);
 
-        return true;
-      }
+    // Verify XWiki register right
+    if (accessLevel.equals("register")) {
+      try {
+        allow = checkRight(userOrGroupName, entityWikiPreferences, "register", user, true, true,
+            context);
+        if (allow) {
+          logAllow(userOrGroupName, entityReference, accessLevel, "register level");
+
+          return true;
+        } else {
+          logDeny(userOrGroupName, entityReference, accessLevel, "register level");
 
-      // check has deny rights
-      if (hasDenyRights()) {
-        // First check if this document is denied to the specific user
-        entityReference = Util.getName(entityReference, context);
+          return false;
+        }
+      } catch (XWikiRightNotFoundException e) {
         try {
-          currentdoc = currentdoc == null ? context.getWiki().getDocument(entityReference, context)
-              : currentdoc;
-          deny = checkRight(userOrGroupName, currentdoc, accessLevel, user, false, false, context);
-          deny_found = true;
+          deny = checkRight(userOrGroupName, entityWikiPreferences, "register", user, false, true,
+              context);
           if (deny) {
-            logDeny(userOrGroupName, entityReference, accessLevel, "document level");
             return false;
           }
-        } catch (XWikiRightNotFoundException e) {}
+        } catch (XWikiRightNotFoundException e1) {}
       }
 
+      logAllow(userOrGroupName, entityReference, accessLevel, "register level (no right found)");
+
+      return true;
+    }
+
+    int maxRecursiveSpaceChecks = context.getWiki().getMaxRecursiveSpaceChecks(context);
+    boolean isSuperUser = isSuperUser(accessLevel, userOrGroupName, entityReference, user,
+        entityWikiPreferences,
+        maxRecursiveSpaceChecks, context);
+    if (isSuperUser) {
+      logAllow(userOrGroupName, entityReference, accessLevel, "admin level");
+
+      return true;
+    }
+
+    // check has deny rights
+    if (hasDenyRights()) {
+      // First check if this document is denied to the specific user
+      entityReference = Util.getName(entityReference, context);
       try {
         currentdoc = currentdoc == null ? context.getWiki().getDocument(entityReference, context)
             : currentdoc;
-        allow = checkRight(userOrGroupName, currentdoc, accessLevel, user, true, false, context);
-        allow_found = true;
-        if (allow) {
-          logAllow(userOrGroupName, entityReference, accessLevel, "document level");
-
-          return true;
+        deny = checkRight(userOrGroupName, currentdoc, accessLevel, user, false, false, context);
+        deny_found = true;
+        if (deny) {
+          logDeny(userOrGroupName, entityReference, accessLevel, "document level");
+          return false;
         }
       } catch (XWikiRightNotFoundException e) {}
+    }
 
-      // Check if this document is denied/allowed
-      // through the space WebPreferences Global Rights
-
-      String space = currentdoc.getSpace();
-      ArrayList<String> spacesChecked = new ArrayList<>();
-      int recursiveSpaceChecks = 0;
-      while ((space != null) && (recursiveSpaceChecks <= maxRecursiveSpaceChecks)) {
-        // Add one to the recursive space checks
-        recursiveSpaceChecks++;
-        // add to list of spaces already checked
-        spacesChecked.add(space);
-        XWikiDocument webdoc = context.getWiki().getDocument(space, "WebPreferences", context);
-        if (!webdoc.isNew()) {
-          if (hasDenyRights()) {
-            try {
-              deny = checkRight(userOrGroupName, webdoc, accessLevel, user, false, true, context);
-              deny_found = true;
-              if (deny) {
-                logDeny(userOrGroupName, entityReference, accessLevel, "web level");
-
-                return false;
-              }
-            } catch (XWikiRightNotFoundException e) {}
-          }
-
-          // If a right was found at the previous level
-          // then we cannot check the web rights anymore
-          if (!allow_found) {
-            try {
-              allow = checkRight(userOrGroupName, webdoc, accessLevel, user, true, true, context);
-              allow_found = true;
-              if (allow) {
-                logAllow(userOrGroupName, entityReference, accessLevel, "web level");
-
-                return true;
-              }
-            } catch (XWikiRightNotFoundException e) {}
-          }
+    try {
+      currentdoc = currentdoc == null ? context.getWiki().getDocument(entityReference, context)
+          : currentdoc;
+      allow = checkRight(userOrGroupName, currentdoc, accessLevel, user, true, false, context);
+      allow_found = true;
+      if (allow) {
+        logAllow(userOrGroupName, entityReference, accessLevel, "document level");
 
-          // find the parent web to check rights on it
-          space = webdoc.getStringValue("XWiki.XWikiPreferences", "parent");
-          if ((space == null) || (space.trim().equals("")) || spacesChecked.contains(space)) {
-            // no parent space or space already checked (recursive loop). let's finish
-            // the loop
-            space = null;
-          }
-        } else {
-          // let's finish the loop
-          space = null;
-        }
+        return true;
       }
+    } catch (XWikiRightNotFoundException e) {}
 
-      // Check if this document is denied/allowed
-      // through the XWiki.XWikiPreferences Global Rights
-      if (hasDenyRights()) {
-        try {
-          deny = checkRight(userOrGroupName, entityWikiPreferences, accessLevel, user, false, true,
-              context);
-          deny_found = true;
-          if (deny) {
-            logDeny(userOrGroupName, entityReference, accessLevel, "xwiki level");
+    // Check if this document is denied/allowed
+    // through the space WebPreferences Global Rights
 
-            return false;
-          }
-        } catch (XWikiRightNotFoundException e) {}
-      }
+    String space = currentdoc.getSpace();
+    ArrayList<String> spacesChecked = new ArrayList<>();
+    int recursiveSpaceChecks = 0;
+    while ((space != null) && (recursiveSpaceChecks <= maxRecursiveSpaceChecks)) {
+      // Add one to the recursive space checks
+      recursiveSpaceChecks++;
+      // add to list of spaces already checked
+      spacesChecked.add(space);
+      XWikiDocument webdoc = context.getWiki().getDocument(space, "WebPreferences", context);
+      if (!webdoc.isNew()) {
+        if (hasDenyRights()) {
+          try {
+            deny = checkRight(userOrGroupName, webdoc, accessLevel, user, false, true, context);
+            deny_found = true;
+            if (deny) {
+              logDeny(userOrGroupName, entityReference, accessLevel, "web level");
 
-      // If a right was found at the document or web level
-      // then we cannot check the web rights anymore
-      if (!allow_found) {
-        try {
-          allow = checkRight(userOrGroupName, entityWikiPreferences, accessLevel, user, true, true,
-              context);
-          allow_found = true;
-          if (allow) {
-            logAllow(userOrGroupName, entityReference, accessLevel, "xwiki level");
+              return false;
+            }
+          } catch (XWikiRightNotFoundException e) {}
+        }
 
-            return true;
-          }
-        } catch (XWikiRightNotFoundException e) {}
+        // If a right was found at the previous level
+        // then we cannot check the web rights anymore
+        if (!allow_found) {
+          try {
+            allow = checkRight(userOrGroupName, webdoc, accessLevel, user, true, true, context);
+            allow_found = true;
+            if (allow) {
+              logAllow(userOrGroupName, entityReference, accessLevel, "web level");
+
+              return true;
+            }
+          } catch (XWikiRightNotFoundException e) {}
+        }
+
+        // find the parent web to check rights on it
+        space = webdoc.getStringValue("XWiki.XWikiPreferences", "parent");
+        if ((space == null) || (space.trim().equals("")) || spacesChecked.contains(space)) {
+          // no parent space or space already checked (recursive loop). let's finish
+          // the loop
+          space = null;
+        }
+      } else {
+        // let's finish the loop
+        space = null;
       }
+    }
 
-      // If neither doc, web or topic had any allowed ACL
-      // and that all users that were not denied
-      // should be allowed.
-      if (!allow_found) {
-        // Should these rights be denied only if no deny rights were found?
-        if (accessLevel.equals("register") || accessLevel.equals("delete")) {
-          logDeny(userOrGroupName, entityReference, accessLevel, "global level (" + accessLevel
-              + " right must be explicit)");
+    // Check if this document is denied/allowed
+    // through the XWiki.XWikiPreferences Global Rights
+    if (hasDenyRights()) {
+      try {
+        deny = checkRight(userOrGroupName, entityWikiPreferences, accessLevel, user, false, true,
+            context);
+        deny_found = true;
+        if (deny) {
+          logDeny(userOrGroupName, entityReference, accessLevel, "xwiki level");
 
           return false;
-        } else {
-          logAllow(userOrGroupName, entityReference, accessLevel,
-              "global level (no restricting right)");
+        }
+      } catch (XWikiRightNotFoundException e) {}
+    }
+
+    // If a right was found at the document or web level
+    // then we cannot check the web rights anymore
+    if (!allow_found) {
+      try {
+        allow = checkRight(userOrGroupName, entityWikiPreferences, accessLevel, user, true, true,
+            context);
+        allow_found = true;
+        if (allow) {
+          logAllow(userOrGroupName, entityReference, accessLevel, "xwiki level");
 
           return true;
         }
-      } else {
-        logDeny(userOrGroupName, entityReference, accessLevel,
-            "global level (restricting right was found)");
+      } catch (XWikiRightNotFoundException e) {}
+    }
+
+    // If neither doc, web or topic had any allowed ACL
+    // and that all users that were not denied
+    // should be allowed.
+    if (!allow_found) {
+      // Should these rights be denied only if no deny rights were found?
+      if (accessLevel.equals("register") || accessLevel.equals("delete")) {
+        logDeny(userOrGroupName, entityReference, accessLevel, "global level (" + accessLevel
+            + " right must be explicit)");
 
         return false;
-      }
+      } else {
+        logAllow(userOrGroupName, entityReference, accessLevel,
+            "global level (no restricting right)");
 
-    } catch (XWikiException e) {
-      logDeny(userOrGroupName, entityReference, accessLevel, "global level (exception)", e);
-      e.printStackTrace();
+        return true;
+      }
+    } else {
+      logDeny(userOrGroupName, entityReference, accessLevel,
+          "global level (restricting right was found)");
 
       return false;
-    } finally {
-      context.setDatabase(database);
     }
   }
 
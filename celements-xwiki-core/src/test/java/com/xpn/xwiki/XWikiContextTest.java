@@ -0,0 +1,115 @@
+package com.xpn.xwiki;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class XWikiContextTest {
+
+  private XWikiContext context;
+
+  @Before
+  public void prepare() {
+    context = new XWikiContext();
+  }
+
+  @Test
+  public void test_put_slotKeys() {
+    Map<Object, Object> expected = new HashMap<>();
+    for (String key : XWikiContext.SLOT_KEYS) {
+      context.put(key, key + "Value");
+      expected.put(key, key + "Value");
+    }
+    context.put("other", "otherValue");
+    expected.put("other", "otherValue");
+    assertEquals(expected, context);
+    assertEquals(expected.size(), context.size());
+    for (String key : XWikiContext.SLOT_KEYS) {
+      assertEquals(key + "Value", context.get(key));
+      assertEquals(key + "Value", context.remove(key));
+      assertFalse(context.containsKey(key));
+    }
+    assertEquals(1, context.size());
+  }
+
+  @Test
+  public void test_put_wiki() {
+    context.put("wiki", "db");
+    assertEquals("db", context.getDatabase());
+    assertEquals("db", context.getOriginalDatabase());
+    assertEquals("db", context.get("originalWiki"));
+    context.setDatabase("other");
+    assertEquals("other", context.get("wiki"));
+    assertEquals("db", context.get("originalWiki"));
+    assertEquals("other", context.remove("wiki"));
+    assertNull(context.getDatabase());
+    assertEquals(1, context.size());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void test_put_nullValue() {
+    context.put("key", null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void test_get_nullKey() {
+    context.get(null);
+  }
+
+  @Test
+  public void test_entrySet_iteratorRemove() {
+    context.put("doc", "doc");
+    context.put("vcontext", "vcontext");
+    context.put("a", "a");
+    context.put("b", "b");
+    Iterator<Map.Entry<Object, Object>> iter = context.entrySet().iterator();
+    int count = 0;
+    while (iter.hasNext()) {
+      Map.Entry<Object, Object> entry = iter.next();
+      assertEquals(entry.getKey(), entry.getValue());
+      if ("doc".equals(entry.getKey()) || "a".equals(entry.getKey())) {
+        iter.remove();
+      }
+      count++;
+    }
+    assertEquals(4, count);
+    assertEquals(2, context.size());
+    assertTrue(context.containsKey("vcontext"));
+    assertTrue(context.containsKey("b"));
+    assertNull(context.getDoc());
+  }
+
+  @Test
+  public void test_entrySet_setValue() {
+    context.put("sdoc", "sdoc");
+    context.entrySet().iterator().next().setValue("changed");
+    assertEquals("changed", context.get("sdoc"));
+  }
+
+  @Test
+  public void test_fork() {
+    context.setDatabase("db");
+    context.setAction("view");
+    context.put("idoc", "idoc");
+    context.put("key", "value");
+    context.addDisplayedField("field");
+    XWikiContext fork = context.fork();
+    assertNotSame(context, fork);
+    assertEquals(context, fork);
+    assertEquals("db", fork.getDatabase());
+    assertEquals("view", fork.getAction());
+    assertEquals(context.getDisplayedFields(), fork.getDisplayedFields());
+    fork.put("key", "forked");
+    fork.remove("idoc");
+    fork.addDisplayedField("forked");
+    assertEquals("value", context.get("key"));
+    assertEquals("idoc", context.get("idoc"));
+    assertEquals(1, context.getDisplayedFields().size());
+  }
+
+}
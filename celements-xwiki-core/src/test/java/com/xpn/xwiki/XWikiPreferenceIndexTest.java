@@ -0,0 +1,81 @@
+package com.xpn.xwiki;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiPreferenceIndex.Preferences;
+import com.xpn.xwiki.objects.BaseObject;
+
+public class XWikiPreferenceIndexTest {
+
+  private static final DocumentReference WIKI_PREFS = new DocumentReference("wiki", "XWiki",
+      "XWikiPreferences");
+  private static final DocumentReference SPACE_PREFS = new DocumentReference("wiki", "space",
+      "WebPreferences");
+
+  private XWikiPreferenceIndex index;
+
+  @Before
+  public void prepare() {
+    index = new XWikiPreferenceIndex();
+  }
+
+  @Test
+  public void test_resolve() {
+    BaseObject translated = new BaseObject();
+    translated.setStringValue("skin", "XWiki.Skin");
+    translated.setStringValue("title", "");
+    BaseObject fallback = new BaseObject();
+    fallback.setStringValue("skin", "XWiki.DefaultSkin");
+    fallback.setStringValue("title", "Title");
+    Preferences preferences = XWikiPreferenceIndex.resolve(WIKI_PREFS, translated, fallback);
+    assertEquals(WIKI_PREFS, preferences.getDocumentReference());
+    assertEquals("XWiki.Skin", preferences.get("skin"));
+    assertEquals("Title", preferences.get("title"));
+    assertEquals("", preferences.get("unknown"));
+    assertEquals("", XWikiPreferenceIndex.resolve(WIKI_PREFS, null, null).get("skin"));
+  }
+
+  @Test
+  public void test_get_put() {
+    Preferences wikiPrefs = XWikiPreferenceIndex.resolve(WIKI_PREFS, null, null);
+    Preferences spacePrefs = XWikiPreferenceIndex.resolve(SPACE_PREFS, null, null);
+    index.put("wiki", null, "de", wikiPrefs, index.getGeneration());
+    index.put("wiki", "space", null, spacePrefs, index.getGeneration());
+    assertSame(wikiPrefs, index.get("wiki", null, "de"));
+    assertSame(spacePrefs, index.get("wiki", "space", null));
+    assertNull(index.get("wiki", null, "en"));
+    assertNull(index.get("wiki", null, null));
+    assertNull(index.get("wiki", "space", ""));
+    assertNull(index.get("other", null, "de"));
+  }
+
+  @Test
+  public void test_put_invalidatedWhileReading() {
+    long generation = index.getGeneration();
+    index.invalidate(SPACE_PREFS);
+    index.put("wiki", "space", "de", XWikiPreferenceIndex.resolve(SPACE_PREFS, null, null),
+        generation);
+    assertNull(index.get("wiki", "space", "de"));
+  }
+
+  @Test
+  public void test_invalidate() {
+    index.put("wiki", null, "de", XWikiPreferenceIndex.resolve(WIKI_PREFS, null, null),
+        index.getGeneration());
+    index.put("wiki", "space", "de", XWikiPreferenceIndex.resolve(SPACE_PREFS, null, null),
+        index.getGeneration());
+    index.invalidate(new DocumentReference("wiki", "space", "Other"));
+    index.invalidate(new DocumentReference("other", "space", "WebPreferences"));
+    assertNotNull(index.get("wiki", "space", "de"));
+    index.invalidate(SPACE_PREFS);
+    assertNull(index.get("wiki", "space", "de"));
+    assertNotNull(index.get("wiki", null, "de"));
+    index.invalidate(WIKI_PREFS);
+    assertNull(index.get("wiki", null, "de"));
+  }
+
+}
@@ -428,6 +428,28 @@ public class XWikiDocumentTest extends AbstractBridgedXWikiComponentTestCase {
     assertEquals(2, duplicatedDocument.getXObjects(duplicatedClassReference).size());
   }
 
+  public void testCloneCopyOnWrite() {
+    DocumentReference classReference = new DocumentReference("wiki", DOCSPACE, DOCNAME);
+    XWikiDocument document = new XWikiDocument(new DocumentReference("wiki", DOCSPACE, DOCNAME));
+    BaseObject object = new BaseObject();
+    object.setXClassReference(classReference);
+    document.addXObject(object);
+    document.setContentDirty(false);
+
+    XWikiDocument clonedDocument = document.cloneCopyOnWrite();
+    assertEquals(Collections.singleton(classReference), clonedDocument.getXObjectClassRefs());
+    assertSame(object, clonedDocument.getXObjectsReadOnly(classReference).get(0));
+
+    BaseObject clonedObject = clonedDocument.getXObject(classReference, 0);
+    assertNotSame(object, clonedObject);
+    assertEquals(object, clonedObject);
+    assertSame(clonedObject, clonedDocument.getXObjectsReadOnly(classReference).get(0));
+    assertFalse(clonedDocument.isContentDirty());
+
+    clonedDocument.removeXObject(clonedObject);
+    assertSame(object, document.getXObject(classReference, 0));
+  }
+
   public void testCloneWithAbsoluteClassReference() {
     XWikiDocument document = new XWikiDocument(new DocumentReference("wiki", DOCSPACE, DOCNAME));
 
@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.internal.cache;
 
+import java.util.Collections;
+
 import org.jmock.Mock;
 import org.junit.Before;
 import org.junit.Test;
@@ -101,4 +103,23 @@ public class DefaultDocumentCacheTest extends AbstractBridgedXWikiComponentTestC
     Assert.assertNull(this.cache.get(this.document.getDocumentReference()));
     Assert.assertNull(this.cache.get(this.document.getDocumentReference(), "ext1", "ext2"));
   }
+
+  @Test
+  public void testSetAfterModification() throws Exception {
+    DocumentReference dependency = new DocumentReference("wiki", "space", "dependency");
+    long generation = this.cache.getGeneration();
+
+    // the dependency is modified while the data is being computed
+    getComponentManager().lookup(ObservationManager.class).notify(
+        new DocumentUpdatedEvent(dependency), this.document, getContext());
+    this.cache.set("outdated", Collections.singleton(dependency), generation,
+        this.document.getDocumentReference(), "ext");
+
+    Assert.assertNull(this.cache.get(this.document.getDocumentReference(), "ext"));
+
+    this.cache.set("data", Collections.singleton(dependency), this.cache.getGeneration(),
+        this.document.getDocumentReference(), "ext");
+
+    Assert.assertEquals("data", this.cache.get(this.document.getDocumentReference(), "ext"));
+  }
 }
@@ -0,0 +1,47 @@
+package com.xpn.xwiki.internal.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryListener;
+
+/**
+ * Map backed {@link Cache} for tests mocking the {@link org.xwiki.cache.CacheManager}.
+ */
+public class MapCache<T> implements Cache<T> {
+
+  private final Map<String, T> map = new ConcurrentHashMap<>();
+
+  @Override
+  public void set(String key, T value) {
+    map.put(key, value);
+  }
+
+  @Override
+  public T get(String key) {
+    return map.get(key);
+  }
+
+  @Override
+  public void remove(String key) {
+    map.remove(key);
+  }
+
+  @Override
+  public void removeAll() {
+    map.clear();
+  }
+
+  @Override
+  public void dispose() {
+    map.clear();
+  }
+
+  @Override
+  public void addCacheEntryListener(CacheEntryListener<T> listener) {}
+
+  @Override
+  public void removeCacheEntryListener(CacheEntryListener<T> listener) {}
+
+}
@@ -0,0 +1,266 @@
+package com.xpn.xwiki.internal.cache.query;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.easymock.Capture;
+import org.hibernate.EntityMode;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.query.Query;
+import org.xwiki.test.MockConfigurationSource;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.doc.XWikiLock;
+import com.xpn.xwiki.internal.cache.MapCache;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.StringProperty;
+import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
+import com.xpn.xwiki.test.AbstractComponentTest;
+import com.xpn.xwiki.web.Utils;
+
+public class DefaultQueryResultCacheTest extends AbstractComponentTest {
+
+  private static final List<Object> RESULT = ImmutableList.of("value");
+
+  private QueryResultCache queryCache;
+
+  private MockConfigurationSource configSource;
+  private final Capture<CacheConfiguration> cacheConfigCapture = newCapture();
+  private RemoteObservationManagerContext remoteContextMock;
+  private HibernateSessionFactory sessionFactoryMock;
+  private final Map<String, Class<?>> entities = new LinkedHashMap<>();
+  private final Map<String, Serializable[]> spaces = new HashMap<>();
+
+  private Query docQuery;
+  private Query attQuery;
+  private Query objQuery;
+  private Query customQuery;
+  private Query otherQuery;
+
+  @Before
+  public void prepareTest() throws Exception {
+    configSource = new MockConfigurationSource();
+    configSource.setProperty("core.querycache.enabled", true);
+    configSource.setProperty("core.querycache.queries", ImmutableList.of(".*"));
+    registerComponentMock(ConfigurationSource.class, "xwikiproperties", configSource);
+    expect(registerComponentMock(CacheManager.class).createNewCache(capture(
+        cacheConfigCapture))).andAnswer(() -> new MapCache<>()).anyTimes();
+    remoteContextMock = registerComponentMock(RemoteObservationManagerContext.class);
+    sessionFactoryMock = registerComponentMock(HibernateSessionFactory.class);
+    addEntity(XWikiDocument.class.getName(), XWikiDocument.class, "xwikidoc");
+    addEntity(XWikiAttachment.class.getName(), XWikiAttachment.class, "xwikiattachment");
+    addEntity(BaseObject.class.getName(), BaseObject.class, "xwikiobjects");
+    addEntity(StringProperty.class.getName(), StringProperty.class, "xwikiproperties",
+        "xwikistrings");
+    addEntity(XWikiLock.class.getName(), XWikiLock.class, "xwikilock");
+    addEntity("Classes.Custom", null, "custom_table");
+    addEntity("Classes.Other", null, "other_table");
+    docQuery = createQuery("docs");
+    attQuery = createQuery("attachments");
+    objQuery = createQuery("objects");
+    customQuery = createQuery("custom");
+    otherQuery = createQuery("other");
+  }
+
+  @Test
+  public void test_initialize_duration() throws Exception {
+    replayDefault();
+    queryCache = Utils.getComponent(QueryResultCache.class);
+    verifyDefault();
+    assertEquals(3600, getLruConfiguration().getTimeToLive());
+    assertEquals(1000, getLruConfiguration().getMaxEntries());
+  }
+
+  @Test
+  public void test_initialize_duration_configured() throws Exception {
+    configSource.setProperty("core.querycache.duration", 60);
+    replayDefault();
+    queryCache = Utils.getComponent(QueryResultCache.class);
+    verifyDefault();
+    assertEquals(60, getLruConfiguration().getTimeToLive());
+  }
+
+  @Test
+  public void test_set_onlyDocumentTables() throws Exception {
+    expectSessionFactory();
+    replayDefault();
+    queryCache = Utils.getComponent(QueryResultCache.class);
+    queryCache.set("xwikidb", docQuery, RESULT, ImmutableSet.of("xwikidoc"), 0);
+    queryCache.set("xwikidb", otherQuery, RESULT, ImmutableSet.of("xwikidoc", "xwikilock"), 0);
+    verifyDefault();
+    assertEquals(RESULT, queryCache.get("xwikidb", docQuery));
+    assertNull("lock table isn't written by saves", queryCache.get("xwikidb", otherQuery));
+  }
+
+  @Test
+  public void test_set_customMappingChanged() throws Exception {
+    SessionFactoryImplementor oldFactory = createSessionFactory();
+    addEntity("Classes.New", null, "new_table");
+    expect(sessionFactoryMock.getSessionFactory()).andReturn(oldFactory).times(2);
+    expectSessionFactory();
+    replayDefault();
+    queryCache = Utils.getComponent(QueryResultCache.class);
+    queryCache.set("xwikidb", customQuery, RESULT, ImmutableSet.of("new_table"), 0);
+    queryCache.set("xwikidb", docQuery, RESULT, ImmutableSet.of("xwikidoc"), 0);
+    assertNull(queryCache.get("xwikidb", customQuery));
+    queryCache.set("xwikidb", customQuery, RESULT, ImmutableSet.of("new_table"), 0);
+    verifyDefault();
+    assertEquals(RESULT, queryCache.get("xwikidb", customQuery));
+  }
+
+  @Test
+  public void test_onEvent_document() throws Exception {
+    XWikiDocument doc = new XWikiDocument(new DocumentReference("xwikidb", "Space", "Doc"));
+    doc.setOriginalDocument(new XWikiDocument(doc.getDocumentReference()));
+    expectSessionFactory();
+    expectRemoteState(false);
+    replayDefault();
+    setAll("xwikidb");
+    ((EventListener) queryCache).onEvent(new DocumentUpdatedEvent(), doc, null);
+    verifyDefault();
+    assertNull(queryCache.get("xwikidb", docQuery));
+    assertNotNull(queryCache.get("xwikidb", attQuery));
+    assertNotNull(queryCache.get("xwikidb", objQuery));
+    assertNotNull(queryCache.get("xwikidb", customQuery));
+    assertNotNull(queryCache.get("xwikidb", otherQuery));
+  }
+
+  @Test
+  public void test_onEvent_removedAttachment() throws Exception {
+    XWikiDocument doc = new XWikiDocument(new DocumentReference("xwikidb", "Space", "Doc"));
+    XWikiDocument origDoc = new XWikiDocument(doc.getDocumentReference());
+    origDoc.setAttachmentList(ImmutableList.of(new XWikiAttachment(origDoc, "file.txt")));
+    doc.setOriginalDocument(origDoc);
+    expectSessionFactory();
+    expectRemoteState(false);
+    replayDefault();
+    setAll("xwikidb");
+    ((EventListener) queryCache).onEvent(new DocumentUpdatedEvent(), doc, null);
+    verifyDefault();
+    assertNull(queryCache.get("xwikidb", docQuery));
+    assertNull(queryCache.get("xwikidb", attQuery));
+    assertNotNull(queryCache.get("xwikidb", objQuery));
+    assertNotNull(queryCache.get("xwikidb", customQuery));
+  }
+
+  @Test
+  public void test_onEvent_objects() throws Exception {
+    XWikiDocument doc = new XWikiDocument(new DocumentReference("xwikidb", "Space", "Doc"));
+    BaseObject obj = new BaseObject();
+    obj.setXClassReference(new DocumentReference("xwikidb", "Classes", "Custom"));
+    doc.addXObject(obj);
+    doc.setOriginalDocument(new XWikiDocument(doc.getDocumentReference()));
+    expectSessionFactory();
+    expectRemoteState(false);
+    replayDefault();
+    setAll("xwikidb");
+    setAll("otherdb");
+    ((EventListener) queryCache).onEvent(new DocumentUpdatedEvent(), doc, null);
+    verifyDefault();
+    assertNull(queryCache.get("xwikidb", docQuery));
+    assertNotNull(queryCache.get("xwikidb", attQuery));
+    assertNull(queryCache.get("xwikidb", objQuery));
+    assertNull(queryCache.get("xwikidb", customQuery));
+    assertNotNull("other custom class not saved", queryCache.get("xwikidb", otherQuery));
+    assertNotNull("other wiki not affected", queryCache.get("otherdb", objQuery));
+  }
+
+  @Test
+  public void test_onEvent_remote() throws Exception {
+    XWikiDocument doc = new XWikiDocument(new DocumentReference("xwikidb", "Space", "Doc"));
+    expectSessionFactory();
+    expectRemoteState(true);
+    replayDefault();
+    setAll("xwikidb");
+    setAll("otherdb");
+    ((EventListener) queryCache).onEvent(new DocumentUpdatedEvent(), doc, null);
+    verifyDefault();
+    for (Query query : ImmutableList.of(docQuery, attQuery, objQuery, customQuery, otherQuery)) {
+      assertNull(queryCache.get("xwikidb", query));
+      assertNotNull(queryCache.get("otherdb", query));
+    }
+  }
+
+  private void setAll(String wiki) {
+    queryCache = Utils.getComponent(QueryResultCache.class);
+    queryCache.set(wiki, docQuery, RESULT, ImmutableSet.of("xwikidoc"), 0);
+    queryCache.set(wiki, attQuery, RESULT, ImmutableSet.of("xwikiattachment"), 0);
+    queryCache.set(wiki, objQuery, RESULT, ImmutableSet.of("xwikiobjects", "xwikistrings"), 0);
+    queryCache.set(wiki, customQuery, RESULT, ImmutableSet.of("custom_table"), 0);
+    queryCache.set(wiki, otherQuery, RESULT, ImmutableSet.of("other_table"), 0);
+    for (Query query : ImmutableList.of(docQuery, attQuery, objQuery, customQuery, otherQuery)) {
+      assertNotNull(queryCache.get(wiki, query));
+    }
+  }
+
+  private void addEntity(String name, Class<?> mappedClass, String... tables) {
+    entities.put(name, mappedClass);
+    spaces.put(name, tables);
+  }
+
+  private void expectSessionFactory() {
+    expect(sessionFactoryMock.getSessionFactory()).andReturn(createSessionFactory()).anyTimes();
+  }
+
+  private void expectRemoteState(boolean remote) {
+    expect(remoteContextMock.isRemoteState()).andReturn(remote).anyTimes();
+  }
+
+  private LRUEvictionConfiguration getLruConfiguration() {
+    return (LRUEvictionConfiguration) cacheConfigCapture.getValue().get(
+        EntryEvictionConfiguration.CONFIGURATIONID);
+  }
+
+  private SessionFactoryImplementor createSessionFactory() {
+    SessionFactoryImplementor factoryMock = createDefaultMock(SessionFactoryImplementor.class);
+    Map<String, ClassMetadata> metadata = new LinkedHashMap<>();
+    for (Map.Entry<String, Class<?>> entity : entities.entrySet()) {
+      ClassMetadata metadataMock = createDefaultMock(ClassMetadata.class);
+      expect(metadataMock.getMappedClass(EntityMode.POJO)).andReturn(entity.getValue())
+          .anyTimes();
+      metadata.put(entity.getKey(), metadataMock);
+      EntityPersister persisterMock = createDefaultMock(EntityPersister.class);
+      expect(persisterMock.getQuerySpaces()).andReturn(spaces.get(entity.getKey())).anyTimes();
+      expect(factoryMock.getEntityPersister(entity.getKey())).andReturn(persisterMock)
+          .anyTimes();
+    }
+    expect(factoryMock.getAllClassMetadata()).andReturn(metadata).anyTimes();
+    expect(factoryMock.getAllCollectionMetadata()).andReturn(Collections.emptyMap()).anyTimes();
+    return factoryMock;
+  }
+
+  private Query createQuery(String statement) {
+    Query queryMock = createDefaultMock(Query.class);
+    expect(queryMock.getStatement()).andReturn(statement).anyTimes();
+    expect(queryMock.isNamed()).andReturn(false).anyTimes();
+    expect(queryMock.getOffset()).andReturn(0).anyTimes();
+    expect(queryMock.getLimit()).andReturn(0).anyTimes();
+    expect(queryMock.getNamedParameters()).andReturn(Collections.emptyMap()).anyTimes();
+    expect(queryMock.getPositionalParameters()).andReturn(Collections.emptyMap()).anyTimes();
+    return queryMock;
+  }
+
+}
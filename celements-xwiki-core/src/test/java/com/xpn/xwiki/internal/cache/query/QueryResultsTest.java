@@ -0,0 +1,209 @@
+package com.xpn.xwiki.internal.cache.query;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.internal.cache.query.QueryResults.Key;
+
+public class QueryResultsTest {
+
+  private static final List<String> DOC_TABLES = Arrays.asList("xwikidoc");
+  private static final List<String> OBJ_TABLES = Arrays.asList("xwikiobjects",
+      "xwikiproperties", "xwikistrings");
+
+  private QueryResults results;
+
+  @Before
+  public void prepare() {
+    results = new QueryResults(new LruCache<>(3));
+  }
+
+  @Test
+  public void test_get_put() {
+    List<Object> result = Arrays.<Object>asList("a", null);
+    results.put("wiki", newKey("getSpaces", "a"), result, DOC_TABLES, results.getGeneration());
+    assertEquals(result, results.get("wiki", newKey("getSpaces", "a")));
+    assertNull(results.get("wiki", newKey("getSpaces", "b")));
+    assertNull(results.get("other", newKey("getSpaces", "a")));
+    assertNull(results.get("wiki", new Key("getSpaces", true, ImmutableMap.of("space", "a"),
+        Collections.emptyMap(), 10, 0)));
+    assertEquals(ImmutableMap.of("getSpaces", ImmutableMap.of("hits", 1L, "misses", 3L)),
+        results.getStatistics());
+  }
+
+  @Test
+  public void test_put_invalidatedWhileReading() {
+    long generation = results.getGeneration();
+    results.invalidate("wiki", DOC_TABLES);
+    results.put("wiki", newKey("getSpaces", "a"), ImmutableList.of(), DOC_TABLES, generation);
+    assertNull(results.get("wiki", newKey("getSpaces", "a")));
+  }
+
+  @Test
+  public void test_put_capacity() {
+    for (String space : Arrays.asList("a", "b", "c", "d")) {
+      results.put("wiki", newKey("getSpaces", space), ImmutableList.of(), DOC_TABLES,
+          results.getGeneration());
+    }
+    assertNull(results.get("wiki", newKey("getSpaces", "a")));
+    assertNotNull(results.get("wiki", newKey("getSpaces", "d")));
+  }
+
+  @Test
+  public void test_put_capacity_reput() {
+    for (String space : Arrays.asList("a", "b", "c", "d", "a")) {
+      results.put("wiki", newKey("getSpaces", space), ImmutableList.of(), DOC_TABLES,
+          results.getGeneration());
+    }
+    assertNotNull("evicted result stored again", results.get("wiki", newKey("getSpaces", "a")));
+    results.invalidate("wiki", DOC_TABLES);
+    assertNull(results.get("wiki", newKey("getSpaces", "a")));
+    assertNull(results.get("wiki", newKey("getSpaces", "d")));
+  }
+
+  @Test
+  public void test_invalidateAll() {
+    results.put("wiki", newKey("getSpaces", "a"), ImmutableList.of(), DOC_TABLES,
+        results.getGeneration());
+    results.put("other", newKey("getSpaces", "a"), ImmutableList.of(), DOC_TABLES,
+        results.getGeneration());
+    long generation = results.getGeneration();
+    results.invalidateAll();
+    assertNotEquals(generation, results.getGeneration());
+    assertNull(results.get("wiki", newKey("getSpaces", "a")));
+    assertNull(results.get("other", newKey("getSpaces", "a")));
+  }
+
+  @Test
+  public void test_invalidate_tables() {
+    results.put("wiki", newKey("getSpaces", "a"), ImmutableList.of(), DOC_TABLES,
+        results.getGeneration());
+    results.put("wiki", newKey("getObjects", "a"), ImmutableList.of(), OBJ_TABLES,
+        results.getGeneration());
+    results.put("other", newKey("getObjects", "a"), ImmutableList.of(), OBJ_TABLES,
+        results.getGeneration());
+    results.invalidate("wiki", Arrays.asList("xwikistrings", "xwikiintegers"));
+    assertNotNull(results.get("wiki", newKey("getSpaces", "a")));
+    assertNull(results.get("wiki", newKey("getObjects", "a")));
+    assertNotNull(results.get("other", newKey("getObjects", "a")));
+    results.invalidate("wiki");
+    assertNull(results.get("wiki", newKey("getSpaces", "a")));
+  }
+
+  private static Key newKey(String statement, String space) {
+    return new Key(statement, true, ImmutableMap.of("space", space), Collections.emptyMap(), 0,
+        0);
+  }
+
+  /**
+   * not thread safe LRU cache notifying removals like the cache implementations
+   */
+  private static class LruCache<T> implements Cache<T> {
+
+    private final List<CacheEntryListener<T>> listeners = new ArrayList<>();
+    private final Map<String, T> map;
+
+    LruCache(int capacity) {
+      map = new LinkedHashMap<String, T>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+          if (size() > capacity) {
+            notifyRemoved(eldest.getKey(), eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public void set(String key, T value) {
+      map.put(key, value);
+    }
+
+    @Override
+    public T get(String key) {
+      return map.get(key);
+    }
+
+    @Override
+    public void remove(String key) {
+      T value = map.remove(key);
+      if (value != null) {
+        notifyRemoved(key, value);
+      }
+    }
+
+    @Override
+    public void removeAll() {
+      new ArrayList<>(map.keySet()).forEach(this::remove);
+    }
+
+    @Override
+    public void dispose() {
+      map.clear();
+    }
+
+    @Override
+    public void addCacheEntryListener(CacheEntryListener<T> listener) {
+      listeners.add(listener);
+    }
+
+    @Override
+    public void removeCacheEntryListener(CacheEntryListener<T> listener) {
+      listeners.remove(listener);
+    }
+
+    private void notifyRemoved(String key, T value) {
+      CacheEntry<T> entry = new CacheEntry<T>() {
+
+        @Override
+        public Cache<T> getCache() {
+          return LruCache.this;
+        }
+
+        @Override
+        public String getKey() {
+          return key;
+        }
+
+        @Override
+        public T getValue() {
+          return value;
+        }
+      };
+      listeners.forEach(listener -> listener.cacheEntryRemoved(new CacheEntryEvent<T>() {
+
+        @Override
+        public Cache<T> getCache() {
+          return LruCache.this;
+        }
+
+        @Override
+        public CacheEntry<T> getEntry() {
+          return entry;
+        }
+      }));
+    }
+
+  }
+
+}
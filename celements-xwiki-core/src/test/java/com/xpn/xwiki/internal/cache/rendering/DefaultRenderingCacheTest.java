@@ -94,4 +94,31 @@ public class DefaultRenderingCacheTest extends AbstractBridgedXWikiComponentTest
         this.renderingCache.getRenderedContent(this.document.getDocumentReference(),
             "source", getContext()));
   }
+
+  @Test
+  public void testDependencyBasedCleanup() throws Exception {
+    DocumentReference includedReference = new DocumentReference("wiki", "space", "included");
+    getConfigurationSource().setProperty("core.renderingcache.documents",
+        Collections.singletonList(this.document.getPrefixedFullName()));
+
+    assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(),
+        "source", getContext()));
+    RenderingDependencies.record(getContext(), includedReference);
+    this.renderingCache.setRenderedContent(this.document.getDocumentReference(), "source",
+        "renderedContent", getContext());
+
+    getComponentManager().lookup(ObservationManager.class).notify(
+        new DocumentUpdatedEvent(new DocumentReference("wiki", "space", "other")), this.document,
+        getContext());
+
+    assertEquals("renderedContent",
+        this.renderingCache.getRenderedContent(this.document.getDocumentReference(),
+            "source", getContext()));
+
+    getComponentManager().lookup(ObservationManager.class).notify(
+        new DocumentUpdatedEvent(includedReference), this.document, getContext());
+
+    assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(),
+        "source", getContext()));
+  }
 }
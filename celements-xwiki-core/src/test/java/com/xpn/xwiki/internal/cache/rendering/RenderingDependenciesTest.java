@@ -0,0 +1,95 @@
+package com.xpn.xwiki.internal.cache.rendering;
+
+import static org.junit.Assert.*;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.XWikiContext;
+
+public class RenderingDependenciesTest {
+
+  private static final DocumentReference DOC = new DocumentReference("wiki", "space", "doc");
+  private static final DocumentReference INCL = new DocumentReference("wiki", "space", "incl");
+  private static final DocumentReference PREFS = new DocumentReference("wiki", "XWiki",
+      "XWikiPreferences");
+
+  private XWikiContext context;
+
+  @Before
+  public void prepare() {
+    context = new XWikiContext();
+  }
+
+  @Test
+  public void test_record_notStarted() {
+    RenderingDependencies.record(context, INCL);
+    assertNull(context.get(RenderingDependencies.CONTEXT_KEY));
+    assertEquals(Optional.of(ImmutableSet.of()), RenderingDependencies.stop(context, DOC, "src"));
+  }
+
+  @Test
+  public void test_record_nested() {
+    RenderingDependencies.start(context, DOC, "src", 0);
+    RenderingDependencies.record(context, PREFS);
+    RenderingDependencies.start(context, INCL, "incl", 0);
+    RenderingDependencies.record(context, INCL);
+    assertEquals(ImmutableSet.of(INCL), RenderingDependencies.stop(context, INCL, "incl").get());
+    RenderingDependencies.record(context, DOC);
+    assertEquals(ImmutableSet.of(DOC, INCL, PREFS), RenderingDependencies.stop(context, DOC,
+        "src").get());
+    assertNull(context.get(RenderingDependencies.CONTEXT_KEY));
+  }
+
+  @Test
+  public void test_recordAll() {
+    RenderingDependencies.start(context, DOC, "src", 0);
+    RenderingDependencies.recordAll(context, ImmutableSet.of(INCL, PREFS));
+    assertEquals(ImmutableSet.of(INCL, PREFS), RenderingDependencies.stop(context, DOC,
+        "src").get());
+  }
+
+  @Test
+  public void test_getGeneration() {
+    assertFalse(RenderingDependencies.getGeneration(context, DOC, "src").isPresent());
+    RenderingDependencies.start(context, DOC, "src", 3);
+    RenderingDependencies.start(context, INCL, "incl", 5);
+    assertEquals(OptionalLong.of(3), RenderingDependencies.getGeneration(context, DOC, "src"));
+    assertEquals(OptionalLong.of(5), RenderingDependencies.getGeneration(context, INCL, "incl"));
+  }
+
+  @Test
+  public void test_stop_discardsAbandoned() {
+    RenderingDependencies.start(context, DOC, "src", 0);
+    RenderingDependencies.start(context, INCL, "failing", 0);
+    RenderingDependencies.record(context, INCL);
+    assertEquals(ImmutableSet.of(INCL), RenderingDependencies.stop(context, DOC, "src").get());
+    assertNull(context.get(RenderingDependencies.CONTEXT_KEY));
+  }
+
+  @Test
+  public void test_stop_overflow() {
+    RenderingDependencies.start(context, DOC, "src", 0);
+    for (int i = 0; i <= RenderingDependencies.MAX_DEPENDENCIES; i++) {
+      RenderingDependencies.record(context, new DocumentReference("wiki", "space", "doc" + i));
+    }
+    assertFalse(RenderingDependencies.stop(context, DOC, "src").isPresent());
+  }
+
+  @Test
+  public void test_record_otherThread() throws Exception {
+    RenderingDependencies.start(context, DOC, "src", 0);
+    Thread thread = new Thread(() -> RenderingDependencies.record(context, INCL));
+    thread.start();
+    thread.join();
+    Set<DocumentReference> dependencies = RenderingDependencies.stop(context, DOC, "src").get();
+    assertTrue(dependencies.isEmpty());
+  }
+
+}
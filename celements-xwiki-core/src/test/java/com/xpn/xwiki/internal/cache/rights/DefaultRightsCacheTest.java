@@ -0,0 +1,233 @@
+package com.xpn.xwiki.internal.cache.rights;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.test.MockConfigurationSource;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.MapCache;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.AbstractComponentTest;
+import com.xpn.xwiki.web.Utils;
+
+public class DefaultRightsCacheTest extends AbstractComponentTest {
+
+  private static final String DOC_KEY = "xwikidb:Space.Doc";
+  private static final String OTHER_DOC_KEY = "xwikidb:Other.Doc";
+  private static final String DECISION_KEY = "xwikidb:view:true:xwikidb:XWiki.user";
+
+  private RightsCache rightsCache;
+
+  private MockConfigurationSource configSource;
+  private RemoteObservationManagerContext remoteContextMock;
+
+  @Before
+  public void prepareTest() throws Exception {
+    configSource = new MockConfigurationSource();
+    configSource.setProperty("core.rightscache.enabled", true);
+    registerComponentMock(ConfigurationSource.class, "xwikiproperties", configSource);
+    expect(registerComponentMock(CacheManager.class).createNewCache(isA(
+        CacheConfiguration.class))).andAnswer(() -> new MapCache<>()).anyTimes();
+    remoteContextMock = registerComponentMock(RemoteObservationManagerContext.class);
+  }
+
+  @Test
+  public void test_getDecision() throws Exception {
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    assertTrue(rightsCache.isEnabled());
+    assertNull(rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+    rightsCache.setDecision(DOC_KEY, DECISION_KEY, true, rightsCache.getGeneration());
+    rightsCache.setDecision(DOC_KEY, "xwikidb:edit:true:xwikidb:XWiki.user", false,
+        rightsCache.getGeneration());
+    verifyDefault();
+    assertEquals(Boolean.TRUE, rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+    assertEquals(Boolean.FALSE, rightsCache.getDecision(DOC_KEY,
+        "xwikidb:edit:true:xwikidb:XWiki.user"));
+    assertNull(rightsCache.getDecision(OTHER_DOC_KEY, DECISION_KEY));
+  }
+
+  @Test
+  public void test_getDecision_disabled() throws Exception {
+    configSource.setProperty("core.rightscache.enabled", false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    assertFalse(rightsCache.isEnabled());
+    rightsCache.setDecision(DOC_KEY, DECISION_KEY, true, rightsCache.getGeneration());
+    verifyDefault();
+    assertNull(rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+  }
+
+  @Test
+  public void test_setDecision_invalidatedWhileComputing() throws Exception {
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    long generation = rightsCache.getGeneration();
+    // a concurrent save of another document while the decision is computed
+    onEvent(new DocumentUpdatedEvent(), createDoc("Other", "Doc"));
+    rightsCache.setDecision(DOC_KEY, DECISION_KEY, true, generation);
+    assertNull("decision computed before the invalidation",
+        rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+    rightsCache.setDecision(DOC_KEY, DECISION_KEY, true, rightsCache.getGeneration());
+    verifyDefault();
+    assertEquals(Boolean.TRUE, rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+  }
+
+  @Test
+  public void test_getAcl() throws Exception {
+    XWikiDocument doc = createDoc("Space", "WebPreferences");
+    addObject(doc, "XWiki.XWikiGlobalRights");
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    RightsAcl acl = rightsCache.getAcl(doc, "XWiki.XWikiGlobalRights", "users");
+    assertSame(acl, rightsCache.getAcl(doc, "XWiki.XWikiGlobalRights", "users"));
+    assertNotSame(acl, rightsCache.getAcl(doc, "XWiki.XWikiGlobalRights", "groups"));
+    doc.setVersion("2.1");
+    RightsAcl newAcl = rightsCache.getAcl(doc, "XWiki.XWikiGlobalRights", "users");
+    verifyDefault();
+    assertNotSame("recompiled for the new version", acl, newAcl);
+    assertTrue(newAcl.isCompiledFrom(doc));
+  }
+
+  @Test
+  public void test_onEvent_document() throws Exception {
+    XWikiDocument doc = createDoc("Space", "Doc");
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    RightsAcl acl = rightsCache.getAcl(doc, "XWiki.XWikiRights", "users");
+    onEvent(new DocumentUpdatedEvent(), doc);
+    verifyDefault();
+    assertNull(rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+    assertNotNull("other document not affected", rightsCache.getDecision(OTHER_DOC_KEY,
+        DECISION_KEY));
+    assertNotSame(acl, rightsCache.getAcl(doc, "XWiki.XWikiRights", "users"));
+  }
+
+  @Test
+  public void test_onEvent_rights() throws Exception {
+    XWikiDocument doc = createDoc("Space", "Doc");
+    addObject(doc, "XWiki.XWikiRights");
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    onEvent(new DocumentUpdatedEvent(), doc);
+    verifyDefault();
+    assertNull(rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+    assertNotNull("document rights only affect the document", rightsCache.getDecision(
+        OTHER_DOC_KEY, DECISION_KEY));
+  }
+
+  @Test
+  public void test_onEvent_globalRights() throws Exception {
+    XWikiDocument doc = createDoc("Space", "Doc");
+    addObject(doc, "XWiki.XWikiGlobalRights");
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    onEvent(new DocumentUpdatedEvent(), doc);
+    verifyDefault();
+    assertAllDropped();
+  }
+
+  @Test
+  public void test_onEvent_deletedGroup() throws Exception {
+    XWikiDocument doc = createDoc("XWiki", "Group");
+    XWikiDocument origDoc = createDoc("XWiki", "Group");
+    addObject(origDoc, "XWiki.XWikiGroups");
+    doc.setOriginalDocument(origDoc);
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    onEvent(new DocumentDeletedEvent(), doc);
+    verifyDefault();
+    assertAllDropped();
+  }
+
+  @Test
+  public void test_onEvent_webPreferences() throws Exception {
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    onEvent(new DocumentUpdatedEvent(), createDoc("Space", "WebPreferences"));
+    verifyDefault();
+    assertAllDropped();
+  }
+
+  @Test
+  public void test_onEvent_xwikiPreferences() throws Exception {
+    expectRemoteState(false);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    onEvent(new DocumentUpdatedEvent(), createDoc("XWiki", "XWikiPreferences"));
+    verifyDefault();
+    assertAllDropped();
+  }
+
+  @Test
+  public void test_onEvent_remote() throws Exception {
+    expectRemoteState(true);
+    replayDefault();
+    rightsCache = Utils.getComponent(RightsCache.class);
+    setDecisions();
+    long generation = rightsCache.getGeneration();
+    onEvent(new DocumentUpdatedEvent(), createDoc("Space", "Doc"));
+    verifyDefault();
+    assertAllDropped();
+    assertNotEquals(generation, rightsCache.getGeneration());
+  }
+
+  private void setDecisions() {
+    rightsCache.setDecision(DOC_KEY, DECISION_KEY, true, rightsCache.getGeneration());
+    rightsCache.setDecision(OTHER_DOC_KEY, DECISION_KEY, false, rightsCache.getGeneration());
+  }
+
+  private void assertAllDropped() {
+    assertNull(rightsCache.getDecision(DOC_KEY, DECISION_KEY));
+    assertNull(rightsCache.getDecision(OTHER_DOC_KEY, DECISION_KEY));
+  }
+
+  private void onEvent(Event event, XWikiDocument doc) {
+    ((EventListener) rightsCache).onEvent(event, doc, getContext());
+  }
+
+  private void expectRemoteState(boolean remote) {
+    expect(remoteContextMock.isRemoteState()).andReturn(remote).anyTimes();
+  }
+
+  private XWikiDocument createDoc(String space, String name) {
+    XWikiDocument doc = new XWikiDocument(new DocumentReference("xwikidb", space, name));
+    doc.setNew(false);
+    doc.setVersion("1.1");
+    return doc;
+  }
+
+  private void addObject(XWikiDocument doc, String className) {
+    BaseObject obj = new BaseObject();
+    obj.setClassName(className);
+    obj.setStringValue("levels", "view");
+    obj.setStringValue("users", "XWiki.user");
+    obj.setIntValue("allow", 1);
+    doc.addXObject(obj);
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rights;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.AbstractBridgedXWikiComponentTestCase;
+
+/**
+ * Unit test for {@link RightsAcl}.
+ *
+ * @version $Id$
+ */
+public class RightsAclTest extends AbstractBridgedXWikiComponentTestCase {
+
+  private XWikiDocument doc;
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    this.doc = new XWikiDocument(new DocumentReference("wiki", "Space", "WebPreferences"));
+    this.doc.setVersion("1.1");
+    addRightsObject("view, edit", "user1,XWiki.user2", 1);
+    addRightsObject("view|comment", "Other.user3", 1);
+    addRightsObject("delete", "user1", 0);
+  }
+
+  private void addRightsObject(String levels, String users, int allow) {
+    BaseObject obj = new BaseObject();
+    obj.setClassName("XWiki.XWikiGlobalRights");
+    obj.setStringValue("levels", levels);
+    obj.setStringValue("users", users);
+    obj.setIntValue("allow", allow);
+    this.doc.addXObject(obj);
+  }
+
+  @Test
+  public void testGetNames() {
+    RightsAcl acl = RightsAcl.compile(this.doc, "XWiki.XWikiGlobalRights", "users");
+
+    Assert.assertEquals(ImmutableSet.of("XWiki.user1", "XWiki.user2", "Other.user3"),
+        acl.getNames("view", true));
+    Assert.assertEquals(ImmutableSet.of("XWiki.user1", "XWiki.user2"), acl.getNames("edit", true));
+    Assert.assertEquals(ImmutableSet.of("Other.user3"), acl.getNames("comment", true));
+    Assert.assertEquals(ImmutableSet.of("XWiki.user1"), acl.getNames("delete", false));
+    Assert.assertNull(acl.getNames("delete", true));
+    Assert.assertNull(acl.getNames("view", false));
+  }
+
+  @Test
+  public void testGetNamesOfOtherField() {
+    RightsAcl acl = RightsAcl.compile(this.doc, "XWiki.XWikiGlobalRights", "groups");
+
+    // a right object without groups restricts the level nonetheless
+    Assert.assertEquals(ImmutableSet.of(), acl.getNames("view", true));
+  }
+
+  @Test
+  public void testGetNamesOfOtherClass() {
+    RightsAcl acl = RightsAcl.compile(this.doc, "XWiki.XWikiRights", "users");
+
+    Assert.assertNull(acl.getNames("view", true));
+  }
+
+  @Test
+  public void testIsCompiledFrom() {
+    RightsAcl acl = RightsAcl.compile(this.doc, "XWiki.XWikiGlobalRights", "users");
+
+    Assert.assertTrue(acl.isCompiledFrom(this.doc));
+    this.doc.setVersion("2.1");
+    Assert.assertFalse(acl.isCompiledFrom(this.doc));
+  }
+
+}
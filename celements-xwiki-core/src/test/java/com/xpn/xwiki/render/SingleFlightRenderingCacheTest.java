@@ -0,0 +1,269 @@
+package com.xpn.xwiki.render;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import com.xpn.xwiki.render.SingleFlightRenderingCache.Outcome;
+import com.xpn.xwiki.render.SingleFlightRenderingCache.Result;
+
+public class SingleFlightRenderingCacheTest {
+
+  private static final List<String> DOC_KEYS = List.of("wiki:Space.Page");
+
+  private MapCache cache;
+  private SingleFlightRenderingCache renderCache;
+  private ExecutorService executor;
+
+  @Before
+  public void prepare() {
+    cache = new MapCache();
+    renderCache = new SingleFlightRenderingCache(cache, 100, 5000);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void test_get_hit() {
+    AtomicInteger renders = new AtomicInteger();
+    assertEquals(Outcome.RENDERED, renderCache.get("key", DOC_KEYS, false,
+        () -> rendering("content", 60, renders)).getOutcome());
+    Result result = renderCache.get("key", DOC_KEYS, false,
+        () -> rendering("other", 60, renders));
+    assertEquals(Outcome.HIT, result.getOutcome());
+    assertEquals("content", result.getContent());
+    assertEquals(1, renders.get());
+    assertEquals(1L, (long) renderCache.getMetrics().get("hits"));
+    assertEquals(1L, (long) renderCache.getDocumentMetrics().get(DOC_KEYS.get(0))
+        .get("renders"));
+  }
+
+  @Test
+  public void test_get_refresh() {
+    AtomicInteger renders = new AtomicInteger();
+    renderCache.get("key", DOC_KEYS, false, () -> rendering("content", 60, renders));
+    Result result = renderCache.get("key", DOC_KEYS, true, () -> rendering("new", 60, renders));
+    assertEquals(Outcome.REFRESHED, result.getOutcome());
+    assertEquals("new", result.getContent());
+    assertEquals("new", cache.get("key").getContent());
+  }
+
+  @Test
+  public void test_get_uncacheable() {
+    AtomicInteger renders = new AtomicInteger();
+    renderCache.get("key", DOC_KEYS, false, () -> rendering("content", 0, renders));
+    renderCache.get("key", DOC_KEYS, false, () -> rendering("content", 0, renders));
+    assertEquals(2, renders.get());
+    assertNull(cache.get("key"));
+  }
+
+  @Test
+  public void test_get_coalesced() throws Exception {
+    CountDownLatch rendering = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger renders = new AtomicInteger();
+    Future<Result> leader = executor.submit(() -> renderCache.get("key", DOC_KEYS, false, () -> {
+      rendering.countDown();
+      await(release);
+      return rendering("content", 60, renders);
+    }));
+    assertTrue(rendering.await(1, SECONDS));
+    Future<Result> waiter = executor.submit(() -> renderCache.get("key", DOC_KEYS, false,
+        () -> rendering("other", 60, renders)));
+    while (renderCache.getMetrics().get("coalescedWaits") == 0) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    assertEquals(Outcome.RENDERED, leader.get(1, SECONDS).getOutcome());
+    assertEquals(Outcome.COALESCED, waiter.get(1, SECONDS).getOutcome());
+    assertEquals("content", waiter.get().getContent());
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  public void test_get_stale() throws Exception {
+    AtomicInteger renders = new AtomicInteger();
+    cache.set("key", new XWikiRenderingCache("key", "stale", 1, new Date(0)));
+    CountDownLatch rendering = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<Result> leader = executor.submit(() -> renderCache.get("key", DOC_KEYS, false, () -> {
+      rendering.countDown();
+      await(release);
+      return rendering("content", 60, renders);
+    }));
+    assertTrue(rendering.await(1, SECONDS));
+    Result stale = renderCache.get("key", DOC_KEYS, false, () -> rendering("other", 60, renders));
+    release.countDown();
+    assertEquals(Outcome.STALE, stale.getOutcome());
+    assertEquals("stale", stale.getContent());
+    assertEquals(Outcome.REFRESHED, leader.get(1, SECONDS).getOutcome());
+    assertEquals("content", cache.get("key").getContent());
+  }
+
+  @Test
+  public void test_get_recursive() {
+    AtomicInteger renders = new AtomicInteger();
+    Result result = renderCache.get("key", DOC_KEYS, false, () -> rendering(renderCache.get(
+        "key", DOC_KEYS, false, () -> rendering("inner", 60, renders)).getContent(), 60,
+        renders));
+    assertEquals("inner", result.getContent());
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  public void test_invalidate() {
+    AtomicInteger renders = new AtomicInteger();
+    renderCache.get("key", List.of("wiki:Space.Page", "wiki:Space.Incl"), false,
+        () -> rendering("content", 60, renders));
+    renderCache.invalidate("wiki:Space.Other");
+    assertNotNull(cache.get("key"));
+    renderCache.invalidate("wiki:Space.Incl");
+    assertNull(cache.get("key"));
+    assertEquals(1L, (long) renderCache.getMetrics().get("invalidations"));
+    renderCache.invalidate("wiki:Space.Page");
+    assertEquals(0L, (long) renderCache.getMetrics().get("indexedKeys"));
+  }
+
+  @Test
+  public void test_invalidate_evicted() {
+    AtomicInteger renders = new AtomicInteger();
+    renderCache.get("key", List.of("wiki:Space.Page", "wiki:Space.Incl"), false,
+        () -> rendering("content", 60, renders));
+    assertEquals(1L, (long) renderCache.getMetrics().get("indexedKeys"));
+    cache.evict("key");
+    assertEquals("evicted keys are dropped from the index", 0L,
+        (long) renderCache.getMetrics().get("indexedKeys"));
+    renderCache.invalidate("wiki:Space.Page");
+    assertEquals(0L, (long) renderCache.getMetrics().get("invalidations"));
+  }
+
+  @Test
+  public void test_invalidate_whileRendering() {
+    AtomicInteger renders = new AtomicInteger();
+    Result result = renderCache.get("key", DOC_KEYS, false, () -> {
+      renderCache.invalidate(DOC_KEYS.get(0));
+      return rendering("outdated", 60, renders);
+    });
+    assertEquals("outdated", result.getContent());
+    assertNull(cache.get("key"));
+    assertEquals(Outcome.RENDERED, renderCache.get("key", DOC_KEYS, false,
+        () -> rendering("content", 60, renders)).getOutcome());
+    assertEquals("content", cache.get("key").getContent());
+  }
+
+  private static XWikiRenderingCache rendering(String content, int cacheDuration,
+      AtomicInteger renders) {
+    renders.incrementAndGet();
+    return new XWikiRenderingCache("key", content, cacheDuration, new Date());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(1, SECONDS);
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class MapCache implements Cache<XWikiRenderingCache> {
+
+    private final Map<String, XWikiRenderingCache> map = new ConcurrentHashMap<>();
+    private final List<CacheEntryListener<XWikiRenderingCache>> listeners =
+        new CopyOnWriteArrayList<>();
+
+    @Override
+    public void set(String key, XWikiRenderingCache value) {
+      map.put(key, value);
+    }
+
+    @Override
+    public XWikiRenderingCache get(String key) {
+      return map.get(key);
+    }
+
+    @Override
+    public void remove(String key) {
+      evict(key);
+    }
+
+    void evict(String key) {
+      XWikiRenderingCache value = map.remove(key);
+      if (value != null) {
+        CacheEntry<XWikiRenderingCache> entry = new CacheEntry<XWikiRenderingCache>() {
+
+          @Override
+          public Cache<XWikiRenderingCache> getCache() {
+            return MapCache.this;
+          }
+
+          @Override
+          public String getKey() {
+            return key;
+          }
+
+          @Override
+          public XWikiRenderingCache getValue() {
+            return value;
+          }
+        };
+        listeners.forEach(listener -> listener.cacheEntryRemoved(
+            new CacheEntryEvent<XWikiRenderingCache>() {
+
+              @Override
+              public Cache<XWikiRenderingCache> getCache() {
+                return MapCache.this;
+              }
+
+              @Override
+              public CacheEntry<XWikiRenderingCache> getEntry() {
+                return entry;
+              }
+            }));
+      }
+    }
+
+    @Override
+    public void removeAll() {
+      map.clear();
+    }
+
+    @Override
+    public void dispose() {
+      map.clear();
+    }
+
+    @Override
+    public void addCacheEntryListener(CacheEntryListener<XWikiRenderingCache> listener) {
+      listeners.add(listener);
+    }
+
+    @Override
+    public void removeCacheEntryListener(CacheEntryListener<XWikiRenderingCache> listener) {
+      listeners.remove(listener);
+    }
+
+  }
+
+}
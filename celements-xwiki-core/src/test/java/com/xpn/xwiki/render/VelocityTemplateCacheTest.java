@@ -0,0 +1,135 @@
+package com.xpn.xwiki.render;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import com.xpn.xwiki.render.VelocityTemplateCache.Template;
+
+public class VelocityTemplateCacheTest {
+
+  private RuntimeInstance runtime;
+  private MapCache cache;
+  private VelocityTemplateCache templateCache;
+
+  @Before
+  public void prepare() throws Exception {
+    runtime = new RuntimeInstance();
+    runtime.init();
+    cache = new MapCache();
+    templateCache = new VelocityTemplateCache(cache);
+  }
+
+  @Test
+  public void test_getTemplate_cached() throws Exception {
+    String content = "#set ($test = \"hello\")$test $name";
+    Template template = templateCache.getTemplate(runtime, "default", "Space.Doc", content).get();
+    assertSame(template, templateCache.getTemplate(runtime, "default", "Space.Doc", content).get());
+    assertEquals(1L, (long) templateCache.getMetrics().get("hits"));
+    assertEquals(1L, (long) templateCache.getMetrics().get("misses"));
+    assertEquals("hello world", render(template, "world"));
+    assertEquals("hello velocity", render(template, "velocity"));
+  }
+
+  @Test
+  public void test_getTemplate_otherKey() throws Exception {
+    String content = "$name";
+    Template template = templateCache.getTemplate(runtime, "default", "Space.Doc", content).get();
+    assertNotSame(template, templateCache.getTemplate(runtime, "skins/other", "Space.Doc",
+        content).get());
+    assertNotSame(template, templateCache.getTemplate(runtime, "default", "Space.Other",
+        content).get());
+    RuntimeInstance recreated = new RuntimeInstance();
+    recreated.init();
+    assertNotSame(template, templateCache.getTemplate(recreated, "default", "Space.Doc",
+        content).get());
+    assertEquals(0L, (long) templateCache.getMetrics().get("hits"));
+  }
+
+  @Test
+  public void test_getTemplate_unparsable() {
+    assertFalse(templateCache.getTemplate(runtime, "default", "Space.Doc", "#if (").isPresent());
+    assertTrue(cache.map.isEmpty());
+  }
+
+  @Test
+  public void test_isCacheable() {
+    assertTrue(VelocityTemplateCache.isCacheable("#set ($a = 1)$a"));
+    assertFalse(VelocityTemplateCache.isCacheable("#macro (test)a#end#test()"));
+    assertFalse(VelocityTemplateCache.isCacheable("#{macro}(test)a#end"));
+    assertFalse(VelocityTemplateCache.isCacheable("a#stop"));
+  }
+
+  @Test
+  public void test_getRuntime() throws Exception {
+    RuntimeInstance registered = new RuntimeInstance();
+    registered.setProperty(RuntimeConstants.EVENTHANDLER_INCLUDE,
+        VelocityRuntimeRegistry.class.getName());
+    registered.setProperty(VelocityRuntimeRegistry.PROPERTY_ENGINE_KEY, "skins/registered");
+    registered.init();
+    assertSame(registered, VelocityRuntimeRegistry.getRuntime("skins/registered").get());
+    assertFalse(VelocityRuntimeRegistry.getRuntime("skins/unknown").isPresent());
+  }
+
+  @Test
+  public void test_includeEvent() {
+    assertEquals("macros.vm", new VelocityRuntimeRegistry().includeEvent("macros.vm",
+        "Space.Doc", "parse"));
+  }
+
+  private String render(Template template, String name) throws Exception {
+    VelocityContext vcontext = new VelocityContext();
+    vcontext.put("name", name);
+    StringWriter writer = new StringWriter();
+    templateCache.render(template, vcontext, writer, "Space.Doc");
+    return writer.toString();
+  }
+
+  private static class MapCache implements Cache<Template> {
+
+    private final Map<String, Template> map = new ConcurrentHashMap<>();
+
+    @Override
+    public void set(String key, Template value) {
+      map.put(key, value);
+    }
+
+    @Override
+    public Template get(String key) {
+      return map.get(key);
+    }
+
+    @Override
+    public void remove(String key) {
+      map.remove(key);
+    }
+
+    @Override
+    public void removeAll() {
+      map.clear();
+    }
+
+    @Override
+    public void dispose() {
+      map.clear();
+    }
+
+    @Override
+    public void addCacheEntryListener(CacheEntryListener<Template> listener) {}
+
+    @Override
+    public void removeCacheEntryListener(CacheEntryListener<Template> listener) {}
+
+  }
+
+}
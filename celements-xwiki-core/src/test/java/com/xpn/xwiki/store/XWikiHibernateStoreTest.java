@@ -23,6 +23,11 @@ import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.hibernate.HibernateException;
 import org.hibernate.Transaction;
@@ -30,9 +35,14 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.xpn.xwiki.XWikiConstant;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.test.AbstractComponentTest;
+import com.xpn.xwiki.user.api.XWikiRightService;
 import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.web.XWikiRequest;
 
 /**
  * Unit tests for the {@link XWikiHibernateStore} class.
@@ -131,4 +141,121 @@ public class XWikiHibernateStoreTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  @Test
+  public void test_streamDocuments_earlyTermination() throws Exception {
+    StreamTestStore streamStore = new StreamTestStore(250);
+    expectGetDocuments();
+    replayDefault();
+    List<String> names = streamStore.streamDocuments("", false, false, false, null, getContext())
+        .limit(5)
+        .map(XWikiDocument::getName)
+        .collect(Collectors.toList());
+    verifyDefault();
+    assertEquals(ImmutableList.of("Doc0", "Doc1", "Doc2", "Doc3", "Doc4"), names);
+    assertEquals(ImmutableList.of(0), streamStore.starts);
+  }
+
+  @Test
+  public void test_streamDocuments_fullPagesAfterFiltering() throws Exception {
+    StreamTestStore streamStore = new StreamTestStore(250);
+    XWikiRequest requestMock = createDefaultMock(XWikiRequest.class);
+    expect(requestMock.getHttpServletRequest()).andReturn(createDefaultMock(
+        HttpServletRequest.class)).anyTimes();
+    getContext().setRequest(requestMock);
+    XWikiRightService rightServiceMock = createDefaultMock(XWikiRightService.class);
+    expect(getWikiMock().getRightService()).andReturn(rightServiceMock).anyTimes();
+    expect(rightServiceMock.filterAccess(eq("view"), isA(List.class), same(getContext())))
+        .andAnswer(() -> ((List<XWikiDocument>) getCurrentArguments()[1]).stream()
+            .filter(doc -> (getNumber(doc) % 2) == 0)
+            .collect(Collectors.toList()))
+        .times(3);
+    List<List<XWikiDocument>> loaded = expectGetDocuments();
+    replayDefault();
+    List<String> names = streamStore.streamDocuments("", false, false, true, null, getContext())
+        .skip(60).limit(50)
+        .map(XWikiDocument::getName)
+        .collect(Collectors.toList());
+    verifyDefault();
+    assertEquals(50, names.size());
+    assertEquals("Doc120", names.get(0));
+    assertEquals("Doc218", names.get(49));
+    assertEquals(ImmutableList.of(0, 100, 200), streamStore.starts);
+    assertEquals(3, loaded.size());
+    assertTrue(loaded.stream().flatMap(List::stream).allMatch(doc -> (getNumber(doc) % 2) == 0));
+  }
+
+  @Test
+  public void test_streamDocuments_translations() throws Exception {
+    StreamTestStore streamStore = new StreamTestStore(3);
+    streamStore.languages.add("de");
+    streamStore.languages.add("en");
+    streamStore.languages.add("fr");
+    List<List<XWikiDocument>> loaded = new ArrayList<>();
+    expect(getWikiMock().getDocuments(isA(List.class), same(getContext()))).andAnswer(() -> {
+      List<XWikiDocument> docs = (List<XWikiDocument>) getCurrentArguments()[0];
+      loaded.add(docs);
+      return docs.stream().map(doc -> {
+        XWikiDocument loadedDoc = new XWikiDocument(doc.getDocumentReference());
+        loadedDoc.setLanguage(doc.getLanguage());
+        loadedDoc.setDefaultLanguage("en");
+        loadedDoc.setTranslation(doc.getLanguage().isEmpty() ? 0 : 1);
+        loadedDoc.setNew(getNumber(doc) == 2);
+        return loadedDoc;
+      }).collect(Collectors.toList());
+    }).times(2);
+    replayDefault();
+    List<XWikiDocument> docs = streamStore.streamDocuments("", true, false, false, null,
+        getContext()).collect(Collectors.toList());
+    verifyDefault();
+    assertEquals(2, loaded.size());
+    assertEquals(3, loaded.get(0).size());
+    assertEquals("only the non default languages are loaded in one batch",
+        ImmutableList.of("de", "fr"), loaded.get(1).stream().map(XWikiDocument::getLanguage)
+            .collect(Collectors.toList()));
+    assertEquals("de", docs.get(0).getLanguage());
+    assertTrue(docs.get(0).isTrans());
+    assertEquals("", docs.get(1).getLanguage());
+    assertEquals("missing translations fall back to the default document", "",
+        docs.get(2).getLanguage());
+  }
+
+  private List<List<XWikiDocument>> expectGetDocuments() throws Exception {
+    List<List<XWikiDocument>> loaded = new ArrayList<>();
+    expect(getWikiMock().getDocuments(isA(List.class), same(getContext()))).andAnswer(() -> {
+      List<XWikiDocument> docs = (List<XWikiDocument>) getCurrentArguments()[0];
+      loaded.add(docs);
+      return docs;
+    }).anyTimes();
+    return loaded;
+  }
+
+  private static int getNumber(XWikiDocument doc) {
+    return Integer.parseInt(doc.getName().substring("Doc".length()));
+  }
+
+  /**
+   * queries the rows "Space.Doc0" to "Space.Doc[count - 1]" without a database
+   */
+  private class StreamTestStore extends XWikiHibernateStore {
+
+    private final int count;
+    private final List<String> languages = new ArrayList<>();
+    private final List<Integer> starts = new ArrayList<>();
+
+    StreamTestStore(int count) {
+      this.count = count;
+    }
+
+    @Override
+    List<Object[]> searchDocumentDatas(String wheresql, boolean distinctbylanguage,
+        boolean customMapping, int nb, int start, List<?> parameterValues, XWikiContext context) {
+      starts.add(start);
+      List<Object[]> rows = new ArrayList<>();
+      for (int i = start; (i < count) && (i < (start + nb)); i++) {
+        rows.add(new Object[] { "Space", "Doc" + i, languages.isEmpty() ? "" : languages.get(i) });
+      }
+      return rows;
+    }
+  }
+
 }
@@ -0,0 +1,149 @@
+package com.xpn.xwiki.store.hibernate.query;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.engine.query.HQLQueryPlan;
+import org.hibernate.engine.query.QueryPlanCache;
+import org.hibernate.engine.query.ReturnMetadata;
+import org.hibernate.type.Type;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryExecutor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.internal.cache.query.QueryResultCache;
+import com.xpn.xwiki.store.XWikiHibernateBaseStore.HibernateCallback;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.store.XWikiStoreInterface;
+import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
+import com.xpn.xwiki.test.AbstractComponentTest;
+import com.xpn.xwiki.web.Utils;
+
+public class HqlQueryExecutorTest extends AbstractComponentTest {
+
+  private static final String STATEMENT = "select doc.space from XWikiDocument as doc";
+
+  private QueryExecutor executor;
+
+  private QueryResultCache queryCacheMock;
+  private XWikiHibernateStore storeMock;
+  private TestSession sessionMock;
+  private Query queryMock;
+
+  @Before
+  public void prepareTest() throws Exception {
+    Configuration configMock = createDefaultMock(Configuration.class);
+    expect(registerComponentMock(HibernateSessionFactory.class).getConfiguration())
+        .andReturn(configMock).anyTimes();
+    expect(configMock.addInputStream(anyObject(InputStream.class))).andReturn(configMock)
+        .anyTimes();
+    queryCacheMock = registerComponentMock(QueryResultCache.class);
+    storeMock = createDefaultMock(XWikiHibernateStore.class);
+    registerComponentMock(XWikiStoreInterface.class, "hibernate", storeMock);
+    sessionMock = createDefaultMock(TestSession.class);
+    queryMock = createDefaultMock(Query.class);
+    expect(queryMock.getWiki()).andReturn("wiki").anyTimes();
+    expect(queryMock.getStatement()).andReturn(STATEMENT).anyTimes();
+    expect(queryMock.isNamed()).andReturn(false).anyTimes();
+    expect(queryMock.getOffset()).andReturn(0).anyTimes();
+    expect(queryMock.getLimit()).andReturn(0).anyTimes();
+    expect(queryMock.getNamedParameters()).andReturn(Collections.emptyMap()).anyTimes();
+    expect(queryMock.getPositionalParameters()).andReturn(Collections.emptyMap()).anyTimes();
+    executor = Utils.getComponent(QueryExecutor.class, "hql");
+  }
+
+  @Test
+  public void test_execute_notCached() throws Exception {
+    List<Object> result = ImmutableList.of("Space");
+    expect(queryCacheMock.isCached(same(queryMock))).andReturn(false);
+    expect(queryCacheMock.getGeneration()).andReturn(5L);
+    expectHibernateQuery(result);
+
+    replayDefault();
+    assertEquals(result, executor.execute(queryMock));
+    verifyDefault();
+  }
+
+  @Test
+  public void test_execute_cacheHit() throws Exception {
+    List<Object> result = ImmutableList.of("Space");
+    expect(queryCacheMock.isCached(same(queryMock))).andReturn(true);
+    expect(queryCacheMock.get("wiki", queryMock)).andReturn(result);
+
+    replayDefault();
+    assertEquals(result, executor.execute(queryMock));
+    verifyDefault();
+  }
+
+  @Test
+  public void test_execute_recordsQuerySpaces() throws Exception {
+    List<Object> result = ImmutableList.of("Space");
+    expect(queryCacheMock.isCached(same(queryMock))).andReturn(true);
+    expect(queryCacheMock.get("wiki", queryMock)).andReturn(null);
+    expect(queryCacheMock.getGeneration()).andReturn(5L);
+    expectHibernateQuery(result);
+    expectQueryPlan(false, "xwikidoc");
+    queryCacheMock.set("wiki", queryMock, result, ImmutableSet.of("xwikidoc"), 5L);
+
+    replayDefault();
+    assertEquals(result, executor.execute(queryMock));
+    verifyDefault();
+  }
+
+  @Test
+  public void test_execute_entitiesNotCached() throws Exception {
+    List<Object> result = ImmutableList.of(new Object());
+    expect(queryCacheMock.isCached(same(queryMock))).andReturn(true);
+    expect(queryCacheMock.get("wiki", queryMock)).andReturn(null);
+    expect(queryCacheMock.getGeneration()).andReturn(5L);
+    expectHibernateQuery(result);
+    expectQueryPlan(true, "xwikidoc");
+
+    replayDefault();
+    assertEquals(result, executor.execute(queryMock));
+    verifyDefault();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void expectHibernateQuery(List<Object> result) throws Exception {
+    expect(storeMock.executeRead(eq(new WikiReference("wiki")), eq(true),
+        anyObject(HibernateCallback.class))).andAnswer(
+            () -> ((HibernateCallback<?>) getCurrentArguments()[2]).doInHibernate(sessionMock));
+    org.hibernate.Query hqueryMock = createDefaultMock(org.hibernate.Query.class);
+    expect(sessionMock.createQuery(STATEMENT)).andReturn(hqueryMock);
+    expect(hqueryMock.list()).andReturn(result);
+    expect(hqueryMock.getQueryString()).andReturn(STATEMENT).anyTimes();
+  }
+
+  private void expectQueryPlan(boolean entity, String... spaces) {
+    SessionFactoryImplementor factoryMock = createDefaultMock(SessionFactoryImplementor.class);
+    QueryPlanCache planCacheMock = createDefaultMock(QueryPlanCache.class);
+    HQLQueryPlan planMock = createDefaultMock(HQLQueryPlan.class);
+    ReturnMetadata returnMock = createDefaultMock(ReturnMetadata.class);
+    Type typeMock = createDefaultMock(Type.class);
+    expect(sessionMock.getFactory()).andReturn(factoryMock);
+    expect(factoryMock.getQueryPlanCache()).andReturn(planCacheMock);
+    expect(planCacheMock.getHQLQueryPlan(STATEMENT, false, Collections.emptyMap()))
+        .andReturn(planMock);
+    expect(planMock.getReturnMetadata()).andReturn(returnMock).anyTimes();
+    expect(returnMock.getReturnTypes()).andReturn(new Type[] { typeMock });
+    expect(typeMock.isEntityType()).andReturn(entity);
+    expect(typeMock.isCollectionType()).andReturn(false).anyTimes();
+    expect(planMock.getQuerySpaces()).andReturn(ImmutableSet.copyOf(spaces)).anyTimes();
+  }
+
+  private interface TestSession extends Session, SessionImplementor {}
+
+}
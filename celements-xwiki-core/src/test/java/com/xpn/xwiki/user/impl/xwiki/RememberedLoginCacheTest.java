@@ -0,0 +1,63 @@
+package com.xpn.xwiki.user.impl.xwiki;
+
+import static org.junit.Assert.*;
+
+import java.security.Principal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.securityfilter.realm.SimplePrincipal;
+
+public class RememberedLoginCacheTest {
+
+  private RememberedLoginCache cache;
+
+  @Before
+  public void prepare() {
+    cache = new RememberedLoginCache(2, 60000);
+  }
+
+  @Test
+  public void test_get_put() {
+    Principal principal = new SimplePrincipal("XWiki.User");
+    assertNull(cache.get("wiki", "User", "pwd"));
+    cache.put("wiki", "User", "pwd", principal);
+    assertSame(principal, cache.get("wiki", "User", "pwd"));
+    assertNull(cache.get("wiki", "User", "other"));
+    assertNull(cache.get("other", "User", "pwd"));
+    assertEquals(1L, (long) cache.getMetrics().get("hits"));
+    assertEquals(3L, (long) cache.getMetrics().get("misses"));
+  }
+
+  @Test
+  public void test_get_expired() throws Exception {
+    cache = new RememberedLoginCache(2, 1);
+    cache.put("wiki", "User", "pwd", new SimplePrincipal("XWiki.User"));
+    Thread.sleep(5);
+    assertNull(cache.get("wiki", "User", "pwd"));
+    assertEquals(0L, (long) cache.getMetrics().get("size"));
+  }
+
+  @Test
+  public void test_put_capacity() {
+    cache.put("wiki", "User1", "pwd", new SimplePrincipal("XWiki.User1"));
+    cache.put("wiki", "User2", "pwd", new SimplePrincipal("XWiki.User2"));
+    cache.put("wiki", "User3", "pwd", new SimplePrincipal("XWiki.User3"));
+    assertEquals(1L, (long) cache.getMetrics().get("size"));
+    assertNotNull(cache.get("wiki", "User3", "pwd"));
+  }
+
+  @Test
+  public void test_invalidate() {
+    cache.put("wiki", "User", "pwd", new SimplePrincipal("XWiki.User"));
+    cache.put("wiki", "Main", "pwd", new SimplePrincipal("main:XWiki.Main"));
+    cache.invalidate("wiki:XWiki.Other");
+    assertEquals(2L, (long) cache.getMetrics().get("size"));
+    cache.invalidate("wiki:XWiki.User");
+    assertNull(cache.get("wiki", "User", "pwd"));
+    cache.invalidate("main:XWiki.Main");
+    assertNull(cache.get("wiki", "Main", "pwd"));
+    assertEquals(2L, (long) cache.getMetrics().get("invalidations"));
+  }
+
+}
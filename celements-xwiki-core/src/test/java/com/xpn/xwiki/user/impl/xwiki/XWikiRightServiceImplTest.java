@@ -19,12 +19,17 @@
  */
 package com.xpn.xwiki.user.impl.xwiki;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.jmock.Mock;
 import org.jmock.core.Invocation;
 import org.jmock.core.stub.CustomStub;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
@@ -35,6 +40,7 @@ import com.xpn.xwiki.test.AbstractBridgedXWikiComponentTestCase;
 import com.xpn.xwiki.user.api.XWikiGroupService;
 import com.xpn.xwiki.user.api.XWikiRightNotFoundException;
 import com.xpn.xwiki.user.api.XWikiRightService;
+import com.xpn.xwiki.user.api.XWikiUser;
 
 /**
  * Unit tests for {@link com.xpn.xwiki.user.impl.xwiki.XWikiRightServiceImpl}.
@@ -477,4 +483,116 @@ public class XWikiRightServiceImplTest extends AbstractBridgedXWikiComponentTest
                 doc.getPrefixedFullName(), true,
                 getContext()));
   }
+
+  public void testHasAccessLevelServedFromRightsCache() throws Exception {
+    getConfigurationSource().setProperty("core.rightscache.enabled", true);
+    final XWikiDocument doc = new XWikiDocument(new DocumentReference("wiki", "Space", "Page"));
+    final XWikiDocument preferences = new XWikiDocument(
+        new DocumentReference("wiki", "XWiki", "XWikiPreferences"));
+    BaseObject preferencesObject = new BaseObject();
+    preferencesObject.setClassName("XWiki.XWikiGlobalRights");
+    preferencesObject.setStringValue("levels", "view");
+    preferencesObject.setStringValue("users", this.user.getFullName());
+    preferencesObject.setIntValue("allow", 1);
+    preferences.addXObject(preferencesObject);
+    final List<String> loaded = new ArrayList<>();
+    this.mockXWiki.stubs().method("getDocument").with(eq("XWiki.XWikiPreferences"), ANYTHING).will(
+        new CustomStub("Implements XWiki.getDocument") {
+
+          @Override
+          public Object invoke(Invocation invocation) throws Throwable {
+            if (!getContext().getDatabase().equals(preferences.getWikiName())) {
+              // master wiki preferences for the uncached super admin check
+              return new XWikiDocument(
+                  new DocumentReference(getContext().getDatabase(), "XWiki", "XWikiPreferences"));
+            }
+            loaded.add(preferences.getFullName());
+            return preferences;
+          }
+        });
+    this.mockXWiki.stubs().method("getDocument").with(ANYTHING, eq("WebPreferences"), ANYTHING)
+        .will(new CustomStub("Implements XWiki.getDocument") {
+
+          @Override
+          public Object invoke(Invocation invocation) throws Throwable {
+            String space = (String) invocation.parameterValues.get(0);
+            loaded.add(space + ".WebPreferences");
+            return new XWikiDocument(new DocumentReference(getContext().getDatabase(), space,
+                "WebPreferences"));
+          }
+        });
+    this.mockXWiki.stubs().method("getDocument").with(eq(doc.getPrefixedFullName()), ANYTHING).will(
+        returnValue(doc));
+    stubAuthenticatePreferences(0);
+    getContext().setDatabase("wiki");
+
+    assertTrue(this.rightService.hasAccessLevel("view", this.user.getPrefixedFullName(),
+        doc.getPrefixedFullName(), true, getContext()));
+    assertTrue(loaded.contains("XWiki.XWikiPreferences"));
+    assertTrue(loaded.contains("Space.WebPreferences"));
+    List<String> loadedByCheck = new ArrayList<>(loaded);
+
+    assertTrue(this.rightService.hasAccessLevel("view", this.user.getPrefixedFullName(),
+        doc.getPrefixedFullName(), true, getContext()));
+    assertEquals("preference documents reloaded for a cached decision", loadedByCheck, loaded);
+
+    getComponentManager().lookup(ObservationManager.class).notify(
+        new DocumentUpdatedEvent(preferences.getDocumentReference()), preferences, getContext());
+    loaded.clear();
+
+    assertTrue(this.rightService.hasAccessLevel("view", this.user.getPrefixedFullName(),
+        doc.getPrefixedFullName(), true, getContext()));
+    assertEquals("decision not invalidated by the preferences update", loadedByCheck, loaded);
+  }
+
+  public void testFilterAccessAuthenticatesOnce() throws XWikiException {
+    XWikiDocument visible1 = new XWikiDocument(new DocumentReference("wiki", "Space", "Visible1"));
+    XWikiDocument hidden = new XWikiDocument(new DocumentReference("wiki", "Space", "Hidden"));
+    XWikiDocument visible2 = new XWikiDocument(new DocumentReference("wiki", "Space", "Visible2"));
+    stubAuthenticatePreferences(0);
+    this.mockXWiki.expects(once()).method("checkAuth").will(returnValue(new XWikiUser(
+        "XWiki.user")));
+    this.mockXWiki.expects(never()).method("getAuthService");
+    this.mockXWiki.stubs().method("getRightService").will(returnValue(new XWikiRightServiceImpl() {
+
+      @Override
+      public boolean hasAccessLevel(String right, String username, String docname,
+          XWikiContext context) {
+        assertEquals("view", right);
+        assertEquals("wiki:XWiki.user", username);
+        return docname.startsWith("wiki:Space.Visible");
+      }
+    }));
+    getContext().setDatabase("wiki");
+
+    List<XWikiDocument> docs = this.rightService.filterAccess("view", Arrays.asList(visible1,
+        hidden, visible2), getContext());
+
+    assertEquals(Arrays.asList(visible1, visible2), docs);
+    assertEquals("XWiki.user", getContext().getUser());
+  }
+
+  public void testFilterAccessDeniesGuestWhenAuthenticationNeeded() throws XWikiException {
+    XWikiDocument doc = new XWikiDocument(new DocumentReference("wiki", "Space", "Page"));
+    stubAuthenticatePreferences(1);
+    this.mockXWiki.expects(once()).method("checkAuth").will(returnValue(null));
+    this.mockXWiki.expects(never()).method("getAuthService");
+    this.mockXWiki.expects(never()).method("getRightService");
+    getContext().setDatabase("wiki");
+
+    assertEquals(Collections.emptyList(), this.rightService.filterAccess("view",
+        Arrays.asList(doc), getContext()));
+  }
+
+  private void stubAuthenticatePreferences(int authenticate) {
+    this.mockXWiki.stubs().method("getXWikiPreference")
+        .with(eq("authenticate_view"), ANYTHING, ANYTHING).will(returnValue(""));
+    this.mockXWiki.stubs().method("getXWikiPreferenceAsInt")
+        .with(eq("authenticate_view"), ANYTHING, ANYTHING)
+        .will(returnValue(authenticate));
+    this.mockXWiki.stubs().method("getSpacePreference")
+        .with(eq("authenticate_view"), ANYTHING, ANYTHING).will(returnValue(""));
+    this.mockXWiki.stubs().method("getSpacePreferenceAsInt")
+        .with(eq("authenticate_view"), ANYTHING, ANYTHING).will(returnValue(0));
+  }
 }